@@ -0,0 +1,91 @@
+package com.fatia.warehouseservice.benchmarks;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.services.ShelfService;
+import com.fatia.warehouseservice.services.WarehouseService;
+import com.fatia.warehouseservice.services.ZoneService;
+import com.fatia.warehouseservice.services.ZoneSpatialIndex;
+import com.fatia.warehouseservice.spatial.Rect;
+import com.fatia.warehouseservice.spatial.SpatialGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Validation paths executed on every layout edit.
+// Target zone is placed in the free aisle at the end of the sibling grid, so
+// isOverlappingWithOthers has to look at every sibling (worst case for linear scan).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeometryBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int siblings;
+
+    private ZoneEntity parent;
+
+    private List<ZoneEntity> siblingZones;
+
+    private SpatialGrid grid;
+
+    private ZoneEntity target;
+
+    private Rect targetFootprint;
+
+    private WarehouseService warehouseService;
+
+    @Setup
+    public void setUp() {
+        int side = Layouts.sideFor(siblings);
+        parent = Layouts.zone(0L, ZoneType.STORAGE, 0, 0, side, side + Layouts.CELL, null);
+        siblingZones = Layouts.siblings(siblings, parent);
+
+        grid = new SpatialGrid(SpatialGrid.cellSizeFor(parent.getWidth(), parent.getLength()));
+        for (ZoneEntity sibling : siblingZones) {
+            grid.put(sibling.getId(), ZoneSpatialIndex.footprint(sibling));
+        }
+
+        target = Layouts.zone(0L, ZoneType.COLUMN, side - Layouts.CELL, side, 10, 10, parent);
+        targetFootprint = ZoneSpatialIndex.footprint(target);
+
+        WarehouseConfig config = new WarehouseConfig();
+        config.setWidth(5000);
+        config.setHeight(3000);
+        warehouseService = new WarehouseService(config);
+    }
+
+    @Benchmark
+    public boolean overlapLinearScan() {
+        return ZoneService.isOverlappingWithOthers(target, siblingZones);
+    }
+
+    @Benchmark
+    public boolean overlapSpatialGrid() {
+        return grid.anyIntersecting(targetFootprint, target.getId());
+    }
+
+    @Benchmark
+    public boolean childWithinParentBounds() {
+        return ZoneService.isChildWithinParentBounds(target, parent);
+    }
+
+    @Benchmark
+    public boolean shelfWithinColumnBounds() {
+        return ShelfService.isShelfWithinColumnBounds(
+                target.getOriginX(), target.getOriginY(), 5, 5,
+                target.getWidth(), target.getLength());
+    }
+
+    @Benchmark
+    public boolean withinWarehouseBounds() {
+        return warehouseService.isWithinBounds(
+                target.getOriginX(), target.getOriginY(),
+                target.getWidth(), target.getLength());
+    }
+}
@@ -0,0 +1,88 @@
+package com.fatia.warehouseservice.benchmarks;
+
+import com.fatia.warehouseservice.config.JwtAuthenticationFilter;
+import com.fatia.warehouseservice.config.JwtConfig;
+import com.fatia.warehouseservice.config.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.io.IOException;
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Per request overhead of JWT authentication.
+// legacyThreeParses is the filter as it was before claims caching: key decoded and token
+// parsed and verified three times (expiration, username, role).
+// filter runs JwtAuthenticationFilter, claimsCacheSize = 0 means one parse per request.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "YmVuY2htYXJrLXNlY3JldC1mb3Itd2FyZWhvdXNlLXNlcnZpY2Utand0LWZpbHRlcg==";
+
+    @Param({"0", "10000"})
+    private int claimsCacheSize;
+
+    private String token;
+
+    private JwtAuthenticationFilter filter;
+
+    @Setup
+    public void setUp() {
+        JwtConfig config = new JwtConfig();
+        config.setSecret(SECRET);
+        config.setClaimsCacheSize(claimsCacheSize);
+
+        JwtService jwtService = new JwtService(config);
+        token = jwtService.generateToken(new User(
+                "user@mail.com", "", List.of(new SimpleGrantedAuthority("ADMIN"))));
+        filter = new JwtAuthenticationFilter(jwtService);
+    }
+
+    @Benchmark
+    public Object filter() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/zone/get-all");
+        request.addHeader("Authorization", "Bearer " + token);
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    @Benchmark
+    public Object legacyThreeParses() {
+        boolean expired = legacyClaim(Claims::getExpiration).before(new Date());
+        String username = legacyClaim(Claims::getSubject);
+        String role = legacyClaim(claims -> claims.get("role", String.class));
+        return expired ? null : username + role;
+    }
+
+    private <T> T legacyClaim(Function<Claims, T> resolver) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        Claims claims = Jwts
+                .parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        return resolver.apply(claims);
+    }
+}
@@ -0,0 +1,83 @@
+package com.fatia.warehouseservice.benchmarks;
+
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//In-memory layouts used as benchmark fixtures
+final class Layouts {
+
+    static final int CELL = 20;
+
+    private Layouts() {
+    }
+
+    //count columns of 10 x 10 placed on a square grid with 10 units of aisle between them
+    static List<ZoneEntity> siblings(int count, ZoneEntity parent) {
+        int perRow = (int) Math.ceil(Math.sqrt(count));
+        List<ZoneEntity> zones = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            zones.add(zone((long) i + 1, ZoneType.COLUMN,
+                    (i % perRow) * CELL, (i / perRow) * CELL, 10, 10, parent));
+        }
+        return zones;
+    }
+
+    static int sideFor(int count) {
+        return (int) Math.ceil(Math.sqrt(count)) * CELL;
+    }
+
+    //Tree with given depth where every zone has fanout children and leaves have shelves
+    static ZoneEntity tree(int depth, int fanout, int shelvesPerLeaf) {
+        long[] ids = {1};
+        return subtree(ids, null, depth, fanout, shelvesPerLeaf);
+    }
+
+    private static ZoneEntity subtree(long[] ids, ZoneEntity parent, int depth, int fanout, int shelvesPerLeaf) {
+        ZoneEntity zone = zone(ids[0]++, depth == 1 ? ZoneType.COLUMN : ZoneType.STORAGE,
+                0, 0, 100, 100, parent);
+        if (depth == 1) {
+            for (int i = 0; i < shelvesPerLeaf; i++) {
+                zone.getShelves().add(ShelfEntity
+                        .builder()
+                        .id(ids[0]++)
+                        .name("SHELF-" + zone.getUuid() + "-" + i)
+                        .zone(zone)
+                        .width(10)
+                        .length(10)
+                        .height(10)
+                        .level(i)
+                        .isActive(true)
+                        .conditions(Map.of("temperature", "cold"))
+                        .build());
+            }
+            return zone;
+        }
+        for (int i = 0; i < fanout; i++) {
+            zone.getChildZones().add(subtree(ids, zone, depth - 1, fanout, shelvesPerLeaf));
+        }
+        return zone;
+    }
+
+    static ZoneEntity zone(Long id, ZoneType type, int x, int y, int width, int length, ZoneEntity parent) {
+        return ZoneEntity
+                .builder()
+                .id(id)
+                .uuid(Long.toHexString(id))
+                .name(type + "-" + id)
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection(FaceDirection.UP)
+                .parentZone(parent)
+                .build();
+    }
+}
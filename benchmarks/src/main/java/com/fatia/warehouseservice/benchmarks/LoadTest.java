@@ -0,0 +1,151 @@
+package com.fatia.warehouseservice.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed loop HTTP load test of a running service: every client sends next request
+// as soon as the previous one finished, requests rotate over the endpoints.
+// Clients are async (no thread per client), so 1k+ clients work on Java 17 too.
+//
+// Compare platform and virtual threads by starting the service twice:
+//   mvn -Pjava21 package
+//   java -jar target/warehouseservice-0.0.1-SNAPSHOT-exec.jar --spring.threads.virtual.enabled=false
+//   java -jar target/warehouseservice-0.0.1-SNAPSHOT-exec.jar --spring.threads.virtual.enabled=true
+// and running against each:
+//   java -cp benchmarks/target/benchmarks.jar com.fatia.warehouseservice.benchmarks.LoadTest \
+//        --clients=1000 --duration=60 --warmup=10
+public class LoadTest {
+
+    private static final String DEFAULT_ENDPOINTS = "/api/v1/zone/get-page?size=100,"
+            + "/api/v1/shelf/get-page?size=100,"
+            + "/api/v1/zone/at?x=10&y=10,"
+            + "/api/v1/shelf/window?minX=0&minY=0&maxX=500&maxY=500&size=100";
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = options(args);
+        String url = options.getOrDefault("url", "http://localhost:8083");
+        int clients = Integer.parseInt(options.getOrDefault("clients", "1000"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        String token = options.get("token");
+        List<String> endpoints = Arrays.asList(options.getOrDefault("endpoints", DEFAULT_ENDPOINTS).split(","));
+
+        HttpClient client = HttpClient
+                .newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        List<HttpRequest> requests = new ArrayList<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            HttpRequest.Builder builder = HttpRequest
+                    .newBuilder(URI.create(url + endpoint))
+                    .timeout(Duration.ofSeconds(60))
+                    .GET();
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            requests.add(builder.build());
+        }
+
+        System.out.printf("%d clients, %d s warmup, %d s measured, %s%n", clients, warmup, duration, url);
+        run(client, requests, clients, warmup, false);
+        Map<String, Stats> stats = run(client, requests, clients, duration, true);
+
+        System.out.printf("%-70s %10s %8s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            entry.getValue().print(entry.getKey(), duration);
+        }
+    }
+
+    private static Map<String, Stats> run(HttpClient client, List<HttpRequest> requests,
+                                          int clients, int seconds, boolean record) throws InterruptedException {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        for (HttpRequest request : requests) {
+            stats.put(request.uri().getPath() + (request.uri().getQuery() == null ? "" : "?" + request.uri().getQuery()),
+                    new Stats());
+        }
+        List<Stats> byRequest = new ArrayList<>(stats.values());
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            send(client, requests, byRequest, i % requests.size(), deadline, record, done);
+        }
+        done.await();
+        return stats;
+    }
+
+    private static void send(HttpClient client, List<HttpRequest> requests, List<Stats> stats,
+                             int index, long deadline, boolean record, CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+
+        long start = System.nanoTime();
+        client.sendAsync(requests.get(index), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (record) {
+                        stats.get(index).add(System.nanoTime() - start, error == null && response.statusCode() < 400);
+                    }
+                    send(client, requests, stats, (index + 1) % requests.size(), deadline, record, done);
+                });
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private static class Stats {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final LongAdder errors = new LongAdder();
+
+        void add(long nanos, boolean ok) {
+            latencies.add(nanos);
+            if (!ok) {
+                errors.increment();
+            }
+        }
+
+        void print(String endpoint, int seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-70s %10d %8d %10.1f %10.2f %10.2f %10.2f%n",
+                    endpoint,
+                    sorted.length,
+                    errors.sum(),
+                    sorted.length / (double) seconds,
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
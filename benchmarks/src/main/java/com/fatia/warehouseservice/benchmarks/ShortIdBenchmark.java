@@ -0,0 +1,85 @@
+package com.fatia.warehouseservice.benchmarks;
+
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.ids.RandomShortIdGenerator;
+import com.fatia.warehouseservice.ids.SequenceShortIdGenerator;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// One short id: sequence blocks vs previous random + findByUuid probe.
+// Zones table is preloaded with existingZones legacy ids. H2 in memory hides the network
+// round trip of every probe, real difference on Postgres is bigger.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShortIdBenchmark {
+
+    @Param({"1000", "100000"})
+    private int existingZones;
+
+    private SingleConnectionDataSource dataSource;
+
+    private SequenceShortIdGenerator sequence;
+
+    private RandomShortIdGenerator random;
+
+    @Setup
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:short-ids;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("create table zones (id bigint primary key, uuid varchar(8) not null unique)");
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < existingZones; i++) {
+            rows.add(new Object[]{i, UUID.randomUUID().toString().substring(0, 8)});
+        }
+        jdbcTemplate.batchUpdate("merge into zones (id, uuid) key (uuid) values (?, ?)", rows);
+
+        // what SequenceShortIdGenerator does on startup
+        jdbcTemplate.execute("create sequence zone_short_id_seq start with 1 increment by 1000");
+        sequence = new SequenceShortIdGenerator(jdbcTemplate);
+        random = new RandomShortIdGenerator(zoneRepository(jdbcTemplate));
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public String sequence() {
+        return sequence.next();
+    }
+
+    @Benchmark
+    public String random() {
+        return random.next();
+    }
+
+    // findByUuid is the only method RandomShortIdGenerator.next() uses
+    private static ZoneRepository zoneRepository(JdbcTemplate jdbcTemplate) {
+        return (ZoneRepository) Proxy.newProxyInstance(
+                ZoneRepository.class.getClassLoader(),
+                new Class<?>[]{ZoneRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("findByUuid")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<Long> ids = jdbcTemplate.queryForList("select id from zones where uuid = ?", Long.class, args[0]);
+                    return ids.isEmpty() ? Optional.empty() : Optional.of(new ZoneEntity());
+                });
+    }
+}
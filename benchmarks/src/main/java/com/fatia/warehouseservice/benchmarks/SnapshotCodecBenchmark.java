@@ -0,0 +1,82 @@
+package com.fatia.warehouseservice.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatia.warehouseservice.cache.LayoutSnapshot;
+import com.fatia.warehouseservice.cache.LayoutSnapshotCodec;
+import com.fatia.warehouseservice.models.ZoneModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Layout snapshot as served by /api/v1/zone/get-all: JSON vs LayoutSnapshotCodec.
+// Tree has fanout^(depth-1) leaf columns with shelves, sizes are printed on setup.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotCodecBenchmark {
+
+    private static final TypeReference<List<ZoneModel>> ZONES = new TypeReference<>() {
+    };
+
+    @Param({"2", "3", "4"})
+    private int depth;
+
+    @Param({"10"})
+    private int fanout;
+
+    @Param({"10"})
+    private int shelvesPerLeaf;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LayoutSnapshot snapshot;
+
+    private byte[] json;
+
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<ZoneModel> zones = new ArrayList<>();
+        flatten(ZoneModel.toModel(Layouts.tree(depth, fanout, shelvesPerLeaf)), zones);
+        snapshot = new LayoutSnapshot(1L, zones);
+        json = objectMapper.writeValueAsBytes(snapshot.getZones());
+        binary = LayoutSnapshotCodec.encode(snapshot);
+        System.out.printf("%n%d zones: JSON %d bytes, binary %d bytes%n", zones.size(), json.length, binary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(snapshot.getZones());
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return LayoutSnapshotCodec.encode(snapshot);
+    }
+
+    @Benchmark
+    public List<ZoneModel> decodeJson() throws IOException {
+        return objectMapper.readValue(json, ZONES);
+    }
+
+    @Benchmark
+    public LayoutSnapshot decodeBinary() {
+        return LayoutSnapshotCodec.decode(ByteBuffer.wrap(binary));
+    }
+
+    private static void flatten(ZoneModel zone, List<ZoneModel> zones) {
+        zones.add(zone);
+        for (ZoneModel child : zone.getChildZones()) {
+            flatten(child, zones);
+        }
+    }
+}
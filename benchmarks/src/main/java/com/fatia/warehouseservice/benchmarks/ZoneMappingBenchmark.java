@@ -0,0 +1,50 @@
+package com.fatia.warehouseservice.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.models.ZoneModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// ZoneModel mapping and JSON serialization of a zone tree.
+// Tree has fanout^(depth-1) leaf columns with shelves.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZoneMappingBenchmark {
+
+    @Param({"2", "3", "4"})
+    private int depth;
+
+    @Param({"10"})
+    private int fanout;
+
+    @Param({"10"})
+    private int shelvesPerLeaf;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ZoneEntity root;
+
+    private ZoneModel model;
+
+    @Setup
+    public void setUp() {
+        root = Layouts.tree(depth, fanout, shelvesPerLeaf);
+        model = ZoneModel.toModel(root);
+    }
+
+    @Benchmark
+    public ZoneModel toModel() {
+        return ZoneModel.toModel(root);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(model);
+    }
+}
@@ -4,9 +4,11 @@ import com.fatia.warehouseservice.config.WarehouseConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableConfigurationProperties(WarehouseConfig.class)
+@EnableScheduling
 public class WarehouseserviceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,91 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+// Evicts second-level cache entries of rows written with plain JDBC, Hibernate doesn't see those.
+// Entries are evicted right away and again after commit, before any
+// TransactionalEventListener runs, so a value read from the old row meanwhile is dropped too.
+// Rows changed by other instances are evicted when they show up in the change log.
+@Component
+@RequiredArgsConstructor
+public class EntityCacheEvictor {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public void evictZones(Collection<Long> ids) {
+        evict(ZoneEntity.class, List.copyOf(ids));
+    }
+
+    public void evictShelves(Collection<Long> ids) {
+        evict(ShelfEntity.class, List.copyOf(ids));
+    }
+
+    public void evictAllShelves() {
+        evict(ShelfEntity.class, null);
+    }
+
+    // Changes of every instance, own ones were evicted at commit already and cost one more miss here.
+    // Collections and cached queries may hold any of the changed ids, their regions are dropped whole.
+    @EventListener
+    public void onLayoutSynced(LayoutSyncedEvent event) {
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        if (event.isFullResync()) {
+            cache.evictAllRegions();
+            return;
+        }
+        if (event.hasZoneChanges()) {
+            event.getZoneIds().forEach(id -> cache.evictEntityData(ZoneEntity.class, id));
+            event.getDeletedZoneIds().forEach(id -> cache.evictEntityData(ZoneEntity.class, id));
+            cache.evictCollectionData(ZoneEntity.class.getName() + ".childZones");
+            cache.evictQueryRegions();
+        }
+        if (!event.getShelfIds().isEmpty() || !event.getDeletedShelfIds().isEmpty()) {
+            event.getShelfIds().forEach(id -> cache.evictEntityData(ShelfEntity.class, id));
+            event.getDeletedShelfIds().forEach(id -> cache.evictEntityData(ShelfEntity.class, id));
+            cache.evictCollectionData(ZoneEntity.class.getName() + ".shelves");
+        }
+    }
+
+    // null ids evict the whole region
+    private void evict(Class<?> type, List<Long> ids) {
+        Cache cache = entityManagerFactory.getCache();
+        Runnable eviction = () -> {
+            if (ids == null) {
+                cache.evict(type);
+            } else {
+                ids.forEach(id -> cache.evict(type, id));
+            }
+        };
+
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new AfterCommitEviction(eviction));
+        }
+    }
+
+    private record AfterCommitEviction(Runnable eviction) implements TransactionSynchronization, Ordered {
+        @Override
+        public void afterCommit() {
+            eviction.run();
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.spatial.Frame;
+import com.fatia.warehouseservice.spatial.Rect;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Immutable view of the whole zone/shelf tree at given layout version.
+// Models are shared between readers and must not be modified. Changes are applied
+// to a copy (patch), which shares every model that didn't change with this snapshot.
+@Getter
+public class LayoutSnapshot {
+
+    private final long version;
+
+    private final List<ZoneModel> zones;
+
+    private final Map<Long, ZoneModel> zonesById;
+
+    // shelf id -> id of the zone holding it
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, Long> shelfZones;
+
+    // absolute frames are resolved on first use, snapshot never changes so they stay valid
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, Frame> frames;
+
+    @Getter(AccessLevel.NONE)
+    private volatile byte[] binary;
+
+    public LayoutSnapshot(long version, List<ZoneModel> zones) {
+        this(version, zones, new ConcurrentHashMap<>());
+    }
+
+    private LayoutSnapshot(long version, List<ZoneModel> zones, Map<Long, Frame> frames) {
+        this.version = version;
+        this.zones = List.copyOf(zones);
+        this.frames = frames;
+
+        Map<Long, ZoneModel> byId = new HashMap<>(zones.size() * 2);
+        Map<Long, Long> shelves = new HashMap<>();
+        for (ZoneModel zone : zones) {
+            byId.put(zone.getId(), zone);
+            for (ShelfModel shelf : shelvesOf(zone)) {
+                shelves.put(shelf.getId(), zone.getId());
+            }
+        }
+        this.zonesById = Map.copyOf(byId);
+        this.shelfZones = Map.copyOf(shelves);
+    }
+
+    // Copy at a newer version. Changed zones come without shelves and children, they keep the ones
+    // they have here. Changed zones, zones whose shelves or children changed and their ancestors get
+    // new models, frames are kept when no zone changed. Deleted zones have no children nor shelves.
+    public LayoutSnapshot patch(
+            long version,
+            Collection<ZoneModel> changedZones,
+            Collection<ShelfChange> changedShelves,
+            Collection<Long> deletedZoneIds,
+            Collection<Long> deletedShelfIds
+    ) {
+        Patch patch = new Patch();
+        for (Long id : deletedZoneIds) {
+            ZoneModel old = patch.models.remove(id);
+            if (old != null) {
+                patch.children(old.getParentZoneId()).remove(id);
+            }
+        }
+        List<ZoneModel> created = new ArrayList<>();
+        for (ZoneModel zone : changedZones) {
+            ZoneModel old = patch.models.put(zone.getId(), zone);
+            patch.dirty.add(zone.getId());
+            if (old == null) {
+                created.add(zone);
+            } else if (!Objects.equals(old.getName(), zone.getName())) {
+                // shelves carry the zone name
+                patch.shelves(zone.getId()).replaceAll(shelf -> shelf.toBuilder().zoneName(zone.getName()).build());
+            }
+            if (old == null || !Objects.equals(old.getParentZoneId(), zone.getParentZoneId())) {
+                if (old != null) {
+                    patch.children(old.getParentZoneId()).remove(zone.getId());
+                }
+                patch.children(zone.getParentZoneId()).add(zone.getId());
+            }
+        }
+
+        for (Long id : deletedShelfIds) {
+            Long zoneId = patch.shelfZones.remove(id);
+            if (zoneId != null && patch.models.containsKey(zoneId)) {
+                patch.shelves(zoneId).removeIf(shelf -> shelf.getId().equals(id));
+            }
+        }
+        for (ShelfChange change : changedShelves) {
+            ZoneModel zone = patch.models.get(change.zoneId());
+            if (zone == null) {
+                continue;
+            }
+            Long id = change.shelf().getId();
+            ShelfModel shelf = change.shelf().toBuilder().zoneName(zone.getName()).build();
+            Long old = patch.shelfZones.put(id, change.zoneId());
+            if (old != null && !old.equals(change.zoneId()) && patch.models.containsKey(old)) {
+                patch.shelves(old).removeIf(existing -> existing.getId().equals(id));
+            }
+            List<ShelfModel> shelves = patch.shelves(change.zoneId());
+            int index = old == null || !old.equals(change.zoneId()) ? -1 : indexOf(shelves, id);
+            if (index < 0) {
+                shelves.add(shelf);
+            } else {
+                shelves.set(index, shelf);
+            }
+        }
+
+        for (Long id : List.copyOf(patch.dirty)) {
+            ZoneModel zone = patch.models.get(id);
+            while (zone != null && zone.getParentZoneId() != null && patch.dirty.add(zone.getParentZoneId())) {
+                zone = patch.models.get(zone.getParentZoneId());
+            }
+        }
+
+        List<ZoneModel> patched = new ArrayList<>(zones.size() + created.size());
+        for (ZoneModel zone : zones) {
+            if (patch.models.containsKey(zone.getId())) {
+                patched.add(patch.build(zone.getId()));
+            }
+        }
+        for (ZoneModel zone : created) {
+            patched.add(patch.build(zone.getId()));
+        }
+        boolean zonesChanged = !changedZones.isEmpty() || !deletedZoneIds.isEmpty();
+        return new LayoutSnapshot(version, patched, zonesChanged ? new ConcurrentHashMap<>() : frames);
+    }
+
+    private static List<ShelfModel> shelvesOf(ZoneModel zone) {
+        return zone == null || zone.getShelves() == null ? List.of() : zone.getShelves();
+    }
+
+    private static int indexOf(List<ShelfModel> shelves, Long id) {
+        for (int i = 0; i < shelves.size(); i++) {
+            if (shelves.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public ZoneModel getZone(Long id) {
+        return zonesById.get(id);
+    }
+
+    //Absolute footprint on the map, null for unknown zone
+    public Rect getAbsoluteFootprint(Long id) {
+        Frame frame = getFrame(id);
+        return frame == null ? null : frame.getFootprint();
+    }
+
+    public Frame getFrame(Long id) {
+        Frame frame = frames.get(id);
+        if (frame != null) {
+            return frame;
+        }
+        ZoneModel zone = zonesById.get(id);
+        if (zone == null) {
+            return null;
+        }
+
+        Frame parent = zone.getParentZoneId() == null ? Frame.WAREHOUSE : getFrame(zone.getParentZoneId());
+        if (parent == null) {
+            return null;
+        }
+        frame = parent.child(
+                zone.getOriginX(),
+                zone.getOriginY(),
+                zone.getWidth(),
+                zone.getLength(),
+                zone.getRotationAngle());
+        frames.put(id, frame);
+        return frame;
+    }
+
+    public String getETag() {
+        return "\"" + version + "\"";
+    }
+
+    //Encoded on first use, shared by all readers and must not be modified
+    public byte[] getBinary() {
+        byte[] encoded = binary;
+        if (encoded == null) {
+            encoded = LayoutSnapshotCodec.encode(this);
+            binary = encoded;
+        }
+        return encoded;
+    }
+
+    public String getBinaryETag() {
+        return "\"" + version + "-binary\"";
+    }
+
+    // Current state of a shelf and the zone it is in
+    public record ShelfChange(Long zoneId, ShelfModel shelf) {
+    }
+
+    // Working state of one patch, shelves and children lists are copied on first change
+    private class Patch {
+        private final Map<Long, ZoneModel> models = new HashMap<>(zonesById);
+        private final Map<Long, Long> shelfZones = new HashMap<>(LayoutSnapshot.this.shelfZones);
+        private final Map<Long, List<ShelfModel>> shelves = new HashMap<>();
+        private final Map<Long, List<Long>> children = new HashMap<>();
+        private final Set<Long> dirty = new HashSet<>();
+        private final Map<Long, ZoneModel> built = new HashMap<>();
+
+        List<ShelfModel> shelves(Long zoneId) {
+            dirty.add(zoneId);
+            return shelves.computeIfAbsent(zoneId, id -> {
+                ZoneModel old = zonesById.get(id);
+                return new ArrayList<>(shelvesOf(old));
+            });
+        }
+
+        // children of top level zones are not kept anywhere
+        List<Long> children(Long zoneId) {
+            if (zoneId == null) {
+                return new ArrayList<>();
+            }
+            dirty.add(zoneId);
+            return children.computeIfAbsent(zoneId, id -> {
+                ZoneModel old = zonesById.get(id);
+                List<Long> ids = new ArrayList<>();
+                if (old != null && old.getChildZones() != null) {
+                    old.getChildZones().forEach(child -> ids.add(child.getId()));
+                }
+                return ids;
+            });
+        }
+
+        ZoneModel build(Long id) {
+            ZoneModel zone = models.get(id);
+            if (!dirty.contains(id)) {
+                return zone;
+            }
+            ZoneModel model = built.get(id);
+            if (model != null) {
+                return model;
+            }
+            ZoneModel old = zonesById.get(id);
+            List<ShelfModel> zoneShelves = shelves.containsKey(id) ? shelves.get(id) : shelvesOf(old);
+            List<Long> childIds = children(id);
+            List<ZoneModel> childModels = new ArrayList<>(childIds.size());
+            for (Long childId : childIds) {
+                if (models.containsKey(childId)) {
+                    childModels.add(build(childId));
+                }
+            }
+            model = zone.toBuilder()
+                    .shelves(List.copyOf(zoneShelves))
+                    .childZones(List.copyOf(childModels))
+                    .build();
+            built.put(id, model);
+            return model;
+        }
+    }
+}
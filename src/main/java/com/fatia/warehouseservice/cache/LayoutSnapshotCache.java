@@ -0,0 +1,135 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.cache.LayoutSnapshot.ShelfChange;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.repositories.LayoutChangeRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.services.ZoneTreeLoader;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Read-through cache of the layout tree.
+// Snapshot holds the change log version (LayoutChangeLog, shared by all instances) it is at,
+// reads take it from memory without any query or lock, ETags are the same on every instance.
+// Changes come with LayoutSyncedEvent, right after commits of this instance and within
+// warehouse.changes.sync-interval-ms after commits of others. Changed zones and shelves are read
+// again and patched into a copy of the snapshot, which is then swapped in. Only a full resync,
+// or versions missed before the snapshot was loaded, load the whole tree again.
+// With LayoutSnapshotFile enabled loaded snapshots and the last one on shutdown are written
+// to disk, the first snapshot after restart is taken from there.
+@Service
+@RequiredArgsConstructor
+public class LayoutSnapshotCache {
+
+    private final ZoneTreeLoader zoneTreeLoader;
+
+    private final LayoutSnapshotFile snapshotFile;
+
+    private final LayoutChangeRepository layoutChangeRepository;
+
+    private final ZoneRepository zoneRepository;
+
+    private final ShelfRepository shelfRepository;
+
+    private final AtomicReference<LayoutSnapshot> snapshot = new AtomicReference<>();
+
+    public long getVersion() {
+        return get().getVersion();
+    }
+
+    public LayoutSnapshot get() {
+        LayoutSnapshot current = snapshot.get();
+        return current != null ? current : load();
+    }
+
+    private synchronized LayoutSnapshot load() {
+        LayoutSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+        // version is read before loading, changes committed meanwhile come with the next event
+        Long version = layoutChangeRepository.findLatestVersion();
+        return reload(version == null ? 0 : version);
+    }
+
+    private LayoutSnapshot reload(long version) {
+        LayoutSnapshot loaded = new LayoutSnapshot(version, zoneTreeLoader.loadAll());
+        snapshot.set(loaded);
+        snapshotFile.write(loaded);
+        return loaded;
+    }
+
+    // Not loaded yet means nothing to update, the first read loads what is committed by then
+    @EventListener
+    public synchronized void onLayoutSynced(LayoutSyncedEvent event) {
+        LayoutSnapshot current = snapshot.get();
+        if (current == null || current.getVersion() >= event.getVersion()) {
+            return;
+        }
+        if (event.isFullResync() || current.getVersion() < event.getFromVersion()) {
+            reload(event.getVersion());
+            return;
+        }
+
+        Set<Long> deletedZoneIds = new HashSet<>(event.getDeletedZoneIds());
+        List<ZoneModel> zones = new ArrayList<>();
+        for (ZoneEntity zone : zoneRepository.findAllById(event.getZoneIds())) {
+            zones.add(ZoneModel.toModel(zone, List.of(), List.of()));
+        }
+        // deleted by a transaction committed after the version was read, its tombstone comes later
+        Set<Long> missingZones = new HashSet<>(event.getZoneIds());
+        zones.forEach(zone -> missingZones.remove(zone.getId()));
+        deletedZoneIds.addAll(missingZones);
+
+        Set<Long> deletedShelfIds = new HashSet<>(event.getDeletedShelfIds());
+        Set<Long> missingShelves = new HashSet<>(event.getShelfIds());
+        List<ShelfChange> shelves = new ArrayList<>();
+        for (ShelfEntity shelf : shelfRepository.findAllById(event.getShelfIds())) {
+            missingShelves.remove(shelf.getId());
+            if (shelf.getZone() == null) {
+                deletedShelfIds.add(shelf.getId());
+            } else {
+                shelves.add(new ShelfChange(shelf.getZone().getId(), ShelfModel.toModel(shelf, null)));
+            }
+        }
+        deletedShelfIds.addAll(missingShelves);
+
+        snapshot.set(current.patch(event.getVersion(), zones, shelves, deletedZoneIds, deletedShelfIds));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void warmUp() {
+        if (!snapshotFile.isEnabled() || snapshot.get() != null) {
+            return;
+        }
+        LayoutSnapshot stored = snapshotFile.read();
+        if (stored == null) {
+            load();
+        } else {
+            snapshot.compareAndSet(null, stored);
+        }
+    }
+
+    // patched snapshots are not written on every change
+    @PreDestroy
+    public void persist() {
+        LayoutSnapshot current = snapshot.get();
+        if (current != null) {
+            snapshotFile.write(current);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ZoneModel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Columnar binary form of LayoutSnapshot, for clients and for the snapshot file.
+// Every zone and shelf is written once (JSON of getAll repeats subtrees under all ancestors),
+// strings are dictionary encoded and each field is stored as one contiguous column.
+//
+// Layout, big endian:
+//   int MAGIC, int FORMAT_VERSION, long layout version (change log version the snapshot was loaded at)
+//   strings:  int count, count x (int byteLength, UTF-8 bytes)
+//   zones:    int count, columns long id, int parentIndex (-1 root), byte type ordinal,
+//             int originX, originY, width, length, rotationAngle, byte faceDirection ordinal,
+//             int uuid, name, description, connectedNodeId (string index, -1 null)
+//   shelves:  int count, columns long id, int zoneIndex, int originX, originY, width, length,
+//             height, level, byte flags (1 occupied, 2 active), int name, description,
+//             connectedNodeId, int conditionCount (-1 null), then all condition pairs
+//             (int key, int value) of all shelves in shelf order
+// Parents always precede their children, so zoneIndex and parentIndex point backwards.
+public final class LayoutSnapshotCodec {
+
+    public static final String MEDIA_TYPE = "application/vnd.warehouse.layout+binary";
+
+    private static final int MAGIC = 0x574c5331;// "WLS1"
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte OCCUPIED = 1;
+    private static final byte ACTIVE = 2;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+
+    // id, parent, type, five geometry ints, face direction, four strings
+    private static final int ZONE_BYTES = Long.BYTES + Integer.BYTES + 1 + 5 * Integer.BYTES + 1 + 4 * Integer.BYTES;
+
+    // id, zone, six geometry ints, flags, three strings, condition count
+    private static final int SHELF_BYTES = Long.BYTES + Integer.BYTES + 6 * Integer.BYTES + 1 + 4 * Integer.BYTES;
+
+    private LayoutSnapshotCodec() {
+    }
+
+    public static byte[] encode(LayoutSnapshot snapshot) {
+        List<ZoneModel> zones = parentsFirst(snapshot.getZones());
+        Map<Long, Integer> zoneIndexes = new HashMap<>(zones.size() * 2);
+        for (int i = 0; i < zones.size(); i++) {
+            zoneIndexes.put(zones.get(i).getId(), i);
+        }
+        List<ShelfModel> shelves = new ArrayList<>();
+        List<Integer> shelfZones = new ArrayList<>();
+        for (int i = 0; i < zones.size(); i++) {
+            for (ShelfModel shelf : shelves(zones.get(i))) {
+                shelves.add(shelf);
+                shelfZones.add(i);
+            }
+        }
+
+        int conditions = 0;
+        for (ShelfModel shelf : shelves) {
+            conditions += shelf.getConditions() == null ? 0 : shelf.getConditions().size();
+        }
+
+        // columns are written first, string table is known only after them
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteBuffer columns = ByteBuffer.allocate(
+                2 * Integer.BYTES + zones.size() * ZONE_BYTES + shelves.size() * SHELF_BYTES + conditions * 2 * Integer.BYTES);
+        writeZones(columns, zones, zoneIndexes, strings);
+        writeShelves(columns, shelves, shelfZones, strings);
+
+        List<byte[]> utf8 = new ArrayList<>(strings.size());
+        int stringBytes = 0;
+        for (String string : strings.keySet()) {
+            byte[] value = string.getBytes(StandardCharsets.UTF_8);
+            utf8.add(value);
+            stringBytes += Integer.BYTES + value.length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + Integer.BYTES + stringBytes + columns.capacity());
+        out.putInt(MAGIC);
+        out.putInt(FORMAT_VERSION);
+        out.putLong(snapshot.getVersion());
+        out.putInt(utf8.size());
+        for (byte[] value : utf8) {
+            out.putInt(value.length);
+            out.put(value);
+        }
+        out.put(columns.array());
+        return out.array();
+    }
+
+    //Works on heap and memory mapped buffers, buffer position is moved to the end
+    public static LayoutSnapshot decode(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a layout snapshot");
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported layout snapshot format " + formatVersion);
+        }
+        long version = buffer.getLong();
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] utf8 = new byte[buffer.getInt()];
+            buffer.get(utf8);
+            strings[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        int zoneCount = buffer.getInt();
+        long[] ids = longs(buffer, zoneCount);
+        int[] parents = ints(buffer, zoneCount);
+        byte[] types = bytes(buffer, zoneCount);
+        int[] originX = ints(buffer, zoneCount);
+        int[] originY = ints(buffer, zoneCount);
+        int[] width = ints(buffer, zoneCount);
+        int[] length = ints(buffer, zoneCount);
+        int[] rotation = ints(buffer, zoneCount);
+        byte[] faces = bytes(buffer, zoneCount);
+        int[] uuids = ints(buffer, zoneCount);
+        int[] names = ints(buffer, zoneCount);
+        int[] descriptions = ints(buffer, zoneCount);
+        int[] nodes = ints(buffer, zoneCount);
+
+        int shelfCount = buffer.getInt();
+        long[] shelfIds = longs(buffer, shelfCount);
+        int[] shelfZones = ints(buffer, shelfCount);
+        int[] shelfX = ints(buffer, shelfCount);
+        int[] shelfY = ints(buffer, shelfCount);
+        int[] shelfWidth = ints(buffer, shelfCount);
+        int[] shelfLength = ints(buffer, shelfCount);
+        int[] shelfHeight = ints(buffer, shelfCount);
+        int[] shelfLevel = ints(buffer, shelfCount);
+        byte[] shelfFlags = bytes(buffer, shelfCount);
+        int[] shelfNames = ints(buffer, shelfCount);
+        int[] shelfDescriptions = ints(buffer, shelfCount);
+        int[] shelfNodes = ints(buffer, shelfCount);
+        int[] conditionCounts = ints(buffer, shelfCount);
+
+        List<List<ShelfModel>> zoneShelves = new ArrayList<>(zoneCount);
+        List<List<ZoneModel>> zoneChildren = new ArrayList<>(zoneCount);
+        for (int i = 0; i < zoneCount; i++) {
+            zoneShelves.add(new ArrayList<>());
+            zoneChildren.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < shelfCount; i++) {
+            Map<String, String> conditions = null;
+            if (conditionCounts[i] >= 0) {
+                conditions = new LinkedHashMap<>(conditionCounts[i] * 2);
+                for (int j = 0; j < conditionCounts[i]; j++) {
+                    conditions.put(string(strings, buffer.getInt()), string(strings, buffer.getInt()));
+                }
+            }
+            zoneShelves.get(shelfZones[i]).add(ShelfModel
+                    .builder()
+                    .id(shelfIds[i])
+                    .name(string(strings, shelfNames[i]))
+                    .zoneName(string(strings, names[shelfZones[i]]))
+                    .originX(shelfX[i])
+                    .originY(shelfY[i])
+                    .width(shelfWidth[i])
+                    .length(shelfLength[i])
+                    .height(shelfHeight[i])
+                    .level(shelfLevel[i])
+                    .description(string(strings, shelfDescriptions[i]))
+                    .isOccupied((shelfFlags[i] & OCCUPIED) != 0)
+                    .isActive((shelfFlags[i] & ACTIVE) != 0)
+                    .conditions(conditions)
+                    .connectedNodeId(string(strings, shelfNodes[i]))
+                    .build());
+        }
+
+        // children are built before parents, walking backwards
+        ZoneModel[] models = new ZoneModel[zoneCount];
+        for (int i = zoneCount - 1; i >= 0; i--) {
+            List<ZoneModel> children = zoneChildren.get(i);
+            Collections.reverse(children);
+            models[i] = ZoneModel
+                    .builder()
+                    .id(ids[i])
+                    .uuid(string(strings, uuids[i]))
+                    .name(string(strings, names[i]))
+                    .type(ZoneType.values()[types[i]].name())
+                    .originX(originX[i])
+                    .originY(originY[i])
+                    .width(width[i])
+                    .length(length[i])
+                    .rotationAngle(rotation[i])
+                    .faceDirection(faces[i])
+                    .description(string(strings, descriptions[i]))
+                    .shelves(List.copyOf(zoneShelves.get(i)))
+                    .connectedNodeId(string(strings, nodes[i]))
+                    .parentZoneId(parents[i] < 0 ? null : ids[parents[i]])
+                    .childZones(List.copyOf(children))
+                    .build();
+            if (parents[i] >= 0) {
+                zoneChildren.get(parents[i]).add(models[i]);
+            }
+        }
+
+        return new LayoutSnapshot(version, List.of(models));
+    }
+
+    private static void writeZones(ByteBuffer out, List<ZoneModel> zones, Map<Long, Integer> indexes,
+                                   Map<String, Integer> strings) {
+        out.putInt(zones.size());
+        for (ZoneModel zone : zones) {
+            out.putLong(zone.getId());
+        }
+        for (ZoneModel zone : zones) {
+            Integer parent = zone.getParentZoneId() == null ? null : indexes.get(zone.getParentZoneId());
+            out.putInt(parent == null ? -1 : parent);
+        }
+        for (ZoneModel zone : zones) {
+            out.put((byte) ZoneType.valueOf(zone.getType()).ordinal());
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(zone.getOriginX());
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(zone.getOriginY());
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(zone.getWidth());
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(zone.getLength());
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(zone.getRotationAngle());
+        }
+        for (ZoneModel zone : zones) {
+            out.put((byte) zone.getFaceDirection());
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(index(strings, zone.getUuid()));
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(index(strings, zone.getName()));
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(index(strings, zone.getDescription()));
+        }
+        for (ZoneModel zone : zones) {
+            out.putInt(index(strings, zone.getConnectedNodeId()));
+        }
+    }
+
+    private static void writeShelves(ByteBuffer out, List<ShelfModel> shelves, List<Integer> zones,
+                                     Map<String, Integer> strings) {
+        out.putInt(shelves.size());
+        for (ShelfModel shelf : shelves) {
+            out.putLong(shelf.getId());
+        }
+        for (Integer zone : zones) {
+            out.putInt(zone);
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(shelf.getOriginX());
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(shelf.getOriginY());
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(shelf.getWidth());
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(shelf.getLength());
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(shelf.getHeight());
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(shelf.getLevel());
+        }
+        for (ShelfModel shelf : shelves) {
+            out.put((byte) ((shelf.isOccupied() ? OCCUPIED : 0) | (shelf.isActive() ? ACTIVE : 0)));
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(index(strings, shelf.getName()));
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(index(strings, shelf.getDescription()));
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(index(strings, shelf.getConnectedNodeId()));
+        }
+        for (ShelfModel shelf : shelves) {
+            out.putInt(shelf.getConditions() == null ? -1 : shelf.getConditions().size());
+        }
+        for (ShelfModel shelf : shelves) {
+            if (shelf.getConditions() == null) {
+                continue;
+            }
+            for (Map.Entry<String, String> condition : shelf.getConditions().entrySet()) {
+                out.putInt(index(strings, condition.getKey()));
+                out.putInt(index(strings, condition.getValue()));
+            }
+        }
+    }
+
+    // Roots first, then breadth first through childZones
+    private static List<ZoneModel> parentsFirst(List<ZoneModel> zones) {
+        List<ZoneModel> ordered = new ArrayList<>(zones.size());
+        for (ZoneModel zone : zones) {
+            if (zone.getParentZoneId() == null) {
+                ordered.add(zone);
+            }
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            if (ordered.get(i).getChildZones() != null) {
+                ordered.addAll(ordered.get(i).getChildZones());
+            }
+        }
+        return ordered;
+    }
+
+    private static List<ShelfModel> shelves(ZoneModel zone) {
+        return zone.getShelves() == null ? List.of() : zone.getShelves();
+    }
+
+    private static int index(Map<String, Integer> strings, String value) {
+        return value == null ? -1 : strings.computeIfAbsent(value, k -> strings.size());
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static long[] longs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+    private static int[] ints(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int count) {
+        byte[] values = new byte[count];
+        buffer.get(values);
+        return values;
+    }
+}
@@ -0,0 +1,81 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.repositories.LayoutChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Keeps the last loaded layout snapshot on disk in LayoutSnapshotCodec format,
+// so a restarted instance can serve the layout before touching the tree tables.
+// File is replaced atomically after every reload and memory mapped on startup.
+// Disabled while warehouse.snapshot.file is empty.
+@Slf4j
+@Component
+public class LayoutSnapshotFile {
+
+    private final Path path;
+
+    private final LayoutChangeRepository layoutChangeRepository;
+
+    public LayoutSnapshotFile(
+            @Value("${warehouse.snapshot.file:}") String path,
+            LayoutChangeRepository layoutChangeRepository
+    ) {
+        this.path = path.isBlank() ? null : Path.of(path);
+        this.layoutChangeRepository = layoutChangeRepository;
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    public void write(LayoutSnapshot snapshot) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, snapshot.getBinary());
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // only startup gets slower without the file
+            log.warn("Could not write layout snapshot to {}", path, e);
+        }
+    }
+
+    // Null when there is no usable file. Header of the file holds the change log version the
+    // snapshot was loaded at, any change committed since (by any instance) makes it outdated.
+    public LayoutSnapshot read() {
+        if (path == null || !Files.isReadable(path)) {
+            return null;
+        }
+        LayoutSnapshot stored;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            stored = LayoutSnapshotCodec.decode(buffer);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read layout snapshot from {}", path, e);
+            return null;
+        }
+
+        Long latest = layoutChangeRepository.findLatestVersion();
+        if (stored.getVersion() != (latest == null ? 0 : latest)) {
+            log.info("Layout snapshot in {} is outdated (version {}, latest {}), ignoring it", path, stored.getVersion(), latest);
+            return null;
+        }
+        return stored;
+    }
+}
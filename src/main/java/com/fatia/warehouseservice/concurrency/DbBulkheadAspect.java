@@ -0,0 +1,82 @@
+package com.fatia.warehouseservice.concurrency;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Caps in-flight DB work when requests run on virtual threads.
+// Platform thread pool used to be the natural limit, with virtual threads every request
+// gets its own thread and would queue inside Hikari, so callers wait here instead
+// (fair, with timeout -> 503). Permits default to the Hikari pool size.
+// Runs outside transactions, nested service calls on the same thread reuse the permit.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class DbBulkheadAspect {
+
+    private final Semaphore permits;
+
+    private final long acquireTimeoutMs;
+
+    private final ThreadLocal<Integer> depth = ThreadLocal.withInitial(() -> 0);
+
+    public DbBulkheadAspect(
+            @Value("${warehouse.db.bulkhead.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+            @Value("${warehouse.db.bulkhead.acquire-timeout-ms:30000}") long acquireTimeoutMs,
+            MeterRegistry meterRegistry
+    ) {
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        Gauge.builder("warehouse.db.bulkhead.available", this.permits, Semaphore::availablePermits)
+                .register(meterRegistry);
+        Gauge.builder("warehouse.db.bulkhead.queued", this.permits, Semaphore::getQueueLength)
+                .register(meterRegistry);
+    }
+
+    @Around("execution(public * com.fatia.warehouseservice.services.ZoneService.*(..))"
+            + " || execution(public * com.fatia.warehouseservice.services.ShelfService.*(..))"
+            + " || execution(public * com.fatia.warehouseservice.services.LayoutImportService.*(..))"
+            + " || execution(public * com.fatia.warehouseservice.services.LayoutValidationService.*(..))")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        int current = depth.get();
+        if (current > 0) {
+            return proceed(joinPoint, current);
+        }
+
+        if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Database is busy, try again later");
+        }
+        try {
+            return proceed(joinPoint, current);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Object proceed(ProceedingJoinPoint joinPoint, int current) throws Throwable {
+        depth.set(current + 1);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (current == 0) {
+                depth.remove();
+            } else {
+                depth.set(current);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.fatia.warehouseservice.concurrency;
+
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.services.LayoutChangeLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Serializes layout writes per parent zone, top-level zones use parent key 0.
+// Checks against siblings (bounds, overlaps) and the write itself run under the lock of
+// the parent, writes under different parents run in parallel.
+// In-process: striped ReentrantLocks, held until the transaction completes, so the next
+// writer sees committed siblings and updated indexes. Writes started with write() take the
+// stripes before their transaction begins, threads waiting for a stripe hold no pool
+// connection then. lockParents called inside a transaction someone else started waits with
+// the connection of that transaction.
+// Across instances: transaction scoped PostgreSQL advisory lock on the same key, taken
+// inside the transaction after the local one, so only one thread per instance and key can
+// wait on it with a connection. Version rows (ParentVersions) tell which parents another
+// instance wrote under since this one did, local indexes of only these are stale. Changes of
+// other instances are then handed over (LayoutChangeLog.catchUp) before the writer reads
+// anything under the parent, cached rows are evicted with them.
+@Component
+public class LayoutLocks {
+
+    // high bits keep advisory keys of layout locks apart from other users of advisory locks
+    private static final long ADVISORY_NAMESPACE = 0x4c41594fL << 32;// "LAYO"
+
+    private final ReentrantLock[] stripes;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final LayoutChangeLog layoutChangeLog;
+
+    private final boolean advisory;
+
+    // null unless advisory
+    private final ParentVersions parentVersions;
+
+    // stripes write() holds on this thread, sorted
+    private final ThreadLocal<int[]> held = new ThreadLocal<>();
+
+    public LayoutLocks(
+            @Value("${warehouse.layout-locks.stripes:256}") int stripes,
+            @Value("${warehouse.layout-locks.advisory.enabled:true}") boolean advisoryEnabled,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            LayoutChangeLog layoutChangeLog
+    ) {
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.layoutChangeLog = layoutChangeLog;
+        this.advisory = isDistributed(jdbcTemplate, advisoryEnabled);
+        this.parentVersions = advisory ? new ParentVersions(jdbcTemplate) : null;
+    }
+
+    //True when other instances may write under the same parent, local indexes may be stale then
+    public boolean isDistributed() {
+        return advisory;
+    }
+
+    // Same answer without the bean, for configuration the bean depends on (Hibernate caches)
+    public static boolean isDistributed(JdbcTemplate jdbcTemplate, boolean advisoryEnabled) {
+        return advisoryEnabled && "PostgreSQL".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+    }
+
+    // Runs work in a new transaction, stripes of the parents are taken before it begins and
+    // released after it completes. Parents are usually read before the transaction, work calls
+    // lockParents with the ones it finds inside. A parent that changed in between is only
+    // tried there, taken by another writer it rejects with CONFLICT instead of waiting out of
+    // stripe order. Inside a running transaction work just joins it.
+    public <T> T write(TransactionCallback<T> work, Long... parentIds) {
+        if (TransactionSynchronizationManager.isActualTransactionActive() || held.get() != null) {
+            return transactionTemplate.execute(work);
+        }
+
+        int[] indexes = stripes(keys(parentIds));
+        for (int index : indexes) {
+            stripes[index].lock();
+        }
+        held.set(indexes);
+        try {
+            return transactionTemplate.execute(work);
+        } finally {
+            held.remove();
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+
+    // Locks parents until the current transaction completes, returns keys of the parents
+    // (0 for top level) another instance wrote under since this one did.
+    // Keys are locked in stripe order, callers locking several parents can't deadlock.
+    public Set<Long> lockParents(Long... parentIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Layout locks must be taken inside a transaction");
+        }
+
+        long[] keys = keys(parentIds);
+        int[] taken = held.get();
+        for (int index : stripes(keys)) {
+            if (taken != null && Arrays.binarySearch(taken, index) >= 0) {
+                continue;
+            }
+            ReentrantLock lock = stripes[index];
+            if (taken == null) {
+                lock.lock();
+            } else if (!lock.tryLock()) {
+                throw new LayoutRejectedException(Reason.CONFLICT, "Layout was changed concurrently, try again");
+            }
+            TransactionSynchronizationManager.registerSynchronization(new Unlock(lock));
+        }
+
+        if (!advisory) {
+            return Set.of();
+        }
+        for (long key : keys) {
+            jdbcTemplate.queryForObject("select pg_advisory_xact_lock(?)::text", String.class, ADVISORY_NAMESPACE | key);
+        }
+        Set<Long> stale = parentVersions.check(keys);
+        if (!stale.isEmpty()) {
+            layoutChangeLog.catchUp();
+        }
+        return stale;
+    }
+
+    // Distinct and sorted, null parent is key 0
+    private static long[] keys(Long... parentIds) {
+        return Arrays.stream(parentIds).mapToLong(id -> id == null ? 0 : id).distinct().sorted().toArray();
+    }
+
+    private int[] stripes(long[] keys) {
+        return Arrays.stream(keys).mapToInt(this::stripe).distinct().sorted().toArray();
+    }
+
+    int stripe(long key) {
+        long mixed = key * 0x9e3779b97f4a7c15L;
+        return (int) Math.floorMod(mixed ^ (mixed >>> 32), stripes.length);
+    }
+
+    private record Unlock(ReentrantLock lock) implements TransactionSynchronization {
+        @Override
+        public void afterCompletion(int status) {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.fatia.warehouseservice.concurrency;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Picks the one instance that writes derived layout state (node ids of NavigationGraph).
+// Across instances (LayoutLocks.isDistributed) the leader is whoever holds a session scoped
+// PostgreSQL advisory lock. The lock lives on a connection taken out of the pool for as long
+// as the instance leads, so it goes away with the instance or its connection and the next
+// instance asking takes over. A single instance always leads.
+@Slf4j
+@Component
+public class LeaderElection {
+
+    // high bits keep this key apart from layout locks and other users of advisory locks
+    private static final long ADVISORY_KEY = 0x4c454144L << 32;// "LEAD"
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final DataSource dataSource;
+
+    private final boolean distributed;
+
+    // holds the lock, null while not leading
+    private Connection connection;
+
+    public LeaderElection(DataSource dataSource, LayoutLocks layoutLocks) {
+        this.dataSource = dataSource;
+        this.distributed = layoutLocks.isDistributed();
+    }
+
+    // True while this instance leads, tries to take over when nobody does
+    public synchronized boolean isLeader() {
+        if (!distributed) {
+            return true;
+        }
+        try {
+            if (connection != null) {
+                if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return true;
+                }
+                log.warn("Lost the connection holding leadership");
+                release();
+            }
+            Connection candidate = dataSource.getConnection();
+            if (tryLock(candidate)) {
+                connection = candidate;
+                log.info("Took over leadership");
+            } else {
+                candidate.close();
+            }
+        } catch (SQLException e) {
+            log.warn("Leader election failed", e);
+            release();
+        }
+        return connection != null;
+    }
+
+    @PreDestroy
+    public synchronized void resign() {
+        release();
+    }
+
+    private static boolean tryLock(Connection candidate) throws SQLException {
+        candidate.setAutoCommit(true);
+        try (PreparedStatement statement = candidate.prepareStatement("select pg_try_advisory_lock(?)")) {
+            statement.setLong(1, ADVISORY_KEY);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            candidate.close();
+            throw e;
+        }
+    }
+
+    // Pooled connections stay open when closed, the lock is released first or the connection dropped
+    private void release() {
+        if (connection == null) {
+            return;
+        }
+        Connection held = connection;
+        connection = null;
+        try {
+            try (PreparedStatement statement = held.prepareStatement("select pg_advisory_unlock(?)")) {
+                statement.setLong(1, ADVISORY_KEY);
+                statement.execute();
+            }
+            held.close();
+        } catch (SQLException e) {
+            try {
+                held.abort(Runnable::run);
+            } catch (SQLException ignored) {
+                // broken already, its session and the lock end with it
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.fatia.warehouseservice.concurrency;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Version row per parent key (LayoutParentVersionEntity), every write under the lock of a
+// parent bumps it before commit.
+// An instance remembers the versions its own writes committed, a different version in the
+// table means another instance wrote under the parent in between.
+// Parents this instance never wrote under count as changed.
+class ParentVersions {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // parent key -> version committed by the last write of this instance
+    private final Map<Long, Long> seen = new ConcurrentHashMap<>();
+
+    ParentVersions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Called inside the transaction holding the locks of the keys.
+    // Keys another instance wrote under since this one did, all keys are bumped before commit.
+    Set<Long> check(long[] keys) {
+        String in = Arrays.stream(keys).mapToObj(key -> "?").collect(Collectors.joining(", "));
+        Map<Long, Long> versions = new HashMap<>();
+        jdbcTemplate.query(
+                "select parent_key, version from layout_parent_versions where parent_key in (" + in + ")",
+                row -> {
+                    versions.put(row.getLong(1), row.getLong(2));
+                },
+                Arrays.stream(keys).boxed().toArray());
+
+        Set<Long> changed = new HashSet<>();
+        for (long key : keys) {
+            if (!Objects.equals(seen.get(key), versions.getOrDefault(key, 0L))) {
+                changed.add(key);
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new Bump(keys, versions));
+        return changed;
+    }
+
+    private class Bump implements TransactionSynchronization {
+        private final long[] keys;
+        private final Map<Long, Long> versions;
+
+        Bump(long[] keys, Map<Long, Long> versions) {
+            this.keys = keys;
+            this.versions = versions;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            for (long key : keys) {
+                if (versions.containsKey(key)) {
+                    jdbcTemplate.update("update layout_parent_versions set version = version + 1 where parent_key = ?", key);
+                } else {
+                    jdbcTemplate.update("insert into layout_parent_versions (parent_key, version) values (?, 1)", key);
+                }
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            for (long key : keys) {
+                seen.put(key, versions.getOrDefault(key, 0L) + 1);
+            }
+        }
+    }
+}
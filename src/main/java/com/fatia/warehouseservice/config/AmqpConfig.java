@@ -0,0 +1,22 @@
+package com.fatia.warehouseservice.config;
+
+import com.fatia.warehouseservice.messaging.LayoutOutboxPublisher;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AmqpConfig {
+
+    @Bean
+    public TopicExchange layoutExchange() {
+        return new TopicExchange(LayoutOutboxPublisher.EXCHANGE);
+    }
+
+    @Bean
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
@@ -1,5 +1,6 @@
 package com.fatia.warehouseservice.config;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -36,13 +37,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        if(jwtService.isTokenExpired(jwt)){
+        // one verification per token, later requests are served from cache
+        Claims claims = jwtService.extractValidClaims(jwt);
+        if(claims == null){
             filterChain.doFilter(request, response);
             return;
         }
 
-        userEmail = jwtService.extractUsername(jwt);
-        String role = jwtService.extractRole(jwt);
+        userEmail = claims.getSubject();
+        String role = claims.get("role", String.class);
 
         if(userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null){
             List<GrantedAuthority> authorities = List.of(() -> role);
@@ -11,6 +11,9 @@ public class JwtConfig {
     @Value("${jwt.secret}")
     private String secret;
 
+    //Verified tokens kept by JwtService, 0 disables the cache
+    private int claimsCacheSize = 10_000;
+
     public String getSecret() {
         return secret;
     }
@@ -18,4 +21,12 @@ public class JwtConfig {
     public void setSecret(String secret) {
         this.secret = secret;
     }
+
+    public int getClaimsCacheSize() {
+        return claimsCacheSize;
+    }
+
+    public void setClaimsCacheSize(int claimsCacheSize) {
+        this.claimsCacheSize = claimsCacheSize;
+    }
 }
@@ -1,25 +1,73 @@
 package com.fatia.warehouseservice.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+// Signing key and parser are built once. Verified claims are cached by SHA-256 of the token
+// until the token expires, so a token is verified only on its first request.
 @Service
-@RequiredArgsConstructor
 public class JwtService {
 
-    private final JwtConfig jwtConfig;
+    private final Key signingKey;
+
+    private final JwtParser parser;
+
+    //null when disabled
+    private final Cache<String, Claims> claimsCache;
+
+    public JwtService(JwtConfig jwtConfig) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtConfig.getSecret()));
+        this.parser = Jwts
+                .parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.claimsCache = jwtConfig.getClaimsCacheSize() <= 0 ? null : Caffeine
+                .newBuilder()
+                .maximumSize(jwtConfig.getClaimsCacheSize())
+                .expireAfter(new UntilTokenExpires())
+                .build();
+    }
+
+    // Verified claims of not expired token, null if token is expired.
+    // Other verification failures are thrown as before.
+    public Claims extractValidClaims(String token) {
+        if (claimsCache == null) {
+            return parseUnlessExpired(token);
+        }
+
+        String key = hash(token);
+        Claims claims = claimsCache.getIfPresent(key);
+        if (claims != null) {
+            return claims;
+        }
+
+        claims = parseUnlessExpired(token);
+        if (claims != null && claims.getExpiration() != null) {
+            claimsCache.put(key, claims);
+        }
+        return claims;
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -55,7 +103,7 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 24))
-                .signWith(getSingInKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -65,11 +113,7 @@ public class JwtService {
     }
 
     public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return extractValidClaims(token) == null;
     }
 
     public String extractRole(String token) {
@@ -77,16 +121,47 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSingInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = extractValidClaims(token);
+        if (claims == null) {
+            // same failure as parsing expired token directly
+            return parser.parseClaimsJws(token).getBody();
+        }
+        return claims;
+    }
+
+    private Claims parseUnlessExpired(String token) {
+        try {
+            return parser.parseClaimsJws(token).getBody();
+        } catch (ExpiredJwtException e) {
+            return null;
+        }
+    }
+
+    // Tokens are not kept in memory as they are
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    private Key getSingInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtConfig.getSecret());
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static class UntilTokenExpires implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            long millis = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
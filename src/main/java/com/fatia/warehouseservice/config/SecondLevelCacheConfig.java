@@ -0,0 +1,66 @@
+package com.fatia.warehouseservice.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+// Caffeine backed JCache regions of the Hibernate second-level cache.
+// Every region is created here with a size bound, update timestamps are never evicted,
+// query results would turn stale otherwise. JPA test slices don't load this class,
+// they get unbounded regions from missing_cache_strategy=create.
+// Hit/miss counters per region are published by hibernate-micrometer
+// (hibernate.second.level.cache.requests, hibernate.query.cache.requests).
+// Regions are local to the instance. Rows changed by other instances are evicted by
+// EntityCacheEvictor when they show up in the change log (LayoutSyncedEvent), within
+// warehouse.changes.sync-interval-ms, and before a write under a parent another instance
+// wrote under (LayoutLocks). Writes check rows they change against the database anyway.
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String ZONES = "zones";
+    public static final String ZONE_CHILDREN = "zones.childZones";
+    public static final String ZONE_SHELVES = "zones.shelves";
+    public static final String SHELVES = "shelves";
+
+    @Bean
+    public CacheManager hibernateCacheManager(
+            @Value("${warehouse.cache.entity-max-size:100000}") long entityMaxSize,
+            @Value("${warehouse.cache.query-max-size:1000}") long queryMaxSize
+    ) {
+        // own manager per application context, test contexts don't share regions
+        CacheManager cacheManager = Caching
+                .getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("warehouse-l2-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        for (String region : List.of(ZONES, ZONE_CHILDREN, ZONE_SHELVES, SHELVES)) {
+            cacheManager.createCache(region, bounded(entityMaxSize));
+        }
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, bounded(queryMaxSize));
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> bounded(long maximumSize) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        return configuration;
+    }
+}
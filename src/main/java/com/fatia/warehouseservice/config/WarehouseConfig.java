@@ -14,4 +14,5 @@ public class WarehouseConfig {
     private int height;
     private int originX;
     private int originY;
+    private int columnHeight;// Z, usable height of every COLUMN
 }
@@ -0,0 +1,52 @@
+package com.fatia.warehouseservice.controllers;
+
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.responses.ImportLayoutResponse;
+import com.fatia.warehouseservice.responses.LayoutChangesResponse;
+import com.fatia.warehouseservice.responses.ValidateLayoutResponse;
+import com.fatia.warehouseservice.services.LayoutChangeLog;
+import com.fatia.warehouseservice.services.LayoutImportService;
+import com.fatia.warehouseservice.services.LayoutValidationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController()
+@RequestMapping("/api/v1/layout")
+@RequiredArgsConstructor
+public class LayoutController {
+
+    private final LayoutImportService layoutImportService;
+
+    private final LayoutValidationService layoutValidationService;
+
+    private final LayoutChangeLog layoutChangeLog;
+
+    @PostMapping("/import")
+    public ResponseEntity<ImportLayoutResponse> importLayout(
+            @RequestBody ImportLayoutRequest request
+    ) {
+        return ResponseEntity.ok(layoutImportService.importLayout(request));
+    }
+
+    @GetMapping("/validate")
+    public ResponseEntity<ValidateLayoutResponse> validateStored() {
+        return ResponseEntity.ok(layoutValidationService.validateStored());
+    }
+
+    @PostMapping("/validate")
+    public ResponseEntity<ValidateLayoutResponse> validateDraft(
+            @RequestBody ImportLayoutRequest request
+    ) {
+        return ResponseEntity.ok(layoutValidationService.validateDraft(request));
+    }
+
+    //Zones and shelves changed after version since, 0 returns the whole layout page by page
+    @GetMapping("/changes")
+    public ResponseEntity<LayoutChangesResponse> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "1000") int size
+    ) {
+        return ResponseEntity.ok(layoutChangeLog.getChanges(since, size));
+    }
+}
@@ -0,0 +1,43 @@
+package com.fatia.warehouseservice.controllers;
+
+import com.fatia.warehouseservice.models.DistanceModel;
+import com.fatia.warehouseservice.requests.DistanceMatrixRequest;
+import com.fatia.warehouseservice.responses.DistanceMatrixResponse;
+import com.fatia.warehouseservice.services.TravelDistanceMatrix;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController()
+@RequestMapping("/api/v1/navigation")
+@RequiredArgsConstructor
+public class NavigationController {
+
+    private final TravelDistanceMatrix travelDistanceMatrix;
+
+    @GetMapping("/distance/{fromZoneId}/{toZoneId}")
+    public ResponseEntity<DistanceModel> getDistance(
+            @PathVariable Long fromZoneId,
+            @PathVariable Long toZoneId
+    ) {
+        return ResponseEntity.ok(travelDistanceMatrix.getDistanceModel(fromZoneId, toZoneId));
+    }
+
+    //To all zones with an entry node when no zones are given
+    @GetMapping("/distances/{fromZoneId}")
+    public ResponseEntity<List<DistanceModel>> getDistancesFrom(
+            @PathVariable Long fromZoneId,
+            @RequestParam(required = false) List<Long> to
+    ) {
+        return ResponseEntity.ok(travelDistanceMatrix.getDistancesFrom(fromZoneId, to));
+    }
+
+    @PostMapping("/distances")
+    public ResponseEntity<DistanceMatrixResponse> getDistances(
+            @RequestBody DistanceMatrixRequest request
+    ) {
+        return ResponseEntity.ok(travelDistanceMatrix.getDistances(request));
+    }
+}
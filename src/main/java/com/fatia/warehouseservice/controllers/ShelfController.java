@@ -1,14 +1,28 @@
 package com.fatia.warehouseservice.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatia.warehouseservice.models.ColumnSlotModel;
+import com.fatia.warehouseservice.models.ShelfFlatModel;
 import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ShelfSlotModel;
 import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.BestShelvesRequest;
+import com.fatia.warehouseservice.requests.ReserveShelvesRequest;
 import com.fatia.warehouseservice.requests.UpdateShelfRequest;
+import com.fatia.warehouseservice.responses.CursorPageResponse;
+import com.fatia.warehouseservice.responses.ReserveShelvesResponse;
 import com.fatia.warehouseservice.responses.UpdateShelfReponse;
+import com.fatia.warehouseservice.services.OccupancyGrid;
 import com.fatia.warehouseservice.services.ShelfService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController()
@@ -16,13 +30,79 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ShelfController {
 
-    private ShelfService shelfService;
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ShelfService shelfService;
+
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/get-all")
     public ResponseEntity<List<ShelfModel>> getAll() {
         return ResponseEntity.ok(shelfService.getAll());
     }
 
+    @GetMapping("/get-page")
+    public ResponseEntity<CursorPageResponse<ShelfFlatModel>> getPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "500") int size
+    ) {
+        return ResponseEntity.ok(shelfService.getPage(afterId, size));
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = out -> shelfService.streamAll(shelf -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(shelf));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    //Binary run-length encoded heatmap, format is described in OccupancyGrid
+    @GetMapping(value = "/occupancy-grid", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getOccupancyGrid(
+            @RequestParam(defaultValue = "100") int cellSize,
+            WebRequest request
+    ) {
+        OccupancyGrid.Payload payload = shelfService.getOccupancyGrid(cellSize);
+        String etag = "\"" + payload.tag() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        return ResponseEntity
+                .ok()
+                .eTag(etag)
+                .body(payload.bytes());
+    }
+
+    @GetMapping("/at")
+    public ResponseEntity<List<ShelfFlatModel>> getAt(
+            @RequestParam int x,
+            @RequestParam int y
+    ) {
+        return ResponseEntity.ok(shelfService.getAt(x, y));
+    }
+
+    @GetMapping("/window")
+    public ResponseEntity<List<ShelfFlatModel>> getInWindow(
+            @RequestParam int minX,
+            @RequestParam int minY,
+            @RequestParam int maxX,
+            @RequestParam int maxY,
+            @RequestParam(defaultValue = "500") int size
+    ) {
+        return ResponseEntity.ok(shelfService.getInWindow(minX, minY, maxX, maxY, size));
+    }
+
     @GetMapping("/get-shelf/{id}")
     public ResponseEntity<ShelfModel> getShelfById(
             @PathVariable Long id
@@ -45,6 +125,15 @@ public class ShelfController {
         return ResponseEntity.ok(shelfService.setColumn(shelfId, columnId));
     }
 
+    //Free vertical slots of the column, at least minHeight high, for put-away planning
+    @GetMapping("/free-slots/{columnId}")
+    public ResponseEntity<List<ColumnSlotModel>> getFreeSlots(
+            @PathVariable Long columnId,
+            @RequestParam(defaultValue = "1") int minHeight
+    ) {
+        return ResponseEntity.ok(shelfService.getFreeSlots(columnId, minHeight));
+    }
+
     //TODO update-shelf
     @PutMapping("/update-shelf/{id}")
     public ResponseEntity<UpdateShelfReponse> updateShelf(
@@ -55,8 +144,35 @@ public class ShelfController {
     }
 
 
-    //TODO get-best-shelves after graph build
-    //@GetMapping("/get-best-")
+    @PatchMapping("/reserve/{id}")
+    public ResponseEntity<String> reserve(
+            @PathVariable Long id
+    ) {
+        shelfService.reserve(id);
+        return ResponseEntity.ok("Shelf with id " + id + " was reserved");
+    }
+
+    @PatchMapping("/release/{id}")
+    public ResponseEntity<String> release(
+            @PathVariable Long id
+    ) {
+        shelfService.release(id);
+        return ResponseEntity.ok("Shelf with id " + id + " was released");
+    }
+
+    @PostMapping("/reserve")
+    public ResponseEntity<ReserveShelvesResponse> reserveAll(
+            @RequestBody ReserveShelvesRequest request
+    ) {
+        return ResponseEntity.ok(shelfService.reserveAll(request.getShelfIds()));
+    }
+
+    @PostMapping("/get-best-shelves")
+    public ResponseEntity<List<ShelfSlotModel>> getBestShelves(
+            @RequestBody BestShelvesRequest request
+    ) {
+        return ResponseEntity.ok(shelfService.getBestShelves(request));
+    }
 
     //TODO delete-shelf
     @DeleteMapping("/delete-shelf/{id}")
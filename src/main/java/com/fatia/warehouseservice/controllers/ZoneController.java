@@ -1,16 +1,31 @@
 package com.fatia.warehouseservice.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatia.warehouseservice.cache.LayoutSnapshot;
+import com.fatia.warehouseservice.cache.LayoutSnapshotCodec;
+import com.fatia.warehouseservice.models.ZoneCapacityModel;
+import com.fatia.warehouseservice.models.ZoneFlatModel;
 import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.models.ZonePositionModel;
 import com.fatia.warehouseservice.requests.AddChildZoneRequest;
 import com.fatia.warehouseservice.requests.AddParentZoneRequest;
+import com.fatia.warehouseservice.requests.MoveZoneRequest;
 import com.fatia.warehouseservice.requests.UpdateChildZoneRequest;
 import com.fatia.warehouseservice.requests.UpdateParentZoneRequest;
+import com.fatia.warehouseservice.responses.CapacityReconcileResponse;
+import com.fatia.warehouseservice.responses.CursorPageResponse;
 import com.fatia.warehouseservice.responses.UpdateZoneReponse;
 import com.fatia.warehouseservice.services.ZoneService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController()
@@ -18,18 +33,81 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ZoneController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final ZoneService zoneService;
 
+    private final ObjectMapper objectMapper;
+
+    //ETag is the layout version, unchanged layout is answered with 304
     @GetMapping("/get-all")
-    public ResponseEntity<List<ZoneModel>> getAll() {
-        return ResponseEntity.ok(zoneService.getAll());
+    public ResponseEntity<List<ZoneModel>> getAll(WebRequest webRequest) {
+        LayoutSnapshot snapshot = zoneService.getSnapshot();
+        if (webRequest.checkNotModified(snapshot.getETag())) {
+            return null;
+        }
+
+        return ResponseEntity
+                .ok()
+                .eTag(snapshot.getETag())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(snapshot.getZones());
+    }
+
+    //Same tree as get-all, every zone once, see LayoutSnapshotCodec for the format
+    @GetMapping(value = "/get-all", produces = LayoutSnapshotCodec.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getAllBinary(WebRequest webRequest) {
+        LayoutSnapshot snapshot = zoneService.getSnapshot();
+        if (webRequest.checkNotModified(snapshot.getBinaryETag())) {
+            return null;
+        }
+
+        return ResponseEntity
+                .ok()
+                .eTag(snapshot.getBinaryETag())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(snapshot.getBinary());
+    }
+
+    @GetMapping("/get-page")
+    public ResponseEntity<CursorPageResponse<ZoneFlatModel>> getPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "500") int size
+    ) {
+        return ResponseEntity.ok(zoneService.getPage(afterId, size));
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = out -> zoneService.streamAll(zone -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(zone));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
     }
 
     @GetMapping("/get-zone/{id}")
     public ResponseEntity<ZoneModel> getZoneById(
-            @PathVariable Long id
+            @PathVariable Long id,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(zoneService.getById(id));
+        LayoutSnapshot snapshot = zoneService.getSnapshot();
+        if (webRequest.checkNotModified(snapshot.getETag())) {
+            return null;
+        }
+
+        return ResponseEntity
+                .ok()
+                .eTag(snapshot.getETag())
+                .body(zoneService.getById(id));
     }
 
     @PostMapping("/add-parent-zone")
@@ -62,6 +140,54 @@ public class ZoneController {
         return ResponseEntity.ok(zoneService.updateChildZone(id, request));
     }
 
+    @PatchMapping("/move-zone/{id}")
+    public ResponseEntity<ZoneFlatModel> moveZone(
+            @PathVariable Long id,
+            @RequestBody MoveZoneRequest request
+    ) {
+        return ResponseEntity.ok(zoneService.moveZone(id, request));
+    }
+
+    @GetMapping("/get-position/{id}")
+    public ResponseEntity<ZonePositionModel> getPosition(
+            @PathVariable Long id
+    ) {
+        return ResponseEntity.ok(zoneService.getPosition(id));
+    }
+
+    //Shelves of the zone and all zones below it
+    @GetMapping("/capacity/{id}")
+    public ResponseEntity<ZoneCapacityModel> getCapacity(
+            @PathVariable Long id
+    ) {
+        return ResponseEntity.ok(zoneService.getCapacity(id));
+    }
+
+    //Recomputes capacity of all zones from shelves, returns zones whose counters drifted
+    @PostMapping("/capacity/reconcile")
+    public ResponseEntity<CapacityReconcileResponse> reconcileCapacity() {
+        return ResponseEntity.ok(zoneService.reconcileCapacity());
+    }
+
+    @GetMapping("/at")
+    public ResponseEntity<List<ZoneFlatModel>> getAt(
+            @RequestParam int x,
+            @RequestParam int y
+    ) {
+        return ResponseEntity.ok(zoneService.getAt(x, y));
+    }
+
+    @GetMapping("/window")
+    public ResponseEntity<List<ZoneFlatModel>> getInWindow(
+            @RequestParam int minX,
+            @RequestParam int minY,
+            @RequestParam int maxX,
+            @RequestParam int maxY,
+            @RequestParam(defaultValue = "500") int size
+    ) {
+        return ResponseEntity.ok(zoneService.getInWindow(minX, minY, maxX, maxY, size));
+    }
+
     @DeleteMapping("/delete-zone/{id}")
     public ResponseEntity<String> deleteZone(
             @PathVariable Long id
@@ -0,0 +1,48 @@
+package com.fatia.warehouseservice.entities;
+
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Latest change of a zone or shelf, one row per entity.
+// Every change replaces the row of its entity with a new one, so version (the id)
+// grows with every mutation and the table stays compacted. Rows are written by
+// LayoutChangeLog at commit, versions are assigned there in commit order. DELETED rows are tombstones,
+// the newest purged one stays as horizon, clients older than it may have missed deletes.
+@Entity
+@Table(
+        name = "layout_changes",
+        indexes = {
+                @Index(name = "layout_changes_entity_idx", columnList = "entity_type, entity_id"),
+                @Index(name = "layout_changes_operation_idx", columnList = "operation, version"),
+                @Index(name = "layout_changes_horizon_idx", columnList = "horizon, version")
+        })
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+public class LayoutChangeEntity {
+    @Id
+    private Long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EntityType entityType;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Operation operation;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private boolean horizon;
+}
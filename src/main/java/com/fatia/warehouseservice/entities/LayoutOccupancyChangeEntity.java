@@ -0,0 +1,33 @@
+package com.fatia.warehouseservice.entities;
+
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Shelf occupancy change committed without a change log version yet.
+// Written with plain JDBC by LayoutChangeLog, turned into layout_changes rows by its sequencer.
+@Entity
+@Table(name = "layout_occupancy_changes")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+public class LayoutOccupancyChangeEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long shelfId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Operation operation;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,48 @@
+package com.fatia.warehouseservice.entities;
+
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.Map;
+
+//Layout change waiting to be published, written in the same transaction as the change
+@Entity
+@Table(name = "layout_outbox")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+public class LayoutOutboxEntity {
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EntityType entityType;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Operation operation;
+
+    private Long parentId;
+
+    // plain Hibernate JSON mapping, reads back on H2 as well
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(
+            columnDefinition = "jsonb")
+    private Map<String, Integer> geometry;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
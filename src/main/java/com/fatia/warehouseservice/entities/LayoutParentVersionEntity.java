@@ -0,0 +1,22 @@
+package com.fatia.warehouseservice.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// Version of the writes under one parent zone (key 0 for top level), bumped by every write
+// holding its lock. Written with plain JDBC by ParentVersions.
+@Entity
+@Table(name = "layout_parent_versions")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+public class LayoutParentVersionEntity {
+    @Id
+    private Long parentKey;
+
+    @Column(nullable = false)
+    private Long version;
+}
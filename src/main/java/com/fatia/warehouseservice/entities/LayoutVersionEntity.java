@@ -0,0 +1,22 @@
+package com.fatia.warehouseservice.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// Single row (id 1) holding the last version assigned by the change log.
+// Written with plain JDBC by LayoutChangeLog, locked by the transaction assigning versions.
+@Entity
+@Table(name = "layout_version")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+public class LayoutVersionEntity {
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long version;
+}
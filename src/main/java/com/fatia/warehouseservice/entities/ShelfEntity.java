@@ -1,7 +1,10 @@
 package com.fatia.warehouseservice.entities;
 
+import com.fatia.warehouseservice.config.SecondLevelCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.Type;
 import org.hibernate.type.SqlTypes;
@@ -9,7 +12,10 @@ import org.hibernate.type.SqlTypes;
 import java.util.Map;
 
 @Entity
-@Table(name = "shelves")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.SHELVES)
+@Table(
+        name = "shelves",
+        indexes = @Index(name = "shelves_abs_bounds_idx", columnList = "abs_min_x, abs_max_x, abs_min_y, abs_max_y"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -39,12 +45,30 @@ public class ShelfEntity {
 
     private int level;
 
+    // absolute bounds on the map, maintained by AbsoluteBoundsService
+    @Column(name = "abs_min_x")
+    private Integer absMinX;
+
+    @Column(name = "abs_min_y")
+    private Integer absMinY;
+
+    @Column(name = "abs_max_x")
+    private Integer absMaxX;
+
+    @Column(name = "abs_max_y")
+    private Integer absMaxY;
+
     private String description;
 
     private boolean isOccupied;
 
     private boolean isActive;
 
+    // bumped by every update, also by reservation statements in ShelfService
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+
     @Column(name = "connected_node_id")
     private String connectedNodeId;
 
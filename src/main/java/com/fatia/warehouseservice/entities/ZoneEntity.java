@@ -1,13 +1,19 @@
 package com.fatia.warehouseservice.entities;
 
+import com.fatia.warehouseservice.config.SecondLevelCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "zones")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.ZONES)
+@Table(
+        name = "zones",
+        indexes = @Index(name = "zones_abs_bounds_idx", columnList = "abs_min_x, abs_max_x, abs_min_y, abs_max_y"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -48,6 +54,23 @@ public class ZoneEntity {
     @Column(nullable = false)
     private FaceDirection faceDirection;
 
+    // absolute, rotation resolved bounds on the map, maintained by AbsoluteBoundsService
+    @Column(name = "abs_min_x")
+    private Integer absMinX;
+
+    @Column(name = "abs_min_y")
+    private Integer absMinY;
+
+    @Column(name = "abs_max_x")
+    private Integer absMaxX;
+
+    @Column(name = "abs_max_y")
+    private Integer absMaxY;
+
+    // sum of own and all ancestors rotations
+    @Column(name = "abs_rotation_angle")
+    private Integer absRotationAngle;
+
     @Column(name = "node_id")
     private String nodeId; // entry node to zone
 
@@ -56,12 +79,16 @@ public class ZoneEntity {
     private ZoneEntity parentZone;
 
     @OneToMany(mappedBy = "parentZone", cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.ZONE_CHILDREN)
+    @Builder.Default
     private List<ZoneEntity> childZones = new ArrayList<>();
 
     @OneToMany(
             mappedBy = "zone",
             cascade = CascadeType.ALL)
-    private List<ShelfEntity> shelves;
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.ZONE_SHELVES)
+    @Builder.Default
+    private List<ShelfEntity> shelves = new ArrayList<>();
 
     private String description;
 }
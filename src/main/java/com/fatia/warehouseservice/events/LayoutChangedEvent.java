@@ -0,0 +1,82 @@
+package com.fatia.warehouseservice.events;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+//Published by ZoneService and ShelfService after every layout mutation
+@Getter
+@AllArgsConstructor
+@ToString
+public class LayoutChangedEvent {
+
+    public enum EntityType {
+        ZONE,
+        SHELF
+    }
+
+    public enum Operation {
+        CREATED,
+        UPDATED,
+        DELETED,
+        RESERVED,// shelf occupancy only
+        RELEASED,
+        NODE_UPDATED;// graph node ids only (NavigationGraph), geometry didn't change
+
+        // Operation written to the change log and the outbox, node id change is a plain update there
+        public Operation stored() {
+            return this == NODE_UPDATED ? UPDATED : this;
+        }
+    }
+
+    private final EntityType entityType;
+
+    private final Long entityId;
+
+    private final Operation operation;
+
+    private final Long parentId;// parent zone for zone, column for shelf
+
+    private final Map<String, Integer> geometry;// new geometry for CREATED, UPDATED and NODE_UPDATED, otherwise null
+
+    public static LayoutChangedEvent zone(Long id, Operation operation, Long parentId) {
+        return new LayoutChangedEvent(EntityType.ZONE, id, operation, parentId, null);
+    }
+
+    public static LayoutChangedEvent shelf(Long id, Operation operation, Long columnId) {
+        return new LayoutChangedEvent(EntityType.SHELF, id, operation, columnId, null);
+    }
+
+    public static LayoutChangedEvent zone(ZoneEntity zone, Operation operation) {
+        return new LayoutChangedEvent(
+                EntityType.ZONE,
+                zone.getId(),
+                operation,
+                zone.getParentZone() == null ? null : zone.getParentZone().getId(),
+                Map.of(
+                        "originX", zone.getOriginX(),
+                        "originY", zone.getOriginY(),
+                        "width", zone.getWidth(),
+                        "length", zone.getLength(),
+                        "rotationAngle", zone.getRotationAngle() == null ? 0 : zone.getRotationAngle()));
+    }
+
+    public static LayoutChangedEvent shelf(ShelfEntity shelf, Operation operation) {
+        return new LayoutChangedEvent(
+                EntityType.SHELF,
+                shelf.getId(),
+                operation,
+                shelf.getZone() == null ? null : shelf.getZone().getId(),
+                Map.of(
+                        "originX", shelf.getOriginX(),
+                        "originY", shelf.getOriginY(),
+                        "width", shelf.getWidth(),
+                        "length", shelf.getLength(),
+                        "height", shelf.getHeight(),
+                        "level", shelf.getLevel()));
+    }
+}
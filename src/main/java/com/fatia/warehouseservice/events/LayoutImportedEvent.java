@@ -0,0 +1,22 @@
+package com.fatia.warehouseservice.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Published by LayoutImportService once per import instead of a LayoutChangedEvent per row.
+// In-memory indexes load again on next use, change log and outbox write all changes in batches.
+@Getter
+@AllArgsConstructor
+public class LayoutImportedEvent {
+
+    private final Long parentZoneId;// null for top level
+
+    private final List<LayoutChangedEvent> changes;// CREATED of every zone and shelf, parents first
+
+    @Override
+    public String toString() {
+        return "LayoutImportedEvent(parentZoneId=" + parentZoneId + ", changes=" + changes.size() + ")";
+    }
+}
@@ -0,0 +1,35 @@
+package com.fatia.warehouseservice.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+
+// Published by LayoutChangeLog with changes committed by any instance (this one too) between two
+// versions of the change log, in version order and without gaps. Only ids are carried, current
+// state is read from the database. Listeners run right after the commit of a local change, or
+// within warehouse.changes.sync-interval-ms after a change of another instance.
+@Getter
+@AllArgsConstructor
+@ToString
+public class LayoutSyncedEvent {
+
+    private final long fromVersion;// exclusive
+
+    private final long version;
+
+    private final boolean fullResync;// too many changes or missed tombstones, ids are empty
+
+    private final Set<Long> zoneIds;
+
+    private final Set<Long> deletedZoneIds;
+
+    private final Set<Long> shelfIds;
+
+    private final Set<Long> deletedShelfIds;
+
+    public boolean hasZoneChanges() {
+        return fullResync || !zoneIds.isEmpty() || !deletedZoneIds.isEmpty();
+    }
+}
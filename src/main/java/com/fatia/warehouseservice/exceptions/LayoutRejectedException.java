@@ -0,0 +1,30 @@
+package com.fatia.warehouseservice.exceptions;
+
+import lombok.Getter;
+
+//Layout change or lookup rejected by validation, reason is used as metrics tag
+@Getter
+public class LayoutRejectedException extends RuntimeException {
+
+    public enum Reason {
+        NOT_FOUND,
+        INVALID_REQUEST,
+        INVALID_TYPE,
+        MISSING_PARENT,
+        OUT_OF_WAREHOUSE_BOUNDS,
+        OUT_OF_PARENT_BOUNDS,
+        OVERLAP,
+        CHILD_TYPE_NOT_ALLOWED,
+        HAS_DEPENDENTS,
+        NOT_A_COLUMN,
+        OCCUPIED,
+        CONFLICT
+    }
+
+    private final Reason reason;
+
+    public LayoutRejectedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,253 @@
+package com.fatia.warehouseservice.graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Immutable walkable floor graph of the warehouse.
+// Floor is a grid of cellSize x cellSize cells, a node is a free cell (its centre is not
+// covered by an obstacle) and edges join 4-neighbouring free cells, weight is the distance
+// between their centres. Cells are grouped in TILE x TILE tiles, each tile keeps its
+// adjacency in CSR arrays (offsets, targets, weights) indexed by cell within the tile:
+// edges of node n are targets[offsets[n % TILE_CELLS] .. offsets[n % TILE_CELLS + 1]).
+// Node index is tile * TILE_CELLS + cell in tile, tiles go row by row.
+// Changes replace whole tiles, unchanged tiles are shared with the previous graph.
+public final class FloorGraph {
+
+    public static final int TILE = 16;
+
+    public static final int TILE_CELLS = TILE * TILE;
+
+    // up, right, down, left
+    private static final int[] DX = {0, 1, 0, -1};
+
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    private final int cellSize;
+
+    private final int originX;
+
+    private final int originY;
+
+    private final int columns;
+
+    private final int rows;
+
+    private final int tilesX;
+
+    private final Tile[] tiles;
+
+    private final long version;
+
+    //Adjacency of one tile, blocked cells and cells outside the warehouse have no edges
+    public record Tile(boolean[] free, int[] offsets, int[] targets, float[] weights) {
+    }
+
+    @FunctionalInterface
+    public interface Blocked {
+        boolean test(int cellX, int cellY);
+    }
+
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        void accept(int target, float weight);
+    }
+
+    private FloorGraph(int cellSize, int originX, int originY, int columns, int rows, Tile[] tiles, long version) {
+        this.cellSize = cellSize;
+        this.originX = originX;
+        this.originY = originY;
+        this.columns = columns;
+        this.rows = rows;
+        this.tilesX = ceilDiv(columns, TILE);
+        this.tiles = tiles;
+        this.version = version;
+    }
+
+    public static FloorGraph build(int cellSize, int originX, int originY, int width, int height, Blocked blocked) {
+        int columns = ceilDiv(width - originX, cellSize);
+        int rows = ceilDiv(height - originY, cellSize);
+        FloorGraph empty = new FloorGraph(cellSize, originX, originY, columns, rows,
+                new Tile[ceilDiv(columns, TILE) * ceilDiv(rows, TILE)], 0);
+        for (int tile = 0; tile < empty.tiles.length; tile++) {
+            empty.tiles[tile] = empty.buildTile(tile, blocked);
+        }
+        return empty;
+    }
+
+    //New graph with given tiles built again, the rest is shared
+    public FloorGraph rebuild(Iterable<Integer> tileIndexes, Blocked blocked) {
+        Tile[] copy = Arrays.copyOf(tiles, tiles.length);
+        for (int tile : tileIndexes) {
+            copy[tile] = buildTile(tile, blocked);
+        }
+        return new FloorGraph(cellSize, originX, originY, columns, rows, copy, version + 1);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getNodeCount() {
+        return tiles.length * TILE_CELLS;
+    }
+
+    public int getTileCount() {
+        return tiles.length;
+    }
+
+    public Tile getTile(int tile) {
+        return tiles[tile];
+    }
+
+    //Node of the cell, -1 outside the warehouse
+    public int node(int cellX, int cellY) {
+        if (cellX < 0 || cellY < 0 || cellX >= columns || cellY >= rows) {
+            return -1;
+        }
+        int tile = (cellY / TILE) * tilesX + cellX / TILE;
+        return tile * TILE_CELLS + (cellY % TILE) * TILE + cellX % TILE;
+    }
+
+    public int cellX(int node) {
+        int tile = node / TILE_CELLS;
+        return (tile % tilesX) * TILE + (node % TILE_CELLS) % TILE;
+    }
+
+    public int cellY(int node) {
+        int tile = node / TILE_CELLS;
+        return (tile / tilesX) * TILE + (node % TILE_CELLS) / TILE;
+    }
+
+    public int cellXAt(int x) {
+        return Math.floorDiv(x - originX, cellSize);
+    }
+
+    public int cellYAt(int y) {
+        return Math.floorDiv(y - originY, cellSize);
+    }
+
+    //Tiles touching absolute rectangle [minX, maxX) x [minY, maxY), grown by one cell
+    public void forEachTile(int minX, int minY, int maxX, int maxY, IntConsumer consumer) {
+        int fromX = Math.max(0, cellXAt(minX) - 1) / TILE;
+        int fromY = Math.max(0, cellYAt(minY) - 1) / TILE;
+        int toX = Math.min(columns - 1, cellXAt(maxX - 1) + 1) / TILE;
+        int toY = Math.min(rows - 1, cellYAt(maxY - 1) + 1) / TILE;
+        for (int ty = fromY; ty <= toY; ty++) {
+            for (int tx = fromX; tx <= toX; tx++) {
+                consumer.accept(ty * tilesX + tx);
+            }
+        }
+    }
+
+    public int tileOf(int node) {
+        return node / TILE_CELLS;
+    }
+
+    public boolean isFree(int node) {
+        return node >= 0 && tiles[node / TILE_CELLS].free[node % TILE_CELLS];
+    }
+
+    public void forEachEdge(int node, EdgeConsumer consumer) {
+        Tile tile = tiles[node / TILE_CELLS];
+        int cell = node % TILE_CELLS;
+        for (int i = tile.offsets[cell]; i < tile.offsets[cell + 1]; i++) {
+            consumer.accept(tile.targets[i], tile.weights[i]);
+        }
+    }
+
+    // Nearest free node to the cell by ring distance, -1 when there is none within maxRings
+    public int nearestFree(int cellX, int cellY, int maxRings) {
+        for (int ring = 0; ring <= maxRings; ring++) {
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int dy = -ring; dy <= ring; dy++) {
+                for (int dx = -ring; dx <= ring; dx++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dy)) != ring) {
+                        continue;
+                    }
+                    int node = node(cellX + dx, cellY + dy);
+                    int distance = Math.abs(dx) + Math.abs(dy);
+                    // ties go to the lower node, result doesn't depend on iteration order
+                    if (isFree(node) && (distance < bestDistance || distance == bestDistance && node < best)) {
+                        best = node;
+                        bestDistance = distance;
+                    }
+                }
+            }
+            if (best >= 0) {
+                return best;
+            }
+        }
+        return -1;
+    }
+
+    //Stable id of the node, stored as ZoneEntity.nodeId and ShelfEntity.connectedNodeId
+    public String nodeId(int node) {
+        return "N" + cellX(node) + "_" + cellY(node);
+    }
+
+    //-1 when the id is not a node of this graph
+    public int node(String nodeId) {
+        int separator = nodeId == null ? -1 : nodeId.indexOf('_');
+        if (separator < 2 || nodeId.charAt(0) != 'N') {
+            return -1;
+        }
+        try {
+            return node(Integer.parseInt(nodeId.substring(1, separator)), Integer.parseInt(nodeId.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Tile buildTile(int tile, Blocked blocked) {
+        int firstX = (tile % tilesX) * TILE;
+        int firstY = (tile / tilesX) * TILE;
+
+        boolean[] free = new boolean[TILE_CELLS];
+        // one extra ring around the tile, edges leaving the tile need neighbours' state
+        boolean[] around = new boolean[(TILE + 2) * (TILE + 2)];
+        for (int y = -1; y <= TILE; y++) {
+            for (int x = -1; x <= TILE; x++) {
+                int cellX = firstX + x;
+                int cellY = firstY + y;
+                boolean isFree = node(cellX, cellY) >= 0 && !blocked.test(cellX, cellY);
+                around[(y + 1) * (TILE + 2) + x + 1] = isFree;
+                if (x >= 0 && y >= 0 && x < TILE && y < TILE) {
+                    free[y * TILE + x] = isFree;
+                }
+            }
+        }
+
+        int[] offsets = new int[TILE_CELLS + 1];
+        int[] targets = new int[TILE_CELLS * 4];
+        float[] weights = new float[TILE_CELLS * 4];
+        int edges = 0;
+        for (int cell = 0; cell < TILE_CELLS; cell++) {
+            offsets[cell] = edges;
+            if (!free[cell]) {
+                continue;
+            }
+            int x = cell % TILE;
+            int y = cell / TILE;
+            for (int direction = 0; direction < 4; direction++) {
+                int nx = x + DX[direction];
+                int ny = y + DY[direction];
+                if (around[(ny + 1) * (TILE + 2) + nx + 1]) {
+                    targets[edges] = node(firstX + nx, firstY + ny);
+                    weights[edges] = cellSize;
+                    edges++;
+                }
+            }
+        }
+        offsets[TILE_CELLS] = edges;
+        return new Tile(free, offsets, Arrays.copyOf(targets, edges), Arrays.copyOf(weights, edges));
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return Math.max(1, -Math.floorDiv(-value, divisor));
+    }
+}
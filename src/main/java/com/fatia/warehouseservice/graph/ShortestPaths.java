@@ -0,0 +1,146 @@
+package com.fatia.warehouseservice.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Single source shortest paths over FloorGraph (Dijkstra with a binary heap of primitive
+// longs, lazy deletion). Search stops when all targets are settled.
+// Besides distances it returns tiles crossed by the found path to each target, as long as
+// no cell of these tiles gets blocked, the distances can only get shorter.
+// searchNearest starts from several sources at once and gives distances to the nearest of them.
+// Not thread safe, one instance per thread.
+public final class ShortestPaths {
+
+    private final FloorGraph graph;
+
+    private final float[] distance;
+
+    private final int[] previous;
+
+    private final boolean[] settled;
+
+    private final int[] targetCount;
+
+    private long[] heap = new long[64];
+
+    private int heapSize;
+
+    public record Result(float[] distances, BitSet pathTiles) {
+    }
+
+    public ShortestPaths(FloorGraph graph) {
+        this.graph = graph;
+        this.distance = new float[graph.getNodeCount()];
+        this.previous = new int[graph.getNodeCount()];
+        this.settled = new boolean[graph.getNodeCount()];
+        this.targetCount = new int[graph.getNodeCount()];
+    }
+
+    //Distances from source to the target nodes, in their order, infinity when unreachable
+    public Result search(int source, int[] targets) {
+        run(new int[]{source}, targets);
+        float[] distances = distances(targets);
+        BitSet pathTiles = new BitSet(graph.getTileCount());
+        // settled flags are reused to walk every path node once
+        for (int target : targets) {
+            for (int node = target; node >= 0 && settled[node]; node = previous[node]) {
+                settled[node] = false;
+                pathTiles.set(graph.tileOf(node));
+            }
+        }
+        return new Result(distances, pathTiles);
+    }
+
+    //Distances from the nearest source to the target nodes, in their order, infinity when unreachable
+    public float[] searchNearest(int[] sources, int[] targets) {
+        run(sources, targets);
+        return distances(targets);
+    }
+
+    private void run(int[] sources, int[] targets) {
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        Arrays.fill(settled, false);
+        int remaining = 0;
+        for (int target : targets) {
+            if (targetCount[target]++ == 0) {
+                remaining++;
+            }
+        }
+
+        heapSize = 0;
+        for (int source : sources) {
+            distance[source] = 0;
+            previous[source] = -1;
+            push(0, source);
+        }
+        while (heapSize > 0 && remaining > 0) {
+            long top = pop();
+            int node = (int) top;
+            if (settled[node]) {
+                continue;
+            }
+            settled[node] = true;
+            if (targetCount[node] > 0) {
+                remaining--;
+            }
+            float base = distance[node];
+            graph.forEachEdge(node, (target, weight) -> {
+                float candidate = base + weight;
+                if (candidate < distance[target]) {
+                    distance[target] = candidate;
+                    previous[target] = node;
+                    push(candidate, target);
+                }
+            });
+        }
+    }
+
+    private float[] distances(int[] targets) {
+        float[] distances = new float[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            targetCount[targets[i]] = 0;
+            distances[i] = settled[targets[i]] ? distance[targets[i]] : Float.POSITIVE_INFINITY;
+        }
+        return distances;
+    }
+
+    // Non negative floats keep their order as int bits, node goes to the low half
+    private void push(float key, int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        long entry = ((long) Float.floatToIntBits(key) << 32) | node;
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,66 @@
+package com.fatia.warehouseservice.ids;
+
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+//Previous behaviour: random 8 hex chars, checked against DB on every attempt
+@Component
+@ConditionalOnProperty(name = "warehouse.short-id.generator", havingValue = "random")
+@RequiredArgsConstructor
+public class RandomShortIdGenerator implements ShortIdGenerator {
+
+    private static final int QUERY_CHUNK = 10_000;
+
+    private final ZoneRepository zoneRepository;
+
+    private static String random() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public String next() {
+        String uuid;
+        do {
+            uuid = random();
+        } while (zoneRepository.findByUuid(uuid).isPresent());
+        return uuid;
+    }
+
+    //Candidates are checked in chunks, one query per chunk
+    @Override
+    public List<String> next(int count) {
+        Set<String> accepted = new LinkedHashSet<>();
+        while (accepted.size() < count) {
+            Set<String> candidates = new HashSet<>();
+            while (candidates.size() < count - accepted.size()) {
+                String uuid = random();
+                if (!accepted.contains(uuid)) {
+                    candidates.add(uuid);
+                }
+            }
+
+            List<String> keys = new ArrayList<>(candidates);
+            Set<String> existing = new HashSet<>();
+            for (int from = 0; from < keys.size(); from += QUERY_CHUNK) {
+                existing.addAll(zoneRepository.findExistingUuids(
+                        keys.subList(from, Math.min(keys.size(), from + QUERY_CHUNK))));
+            }
+
+            for (String key : keys) {
+                if (!existing.contains(key)) {
+                    accepted.add(key);
+                }
+            }
+        }
+        return new ArrayList<>(accepted);
+    }
+}
@@ -0,0 +1,72 @@
+package com.fatia.warehouseservice.ids;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Unique short ids without probing zones table.
+// Every instance reserves blocks of BLOCK_SIZE numbers from a DB sequence, so instances
+// never hand out the same number and DB is hit once per block.
+// Number is scrambled and encoded as 'x' + 7 base32 chars. Legacy ids are hex only,
+// 'x' never appears in them, so new ids can't collide with old ones.
+@Component
+@ConditionalOnProperty(name = "warehouse.short-id.generator", havingValue = "sequence", matchIfMissing = true)
+@RequiredArgsConstructor
+public class SequenceShortIdGenerator implements ShortIdGenerator {
+
+    static final int BLOCK_SIZE = 1000;
+
+    private static final String SEQUENCE = "zone_short_id_seq";
+
+    private static final String ALPHABET = "0123456789abcdefghjkmnpqrstvwxyz";// Crockford base32
+
+    private static final int CHARS = 7;
+
+    private static final long MASK = (1L << (5 * CHARS)) - 1;
+
+    // odd multiplier makes n * MULTIPLIER mod 2^35 a bijection
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long next;
+
+    private long limit;
+
+    @PostConstruct
+    void createSequence() {
+        jdbcTemplate.execute("create sequence if not exists " + SEQUENCE
+                + " start with 1 increment by " + BLOCK_SIZE);
+    }
+
+    @Override
+    public synchronized String next() {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return encode(next++);
+    }
+
+    private void reserveBlock() {
+        Long start = jdbcTemplate.queryForObject("select nextval('" + SEQUENCE + "')", Long.class);
+        if (start == null || start + BLOCK_SIZE > MASK) {
+            throw new RuntimeException("Short id sequence is exhausted");
+        }
+        next = start;
+        limit = start + BLOCK_SIZE;
+    }
+
+    static String encode(long number) {
+        long scrambled = (number * MULTIPLIER) & MASK;
+
+        char[] chars = new char[CHARS + 1];
+        chars[0] = 'x';
+        for (int i = CHARS; i > 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (scrambled & 31));
+            scrambled >>>= 5;
+        }
+        return new String(chars);
+    }
+}
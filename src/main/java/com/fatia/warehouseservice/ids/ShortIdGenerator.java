@@ -0,0 +1,18 @@
+package com.fatia.warehouseservice.ids;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Generates 8 characters ids used as zone uuid
+public interface ShortIdGenerator {
+
+    String next();
+
+    default List<String> next(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(next());
+        }
+        return ids;
+    }
+}
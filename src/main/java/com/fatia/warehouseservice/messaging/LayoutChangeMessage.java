@@ -0,0 +1,39 @@
+package com.fatia.warehouseservice.messaging;
+
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// Batch of coalesced layout changes sent to AMQP.
+// Delivery is at least once and unordered: batches drained by different instances at the same
+// time may arrive in any order, and a batch whose rows were not deleted is sent again, possibly
+// merged with later changes. Consumers apply changes idempotently and don't skip batches by
+// layoutVersion. Ordered state is served by the change log (GET /api/v1/layout/changes?since=).
+// layoutVersion is the id of the newest outbox row included. It identifies the batch in logs only,
+// ids come from a pooled sequence and don't follow commit order.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LayoutChangeMessage {
+    private long layoutVersion;
+    private List<Change> changes;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Change {
+        private EntityType entityType;
+        private Long entityId;
+        private Operation operation;
+        private Long parentId;
+        private Map<String, Integer> geometry;
+    }
+}
@@ -0,0 +1,120 @@
+package com.fatia.warehouseservice.messaging;
+
+import com.fatia.warehouseservice.entities.LayoutOutboxEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.messaging.LayoutChangeMessage.Change;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Drains the outbox to RabbitMQ every flush interval.
+// Changes collected during the interval are coalesced per entity (last geometry wins,
+// created and deleted in the same window disappears) and sent in batches of
+// MESSAGE_SIZE changes. Rows are deleted in the same transaction after sending,
+// so a failed send is retried on the next flush (at least once delivery).
+// Instances drain in parallel, each skips rows another one has locked, so batches are not
+// ordered between instances (see LayoutChangeMessage).
+@Component
+@ConditionalOnProperty(name = "warehouse.outbox.publisher.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LayoutOutboxPublisher {
+
+    public static final String EXCHANGE = "warehouse.layout";
+
+    public static final String ROUTING_KEY = "layout.changed";
+
+    static final int MAX_ROWS = 20_000;
+
+    static final int MESSAGE_SIZE = 1000;
+
+    private final LayoutOutboxRepository layoutOutboxRepository;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Scheduled(
+            fixedDelayString = "${warehouse.outbox.flush-interval-ms:500}",
+            initialDelayString = "${warehouse.outbox.flush-interval-ms:500}")
+    @Transactional
+    public int flush() {
+        List<LayoutOutboxEntity> rows = layoutOutboxRepository.findByOrderByIdAsc(Limit.of(MAX_ROWS));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        long layoutVersion = rows.get(rows.size() - 1).getId();
+        List<Change> changes = coalesce(rows);
+        int messages = 0;
+        for (int from = 0; from < changes.size(); from += MESSAGE_SIZE) {
+            rabbitTemplate.convertAndSend(EXCHANGE, ROUTING_KEY, LayoutChangeMessage
+                    .builder()
+                    .layoutVersion(layoutVersion)
+                    .changes(List.copyOf(changes.subList(from, Math.min(from + MESSAGE_SIZE, changes.size()))))
+                    .build());
+            messages++;
+        }
+
+        layoutOutboxRepository.deleteAllInBatch(rows);
+        return messages;
+    }
+
+    // Per entity there is at most one layout change (CREATED/UPDATED/DELETED)
+    // followed by at most one occupancy change (RESERVED/RELEASED)
+    static List<Change> coalesce(List<LayoutOutboxEntity> rows) {
+        Map<String, Change[]> byEntity = new LinkedHashMap<>();
+        for (LayoutOutboxEntity row : rows) {
+            Change[] entity = byEntity.computeIfAbsent(row.getEntityType() + ":" + row.getEntityId(), k -> new Change[2]);
+            Change change = toChange(row);
+
+            if (row.getOperation() == Operation.RESERVED || row.getOperation() == Operation.RELEASED) {
+                entity[1] = change;
+                continue;
+            }
+
+            Change previous = entity[0];
+            if (previous != null && previous.getOperation() == Operation.CREATED) {
+                if (row.getOperation() == Operation.DELETED) {
+                    // nobody has seen it
+                    entity[0] = null;
+                    entity[1] = null;
+                    continue;
+                }
+                change.setOperation(Operation.CREATED);
+            }
+            if (row.getOperation() == Operation.DELETED) {
+                entity[1] = null;
+            }
+            entity[0] = change;
+        }
+
+        List<Change> changes = new ArrayList<>();
+        for (Change[] entity : byEntity.values()) {
+            for (Change change : entity) {
+                if (change != null) {
+                    changes.add(change);
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static Change toChange(LayoutOutboxEntity row) {
+        return Change
+                .builder()
+                .entityType(row.getEntityType())
+                .entityId(row.getEntityId())
+                .operation(row.getOperation())
+                .parentId(row.getParentId())
+                .geometry(row.getGeometry())
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.fatia.warehouseservice.messaging;
+
+import com.fatia.warehouseservice.entities.LayoutOutboxEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Stores every layout change in the outbox.
+// Plain EventListener runs in the publishing transaction, changes are collected and
+// inserted right before it commits, so rows are committed or rolled back together with
+// the change itself. Rows go in JDBC batches (hibernate.jdbc.batch_size) and are detached
+// after every batch, a large import doesn't keep them in the persistence context.
+@Component
+@RequiredArgsConstructor
+public class LayoutOutboxWriter {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final EntityManager entityManager;
+
+    @EventListener
+    @Transactional
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        pending().changes.add(event);
+    }
+
+    @EventListener
+    @Transactional
+    public void onLayoutImported(LayoutImportedEvent event) {
+        pending().changes.addAll(event.getChanges());
+    }
+
+    private Pending pending() {
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    private void write(List<LayoutChangedEvent> changes) {
+        Instant now = Instant.now();
+        List<LayoutOutboxEntity> batch = new ArrayList<>(BATCH_SIZE);
+        for (LayoutChangedEvent event : changes) {
+            LayoutOutboxEntity row = LayoutOutboxEntity
+                    .builder()
+                    .entityType(event.getEntityType())
+                    .entityId(event.getEntityId())
+                    .operation(event.getOperation().stored())
+                    .parentId(event.getParentId())
+                    .geometry(event.getGeometry())
+                    .createdAt(now)
+                    .build();
+            entityManager.persist(row);
+            batch.add(row);
+            if (batch.size() == BATCH_SIZE) {
+                flush(batch);
+            }
+        }
+        flush(batch);
+    }
+
+    private void flush(List<LayoutOutboxEntity> batch) {
+        entityManager.flush();
+        batch.forEach(entityManager::detach);
+        batch.clear();
+    }
+
+    // Runs before LayoutChangeLog, which holds the change log version row until the commit
+    private class Pending implements TransactionSynchronization {
+        private final List<LayoutChangedEvent> changes = new ArrayList<>();
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE - 1;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!changes.isEmpty()) {
+                write(changes);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LayoutOutboxWriter.this);
+        }
+    }
+}
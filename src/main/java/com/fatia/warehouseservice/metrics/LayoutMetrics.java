@@ -0,0 +1,110 @@
+package com.fatia.warehouseservice.metrics;
+
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.responses.StatusResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Timers and counters for zone/shelf operations.
+// Operation time is split into phases: services call phase(DB) / phase(MAPPING)
+// when they move on, everything before the first call is counted as validation.
+@Component
+@RequiredArgsConstructor
+public class LayoutMetrics {
+
+    public static final String VALIDATION = "validation";
+    public static final String DB = "db";
+    public static final String MAPPING = "mapping";
+
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+
+    public <T> T record(String operation, Supplier<T> body) {
+        Operation previous = CURRENT.get();
+        Operation current = new Operation(operation);
+        CURRENT.set(current);
+
+        String outcome = "OK";
+        try {
+            T result = body.get();
+            if (result instanceof StatusResponse response
+                    && StatusResponse.OK_WITH_WARNINGS.equals(response.getStatus())) {
+                outcome = StatusResponse.OK_WITH_WARNINGS;
+                registry.counter("warehouse.layout.warnings", "operation", operation).increment();
+            }
+            return result;
+        } catch (LayoutRejectedException e) {
+            outcome = "REJECTED";
+            registry.counter("warehouse.layout.rejections",
+                    "operation", operation,
+                    "reason", e.getReason().name()).increment();
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = "ERROR";
+            registry.counter("warehouse.layout.rejections",
+                    "operation", operation,
+                    "reason", e.getClass().getSimpleName()).increment();
+            throw e;
+        } finally {
+            current.finish(outcome);
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    //Switches current operation of this thread to the next phase, no-op outside of record
+    public void phase(String phase) {
+        Operation current = CURRENT.get();
+        if (current != null) {
+            current.lap(phase);
+        }
+    }
+
+    private class Operation {
+        private final String name;
+        private final long start = System.nanoTime();
+        private long phaseStart = start;
+        private String phase = VALIDATION;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void lap(String next) {
+            if (next.equals(phase)) {
+                return;
+            }
+            long now = System.nanoTime();
+            recordPhase(now);
+            phase = next;
+            phaseStart = now;
+        }
+
+        void finish(String outcome) {
+            long now = System.nanoTime();
+            recordPhase(now);
+            Timer.builder("warehouse.layout.operation")
+                    .tag("operation", name)
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(now - start, TimeUnit.NANOSECONDS);
+        }
+
+        private void recordPhase(long now) {
+            Timer.builder("warehouse.layout.operation.phase")
+                    .tag("operation", name)
+                    .tag("phase", phase)
+                    .register(registry)
+                    .record(now - phaseStart, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.fatia.warehouseservice.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+//Times every public ZoneService and ShelfService operation, named after the method
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class LayoutMetricsAspect {
+
+    private final LayoutMetrics layoutMetrics;
+
+    @Around("execution(public * com.fatia.warehouseservice.services.ZoneService.*(..))"
+            + " || execution(public * com.fatia.warehouseservice.services.ShelfService.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) {
+        return layoutMetrics.record(joinPoint.getSignature().getName(), () -> {
+            try {
+                return joinPoint.proceed();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,24 @@
+package com.fatia.warehouseservice.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts SQL statements prepared by Hibernate on current thread.
+// Registered through hibernate.session_factory.statement_inspector.
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static int get() {
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+}
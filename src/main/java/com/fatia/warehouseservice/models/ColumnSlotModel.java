@@ -0,0 +1,19 @@
+package com.fatia.warehouseservice.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Empty level of a column and the elevations a new shelf on it can take, from bottom (inclusive) to top (exclusive)
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ColumnSlotModel {
+    private Long columnId;
+    private int level;
+    private int bottom;
+    private int top;
+    private int height;
+}
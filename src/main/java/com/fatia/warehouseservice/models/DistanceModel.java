@@ -0,0 +1,30 @@
+package com.fatia.warehouseservice.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Travel distance between entries of two zones, null when one can't be reached from the other
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DistanceModel {
+    private Long fromZoneId;
+    private Long toZoneId;
+    private Float distance;
+
+    public static DistanceModel of(Long fromZoneId, Long toZoneId, float distance) {
+        return DistanceModel
+                .builder()
+                .fromZoneId(fromZoneId)
+                .toZoneId(toZoneId)
+                .distance(orNull(distance))
+                .build();
+    }
+
+    public static Float orNull(float distance) {
+        return Float.isInfinite(distance) ? null : distance;
+    }
+}
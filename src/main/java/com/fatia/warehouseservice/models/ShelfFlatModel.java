@@ -0,0 +1,60 @@
+package com.fatia.warehouseservice.models;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+//Shelf with column referenced by id, does not initialize the zone
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShelfFlatModel {
+    private Long id;
+    private String name;
+    private Long zoneId;
+    private int originX;
+    private int originY;
+    private int width;
+    private int length;
+    private int height;
+    private int level;
+    private String description;
+    private boolean isOccupied;
+    private boolean isActive;
+    private Map<String, String> conditions;
+    private String connectedNodeId;
+    //Absolute bounds on the warehouse map, max exclusive
+    private Integer absMinX;
+    private Integer absMinY;
+    private Integer absMaxX;
+    private Integer absMaxY;
+
+    public static ShelfFlatModel toModel(ShelfEntity entity) {
+        return ShelfFlatModel
+                .builder()
+                .id(entity.getId())
+                .name(entity.getName())
+                .zoneId(entity.getZone() == null ? null : entity.getZone().getId())
+                .originX(entity.getOriginX())
+                .originY(entity.getOriginY())
+                .width(entity.getWidth())
+                .length(entity.getLength())
+                .height(entity.getHeight())
+                .level(entity.getLevel())
+                .description(entity.getDescription())
+                .isOccupied(entity.isOccupied())
+                .isActive(entity.isActive())
+                .conditions(entity.getConditions())
+                .connectedNodeId(entity.getConnectedNodeId())
+                .absMinX(entity.getAbsMinX())
+                .absMinY(entity.getAbsMinY())
+                .absMaxX(entity.getAbsMaxX())
+                .absMaxY(entity.getAbsMaxY())
+                .build();
+    }
+}
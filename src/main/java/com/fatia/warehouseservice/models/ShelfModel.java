@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class ShelfModel {
@@ -29,11 +29,15 @@ public class ShelfModel {
     private String connectedNodeId;
 
     public static ShelfModel toModel(ShelfEntity entity) {
+        return toModel(entity, entity.getZone() == null ? null : entity.getZone().getName());
+    }
+
+    public static ShelfModel toModel(ShelfEntity entity, String zoneName) {
         return ShelfModel
                 .builder()
                 .id(entity.getId())
                 .name(entity.getName())
-                .zoneName(entity.getZone().getName())
+                .zoneName(zoneName)
                 .originX(entity.getOriginX())
                 .originY(entity.getOriginY())
                 .width(entity.getWidth())
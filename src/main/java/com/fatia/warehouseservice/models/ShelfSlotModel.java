@@ -0,0 +1,23 @@
+package com.fatia.warehouseservice.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Free shelf candidate returned by slotting, distance is from the requested zone entry,
+//walking distance to the column entry once travel distances are computed, floor distance before
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShelfSlotModel {
+    private Long id;
+    private String name;
+    private Long zoneId;
+    private int level;
+    private int width;
+    private int length;
+    private int height;
+    private int distance;
+}
@@ -0,0 +1,20 @@
+package com.fatia.warehouseservice.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Shelves of the zone and all zones below it, total = free + occupied + inactive
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ZoneCapacityModel {
+    private Long zoneId;
+    private long totalShelves;
+    private long freeShelves;// active and not occupied
+    private long occupiedShelves;// active and occupied
+    private long inactiveShelves;
+    private long freeVolume;// width * length * height of free shelves
+}
@@ -0,0 +1,56 @@
+package com.fatia.warehouseservice.models;
+
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Zone without nested children and shelves, parent is referenced by id
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ZoneFlatModel {
+    private Long id;
+    private String uuid;
+    private String name;
+    private String type;
+    private int originX;
+    private int originY;
+    private int width;
+    private int length;
+    private int rotationAngle;
+    private int faceDirection;
+    private String description;
+    private String connectedNodeId;
+    private Long parentZoneId;
+    //Absolute bounds on the warehouse map, max exclusive
+    private Integer absMinX;
+    private Integer absMinY;
+    private Integer absMaxX;
+    private Integer absMaxY;
+
+    public static ZoneFlatModel toModel(ZoneEntity entity) {
+        return ZoneFlatModel
+                .builder()
+                .id(entity.getId())
+                .uuid(entity.getUuid())
+                .name(entity.getName())
+                .type(entity.getType().name())
+                .originX(entity.getOriginX())
+                .originY(entity.getOriginY())
+                .width(entity.getWidth())
+                .length(entity.getLength())
+                .rotationAngle(entity.getRotationAngle())
+                .faceDirection(entity.getFaceDirection().ordinal())
+                .description(entity.getDescription())
+                .connectedNodeId(entity.getNodeId())
+                .parentZoneId(entity.getParentZone() == null ? null : entity.getParentZone().getId())
+                .absMinX(entity.getAbsMinX())
+                .absMinY(entity.getAbsMinY())
+                .absMaxX(entity.getAbsMaxX())
+                .absMaxY(entity.getAbsMaxY())
+                .build();
+    }
+}
@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class ZoneModel {
@@ -30,7 +30,26 @@ public class ZoneModel {
     private Long parentZoneId;
     private List<ZoneModel> childZones;
 
+    //Walks lazy associations, use ZoneTreeLoader for reading subtrees
     public static ZoneModel toModel(ZoneEntity entity) {
+        return toModel(
+                entity,
+                entity.getShelves() == null
+                        ? List.of()
+                        : entity.getShelves()
+                        .stream()
+                        .map(ShelfModel::toModel)
+                        .collect(Collectors.toList()),
+                entity.getChildZones() == null
+                        ? List.of()
+                        : entity.getChildZones()
+                        .stream()
+                        .map(ZoneModel::toModel)
+                        .collect(Collectors.toList())
+        );
+    }
+
+    public static ZoneModel toModel(ZoneEntity entity, List<ShelfModel> shelves, List<ZoneModel> childZones) {
         return ZoneModel
                 .builder()
                 .id(entity.getId())
@@ -44,19 +63,9 @@ public class ZoneModel {
                 .description(entity.getDescription())
                 .rotationAngle(entity.getRotationAngle())
                 .faceDirection(entity.getFaceDirection().ordinal())
-                .shelves(
-                        entity.getShelves()
-                                .stream()
-                                .map(ShelfModel::toModel)
-                                .collect(Collectors.toList())
-                )
-                .parentZoneId(entity.getParentZone().getId())
-                .childZones(
-                        entity.getChildZones()
-                                .stream()
-                                .map(ZoneModel::toModel)
-                                .collect(Collectors.toList())
-                )
+                .shelves(shelves)
+                .parentZoneId(entity.getParentZone() == null ? null : entity.getParentZone().getId())
+                .childZones(childZones)
                 .connectedNodeId(entity.getNodeId())
                 .build();
     }
@@ -0,0 +1,31 @@
+package com.fatia.warehouseservice.models;
+
+import com.fatia.warehouseservice.spatial.Rect;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Absolute footprint of zone on the warehouse map
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ZonePositionModel {
+    private Long id;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    public static ZonePositionModel toModel(Long id, Rect footprint) {
+        return ZonePositionModel
+                .builder()
+                .id(id)
+                .minX(footprint.getMinX())
+                .minY(footprint.getMinY())
+                .maxX(footprint.getMaxX())
+                .maxY(footprint.getMaxY())
+                .build();
+    }
+}
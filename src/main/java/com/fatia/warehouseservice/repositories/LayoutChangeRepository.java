@@ -0,0 +1,42 @@
+package com.fatia.warehouseservice.repositories;
+
+import com.fatia.warehouseservice.entities.LayoutChangeEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface LayoutChangeRepository extends JpaRepository<LayoutChangeEntity, Long> {
+
+    List<LayoutChangeEntity> findByVersionGreaterThanOrderByVersionAsc(Long since, Limit limit);
+
+    List<LayoutChangeEntity> findByVersionBetweenOrderByVersionAsc(Long from, Long to, Limit limit);
+
+    List<LayoutChangeEntity> findByEntityTypeAndEntityIdIn(EntityType entityType, Collection<Long> entityIds);
+
+    @Query("select max(c.version) from LayoutChangeEntity c where c.horizon = true")
+    Long findHorizon();
+
+    @Query("select max(c.version) from LayoutChangeEntity c"
+            + " where c.operation = com.fatia.warehouseservice.events.LayoutChangedEvent.Operation.DELETED"
+            + " and c.createdAt < :before")
+    Long findNewestTombstoneBefore(Instant before);
+
+    @Modifying
+    @Query("delete from LayoutChangeEntity c"
+            + " where c.operation = com.fatia.warehouseservice.events.LayoutChangedEvent.Operation.DELETED"
+            + " and c.version < :version")
+    int deleteTombstonesBefore(Long version);
+
+    @Modifying
+    @Query("update LayoutChangeEntity c set c.horizon = true where c.version = :version")
+    int markHorizon(Long version);
+
+    @Query("select max(c.version) from LayoutChangeEntity c")
+    Long findLatestVersion();
+}
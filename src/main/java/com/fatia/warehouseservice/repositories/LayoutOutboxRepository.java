@@ -0,0 +1,20 @@
+package com.fatia.warehouseservice.repositories;
+
+import com.fatia.warehouseservice.entities.LayoutOutboxEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.List;
+
+public interface LayoutOutboxRepository extends JpaRepository<LayoutOutboxEntity, Long> {
+
+    //Oldest rows, rows locked by another instance are skipped
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = "-2"))
+    List<LayoutOutboxEntity> findByOrderByIdAsc(Limit limit);
+}
@@ -1,7 +1,65 @@
 package com.fatia.warehouseservice.repositories;
 
 import com.fatia.warehouseservice.entities.ShelfEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ShelfRepository extends JpaRepository<ShelfEntity, Long> {
+    int STREAM_FETCH_SIZE = 1000;
+
+    List<ShelfEntity> findByZoneIdIn(List<Long> zoneIds);
+
+    @Query("select s.id from ShelfEntity s where s.zone.id in :zoneIds")
+    List<Long> findIdsByZoneIdIn(Collection<Long> zoneIds);
+
+    //Empty when shelf doesn't exist or has no column
+    @Query("select s.zone.id from ShelfEntity s where s.id = :id")
+    Optional<Long> findColumnIdById(Long id);
+
+    //Zone is fetched in the same query, ShelfModel needs its name
+    @EntityGraph(attributePaths = "zone")
+    @Query("select s from ShelfEntity s")
+    List<ShelfEntity> findAllWithZone();
+
+    @EntityGraph(attributePaths = "zone")
+    Optional<ShelfEntity> findWithZoneById(Long id);
+
+    boolean existsByAbsMinXIsNullAndZoneIsNotNull();
+
+    long countByZoneIsNotNull();
+
+    @Query("select s from ShelfEntity s"
+            + " where s.absMinX <= :x and s.absMaxX > :x and s.absMinY <= :y and s.absMaxY > :y"
+            + " order by s.level, s.id")
+    List<ShelfEntity> findContaining(int x, int y);
+
+    @Query("select s from ShelfEntity s"
+            + " where s.absMinX < :maxX and s.absMaxX > :minX and s.absMinY < :maxY and s.absMaxY > :minY"
+            + " order by s.id")
+    List<ShelfEntity> findIntersecting(int minX, int minY, int maxX, int maxY, Limit limit);
+
+    @Query("select s from ShelfEntity s where s.isActive = true and s.isOccupied = false")
+    List<ShelfEntity> findFree();
+
+    //id, column id, width, length, height, active, occupied of every shelf
+    @Query("select s.id, s.zone.id, s.width, s.length, s.height, s.isActive, s.isOccupied from ShelfEntity s")
+    List<Object[]> findCapacityRows();
+
+    //Keyset pagination on id
+    List<ShelfEntity> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    //Must be consumed inside transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query("select s from ShelfEntity s order by s.id")
+    Stream<ShelfEntity> streamAll();
 }
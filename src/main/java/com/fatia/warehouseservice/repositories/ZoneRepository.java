@@ -2,13 +2,67 @@ package com.fatia.warehouseservice.repositories;
 
 import com.fatia.warehouseservice.entities.ZoneEntity;
 import com.fatia.warehouseservice.entities.ZoneType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ZoneRepository extends JpaRepository<ZoneEntity, Long> {
+    int STREAM_FETCH_SIZE = 500;
+
     Optional<ZoneEntity> findByUuid(String uuid);
 
+    //Ids are kept in the query cache, zones come from the entity cache
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<ZoneEntity> findByTypeIn(List<ZoneType> types);
+
+    @Query("select z.uuid from ZoneEntity z where z.uuid in :uuids")
+    List<String> findExistingUuids(Collection<String> uuids);
+
+    List<ZoneEntity> findByParentZoneIsNull();
+
+    List<ZoneEntity> findByParentZoneId(Long parentZoneId);
+
+    List<ZoneEntity> findByParentZoneIdIn(List<Long> parentZoneIds);
+
+    long countByParentZoneId(Long parentZoneId);
+
+    //0 for top-level zones, empty when zone doesn't exist
+    @Query("select coalesce(z.parentZone.id, 0) from ZoneEntity z where z.id = :id")
+    Optional<Long> findParentKeyById(Long id);
+
+    //id and parent key (0 for top-level) of every zone
+    @Query("select z.id, coalesce(z.parentZone.id, 0) from ZoneEntity z")
+    List<Object[]> findParentKeys();
+
+    @Query("select z.id from ZoneEntity z where z.parentZone.id in :parentZoneIds")
+    List<Long> findIdsByParentZoneIdIn(Collection<Long> parentZoneIds);
+
+    boolean existsByAbsMinXIsNull();
+
+    //Innermost zone first
+    @Query("select z from ZoneEntity z"
+            + " where z.absMinX <= :x and z.absMaxX > :x and z.absMinY <= :y and z.absMaxY > :y"
+            + " order by (z.absMaxX - z.absMinX) * (z.absMaxY - z.absMinY), z.id")
+    List<ZoneEntity> findContaining(int x, int y);
+
+    @Query("select z from ZoneEntity z"
+            + " where z.absMinX < :maxX and z.absMaxX > :minX and z.absMinY < :maxY and z.absMaxY > :minY"
+            + " order by z.id")
+    List<ZoneEntity> findIntersecting(int minX, int minY, int maxX, int maxY, Limit limit);
+
+    //Keyset pagination on id
+    List<ZoneEntity> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    //Must be consumed inside transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query("select z from ZoneEntity z order by z.id")
+    Stream<ZoneEntity> streamAll();
 }
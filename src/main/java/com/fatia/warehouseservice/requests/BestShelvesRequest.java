@@ -0,0 +1,22 @@
+package com.fatia.warehouseservice.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BestShelvesRequest {
+    private Long fromZoneId;// shelves are ranked by distance from entry of this zone
+    private int width;
+    private int length;
+    private int height;
+    private Integer level;// any level if null
+    private Map<String, String> conditions;// shelf must have all of them
+    private int limit;
+}
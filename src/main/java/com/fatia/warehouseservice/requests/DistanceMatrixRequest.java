@@ -0,0 +1,17 @@
+package com.fatia.warehouseservice.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DistanceMatrixRequest {
+    private List<Long> fromZoneIds;
+    private List<Long> toZoneIds;
+}
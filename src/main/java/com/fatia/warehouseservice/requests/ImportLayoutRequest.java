@@ -0,0 +1,19 @@
+package com.fatia.warehouseservice.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportLayoutRequest {
+    private Long parentZoneId;// existing zone to import into, null for warehouse level
+    @Builder.Default
+    private List<ImportZoneRequest> zones = new ArrayList<>();
+}
@@ -0,0 +1,28 @@
+package com.fatia.warehouseservice.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportZoneRequest {
+    private String type;
+    private int originX;// relatively to parent
+    private int originY;
+    private int width; // X
+    private int length; // Y
+    private int rotationAngle;
+    private String faceDirection;
+    private String description;
+    @Builder.Default
+    private List<ImportZoneRequest> childZones = new ArrayList<>();
+    @Builder.Default
+    private List<AddShelfRequest> shelves = new ArrayList<>();// only for COLUMN, origin relatively to column
+}
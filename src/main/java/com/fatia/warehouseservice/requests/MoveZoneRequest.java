@@ -0,0 +1,16 @@
+package com.fatia.warehouseservice.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoveZoneRequest {
+    private int originX;// relatively to parent
+    private int originY;
+    private int rotationAngle;
+}
@@ -0,0 +1,28 @@
+package com.fatia.warehouseservice.responses;
+
+import com.fatia.warehouseservice.models.ZoneCapacityModel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CapacityReconcileResponse {
+    private int zonesChecked;
+    private int shelvesChecked;
+    private List<Drift> drifts;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Drift {
+        private Long zoneId;
+        private ZoneCapacityModel maintained;// null when the zone was not known
+        private ZoneCapacityModel recomputed;// null when the zone doesn't exist any more
+    }
+}
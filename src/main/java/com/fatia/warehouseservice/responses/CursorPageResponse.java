@@ -0,0 +1,18 @@
+package com.fatia.warehouseservice.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> items;
+    private int size;
+    private Long nextCursor;// id to pass as afterId, null on last page
+}
@@ -0,0 +1,19 @@
+package com.fatia.warehouseservice.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DistanceMatrixResponse {
+    private long graphVersion;
+    private List<Long> fromZoneIds;
+    private List<Long> toZoneIds;
+    private List<List<Float>> distances;// distances[i][j] from fromZoneIds[i] to toZoneIds[j], null if unreachable
+}
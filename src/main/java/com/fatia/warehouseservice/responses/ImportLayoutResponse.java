@@ -0,0 +1,27 @@
+package com.fatia.warehouseservice.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportLayoutResponse implements StatusResponse {
+    private String status;
+    private int zonesCreated;
+    private int shelvesCreated;
+    private List<ImportError> errors;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ImportError {
+        private String path;// e.g. zones[2].childZones[5].shelves[0]
+        private String message;
+    }
+}
@@ -0,0 +1,24 @@
+package com.fatia.warehouseservice.responses;
+
+import com.fatia.warehouseservice.models.ShelfFlatModel;
+import com.fatia.warehouseservice.models.ZoneFlatModel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LayoutChangesResponse {
+    private long version;// pass as since of the next request
+    private boolean fullResync;// since is too old, drop local state and start again from 0
+    private boolean hasMore;
+    private List<ZoneFlatModel> zones;// created or updated, latest state
+    private List<ShelfFlatModel> shelves;
+    private List<Long> deletedZoneIds;
+    private List<Long> deletedShelfIds;
+}
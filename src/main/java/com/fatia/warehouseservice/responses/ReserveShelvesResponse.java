@@ -0,0 +1,17 @@
+package com.fatia.warehouseservice.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReserveShelvesResponse {
+    private List<Long> reserved;
+    private List<Long> rejected;// occupied, inactive or not existing
+}
@@ -0,0 +1,8 @@
+package com.fatia.warehouseservice.responses;
+
+//Response which can finish with OK_WITH_WARNINGS
+public interface StatusResponse {
+    String OK_WITH_WARNINGS = "OK_WITH_WARNINGS";
+
+    String getStatus();
+}
@@ -12,7 +12,7 @@ import java.util.List;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-public class UpdateShelfReponse {
+public class UpdateShelfReponse implements StatusResponse {
     private ShelfModel shelf;
     private String status;
     private List<String> warnings;
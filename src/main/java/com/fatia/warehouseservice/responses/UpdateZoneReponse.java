@@ -12,7 +12,7 @@ import java.util.List;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-public class UpdateZoneReponse {
+public class UpdateZoneReponse implements StatusResponse {
     private ZoneModel zone;
     private String status;
     private List<String> warnings;
@@ -0,0 +1,30 @@
+package com.fatia.warehouseservice.responses;
+
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ValidateLayoutResponse {
+    private boolean valid;
+    private int zonesChecked;
+    private int shelvesChecked;
+    private List<Violation> violations;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Violation {
+        private Reason reason;
+        private String path;// zones[2].childZones[5] for drafts, zones[id=12] for stored layout
+        private String otherPath;// second zone of an overlap
+        private String message;
+    }
+}
@@ -0,0 +1,227 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.cache.EntityCacheEvictor;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.spatial.Frame;
+import com.fatia.warehouseservice.spatial.Rect;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Maintains absolute bounds columns of zones and shelves.
+// Callers place new or changed entities before saving. When zone moves, its whole subtree
+// is moved by the same rotation + translation with one set based UPDATE per table
+// (per CHUNK ids), entities of the subtree are never loaded. Moved entities get a row in
+// the change log, their bounds changed without an event of their own.
+@Service
+@RequiredArgsConstructor
+public class AbsoluteBoundsService {
+
+    private static final int CHUNK = 1000;
+
+    private final ZoneRepository zoneRepository;
+
+    private final ShelfRepository shelfRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityCacheEvictor entityCacheEvictor;
+
+    private final LayoutChangeLog layoutChangeLog;
+
+    //Absolute frame from stored columns, null if zone was not placed yet
+    public static Frame frameOf(ZoneEntity zone) {
+        if (zone.getAbsMinX() == null) {
+            return null;
+        }
+        return Frame.of(
+                zone.getAbsMinX(),
+                zone.getAbsMinY(),
+                zone.getWidth(),
+                zone.getLength(),
+                zone.getAbsRotationAngle());
+    }
+
+    //Parent must be placed already
+    public void place(ZoneEntity zone) {
+        Frame parent = zone.getParentZone() == null ? Frame.WAREHOUSE : frameOf(zone.getParentZone());
+        if (parent == null) {
+            return;
+        }
+        Frame frame = parent.child(
+                zone.getOriginX(),
+                zone.getOriginY(),
+                zone.getWidth(),
+                zone.getLength(),
+                zone.getRotationAngle() == null ? 0 : zone.getRotationAngle());
+
+        Rect footprint = frame.getFootprint();
+        zone.setAbsMinX(footprint.getMinX());
+        zone.setAbsMinY(footprint.getMinY());
+        zone.setAbsMaxX(footprint.getMaxX());
+        zone.setAbsMaxY(footprint.getMaxY());
+        zone.setAbsRotationAngle(frame.getRotationAngle());
+    }
+
+    public void place(ShelfEntity shelf) {
+        Frame column = shelf.getZone() == null ? null : frameOf(shelf.getZone());
+        if (column == null) {
+            shelf.setAbsMinX(null);
+            shelf.setAbsMinY(null);
+            shelf.setAbsMaxX(null);
+            shelf.setAbsMaxY(null);
+            return;
+        }
+
+        Rect bounds = column.toAbsolute(new Rect(
+                shelf.getOriginX(),
+                shelf.getOriginY(),
+                shelf.getOriginX() + shelf.getWidth(),
+                shelf.getOriginY() + shelf.getLength()));
+        shelf.setAbsMinX(bounds.getMinX());
+        shelf.setAbsMinY(bounds.getMinY());
+        shelf.setAbsMaxX(bounds.getMaxX());
+        shelf.setAbsMaxY(bounds.getMaxY());
+    }
+
+    // Places zone again after its geometry changed and moves everything below it.
+    // oldFrame is frameOf(zone) taken before the change.
+    public void update(ZoneEntity zone, Frame oldFrame) {
+        place(zone);
+        Frame newFrame = frameOf(zone);
+        if (oldFrame == null || newFrame == null || oldFrame.equals(newFrame)) {
+            return;
+        }
+
+        // motion maps any absolute rect of the old subtree to its new place,
+        // translation is found by moving a probe rect with both frames
+        int rotation = Math.floorMod(newFrame.getRotationAngle() - oldFrame.getRotationAngle(), 360);
+        Rect probe = new Rect(0, 0, 1, 1);
+        Rect rotatedOld = Frame.rotate(oldFrame.toAbsolute(probe), rotation);
+        Rect moved = newFrame.toAbsolute(probe);
+        int dx = moved.getMinX() - rotatedOld.getMinX();
+        int dy = moved.getMinY() - rotatedOld.getMinY();
+
+        List<Long> descendants = descendantIds(zone.getId());
+        String bounds = boundsAssignment(rotation);
+        forChunks(descendants, ids -> jdbcTemplate.update(
+                "update zones set " + bounds + ", abs_rotation_angle = mod(abs_rotation_angle + ?, 360)"
+                        + " where id in (" + placeholders(ids.size()) + ")",
+                args(dx, dy, ids, rotation)));
+
+        List<Long> columns = new ArrayList<>(descendants);
+        columns.add(zone.getId());
+        forChunks(columns, ids -> jdbcTemplate.update(
+                "update shelves set " + bounds + " where zone_id in (" + placeholders(ids.size()) + ")",
+                args(dx, dy, ids, null)));
+
+        List<Long> shelves = new ArrayList<>();
+        forChunks(columns, ids -> shelves.addAll(shelfRepository.findIdsByZoneIdIn(ids)));
+        layoutChangeLog.recordUpdates(EntityType.ZONE, descendants);
+        layoutChangeLog.recordUpdates(EntityType.SHELF, shelves);
+
+        // shelf ids of the subtree are not known, moves are rare enough to drop them all
+        entityCacheEvictor.evictZones(descendants);
+        entityCacheEvictor.evictAllShelves();
+    }
+
+    // Fills bounds of rows created before the columns existed.
+    // Runs before other startup listeners, NavigationGraph.reload skips zones without bounds.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void backfill() {
+        if (!zoneRepository.existsByAbsMinXIsNull() && !shelfRepository.existsByAbsMinXIsNullAndZoneIsNotNull()) {
+            return;
+        }
+
+        Map<Long, ZoneEntity> byId = new HashMap<>();
+        for (ZoneEntity zone : zoneRepository.findAll()) {
+            byId.put(zone.getId(), zone);
+        }
+        Set<Long> placed = new HashSet<>();
+        for (ZoneEntity zone : byId.values()) {
+            placeWithAncestors(zone, byId, placed);
+        }
+        for (ShelfEntity shelf : shelfRepository.findAll()) {
+            if (shelf.getZone() != null) {
+                // zone proxy resolves to the entity loaded above
+                place(shelf);
+            }
+        }
+    }
+
+    private void placeWithAncestors(ZoneEntity zone, Map<Long, ZoneEntity> byId, Set<Long> placed) {
+        if (!placed.add(zone.getId())) {
+            return;
+        }
+        if (zone.getParentZone() != null) {
+            placeWithAncestors(byId.get(zone.getParentZone().getId()), byId, placed);
+        }
+        place(zone);
+    }
+
+    private List<Long> descendantIds(Long zoneId) {
+        List<Long> result = new ArrayList<>();
+        List<Long> level = List.of(zoneId);
+        while (!level.isEmpty()) {
+            List<Long> next = new ArrayList<>();
+            forChunks(level, ids -> next.addAll(zoneRepository.findIdsByParentZoneIdIn(ids)));
+            result.addAll(next);
+            level = next;
+        }
+        return result;
+    }
+
+    // Rotated bounds expressions, all right sides read old values
+    private static String boundsAssignment(int rotation) {
+        String[] expressions = switch (rotation) {
+            case 90 -> new String[]{"-abs_max_y", "abs_min_x", "-abs_min_y", "abs_max_x"};
+            case 180 -> new String[]{"-abs_max_x", "-abs_max_y", "-abs_min_x", "-abs_min_y"};
+            case 270 -> new String[]{"abs_min_y", "-abs_max_x", "abs_max_y", "-abs_min_x"};
+            default -> new String[]{"abs_min_x", "abs_min_y", "abs_max_x", "abs_max_y"};
+        };
+        return "abs_min_x = " + expressions[0] + " + ?"
+                + ", abs_min_y = " + expressions[1] + " + ?"
+                + ", abs_max_x = " + expressions[2] + " + ?"
+                + ", abs_max_y = " + expressions[3] + " + ?";
+    }
+
+    private static Object[] args(int dx, int dy, List<Long> ids, Integer rotation) {
+        List<Object> args = new ArrayList<>(ids.size() + 5);
+        Collections.addAll(args, dx, dy, dx, dy);
+        if (rotation != null) {
+            args.add(rotation);
+        }
+        args.addAll(ids);
+        return args.toArray();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static void forChunks(List<Long> ids, Consumer<List<Long>> action) {
+        for (int from = 0; from < ids.size(); from += CHUNK) {
+            action.accept(ids.subList(from, Math.min(from + CHUNK, ids.size())));
+        }
+    }
+}
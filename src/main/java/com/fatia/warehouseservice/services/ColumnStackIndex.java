@@ -0,0 +1,206 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ColumnSlotModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.spatial.ColumnStack;
+import com.fatia.warehouseservice.spatial.Rect;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// Vertical layout of shelves inside columns (ColumnStack). Level of a shelf is the ordinal
+// of its tier, a tier starts where the tiers below it end and is as high as its tallest
+// shelf. Shelves of a level collide when their footprints in the column overlap, all tiers
+// together have to fit warehouse.column-height. A check looks at the shelves of the
+// checked levels only.
+// Columns are loaded on first use and kept up to date from LayoutChangedEvent.
+// Writers check under the lock of the column (LayoutLocks), index is updated after commit.
+@Service
+@RequiredArgsConstructor
+public class ColumnStackIndex {
+
+    private final ShelfRepository shelfRepository;
+
+    private final WarehouseConfig warehouseConfig;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, ColumnStack> columns = new HashMap<>();
+
+    // shelf id -> column id, shelves of loaded columns only
+    private final Map<Long, Long> shelfColumns = new HashMap<>();
+
+    // Footprint is in column coordinates, shelfId is null for a new shelf
+    public void check(Long columnId, Long shelfId, Rect footprint, int level, int height) {
+        LayoutRejectedException rejected = query(columnId, column ->
+                validate(column, "column " + columnId, shelfId, footprint, level, height, warehouseConfig.getColumnHeight()));
+        if (rejected != null) {
+            throw rejected;
+        }
+    }
+
+    // Why the shelf doesn't fit the column, null when it does. Import checks its new columns with it.
+    static LayoutRejectedException validate(
+            ColumnStack column, String columnName, Long shelfId, Rect footprint, int level, int height, int columnHeight) {
+        if (height <= 0 || level < 0) {
+            return new LayoutRejectedException(Reason.OUT_OF_PARENT_BOUNDS,
+                    "Shelf level " + level + " with height " + height + " out of " + columnName);
+        }
+
+        ColumnStack.Shelf other = column.findColliding(shelfId, footprint, level);
+        if (other != null) {
+            return new LayoutRejectedException(Reason.OVERLAP,
+                    "Shelf overlapping with shelf " + other.id() + " on level " + level + " in " + columnName);
+        }
+
+        long stack = column.heightWith(shelfId, level, height);
+        if (stack > columnHeight) {
+            return new LayoutRejectedException(Reason.OUT_OF_PARENT_BOUNDS,
+                    "Shelves of " + columnName + " would be " + stack + " high, column height is " + columnHeight);
+        }
+        return null;
+    }
+
+    //Empty levels taking a new shelf of at least minHeight, shelves of the levels above move up
+    public List<ColumnSlotModel> getFreeSlots(Long columnId, int minHeight) {
+        if (minHeight <= 0) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Height must be positive");
+        }
+        return query(columnId, column -> {
+            long room = warehouseConfig.getColumnHeight() - column.getHeight();
+            List<ColumnSlotModel> slots = new ArrayList<>();
+            if (room < minHeight) {
+                return slots;
+            }
+            for (ColumnStack.Gap gap : column.gaps()) {
+                slots.add(new ColumnSlotModel(
+                        columnId,
+                        gap.level(),
+                        (int) gap.elevation(),
+                        (int) (gap.elevation() + room),
+                        (int) room));
+            }
+            return slots;
+        });
+    }
+
+    //Drops column, next use loads it again. For writes from other instances.
+    public void invalidate(Long columnId) {
+        lock.writeLock().lock();
+        try {
+            drop(columnId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            columns.clear();
+            shelfColumns.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        if (event.getOperation() == Operation.RESERVED || event.getOperation() == Operation.RELEASED
+                || event.getOperation() == Operation.NODE_UPDATED) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (event.getEntityType() == EntityType.ZONE) {
+                if (event.getOperation() == Operation.DELETED) {
+                    drop(event.getEntityId());
+                }
+                return;
+            }
+
+            Long oldColumnId = shelfColumns.remove(event.getEntityId());
+            if (oldColumnId != null) {
+                columns.get(oldColumnId).remove(event.getEntityId());
+            }
+
+            ColumnStack column = event.getParentId() == null ? null : columns.get(event.getParentId());
+            if (column == null || event.getOperation() == Operation.DELETED) {
+                return;
+            }
+            Map<String, Integer> geometry = event.getGeometry();
+            if (geometry == null) {
+                drop(event.getParentId());
+                return;
+            }
+            column.put(new ColumnStack.Shelf(
+                    event.getEntityId(),
+                    Rect.footprint(geometry.get("originX"), geometry.get("originY"),
+                            geometry.get("width"), geometry.get("length"), 0),
+                    geometry.get("level"),
+                    geometry.get("height")));
+            shelfColumns.put(event.getEntityId(), event.getParentId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static ColumnStack.Shelf stacked(long id, ShelfEntity shelf) {
+        return new ColumnStack.Shelf(
+                id,
+                Rect.footprint(shelf.getOriginX(), shelf.getOriginY(), shelf.getWidth(), shelf.getLength(), 0),
+                shelf.getLevel(),
+                shelf.getHeight());
+    }
+
+    private <T> T query(Long columnId, Function<ColumnStack, T> query) {
+        lock.readLock().lock();
+        try {
+            ColumnStack column = columns.get(columnId);
+            if (column != null) {
+                return query.apply(column);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            ColumnStack column = columns.get(columnId);
+            if (column == null) {
+                column = new ColumnStack();
+                for (ShelfEntity shelf : shelfRepository.findByZoneIdIn(List.of(columnId))) {
+                    column.put(stacked(shelf.getId(), shelf));
+                    shelfColumns.put(shelf.getId(), columnId);
+                }
+                columns.put(columnId, column);
+            }
+            return query.apply(column);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void drop(Long columnId) {
+        ColumnStack column = columns.remove(columnId);
+        if (column != null) {
+            column.ids().forEach(shelfColumns::remove);
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.LayoutChangeEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ShelfFlatModel;
+import com.fatia.warehouseservice.models.ZoneFlatModel;
+import com.fatia.warehouseservice.repositories.LayoutChangeRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.responses.LayoutChangesResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Compacted change log behind delta sync (GET /api/v1/layout/changes?since=N).
+// Each zone and shelf has one row holding the version of its latest change, written
+// in the same transaction as the change. Readers get entities with version > N,
+// with their current state, and ids of deleted ones.
+// Tombstones are kept for the retention period. The newest purged one is kept as horizon,
+// a client behind it may have missed deletes and must resync from 0.
+// Changes of a transaction are collected and written right before it commits, with versions
+// taken from the single row of layout_version, locked until the commit. Versions are
+// assigned in commit order on every instance, a reader that sees a version has seen all
+// lower ones too.
+// Transactions changing only shelf occupancy (reservations) don't take the version row, their
+// shelves are staged in layout_occupancy_changes and get versions in batches from sequence(),
+// warehouse.changes.sync-interval-ms after the commit at most. Each instance locks the version row
+// for that once per interval, plus once per geometry commit.
+// catchUp() hands changes committed by all instances to LayoutSyncedEvent listeners (in-memory
+// views of the layout). It runs right after every commit that got versions here, and every
+// warehouse.changes.sync-interval-ms for commits of other instances.
+@Service
+public class LayoutChangeLog {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String LOCK_VERSION = "select version from layout_version where id = 1 for update";
+
+    private static final String CURRENT_VERSION = "select version from layout_version where id = 1";
+
+    private static final String UPDATE_VERSION = "update layout_version set version = ? where id = 1";
+
+    private static final int MAX_STAGED = 10_000;
+
+    // more changes at once are handed over as full resync
+    private static final int MAX_SYNCED = 10_000;
+
+    private static final String STAGE = "insert into layout_occupancy_changes (shelf_id, operation, created_at) values (?, ?, ?)";
+
+    private static final String FIRST_STAGED = "select id from layout_occupancy_changes order by id limit 1";
+
+    private static final String SELECT_STAGED = "select id, shelf_id, operation from layout_occupancy_changes order by id limit ?";
+
+    private final LayoutChangeRepository layoutChangeRepository;
+
+    private final ZoneRepository zoneRepository;
+
+    private final ShelfRepository shelfRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Duration retention;
+
+    private final Object syncLock = new Object();
+
+    // version up to which changes were handed to LayoutSyncedEvent listeners
+    private long synced;
+
+    public LayoutChangeLog(
+            LayoutChangeRepository layoutChangeRepository,
+            ZoneRepository zoneRepository,
+            ShelfRepository shelfRepository,
+            JdbcTemplate jdbcTemplate,
+            EntityManager entityManager,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${warehouse.changes.retention-hours:168}") long retentionHours
+    ) {
+        this.layoutChangeRepository = layoutChangeRepository;
+        this.zoneRepository = zoneRepository;
+        this.shelfRepository = shelfRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    // Starts from the highest version written so far, instances racing here insert the row once.
+    // Table is mapped by LayoutVersionEntity.
+    @PostConstruct
+    void createVersionRow() {
+        try {
+            jdbcTemplate.update("insert into layout_version (id, version)"
+                    + " select 1, coalesce(max(version), 0) from layout_changes"
+                    + " where not exists (select 1 from layout_version)");
+        } catch (DuplicateKeyException e) {
+            // written by another instance
+        }
+        // in-memory views load what is committed now on first use
+        synced = currentVersion();
+    }
+
+    @EventListener
+    @Transactional
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        pending().put(event.getEntityType(), event.getEntityId(), event.getOperation().stored());
+    }
+
+    @EventListener
+    @Transactional
+    public void onLayoutImported(LayoutImportedEvent event) {
+        Pending pending = pending();
+        for (LayoutChangedEvent change : event.getChanges()) {
+            pending.put(change.getEntityType(), change.getEntityId(), change.getOperation().stored());
+        }
+    }
+
+    // Entities changed without their own event (moved with an ancestor)
+    public void recordUpdates(EntityType entityType, Collection<Long> entityIds) {
+        Pending pending = pending();
+        for (Long entityId : entityIds) {
+            pending.put(entityType, entityId, Operation.UPDATED);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public LayoutChangesResponse getChanges(long since, int size) {
+        if (since < 0) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Version must not be negative");
+        }
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // from 0 every live entity is returned, missed tombstones don't matter
+        Long horizon = layoutChangeRepository.findHorizon();
+        if (since > 0 && horizon != null && since + 1 < horizon) {
+            return LayoutChangesResponse
+                    .builder()
+                    .fullResync(true)
+                    .zones(List.of())
+                    .shelves(List.of())
+                    .deletedZoneIds(List.of())
+                    .deletedShelfIds(List.of())
+                    .build();
+        }
+
+        List<LayoutChangeEntity> rows = layoutChangeRepository
+                .findByVersionGreaterThanOrderByVersionAsc(since, Limit.of(size + 1));
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+
+        List<Long> zoneIds = new ArrayList<>();
+        List<Long> shelfIds = new ArrayList<>();
+        List<Long> deletedZoneIds = new ArrayList<>();
+        List<Long> deletedShelfIds = new ArrayList<>();
+        for (LayoutChangeEntity row : rows) {
+            boolean deleted = row.getOperation() == Operation.DELETED;
+            if (row.getEntityType() == EntityType.ZONE) {
+                (deleted ? deletedZoneIds : zoneIds).add(row.getEntityId());
+            } else {
+                (deleted ? deletedShelfIds : shelfIds).add(row.getEntityId());
+            }
+        }
+
+        // entity deleted by a transaction not visible yet is missing here, its tombstone comes later
+        return LayoutChangesResponse
+                .builder()
+                .version(rows.isEmpty() ? since : rows.get(rows.size() - 1).getVersion())
+                .hasMore(hasMore)
+                .zones(zoneRepository.findAllById(zoneIds)
+                        .stream()
+                        .map(ZoneFlatModel::toModel)
+                        .sorted(Comparator.comparing(ZoneFlatModel::getId))
+                        .toList())
+                .shelves(shelfRepository.findAllById(shelfIds)
+                        .stream()
+                        .map(ShelfFlatModel::toModel)
+                        .sorted(Comparator.comparing(ShelfFlatModel::getId))
+                        .toList())
+                .deletedZoneIds(deletedZoneIds)
+                .deletedShelfIds(deletedShelfIds)
+                .build();
+    }
+
+    // Versions for staged occupancy changes, latest operation per shelf.
+    // Staged rows are read under the version row, a batch is sequenced by one instance only.
+    // Shelves without a live row (deleted meanwhile) keep their tombstone.
+    @Scheduled(
+            fixedDelayString = "${warehouse.changes.sync-interval-ms:200}",
+            initialDelayString = "${warehouse.changes.sync-interval-ms:200}")
+    @Transactional
+    public int sequence() {
+        if (jdbcTemplate.queryForList(FIRST_STAGED, Long.class).isEmpty()) {
+            return 0;
+        }
+        long version = lockVersion();
+        List<Object[]> staged = jdbcTemplate.query(SELECT_STAGED, (rs, i) -> new Object[]{
+                rs.getLong(1), rs.getLong(2), Operation.valueOf(rs.getString(3))}, MAX_STAGED);
+        if (staged.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Operation> latest = new LinkedHashMap<>();
+        List<Object[]> stagedIds = new ArrayList<>(staged.size());
+        for (Object[] row : staged) {
+            latest.put((Long) row[1], (Operation) row[2]);
+            stagedIds.add(new Object[]{row[0]});
+        }
+        Set<Long> live = new HashSet<>();
+        for (LayoutChangeEntity row : layoutChangeRepository.findByEntityTypeAndEntityIdIn(EntityType.SHELF, latest.keySet())) {
+            if (row.getOperation() != Operation.DELETED) {
+                live.add(row.getEntityId());
+            }
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> replaced = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, Operation> change : latest.entrySet()) {
+            if (live.contains(change.getKey())) {
+                replaced.add(new Object[]{EntityType.SHELF.name(), change.getKey()});
+                rows.add(new Object[]{++version, EntityType.SHELF.name(), change.getKey(), change.getValue().name(), now});
+            }
+        }
+
+        batch("delete from layout_changes where entity_type = ? and entity_id = ?", replaced);
+        batch("insert into layout_changes (version, entity_type, entity_id, operation, created_at, horizon)"
+                + " values (?, ?, ?, ?, ?, false)", rows);
+        jdbcTemplate.update(UPDATE_VERSION, version);
+        batch("delete from layout_occupancy_changes where id = ?", stagedIds);
+        pending().versioned = true;
+        return rows.size();
+    }
+
+    @Scheduled(
+            fixedDelayString = "${warehouse.changes.sync-interval-ms:200}",
+            initialDelayString = "${warehouse.changes.sync-interval-ms:200}")
+    public void sync() {
+        catchUp();
+    }
+
+    // Publishes changes committed since the last call as one LayoutSyncedEvent, one caller at a time.
+    // Versions are assigned in commit order, so nothing below the current version can show up later.
+    public void catchUp() {
+        synchronized (syncLock) {
+            long version = currentVersion();
+            if (version <= synced) {
+                return;
+            }
+            eventPublisher.publishEvent(changesBetween(synced, version));
+            synced = version;
+        }
+    }
+
+    private LayoutSyncedEvent changesBetween(long since, long version) {
+        Long horizon = layoutChangeRepository.findHorizon();
+        List<LayoutChangeEntity> rows = horizon != null && since + 1 < horizon
+                ? null
+                : layoutChangeRepository.findByVersionBetweenOrderByVersionAsc(since + 1, version, Limit.of(MAX_SYNCED + 1));
+        if (rows == null || rows.size() > MAX_SYNCED) {
+            return new LayoutSyncedEvent(since, version, true, Set.of(), Set.of(), Set.of(), Set.of());
+        }
+
+        Set<Long> zoneIds = new HashSet<>();
+        Set<Long> deletedZoneIds = new HashSet<>();
+        Set<Long> shelfIds = new HashSet<>();
+        Set<Long> deletedShelfIds = new HashSet<>();
+        for (LayoutChangeEntity row : rows) {
+            boolean deleted = row.getOperation() == Operation.DELETED;
+            if (row.getEntityType() == EntityType.ZONE) {
+                (deleted ? deletedZoneIds : zoneIds).add(row.getEntityId());
+            } else {
+                (deleted ? deletedShelfIds : shelfIds).add(row.getEntityId());
+            }
+        }
+        return new LayoutSyncedEvent(since, version, false, zoneIds, deletedZoneIds, shelfIds, deletedShelfIds);
+    }
+
+    @Scheduled(
+            fixedDelayString = "${warehouse.changes.purge-interval-ms:3600000}",
+            initialDelayString = "${warehouse.changes.purge-interval-ms:3600000}")
+    public int purge() {
+        return purgeBefore(Instant.now().minus(retention));
+    }
+
+    // Newest expired tombstone becomes the horizon, older ones (previous horizon too) are deleted
+    @Transactional
+    public int purgeBefore(Instant cutoff) {
+        Long newest = layoutChangeRepository.findNewestTombstoneBefore(cutoff);
+        if (newest == null) {
+            return 0;
+        }
+        layoutChangeRepository.markHorizon(newest);
+        return layoutChangeRepository.deleteTombstonesBefore(newest);
+    }
+
+    // Entities created before the log existed (or while it was not written) get a row
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        Timestamp now = Timestamp.from(Instant.now());
+        long version = lockVersion();
+        version += backfill(EntityType.ZONE, "zones", version, now);
+        version += backfill(EntityType.SHELF, "shelves", version, now);
+        jdbcTemplate.update(UPDATE_VERSION, version);
+    }
+
+    private int backfill(EntityType type, String table, long version, Timestamp now) {
+        return jdbcTemplate.update(
+                "insert into layout_changes (version, entity_type, entity_id, operation, created_at, horizon)"
+                        + " select ? + row_number() over (order by e.id), ?, e.id, ?, ?, false from " + table + " e"
+                        + " where not exists (select 1 from layout_changes c"
+                        + " where c.entity_type = ? and c.entity_id = e.id)",
+                version, type.name(), Operation.CREATED.name(), now, type.name());
+    }
+
+    private long currentVersion() {
+        Long version = jdbcTemplate.queryForObject(CURRENT_VERSION, Long.class);
+        return version == null ? 0 : version;
+    }
+
+    private long lockVersion() {
+        Long version = jdbcTemplate.queryForObject(LOCK_VERSION, Long.class);
+        return version == null ? 0 : version;
+    }
+
+    // Changes of the current transaction, registered with it on first use
+    private Pending pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Layout changes must be recorded inside a transaction");
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    // Replaces rows of the changed entities, versions continue from layout_version.
+    // Entity changes are flushed first, their row locks are never awaited while holding the version row.
+    private void write(Map<ChangeKey, Operation> changes) {
+        entityManager.flush();
+        long version = lockVersion();
+        Timestamp now = Timestamp.from(Instant.now());
+
+        List<Object[]> replaced = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        for (Map.Entry<ChangeKey, Operation> change : changes.entrySet()) {
+            ChangeKey key = change.getKey();
+            if (change.getValue() != Operation.CREATED) {
+                replaced.add(new Object[]{key.entityType().name(), key.entityId()});
+            }
+            rows.add(new Object[]{++version, key.entityType().name(), key.entityId(), change.getValue().name(), now});
+        }
+
+        batch("delete from layout_changes where entity_type = ? and entity_id = ?", replaced);
+        batch("insert into layout_changes (version, entity_type, entity_id, operation, created_at, horizon)"
+                + " values (?, ?, ?, ?, ?, false)", rows);
+        jdbcTemplate.update(UPDATE_VERSION, version);
+    }
+
+    // Occupancy of these shelves changed, versions come later from sequence()
+    private void stage(Map<Long, Operation> occupancy) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(occupancy.size());
+        occupancy.forEach((shelfId, operation) -> rows.add(new Object[]{shelfId, operation.name(), now}));
+        batch(STAGE, rows);
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    private record ChangeKey(EntityType entityType, Long entityId) {
+    }
+
+    // Latest operation per entity, written after every other beforeCommit callback
+    private class Pending implements TransactionSynchronization {
+        private final Map<ChangeKey, Operation> changes = new LinkedHashMap<>();
+
+        private final Map<Long, Operation> occupancy = new LinkedHashMap<>();
+
+        private boolean versioned;
+
+        void put(EntityType entityType, Long entityId, Operation operation) {
+            if (operation == Operation.RESERVED || operation == Operation.RELEASED) {
+                occupancy.put(entityId, operation);
+                return;
+            }
+            ChangeKey key = new ChangeKey(entityType, entityId);
+            // row of an entity created in this transaction doesn't exist yet
+            changes.merge(key, operation, (old, current) -> old == Operation.CREATED && current != Operation.DELETED
+                    ? Operation.CREATED
+                    : current);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (changes.isEmpty()) {
+                if (!occupancy.isEmpty()) {
+                    stage(occupancy);
+                }
+                return;
+            }
+            // version row is taken anyway, occupancy goes with the rest
+            occupancy.forEach((shelfId, operation) -> changes.putIfAbsent(new ChangeKey(EntityType.SHELF, shelfId), operation));
+            write(changes);
+            versioned = true;
+        }
+
+        // Listeners read through the connection of this transaction. Entities it loaded may be
+        // older than rows updated with plain JDBC, they are not used for reads after the commit.
+        @Override
+        public void afterCommit() {
+            if (versioned) {
+                entityManager.clear();
+                catchUp();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LayoutChangeLog.this);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.concurrency.LayoutLocks;
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.ids.ShortIdGenerator;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.responses.ImportLayoutResponse;
+import com.fatia.warehouseservice.responses.ImportLayoutResponse.ImportError;
+import com.fatia.warehouseservice.spatial.ColumnStack;
+import com.fatia.warehouseservice.spatial.Rect;
+import com.fatia.warehouseservice.spatial.SpatialGrid;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Imports whole layout document (zones with nested child zones and shelves).
+// Everything is validated in memory first, invalid items are reported and skipped
+// together with their subtree, the rest is inserted in JDBC batches in one transaction.
+@Service
+@RequiredArgsConstructor
+public class LayoutImportService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final ZoneRepository zoneRepository;
+
+    private final WarehouseService warehouseService;
+
+    private final WarehouseConfig warehouseConfig;
+
+    private final ZoneSpatialIndex zoneSpatialIndex;
+
+    private final ShortIdGenerator shortIdGenerator;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AbsoluteBoundsService absoluteBoundsService;
+
+    private final LayoutLocks layoutLocks;
+
+    // Validation and insert run in one transaction under the lock of the parent (LayoutLocks)
+    public ImportLayoutResponse importLayout(ImportLayoutRequest request) {
+        return layoutLocks.write(status -> importLocked(request), request.getParentZoneId());
+    }
+
+    private ImportLayoutResponse importLocked(ImportLayoutRequest request) {
+        for (Long parentKey : layoutLocks.lockParents(request.getParentZoneId())) {
+            zoneSpatialIndex.invalidate(parentKey);
+        }
+
+        ZoneEntity parent = null;
+        if (request.getParentZoneId() != null) {
+            Optional<ZoneEntity> optionalParent = zoneRepository.findById(request.getParentZoneId());
+            if (optionalParent.isEmpty()) {
+                throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + request.getParentZoneId() + " not found");
+            }
+            parent = optionalParent.get();
+        }
+
+        Batch batch = new Batch();
+        validateLevel(request.getZones(), parent, "zones", batch);
+
+        assignUuids(batch.zones);
+        assignNames(batch);
+        place(batch);
+
+        if (!batch.zones.isEmpty() || !batch.shelves.isEmpty()) {
+            persist(batch, request.getParentZoneId());
+        }
+
+        return ImportLayoutResponse
+                .builder()
+                .status(batch.errors.isEmpty() ? HttpStatus.OK.toString() : "OK_WITH_WARNINGS")
+                .zonesCreated(batch.zones.size())
+                .shelvesCreated(batch.shelves.size())
+                .errors(batch.errors)
+                .build();
+    }
+
+    private void validateLevel(List<ImportZoneRequest> items, ZoneEntity parent, String path, Batch batch) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+
+        // zones of this level which passed validation
+        SpatialGrid placed = new SpatialGrid(parent == null
+                ? SpatialGrid.cellSizeFor(warehouseConfig.getWidth(), warehouseConfig.getHeight())
+                : SpatialGrid.cellSizeFor(parent.getWidth(), parent.getLength()));
+
+        for (int i = 0; i < items.size(); i++) {
+            ImportZoneRequest item = items.get(i);
+            String itemPath = path + "[" + i + "]";
+
+            String error = validateZone(item, parent, placed);
+            if (error != null) {
+                batch.errors.add(new ImportError(itemPath, error));
+                continue;
+            }
+
+            ZoneEntity zone = ZoneEntity
+                    .builder()
+                    .type(ZoneType.valueOf(item.getType().toUpperCase()))
+                    .originX(item.getOriginX())
+                    .originY(item.getOriginY())
+                    .width(item.getWidth())
+                    .length(item.getLength())
+                    .description(item.getDescription())
+                    .rotationAngle(item.getRotationAngle())
+                    .faceDirection(FaceDirection.valueOf(item.getFaceDirection()))
+                    .parentZone(parent)
+                    .build();
+
+            placed.put((long) -batch.zones.size() - 1, ZoneSpatialIndex.footprint(zone));
+            batch.zones.add(zone);
+
+            validateShelves(item.getShelves(), zone, itemPath + ".shelves", batch);
+            validateLevel(item.getChildZones(), zone, itemPath + ".childZones", batch);
+        }
+    }
+
+    private String validateZone(ImportZoneRequest item, ZoneEntity parent, SpatialGrid placed) {
+        if (!ZoneType.isValidZoneType(item.getType())) {
+            return "Invalid type " + item.getType();
+        }
+        ZoneType type = ZoneType.valueOf(item.getType().toUpperCase());
+
+        try {
+            FaceDirection.valueOf(item.getFaceDirection());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return "Invalid face direction " + item.getFaceDirection();
+        }
+
+        Rect footprint = Rect.footprint(
+                item.getOriginX(),
+                item.getOriginY(),
+                item.getWidth(),
+                item.getLength(),
+                item.getRotationAngle());
+
+        if (parent == null) {
+            if (!ZoneType.getWarehouseChildrenZones().contains(type)) {
+                return "Zone with type " + item.getType() + " is not allowed on warehouse level";
+            }
+
+            if (!warehouseService.isWithinBounds(
+                    item.getOriginX(),
+                    item.getOriginY(),
+                    item.getWidth(),
+                    item.getLength())
+            ) {
+                return "Zone with invalid origin";
+            }
+        } else {
+            if (!parent.getType().getAllowedChildren().contains(type)) {
+                return "Child zone with type " + item.getType()
+                        + " is not allowed to be child of " + parent.getType();
+            }
+
+            ZoneEntity child = ZoneEntity
+                    .builder()
+                    .originX(item.getOriginX())
+                    .originY(item.getOriginY())
+                    .width(item.getWidth())
+                    .length(item.getLength())
+                    .rotationAngle(item.getRotationAngle())
+                    .build();
+            if (!ZoneService.isChildWithinParentBounds(child, parent)) {
+                return "Child zone out of parent zone bounds";
+            }
+        }
+
+        // existing siblings, zones created in this import have none
+        boolean parentExists = parent == null || parent.getId() != null;
+        if ((parentExists && zoneSpatialIndex.isOverlapping(
+                parent == null ? ZoneSpatialIndex.ROOT : parent.getId(),
+                null,
+                footprint))
+                || placed.anyIntersecting(footprint, null)) {
+            return "Zone overlapping with sibling zones";
+        }
+
+        return null;
+    }
+
+    // Columns are new, shelves are stacked against the ones of the same column in the document
+    private void validateShelves(List<AddShelfRequest> items, ZoneEntity column, String path, Batch batch) {
+        if (items == null) {
+            return;
+        }
+
+        ColumnStack stack = new ColumnStack();
+        for (int i = 0; i < items.size(); i++) {
+            AddShelfRequest item = items.get(i);
+            String itemPath = path + "[" + i + "]";
+
+            if (column.getType() != ZoneType.COLUMN) {
+                batch.errors.add(new ImportError(itemPath, "Shelf can be placed only in COLUMN"));
+                continue;
+            }
+
+            if (!ShelfService.isShelfWithinColumnBounds(
+                    item.getOriginX(), item.getOriginY(),
+                    item.getWidth(), item.getLength(),
+                    column.getWidth(), column.getLength()
+            )) {
+                batch.errors.add(new ImportError(itemPath, "Shelf out of bounds column"));
+                continue;
+            }
+
+            ShelfEntity shelf = ShelfEntity
+                    .builder()
+                    .zone(column)
+                    .level(item.getLevel())
+                    .originX(item.getOriginX())
+                    .originY(item.getOriginY())
+                    .width(item.getWidth())
+                    .length(item.getLength())
+                    .height(item.getHeight())
+                    .description(item.getDescription())
+                    .conditions(item.getConditions())
+                    .isActive(true)
+                    .build();
+
+            // shelves are named by their index in the document, the column by the path of its shelves
+            ColumnStack.Shelf stacked = ColumnStackIndex.stacked(i, shelf);
+            LayoutRejectedException rejected = ColumnStackIndex.validate(
+                    stack, path, stacked.id(), stacked.footprint(), stacked.level(), stacked.height(),
+                    warehouseConfig.getColumnHeight());
+            if (rejected != null) {
+                batch.errors.add(new ImportError(itemPath, rejected.getMessage()));
+                continue;
+            }
+
+            stack.put(stacked);
+            batch.shelves.add(shelf);
+        }
+    }
+
+    private void assignUuids(List<ZoneEntity> zones) {
+        List<String> uuids = shortIdGenerator.next(zones.size());
+        for (int i = 0; i < zones.size(); i++) {
+            zones.get(i).setUuid(uuids.get(i));
+        }
+    }
+
+    // Same naming as ZoneService and ShelfService.setColumn, parents always go before children
+    private void assignNames(Batch batch) {
+        for (ZoneEntity zone : batch.zones) {
+            if (zone.getParentZone() == null) {
+                zone.setName(zone.getType() + "-" + zone.getUuid());
+            } else {
+                zone.setName(zone.getType()
+                        + "-"
+                        + zone.getParentZone().getUuid()
+                        + "-" + zone.getUuid());
+            }
+        }
+        for (ShelfEntity shelf : batch.shelves) {
+            ZoneEntity column = shelf.getZone();
+            shelf.setName("SHELF-"
+                    + column.getParentZone().getUuid()
+                    + "-"
+                    + column.getUuid()
+                    + "-"
+                    + shelf.getLevel());
+        }
+    }
+
+    // Parents always go before children, so their absolute frames are known
+    private void place(Batch batch) {
+        for (ZoneEntity zone : batch.zones) {
+            absoluteBoundsService.place(zone);
+        }
+        for (ShelfEntity shelf : batch.shelves) {
+            absoluteBoundsService.place(shelf);
+        }
+    }
+
+    // Persistence context is flushed and cleared every batch to keep memory flat
+    private void persist(Batch batch, Long parentZoneId) {
+        int count = 0;
+        for (ZoneEntity zone : batch.zones) {
+            entityManager.persist(zone);
+            if (++count % BATCH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        for (ShelfEntity shelf : batch.shelves) {
+            entityManager.persist(shelf);
+            if (++count % BATCH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        // one event inside the transaction, so outbox rows are committed together with the layout
+        List<LayoutChangedEvent> changes = new ArrayList<>(batch.zones.size() + batch.shelves.size());
+        for (ZoneEntity zone : batch.zones) {
+            changes.add(LayoutChangedEvent.zone(zone, Operation.CREATED));
+        }
+        for (ShelfEntity shelf : batch.shelves) {
+            changes.add(LayoutChangedEvent.shelf(shelf, Operation.CREATED));
+        }
+        eventPublisher.publishEvent(new LayoutImportedEvent(parentZoneId, changes));
+    }
+
+    private static class Batch {
+        private final List<ZoneEntity> zones = new ArrayList<>();
+        private final List<ShelfEntity> shelves = new ArrayList<>();
+        private final List<ImportError> errors = new ArrayList<>();
+    }
+}
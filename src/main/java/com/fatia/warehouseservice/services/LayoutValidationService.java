@@ -0,0 +1,243 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.responses.ValidateLayoutResponse;
+import com.fatia.warehouseservice.responses.ValidateLayoutResponse.Violation;
+import com.fatia.warehouseservice.spatial.OverlapSweep;
+import com.fatia.warehouseservice.spatial.Rect;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Validates whole layout tree at once, either the stored one or a draft in import format.
+// Every parent with its direct children and shelves is an independent group: child types,
+// child bounds, shelf bounds and sibling overlaps (sweep line, O(n log n) per group).
+// Groups are checked in parallel and all violations are reported, nothing is saved.
+@Service
+@RequiredArgsConstructor
+public class LayoutValidationService {
+
+    private final ZoneRepository zoneRepository;
+
+    private final ShelfRepository shelfRepository;
+
+    private final WarehouseService warehouseService;
+
+    @Transactional(readOnly = true)
+    public ValidateLayoutResponse validateStored() {
+        List<ZoneEntity> zones = zoneRepository.findAll();
+        List<ShelfEntity> shelves = shelfRepository.findAll();
+
+        Node root = new Node("warehouse", null);
+        Map<Long, Node> nodes = new HashMap<>();
+        for (ZoneEntity zone : zones) {
+            nodes.put(zone.getId(), new Node("zones[id=" + zone.getId() + "]", zone));
+        }
+        for (ZoneEntity zone : zones) {
+            Node parent = zone.getParentZone() == null ? root : nodes.get(zone.getParentZone().getId());
+            parent.children.add(nodes.get(zone.getId()));
+        }
+        for (ShelfEntity shelf : shelves) {
+            // shelves without column are not part of the layout
+            if (shelf.getZone() != null) {
+                nodes.get(shelf.getZone().getId()).shelves.add(new ShelfItem(
+                        "shelves[id=" + shelf.getId() + "]",
+                        shelf.getOriginX(), shelf.getOriginY(), shelf.getWidth(), shelf.getLength()));
+            }
+        }
+
+        List<Node> groups = new ArrayList<>(nodes.size() + 1);
+        groups.add(root);
+        groups.addAll(nodes.values());
+        return validate(groups, zones.size(), shelves.size());
+    }
+
+    //Draft is validated on its own, zones already stored under the same parent are not merged in
+    @Transactional(readOnly = true)
+    public ValidateLayoutResponse validateDraft(ImportLayoutRequest request) {
+        ZoneEntity parent = null;
+        if (request.getParentZoneId() != null) {
+            Optional<ZoneEntity> optionalParent = zoneRepository.findById(request.getParentZoneId());
+            if (optionalParent.isEmpty()) {
+                throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + request.getParentZoneId() + " not found");
+            }
+            parent = optionalParent.get();
+        }
+
+        Node root = new Node("zones", parent);
+        List<Node> groups = new ArrayList<>();
+        groups.add(root);
+        int[] shelves = new int[1];
+        addDraft(request.getZones(), root, "zones", groups, shelves);
+
+        return validate(groups, groups.size() - 1, shelves[0]);
+    }
+
+    private void addDraft(List<ImportZoneRequest> items, Node parent, String path, List<Node> groups, int[] shelves) {
+        if (items == null) {
+            return;
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            ImportZoneRequest item = items.get(i);
+            String itemPath = path + "[" + i + "]";
+
+            ZoneEntity zone = ZoneEntity
+                    .builder()
+                    .type(ZoneType.isValidZoneType(item.getType()) ? ZoneType.valueOf(item.getType().toUpperCase()) : null)
+                    .originX(item.getOriginX())
+                    .originY(item.getOriginY())
+                    .width(item.getWidth())
+                    .length(item.getLength())
+                    .rotationAngle(item.getRotationAngle())
+                    .faceDirection(faceDirection(item.getFaceDirection()))
+                    .build();
+
+            Node node = new Node(itemPath, zone);
+            parent.children.add(node);
+            groups.add(node);
+
+            List<AddShelfRequest> shelfItems = item.getShelves() == null ? List.of() : item.getShelves();
+            for (int j = 0; j < shelfItems.size(); j++) {
+                AddShelfRequest shelf = shelfItems.get(j);
+                node.shelves.add(new ShelfItem(
+                        itemPath + ".shelves[" + j + "]",
+                        shelf.getOriginX(), shelf.getOriginY(), shelf.getWidth(), shelf.getLength()));
+            }
+            shelves[0] += shelfItems.size();
+
+            addDraft(item.getChildZones(), node, itemPath + ".childZones", groups, shelves);
+        }
+    }
+
+    private ValidateLayoutResponse validate(List<Node> groups, int zones, int shelves) {
+        List<Violation> violations = groups
+                .parallelStream()
+                .flatMap(group -> validateGroup(group).stream())
+                .toList();
+
+        return ValidateLayoutResponse
+                .builder()
+                .valid(violations.isEmpty())
+                .zonesChecked(zones)
+                .shelvesChecked(shelves)
+                .violations(violations)
+                .build();
+    }
+
+    // Touches only fields of loaded entities, safe to run on any thread
+    private List<Violation> validateGroup(Node group) {
+        List<Violation> violations = new ArrayList<>();
+        ZoneEntity parent = group.zone;
+        if (parent != null && parent.getType() == null) {
+            // already reported, nothing below can be checked against it
+            return violations;
+        }
+
+        List<Node> children = new ArrayList<>(group.children.size());
+        for (Node child : group.children) {
+            ZoneEntity zone = child.zone;
+
+            if (zone.getType() == null) {
+                violations.add(new Violation(Reason.INVALID_TYPE, child.path, null, "Invalid zone type"));
+                continue;
+            }
+            if (zone.getFaceDirection() == null) {
+                violations.add(new Violation(Reason.INVALID_REQUEST, child.path, null, "Invalid face direction"));
+            }
+
+            List<ZoneType> allowed = parent == null
+                    ? ZoneType.getWarehouseChildrenZones()
+                    : parent.getType().getAllowedChildren();
+            if (!allowed.contains(zone.getType())) {
+                violations.add(new Violation(Reason.CHILD_TYPE_NOT_ALLOWED, child.path, null,
+                        "Zone with type " + zone.getType() + " is not allowed "
+                                + (parent == null ? "on warehouse level" : "to be child of " + parent.getType())));
+            }
+
+            Rect footprint = ZoneSpatialIndex.footprint(zone);
+            if (parent == null) {
+                if (!warehouseService.isWithinBounds(
+                        footprint.getMinX(),
+                        footprint.getMinY(),
+                        footprint.getWidth(),
+                        footprint.getLength())
+                ) {
+                    violations.add(new Violation(Reason.OUT_OF_WAREHOUSE_BOUNDS, child.path, null,
+                            "Zone out of warehouse bounds"));
+                }
+            } else if (!ZoneService.isChildWithinParentBounds(zone, parent)) {
+                violations.add(new Violation(Reason.OUT_OF_PARENT_BOUNDS, child.path, null,
+                        "Child zone out of parent zone bounds"));
+            }
+
+            children.add(child);
+        }
+
+        List<Rect> footprints = new ArrayList<>(children.size());
+        for (Node child : children) {
+            footprints.add(ZoneSpatialIndex.footprint(child.zone));
+        }
+        OverlapSweep.forEachOverlap(footprints, (first, second) -> violations.add(new Violation(
+                Reason.OVERLAP,
+                children.get(first).path,
+                children.get(second).path,
+                "Zone overlapping with sibling zone")));
+
+        for (ShelfItem shelf : group.shelves) {
+            if (parent.getType() != ZoneType.COLUMN) {
+                violations.add(new Violation(Reason.NOT_A_COLUMN, shelf.path(), null,
+                        "Shelf can be placed only in COLUMN"));
+            } else if (!ShelfService.isShelfWithinColumnBounds(
+                    shelf.originX(), shelf.originY(),
+                    shelf.width(), shelf.length(),
+                    parent.getWidth(), parent.getLength()
+            )) {
+                violations.add(new Violation(Reason.OUT_OF_PARENT_BOUNDS, shelf.path(), null,
+                        "Shelf out of bounds column"));
+            }
+        }
+
+        return violations;
+    }
+
+    private static FaceDirection faceDirection(String value) {
+        try {
+            return FaceDirection.valueOf(value);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    //Zone with its direct children and shelves, zone is null for the warehouse itself
+    private static class Node {
+        private final String path;
+        private final ZoneEntity zone;
+        private final List<Node> children = new ArrayList<>();
+        private final List<ShelfItem> shelves = new ArrayList<>();
+
+        Node(String path, ZoneEntity zone) {
+            this.path = path;
+            this.zone = zone;
+        }
+    }
+
+    private record ShelfItem(String path, int originX, int originY, int width, int length) {
+    }
+}
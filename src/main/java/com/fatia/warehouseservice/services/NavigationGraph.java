@@ -0,0 +1,537 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.cache.EntityCacheEvictor;
+import com.fatia.warehouseservice.concurrency.LeaderElection;
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.graph.FloorGraph;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.spatial.Frame;
+import com.fatia.warehouseservice.spatial.Rect;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+// Walkable floor graph (FloorGraph) kept in sync with the layout.
+// COLUMN zones are the obstacles, everything else is floor. Entry of a zone is the middle of
+// the side it faces (faceDirection turned with the zone), half a cell outside, and its node is
+// the nearest free cell to that point. ZoneEntity.nodeId gets the entry node and shelves get
+// the node of their column (ShelfEntity.connectedNodeId).
+// Committed layout changes are collected and applied together every warehouse.graph.sync-interval-ms:
+// only tiles under old and new footprints of changed obstacles are built again, and only entries
+// near them are snapped again. Changed node ids are saved with NODE_UPDATED layout events.
+// Every instance keeps its own graph and follows changes of all instances (LayoutSyncedEvent),
+// node ids are computed the same everywhere but only saved by the elected leader (LeaderElection).
+// An instance that takes over builds the graph again and saves whatever the previous leader missed.
+@Service
+@RequiredArgsConstructor
+public class NavigationGraph {
+
+    private static final String UPDATE_ZONE_NODE = "update zones set node_id = ? where id = ?";
+
+    private static final String UPDATE_SHELF_NODE = "update shelves set connected_node_id = ? where id = ?";
+
+    // entry point may be at most this many cells from its node
+    private static final int MAX_SNAP_RINGS = 2;
+
+    private final ZoneRepository zoneRepository;
+
+    private final ShelfRepository shelfRepository;
+
+    private final WarehouseConfig warehouseConfig;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityCacheEvictor entityCacheEvictor;
+
+    private final LayoutChangeLog layoutChangeLog;
+
+    private final LeaderElection leaderElection;
+
+    @Value("${warehouse.graph.cell-size:50}")
+    private int cellSize;
+
+    @Value("${warehouse.graph.enabled:true}")
+    private boolean enabled;
+
+    // one sync or reload at a time
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private final Object pendingLock = new Object();
+
+    private Pending pending = new Pending();
+
+    private final Map<Long, Placed> zones = new HashMap<>();
+
+    // (cellX / TILE, cellY / TILE) -> obstacles touching these cells
+    private final Map<Long, Set<Long>> obstacles = new HashMap<>();
+
+    // graph tile -> zones whose entry can snap to a node in it
+    private final Map<Integer, Set<Long>> entries = new HashMap<>();
+
+    private volatile FloorGraph graph;
+
+    // node ids are saved only while leading, guarded by syncLock
+    private boolean leading;
+
+    //Current graph, null until the first build
+    public FloorGraph getGraph() {
+        return graph;
+    }
+
+    //Node of the zone entry, -1 when the entry is blocked or zone unknown
+    public synchronized int entryNode(Long zoneId) {
+        Placed zone = zones.get(zoneId);
+        return zone == null || zone.nodeId == null ? -1 : graph.node(zone.nodeId);
+    }
+
+    //Current graph with entry nodes of all zones that have one, null until the first build
+    public synchronized Entries getEntries() {
+        if (graph == null) {
+            return null;
+        }
+        Map<Long, Integer> nodes = new HashMap<>();
+        for (Placed zone : zones.values()) {
+            int node = zone.nodeId == null ? -1 : graph.node(zone.nodeId);
+            if (node >= 0) {
+                nodes.put(zone.id, node);
+            }
+        }
+        return new Entries(graph, nodes);
+    }
+
+    // Builds the whole graph from stored layout and saves node ids that differ, on the leader only.
+    // Changes are saved without layout events, this runs on startup, on a full resync or when
+    // taking over leadership (or when asked to).
+    // They still get change log rows, so snapshots and delta sync of every instance see them.
+    // On startup runs right after AbsoluteBoundsService.backfill.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            synchronized (pendingLock) {
+                pending = new Pending();
+            }
+            Changes changes = new Changes();
+            List<ZoneEntity> stored = zoneRepository.findAll();
+            synchronized (this) {
+                zones.clear();
+                obstacles.clear();
+                entries.clear();
+                for (ZoneEntity zone : stored) {
+                    Placed placed = Placed.of(zone, cellSize);
+                    if (placed != null) {
+                        zones.put(zone.getId(), placed);
+                        addObstacle(placed, null);
+                    }
+                }
+                graph = FloorGraph.build(cellSize, warehouseConfig.getOriginX(), warehouseConfig.getOriginY(),
+                        warehouseConfig.getWidth(), warehouseConfig.getHeight(), this::isBlocked);
+
+                for (Placed placed : zones.values()) {
+                    snap(placed, changes);
+                }
+            }
+
+            leading = leaderElection.isLeader();
+            if (leading) {
+                transactionTemplate.executeWithoutResult(status -> save(changes, false));
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        // node id changes come from here
+        if (!enabled || event.getOperation() == Operation.RESERVED || event.getOperation() == Operation.RELEASED
+                || event.getOperation() == Operation.NODE_UPDATED) {
+            return;
+        }
+        synchronized (pendingLock) {
+            pending.add(event);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutImported(LayoutImportedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (pendingLock) {
+            event.getChanges().forEach(pending::add);
+        }
+    }
+
+    // Changes of all instances, own ones were already collected above and are applied only once
+    @EventListener
+    public void onLayoutSynced(LayoutSyncedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (pendingLock) {
+            pending.add(event);
+        }
+    }
+
+    // Applies changes committed since the last run at once
+    @Scheduled(
+            fixedDelayString = "${warehouse.graph.sync-interval-ms:500}",
+            initialDelayString = "${warehouse.graph.sync-interval-ms:500}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        boolean resync;
+        synchronized (pendingLock) {
+            resync = pending.resync;
+        }
+        if (graph == null || resync || !leading && leaderElection.isLeader()) {
+            reload();
+            return;
+        }
+
+        syncLock.lock();
+        try {
+            Pending batch;
+            synchronized (pendingLock) {
+                batch = pending;
+                pending = new Pending();
+            }
+            leading = leaderElection.isLeader();
+            if (!batch.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> apply(batch));
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void apply(Pending batch) {
+        // moves change absolute bounds of the whole subtree
+        Set<Long> reload = new HashSet<>(batch.zoneIds);
+        List<Long> level = new ArrayList<>(batch.zoneIds);
+        while (!level.isEmpty()) {
+            List<Long> children = new ArrayList<>(zoneRepository.findIdsByParentZoneIdIn(level));
+            children.removeIf(id -> !reload.add(id));
+            level = children;
+        }
+        List<ZoneEntity> loaded = zoneRepository.findAllById(reload);
+
+        Changes changes = new Changes();
+        synchronized (this) {
+            Set<Integer> dirty = new TreeSet<>();
+            for (Long id : batch.deletedZoneIds) {
+                Placed old = zones.remove(id);
+                if (old != null) {
+                    removeObstacle(old, dirty);
+                    removeEntry(old);
+                }
+            }
+            for (ZoneEntity zone : loaded) {
+                Placed placed = Placed.of(zone, cellSize);
+                Placed old = placed == null ? zones.remove(zone.getId()) : zones.put(zone.getId(), placed);
+                if (old != null && placed != null && old.footprint.equals(placed.footprint)
+                        && old.entryX == placed.entryX && old.entryY == placed.entryY) {
+                    placed.tiles = old.tiles;
+                    continue;
+                }
+                if (old != null) {
+                    removeObstacle(old, dirty);
+                    removeEntry(old);
+                }
+                if (placed != null) {
+                    addObstacle(placed, dirty);
+                }
+            }
+
+            if (!dirty.isEmpty()) {
+                graph = graph.rebuild(dirty, this::isBlocked);
+            }
+
+            // stored node id is compared even when geometry didn't change
+            Set<Long> snapped = new HashSet<>(reload);
+            for (Integer tile : dirty) {
+                snapped.addAll(entries.getOrDefault(tile, Set.of()));
+            }
+            for (Long id : snapped) {
+                Placed placed = zones.get(id);
+                if (placed != null) {
+                    snap(placed, changes);
+                }
+            }
+            changes.shelves.addAll(batch.shelfIds);
+        }
+
+        if (leading) {
+            save(changes, true);
+        }
+    }
+
+    //Snaps entry of the zone to the current graph, node id change goes to changes
+    private void snap(Placed placed, Changes changes) {
+        if (placed.tiles == null) {
+            placed.tiles = new ArrayList<>();
+            int reach = MAX_SNAP_RINGS * cellSize;
+            graph.forEachTile(placed.entryX - reach, placed.entryY - reach,
+                    placed.entryX + reach + 1, placed.entryY + reach + 1, placed.tiles::add);
+            for (Integer tile : placed.tiles) {
+                entries.computeIfAbsent(tile, key -> new HashSet<>()).add(placed.id);
+            }
+        }
+
+        int node = graph.nearestFree(graph.cellXAt(placed.entryX), graph.cellYAt(placed.entryY), MAX_SNAP_RINGS);
+        String nodeId = node < 0 ? null : graph.nodeId(node);
+        if (!Objects.equals(nodeId, placed.nodeId)) {
+            placed.nodeId = nodeId;
+            changes.zones.put(placed.id, nodeId);
+            if (placed.column) {
+                changes.columns.add(placed.id);
+            }
+        }
+    }
+
+    // Node ids are written with plain updates, entities may be changed by users at the same time.
+    // Their own events bring them here again if a user update wrote an old node id back.
+    private void save(Changes changes, boolean publish) {
+        if (!changes.zones.isEmpty()) {
+            List<Map.Entry<Long, String>> rows = List.copyOf(changes.zones.entrySet());
+            jdbcTemplate.batchUpdate(UPDATE_ZONE_NODE, rows, rows.size(), (ps, row) -> {
+                ps.setString(1, row.getValue());
+                ps.setLong(2, row.getKey());
+            });
+            entityCacheEvictor.evictZones(changes.zones.keySet());
+            if (publish) {
+                zoneRepository.findAllById(changes.zones.keySet()).forEach(zone ->
+                        eventPublisher.publishEvent(LayoutChangedEvent.zone(zone, Operation.NODE_UPDATED)));
+            } else {
+                layoutChangeLog.recordUpdates(EntityType.ZONE, changes.zones.keySet());
+            }
+        }
+
+        List<ShelfEntity> shelves = new ArrayList<>(shelfRepository.findAllById(changes.shelves));
+        if (!changes.columns.isEmpty()) {
+            shelves.addAll(shelfRepository.findByZoneIdIn(List.copyOf(changes.columns)));
+        }
+        Map<Long, String> shelfNodes = new HashMap<>();
+        List<ShelfEntity> changed = new ArrayList<>();
+        synchronized (this) {
+            for (ShelfEntity shelf : shelves) {
+                Placed column = shelf.getZone() == null ? null : zones.get(shelf.getZone().getId());
+                String nodeId = column == null ? null : column.nodeId;
+                if (!Objects.equals(nodeId, shelf.getConnectedNodeId()) && shelfNodes.put(shelf.getId(), nodeId) == null) {
+                    changed.add(shelf);
+                }
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SHELF_NODE, changed, changed.size(), (ps, shelf) -> {
+            ps.setString(1, shelfNodes.get(shelf.getId()));
+            ps.setLong(2, shelf.getId());
+        });
+        entityCacheEvictor.evictShelves(shelfNodes.keySet());
+        if (publish) {
+            changed.forEach(shelf -> eventPublisher.publishEvent(LayoutChangedEvent.shelf(shelf, Operation.NODE_UPDATED)));
+        } else {
+            layoutChangeLog.recordUpdates(EntityType.SHELF, shelfNodes.keySet());
+        }
+    }
+
+    private boolean isBlocked(int cellX, int cellY) {
+        Set<Long> candidates = obstacles.get(bucket(Math.floorDiv(cellX, FloorGraph.TILE), Math.floorDiv(cellY, FloorGraph.TILE)));
+        if (candidates == null) {
+            return false;
+        }
+        int x = warehouseConfig.getOriginX() + cellX * cellSize + cellSize / 2;
+        int y = warehouseConfig.getOriginY() + cellY * cellSize + cellSize / 2;
+        for (Long id : candidates) {
+            if (zones.get(id).footprint.contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addObstacle(Placed placed, Set<Integer> dirty) {
+        if (!placed.obstacle) {
+            return;
+        }
+        forEachBucket(placed.footprint, bucket -> obstacles.computeIfAbsent(bucket, key -> new HashSet<>()).add(placed.id));
+        if (dirty != null) {
+            graph.forEachTile(placed.footprint.getMinX(), placed.footprint.getMinY(),
+                    placed.footprint.getMaxX(), placed.footprint.getMaxY(), dirty::add);
+        }
+    }
+
+    private void removeObstacle(Placed placed, Set<Integer> dirty) {
+        if (!placed.obstacle) {
+            return;
+        }
+        forEachBucket(placed.footprint, bucket -> {
+            Set<Long> ids = obstacles.get(bucket);
+            if (ids != null) {
+                ids.remove(placed.id);
+                if (ids.isEmpty()) {
+                    obstacles.remove(bucket);
+                }
+            }
+        });
+        graph.forEachTile(placed.footprint.getMinX(), placed.footprint.getMinY(),
+                placed.footprint.getMaxX(), placed.footprint.getMaxY(), dirty::add);
+    }
+
+    private void removeEntry(Placed placed) {
+        if (placed.tiles == null) {
+            return;
+        }
+        for (Integer tile : placed.tiles) {
+            Set<Long> ids = entries.get(tile);
+            if (ids != null) {
+                ids.remove(placed.id);
+                if (ids.isEmpty()) {
+                    entries.remove(tile);
+                }
+            }
+        }
+    }
+
+    private void forEachBucket(Rect footprint, LongConsumer consumer) {
+        int span = FloorGraph.TILE * cellSize;
+        int fromX = Math.floorDiv(footprint.getMinX() - warehouseConfig.getOriginX(), span);
+        int fromY = Math.floorDiv(footprint.getMinY() - warehouseConfig.getOriginY(), span);
+        int toX = Math.floorDiv(footprint.getMaxX() - 1 - warehouseConfig.getOriginX(), span);
+        int toY = Math.floorDiv(footprint.getMaxY() - 1 - warehouseConfig.getOriginY(), span);
+        for (int bx = fromX; bx <= toX; bx++) {
+            for (int by = fromY; by <= toY; by++) {
+                consumer.accept(bucket(bx, by));
+            }
+        }
+    }
+
+    private static long bucket(int bx, int by) {
+        return ((long) bx << 32) | (by & 0xffffffffL);
+    }
+
+    //Zone as seen by the graph, null until its absolute bounds are known
+    private static class Placed {
+        private final Long id;
+        private final Rect footprint;
+        private final boolean obstacle;
+        private final boolean column;
+        private final int entryX;
+        private final int entryY;
+        private String nodeId;// as stored, then as last computed
+        private List<Integer> tiles;// graph tiles its entry is registered in
+
+        private Placed(Long id, Rect footprint, boolean column, int entryX, int entryY, String nodeId) {
+            this.id = id;
+            this.footprint = footprint;
+            this.obstacle = column;
+            this.column = column;
+            this.entryX = entryX;
+            this.entryY = entryY;
+            this.nodeId = nodeId;
+        }
+
+        static Placed of(ZoneEntity zone, int cellSize) {
+            Frame frame = AbsoluteBoundsService.frameOf(zone);
+            if (frame == null || zone.getFaceDirection() == null) {
+                return null;
+            }
+            Rect footprint = frame.getFootprint();
+            int face = Math.floorMod(zone.getFaceDirection().getAngle() + frame.getRotationAngle(), 360);
+            int half = cellSize / 2;
+            int midX = footprint.getMinX() + footprint.getWidth() / 2;
+            int midY = footprint.getMinY() + footprint.getLength() / 2;
+            int entryX = face == FaceDirection.LEFT.getAngle() ? footprint.getMinX() - half
+                    : face == FaceDirection.RIGHT.getAngle() ? footprint.getMaxX() + half - 1
+                    : midX;
+            int entryY = face == FaceDirection.UP.getAngle() ? footprint.getMinY() - half
+                    : face == FaceDirection.BOTTOM.getAngle() ? footprint.getMaxY() + half - 1
+                    : midY;
+            return new Placed(zone.getId(), footprint, zone.getType() == ZoneType.COLUMN, entryX, entryY, zone.getNodeId());
+        }
+    }
+
+    public record Entries(FloorGraph graph, Map<Long, Integer> nodes) {
+    }
+
+    private static class Changes {
+        private final Map<Long, String> zones = new HashMap<>();
+        private final Set<Long> columns = new HashSet<>();// shelves of these follow their column
+        private final Set<Long> shelves = new HashSet<>();
+    }
+
+    //Entities changed since the last sync
+    private static class Pending {
+        private final Set<Long> zoneIds = new HashSet<>();
+        private final Set<Long> deletedZoneIds = new HashSet<>();
+        private final Set<Long> shelfIds = new HashSet<>();
+        private boolean resync;// too many changes to tell which, graph is built again
+
+        void add(LayoutChangedEvent event) {
+            if (event.getEntityType() == EntityType.SHELF) {
+                if (event.getOperation() != Operation.DELETED) {
+                    shelfIds.add(event.getEntityId());
+                }
+            } else if (event.getOperation() == Operation.DELETED) {
+                zoneIds.remove(event.getEntityId());
+                deletedZoneIds.add(event.getEntityId());
+            } else {
+                zoneIds.add(event.getEntityId());
+            }
+        }
+
+        void add(LayoutSyncedEvent event) {
+            resync |= event.isFullResync();
+            zoneIds.removeAll(event.getDeletedZoneIds());
+            deletedZoneIds.addAll(event.getDeletedZoneIds());
+            zoneIds.addAll(event.getZoneIds());
+            shelfIds.addAll(event.getShelfIds());
+        }
+
+        boolean isEmpty() {
+            return zoneIds.isEmpty() && deletedZoneIds.isEmpty() && shelfIds.isEmpty();
+        }
+    }
+}
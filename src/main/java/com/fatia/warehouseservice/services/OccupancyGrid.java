@@ -0,0 +1,391 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.spatial.Rect;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+
+// Occupancy heatmap of the warehouse floor.
+// Shelves are counted in the cell under their absolute centre (total and occupied layers),
+// zones are painted by type, bigger zones first so nested ones stay visible on top.
+// Grids are built per requested cell size on first use and then updated incrementally
+// from layout events, shelf change touches one cell per grid. Moving a zone moves
+// its whole subtree, so it drops everything and the next request loads again, same for an import.
+// Changes of other instances come with LayoutSyncedEvent, which lists moved subtrees with their
+// shelves. Changed zones and shelves are read again, the version only moves when a cell changed.
+//
+// Payload (all numbers unsigned LEB128 varints except version):
+//   long version (8 bytes, big endian), cellSize, columns, rows,
+//   then layers shelves, occupied, zoneType (ZoneType ordinal + 1, 0 = no zone),
+//   each layer as runCount followed by runCount pairs (length, value), row by row.
+// Cell (0, 0) starts at warehouse origin.
+@Service
+@RequiredArgsConstructor
+public class OccupancyGrid {
+
+    public static final int MAX_CELLS = 1 << 20;
+
+    private static final int MAX_GRIDS = 4;
+
+    private final ShelfRepository shelfRepository;
+
+    private final ZoneRepository zoneRepository;
+
+    private final WarehouseConfig warehouseConfig;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, ShelfPoint> shelves = new HashMap<>();
+
+    private final Map<Long, ZoneArea> zones = new HashMap<>();
+
+    // least recently used grid is dropped first
+    private final Map<Integer, Grid> grids = new LinkedHashMap<>(MAX_GRIDS, 0.75f, true);
+
+    // restarts begin a new epoch, so tags of an old process never match
+    private final long epoch = System.currentTimeMillis();
+
+    private long version;
+
+    private boolean loaded;
+
+    //tag changes whenever the grid changes, usable as ETag
+    public record Payload(String tag, byte[] bytes) {
+    }
+
+    public Payload get(int cellSize) {
+        int columns = columns(cellSize);
+        int rows = rows(cellSize);
+        if (cellSize <= 0 || (long) columns * rows > MAX_CELLS) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST,
+                    "Cell size must be positive and give at most " + MAX_CELLS + " cells");
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+
+            Grid grid = grids.get(cellSize);
+            if (grid == null) {
+                grid = build(cellSize, columns, rows);
+                grids.put(cellSize, grid);
+                if (grids.size() > MAX_GRIDS) {
+                    grids.remove(grids.keySet().iterator().next());
+                }
+            }
+            if (grid.payload == null || grid.payloadVersion != version) {
+                grid.payload = grid.encode(version);
+                grid.payloadVersion = version;
+            }
+            return new Payload(cellSize + "-" + epoch + "-" + version, grid.payload);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        if (event.getOperation() == Operation.NODE_UPDATED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            version++;
+
+            if (event.getEntityType() == EntityType.ZONE) {
+                if (event.getOperation() == Operation.UPDATED) {
+                    loaded = false;
+                    return;
+                }
+                zones.remove(event.getEntityId());
+                if (event.getOperation() != Operation.DELETED) {
+                    zoneRepository.findById(event.getEntityId())
+                            .map(ZoneArea::of)
+                            .ifPresent(zone -> zones.put(event.getEntityId(), zone));
+                }
+                // painting order depends on all zones, layer is painted again
+                for (Grid grid : grids.values()) {
+                    grid.paintZones(zones.values());
+                }
+                return;
+            }
+
+            setShelf(event.getEntityId(), event.getOperation() == Operation.DELETED
+                    ? null
+                    : shelfRepository.findById(event.getEntityId()).map(ShelfPoint::of).orElse(null));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onLayoutSynced(LayoutSyncedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            if (event.isFullResync()) {
+                loaded = false;
+                return;
+            }
+
+            boolean zonesChanged = false;
+            for (Long id : event.getDeletedZoneIds()) {
+                zonesChanged |= zones.remove(id) != null;
+            }
+            if (!event.getZoneIds().isEmpty()) {
+                for (ZoneEntity zone : zoneRepository.findAllById(event.getZoneIds())) {
+                    ZoneArea area = ZoneArea.of(zone);
+                    ZoneArea old = area == null ? zones.remove(zone.getId()) : zones.put(zone.getId(), area);
+                    zonesChanged |= !Objects.equals(old, area);
+                }
+            }
+            if (zonesChanged) {
+                for (Grid grid : grids.values()) {
+                    grid.paintZones(zones.values());
+                }
+            }
+
+            boolean shelvesChanged = false;
+            for (Long id : event.getDeletedShelfIds()) {
+                shelvesChanged |= setShelf(id, null);
+            }
+            if (!event.getShelfIds().isEmpty()) {
+                for (ShelfEntity shelf : shelfRepository.findAllById(event.getShelfIds())) {
+                    shelvesChanged |= setShelf(shelf.getId(), ShelfPoint.of(shelf));
+                }
+            }
+            if (zonesChanged || shelvesChanged) {
+                version++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutImported(LayoutImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // False when the shelf is counted like this already
+    private boolean setShelf(Long id, ShelfPoint current) {
+        ShelfPoint old = current == null ? shelves.remove(id) : shelves.put(id, current);
+        if (Objects.equals(old, current)) {
+            return false;
+        }
+        for (Grid grid : grids.values()) {
+            grid.count(old, -1);
+            grid.count(current, 1);
+        }
+        return true;
+    }
+
+    private void load() {
+        shelves.clear();
+        zones.clear();
+        grids.clear();
+
+        for (ZoneEntity zone : zoneRepository.findAll()) {
+            ZoneArea area = ZoneArea.of(zone);
+            if (area != null) {
+                zones.put(zone.getId(), area);
+            }
+        }
+        for (ShelfEntity shelf : shelfRepository.findAll()) {
+            ShelfPoint point = ShelfPoint.of(shelf);
+            if (point != null) {
+                shelves.put(shelf.getId(), point);
+            }
+        }
+        version++;
+        loaded = true;
+    }
+
+    private Grid build(int cellSize, int columns, int rows) {
+        Grid grid = new Grid(cellSize, columns, rows, warehouseConfig.getOriginX(), warehouseConfig.getOriginY());
+        grid.paintZones(zones.values());
+        for (ShelfPoint shelf : shelves.values()) {
+            grid.count(shelf, 1);
+        }
+        return grid;
+    }
+
+    private int columns(int cellSize) {
+        return cellSize <= 0 ? 0 : ceilDiv(warehouseConfig.getWidth() - warehouseConfig.getOriginX(), cellSize);
+    }
+
+    private int rows(int cellSize) {
+        return cellSize <= 0 ? 0 : ceilDiv(warehouseConfig.getHeight() - warehouseConfig.getOriginY(), cellSize);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return Math.max(1, -Math.floorDiv(-value, divisor));
+    }
+
+    //Absolute centre of an active placed shelf
+    private record ShelfPoint(int x, int y, boolean occupied) {
+        static ShelfPoint of(ShelfEntity shelf) {
+            if (!shelf.isActive() || shelf.getAbsMinX() == null) {
+                return null;
+            }
+            return new ShelfPoint(
+                    Math.floorDiv(shelf.getAbsMinX() + shelf.getAbsMaxX(), 2),
+                    Math.floorDiv(shelf.getAbsMinY() + shelf.getAbsMaxY(), 2),
+                    shelf.isOccupied());
+        }
+    }
+
+    private record ZoneArea(Rect bounds, byte type) {
+        static ZoneArea of(ZoneEntity zone) {
+            if (zone.getAbsMinX() == null) {
+                return null;
+            }
+            return new ZoneArea(
+                    new Rect(zone.getAbsMinX(), zone.getAbsMinY(), zone.getAbsMaxX(), zone.getAbsMaxY()),
+                    (byte) (zone.getType().ordinal() + 1));
+        }
+
+        long area() {
+            return (long) bounds.getWidth() * bounds.getLength();
+        }
+    }
+
+    private static class Grid {
+        private final int cellSize;
+        private final int columns;
+        private final int rows;
+        private final int originX;
+        private final int originY;
+
+        private final int[] shelves;
+        private final int[] occupied;
+        private final byte[] zoneTypes;
+
+        private byte[] payload;
+        private long payloadVersion;
+
+        Grid(int cellSize, int columns, int rows, int originX, int originY) {
+            this.cellSize = cellSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.originX = originX;
+            this.originY = originY;
+            this.shelves = new int[columns * rows];
+            this.occupied = new int[columns * rows];
+            this.zoneTypes = new byte[columns * rows];
+        }
+
+        void count(ShelfPoint shelf, int delta) {
+            if (shelf == null) {
+                return;
+            }
+            int column = Math.floorDiv(shelf.x() - originX, cellSize);
+            int row = Math.floorDiv(shelf.y() - originY, cellSize);
+            if (column < 0 || row < 0 || column >= columns || row >= rows) {
+                return;
+            }
+            int cell = row * columns + column;
+            shelves[cell] += delta;
+            if (shelf.occupied()) {
+                occupied[cell] += delta;
+            }
+        }
+
+        // Cell takes type of the smallest zone covering its centre
+        void paintZones(Iterable<ZoneArea> zones) {
+            List<ZoneArea> ordered = new ArrayList<>();
+            zones.forEach(ordered::add);
+            ordered.sort(Comparator.comparingLong(ZoneArea::area).reversed());
+
+            Arrays.fill(zoneTypes, (byte) 0);
+            int half = cellSize / 2;
+            for (ZoneArea zone : ordered) {
+                Rect bounds = zone.bounds();
+                int fromColumn = Math.max(0, -Math.floorDiv(-(bounds.getMinX() - originX - half), cellSize));
+                int toColumn = Math.min(columns, -Math.floorDiv(-(bounds.getMaxX() - originX - half), cellSize));
+                int fromRow = Math.max(0, -Math.floorDiv(-(bounds.getMinY() - originY - half), cellSize));
+                int toRow = Math.min(rows, -Math.floorDiv(-(bounds.getMaxY() - originY - half), cellSize));
+                for (int row = fromRow; row < toRow; row++) {
+                    int first = row * columns + fromColumn;
+                    Arrays.fill(zoneTypes, first, first + Math.max(0, toColumn - fromColumn), zone.type());
+                }
+            }
+        }
+
+        byte[] encode(long version) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 + columns * rows / 8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (version >>> shift));
+            }
+            writeVarint(out, cellSize);
+            writeVarint(out, columns);
+            writeVarint(out, rows);
+            writeRuns(out, shelves.length, i -> shelves[i]);
+            writeRuns(out, occupied.length, i -> occupied[i]);
+            writeRuns(out, zoneTypes.length, i -> zoneTypes[i]);
+            return out.toByteArray();
+        }
+
+        private static void writeRuns(ByteArrayOutputStream out, int length, IntUnaryOperator values) {
+            List<int[]> runs = new ArrayList<>();
+            int start = 0;
+            for (int i = 1; i <= length; i++) {
+                if (i == length || values.applyAsInt(i) != values.applyAsInt(start)) {
+                    runs.add(new int[]{i - start, values.applyAsInt(start)});
+                    start = i;
+                }
+            }
+            writeVarint(out, runs.size());
+            for (int[] run : runs) {
+                writeVarint(out, run[0]);
+                writeVarint(out, run[1]);
+            }
+        }
+
+        private static void writeVarint(ByteArrayOutputStream out, int value) {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
@@ -1,19 +1,48 @@
 package com.fatia.warehouseservice.services;
 
+import com.fatia.warehouseservice.cache.EntityCacheEvictor;
+import com.fatia.warehouseservice.concurrency.LayoutLocks;
 import com.fatia.warehouseservice.entities.ShelfEntity;
 import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.metrics.LayoutMetrics;
+import com.fatia.warehouseservice.models.ColumnSlotModel;
+import com.fatia.warehouseservice.models.ShelfFlatModel;
 import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ShelfSlotModel;
 import com.fatia.warehouseservice.repositories.ShelfRepository;
 import com.fatia.warehouseservice.repositories.ZoneRepository;
 import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.BestShelvesRequest;
 import com.fatia.warehouseservice.requests.UpdateShelfRequest;
+import com.fatia.warehouseservice.responses.CursorPageResponse;
+import com.fatia.warehouseservice.responses.ReserveShelvesResponse;
 import com.fatia.warehouseservice.responses.UpdateShelfReponse;
+import com.fatia.warehouseservice.spatial.Rect;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +54,34 @@ public class ShelfService {
 
     private final WarehouseService warehouseService;
 
+    private final EntityManager entityManager;
+
+    private final LayoutMetrics layoutMetrics;
+
+    private final ShelfSlottingIndex shelfSlottingIndex;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityCacheEvictor entityCacheEvictor;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AbsoluteBoundsService absoluteBoundsService;
+
+    private final OccupancyGrid occupancyGrid;
+
+    private final ColumnStackIndex columnStackIndex;
+
+    private final LayoutLocks layoutLocks;
+
+    private static final String RESERVE = "update shelves set is_occupied = true, version = version + 1"
+            + " where id = ? and is_occupied = false and is_active = true";
+
+    private static final String RELEASE = "update shelves set is_occupied = false, version = version + 1"
+            + " where id = ? and is_occupied = true";
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
     public static boolean isShelfWithinColumnBounds(
             int shelfOriginX, int shelfOriginY, int shelfWidth, int shelfLength, int columnWidth, int columnLength) {
 
@@ -35,7 +92,7 @@ public class ShelfService {
     }
 
     public List<ShelfModel> getAll() {
-        List<ShelfEntity> shelfEntities = shelfRepository.findAll();
+        List<ShelfEntity> shelfEntities = shelfRepository.findAllWithZone();
         List<ShelfModel> shelfModels = new ArrayList<>();
         for (ShelfEntity shelfEntity : shelfEntities) {
             shelfModels.add(ShelfModel.toModel(shelfEntity));
@@ -45,22 +102,59 @@ public class ShelfService {
     }
 
     public ShelfModel getById(Long id) {
-        Optional<ShelfEntity> shelfEntity = shelfRepository.findById(id);
+        Optional<ShelfEntity> shelfEntity = shelfRepository.findWithZoneById(id);
         if (shelfEntity.isEmpty()) {
-            throw new RuntimeException("Shelf with id " + id + " not found");
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Shelf with id " + id + " not found");
         }
 
         return ShelfModel.toModel(shelfEntity.get());
     }
 
+    public CursorPageResponse<ShelfFlatModel> getPage(Long afterId, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<ShelfEntity> entities = shelfRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId == null ? 0L : afterId,
+                Limit.of(size));
+
+        List<ShelfFlatModel> models = new ArrayList<>(entities.size());
+        for (ShelfEntity entity : entities) {
+            models.add(ShelfFlatModel.toModel(entity));
+        }
+
+        return CursorPageResponse
+                .<ShelfFlatModel>builder()
+                .items(models)
+                .size(models.size())
+                .nextCursor(models.size() < size ? null : models.get(models.size() - 1).getId())
+                .build();
+    }
+
+    //Streams all shelves without holding them in memory
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<ShelfFlatModel> consumer) {
+        try (Stream<ShelfEntity> entities = shelfRepository.streamAll()) {
+            int count = 0;
+            for (ShelfEntity entity : (Iterable<ShelfEntity>) entities::iterator) {
+                consumer.accept(ShelfFlatModel.toModel(entity));
+                if (++count % ShelfRepository.STREAM_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    @Transactional
     public ShelfModel addShelf(AddShelfRequest request) {
         if (!warehouseService.isWithinBounds(
                 request.getOriginX(),
                 request.getOriginY(),
                 request.getWidth(),
-                request.getHeight())
+                request.getLength())
         ) {
-            throw new RuntimeException("Shelf with invalid origin");
+            throw new LayoutRejectedException(Reason.OUT_OF_WAREHOUSE_BOUNDS, "Shelf with invalid origin");
         }
 
         String name = "SHELF-NULL-" + request.getLevel();
@@ -78,36 +172,50 @@ public class ShelfService {
                 .conditions(request.getConditions())
                 .build();
 
+        layoutMetrics.phase(LayoutMetrics.DB);
+
         shelfRepository.saveAndFlush(shelfEntity);
+        eventPublisher.publishEvent(LayoutChangedEvent.shelf(shelfEntity, Operation.CREATED));
+
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
+
         return ShelfModel.toModel(shelfEntity);
     }
 
     public ShelfModel setColumn(Long shelfId, Long columnId) {
+        return layoutLocks.write(status -> setColumnLocked(shelfId, columnId), columnKeys(shelfId, columnId));
+    }
+
+    private ShelfModel setColumnLocked(Long shelfId, Long columnId) {
         Optional<ShelfEntity> optionalShelfEntity = shelfRepository.findById(shelfId);
         if (optionalShelfEntity.isEmpty()) {
-            throw new RuntimeException("Shelf with id " + shelfId + " not found");
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Shelf with id " + shelfId + " not found");
         }
 
         Optional<ZoneEntity> optionalZoneEntity = zoneRepository.findById(columnId);
         if (optionalZoneEntity.isEmpty()) {
-            throw new RuntimeException("Zone with id " + columnId + " not found");
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + columnId + " not found");
         }
 
-        ShelfEntity shelfEntity = optionalShelfEntity.get();
+        ShelfEntity shelfEntity = lockColumns(optionalShelfEntity.get(), columnId);
         ZoneEntity zoneEntity = optionalZoneEntity.get();
 
         if (!zoneEntity.getType().name().equals("COLUMN")) {
-            throw new RuntimeException("Zone with id " + columnId + " is not a COLUMN");
+            throw new LayoutRejectedException(Reason.NOT_A_COLUMN, "Zone with id " + columnId + " is not a COLUMN");
         }
 
         if (!isShelfWithinColumnBounds(
                 shelfEntity.getOriginX(), shelfEntity.getOriginY(),
                 shelfEntity.getWidth(), shelfEntity.getLength(),
-                zoneEntity.getWidth(), zoneEntity.getHeight()
+                zoneEntity.getWidth(), zoneEntity.getLength()
         )) {
-            throw new RuntimeException("Shelf with id " + columnId + " out of bounds column " + columnId);
+            throw new LayoutRejectedException(Reason.OUT_OF_PARENT_BOUNDS, "Shelf with id " + columnId + " out of bounds column " + columnId);
         }
 
+        columnStackIndex.check(columnId, shelfId,
+                Rect.footprint(shelfEntity.getOriginX(), shelfEntity.getOriginY(), shelfEntity.getWidth(), shelfEntity.getLength(), 0),
+                shelfEntity.getLevel(), shelfEntity.getHeight());
+
         shelfEntity.setZone(zoneEntity);
         shelfEntity.setName("SHELF-"
                 + zoneEntity.getParentZone().getUuid()
@@ -116,44 +224,56 @@ public class ShelfService {
                 + "-"
                 + shelfEntity.getLevel());
         shelfEntity.setActive(true);
+        absoluteBoundsService.place(shelfEntity);
+
+        layoutMetrics.phase(LayoutMetrics.DB);
 
         shelfRepository.saveAndFlush(shelfEntity);
+        eventPublisher.publishEvent(LayoutChangedEvent.shelf(shelfEntity, Operation.UPDATED));
+
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
 
         return ShelfModel.toModel(shelfEntity);
     }
 
     public UpdateShelfReponse updateShelf(Long id, UpdateShelfRequest request) {
+        return layoutLocks.write(status -> updateShelfLocked(id, request), columnKeys(id, null));
+    }
+
+    private UpdateShelfReponse updateShelfLocked(Long id, UpdateShelfRequest request) {
         String status = "OK";
         List<String> warnings = new ArrayList<>();
 
         Optional<ShelfEntity> optionalShelfEntity = shelfRepository.findById(id);
         if (optionalShelfEntity.isEmpty()) {
-            throw new RuntimeException("Shelf with id " + id + " not found");
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Shelf with id " + id + " not found");
         }
 
-        ShelfEntity shelfEntity = optionalShelfEntity.get();
+        ShelfEntity shelfEntity = lockColumns(optionalShelfEntity.get(), null);
         ZoneEntity column = shelfEntity.getZone();
 
         if (!shelfEntity.isOccupied()) {
-            if (isShelfWithinColumnBounds(
+            if (!isShelfWithinColumnBounds(
                     request.getOriginX(), request.getOriginY(),
                     request.getWidth(), request.getLength(),
-                    column.getWidth(), column.getHeight()
+                    column.getWidth(), column.getLength()
             )) {
+                warnings.add("Shelf with id " + id + " out of bounds column " + column.getId());
+                status = "OK_WITH_WARNINGS";
+            } else if (!isStackable(column.getId(), id, request, warnings)) {
+                status = "OK_WITH_WARNINGS";
+            } else {
                 shelfEntity.setOriginX(request.getOriginX());
                 shelfEntity.setOriginY(request.getOriginY());
                 shelfEntity.setWidth(request.getWidth());
                 shelfEntity.setLength(request.getLength());
                 shelfEntity.setHeight(request.getHeight());
+                shelfEntity.setLevel(request.getLevel());
+                absoluteBoundsService.place(shelfEntity);
 
                 warnings.add("Shelf bounds was updated");
-            } else {
-                warnings.add("Shelf with id " + id + " out of bounds column " + column.getId());
-                status = "OK_WITH_WARNINGS";
             }
 
-            shelfEntity.setLevel(request.getLevel());
-
         } else {
             warnings.add("Shelf with id " + id + " is occupied");
             status = "OK_WITH_WARNINGS";
@@ -165,7 +285,16 @@ public class ShelfService {
         shelfEntity.setConditions(request.getConditions());//TODO можливо додати попередження
         warnings.add("Shelf conditions were updated");
 
-        shelfRepository.saveAndFlush(shelfEntity);
+        layoutMetrics.phase(LayoutMetrics.DB);
+
+        try {
+            shelfRepository.saveAndFlush(shelfEntity);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new LayoutRejectedException(Reason.CONFLICT, "Shelf with id " + id + " was changed concurrently");
+        }
+        eventPublisher.publishEvent(LayoutChangedEvent.shelf(shelfEntity, Operation.UPDATED));
+
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
 
         return UpdateShelfReponse
                 .builder()
@@ -175,16 +304,181 @@ public class ShelfService {
                 .build();
     }
 
+    // Locks current column of the shelf and newColumnId (when not null) until commit,
+    // shelf is refreshed after that, a writer holding the lock before may have changed it
+    private ShelfEntity lockColumns(ShelfEntity shelfEntity, Long newColumnId) {
+        Long[] columnIds = Stream
+                .of(shelfEntity.getZone() == null ? null : shelfEntity.getZone().getId(), newColumnId)
+                .filter(Objects::nonNull)
+                .toArray(Long[]::new);
+        for (Long columnId : layoutLocks.lockParents(columnIds)) {
+            columnStackIndex.invalidate(columnId);
+        }
+        entityManager.refresh(shelfEntity);
+        return shelfEntity;
+    }
+
+    // Current column of the shelf and newColumnId (when not null), read before the write transaction
+    private Long[] columnKeys(Long shelfId, Long newColumnId) {
+        return Stream
+                .concat(shelfRepository.findColumnIdById(shelfId).stream(), Stream.ofNullable(newColumnId))
+                .toArray(Long[]::new);
+    }
+
+    private boolean isStackable(Long columnId, Long shelfId, UpdateShelfRequest request, List<String> warnings) {
+        try {
+            columnStackIndex.check(columnId, shelfId,
+                    Rect.footprint(request.getOriginX(), request.getOriginY(), request.getWidth(), request.getLength(), 0),
+                    request.getLevel(), request.getHeight());
+            return true;
+        } catch (LayoutRejectedException e) {
+            warnings.add(e.getMessage());
+            return false;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<ColumnSlotModel> getFreeSlots(Long columnId, int minHeight) {
+        Optional<ZoneEntity> optionalZoneEntity = zoneRepository.findById(columnId);
+        if (optionalZoneEntity.isEmpty()) {
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + columnId + " not found");
+        }
+        if (optionalZoneEntity.get().getType() != ZoneType.COLUMN) {
+            throw new LayoutRejectedException(Reason.NOT_A_COLUMN, "Zone with id " + columnId + " is not a COLUMN");
+        }
+
+        return columnStackIndex.getFreeSlots(columnId, minHeight);
+    }
+
+    public List<ShelfSlotModel> getBestShelves(BestShelvesRequest request) {
+        return shelfSlottingIndex.findBest(request);
+    }
+
+    public OccupancyGrid.Payload getOccupancyGrid(int cellSize) {
+        return occupancyGrid.get(cellSize);
+    }
+
+    //Shelves containing the point, lowest level first
+    @Transactional(readOnly = true)
+    public List<ShelfFlatModel> getAt(int x, int y) {
+        return toFlatModels(shelfRepository.findContaining(x, y));
+    }
+
+    //Shelves intersecting the window, min inclusive and max exclusive
+    @Transactional(readOnly = true)
+    public List<ShelfFlatModel> getInWindow(int minX, int minY, int maxX, int maxY, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (minX >= maxX || minY >= maxY) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Window is empty");
+        }
+
+        return toFlatModels(shelfRepository.findIntersecting(minX, minY, maxX, maxY, Limit.of(size)));
+    }
+
+    private static List<ShelfFlatModel> toFlatModels(List<ShelfEntity> entities) {
+        List<ShelfFlatModel> models = new ArrayList<>(entities.size());
+        for (ShelfEntity entity : entities) {
+            models.add(ShelfFlatModel.toModel(entity));
+        }
+        return models;
+    }
+
+    @Transactional
+    public void reserve(Long id) {
+        if (!reserveAll(List.of(id)).getReserved().contains(id)) {
+            throw rejectedReservation(id, "occupied or not active");
+        }
+    }
+
+    @Transactional
+    public void release(Long id) {
+        layoutMetrics.phase(LayoutMetrics.DB);
+        if (jdbcTemplate.update(RELEASE, id) == 0) {
+            throw rejectedReservation(id, "not occupied");
+        }
+        entityCacheEvictor.evictShelves(List.of(id));
+        eventPublisher.publishEvent(LayoutChangedEvent.shelf(id, Operation.RELEASED, null));
+    }
+
+    // One conditional UPDATE per shelf sent as single JDBC batch, update count tells whether
+    // this caller got the shelf. Rows are never read before update, row locks are held from
+    // the batch until commit, which also writes an outbox row and a staged change log row
+    // (versioned later by LayoutChangeLog.sequence) of every reserved shelf, both as JDBC batches. Ids are sorted, so
+    // concurrent batches lock rows in the same order and can't deadlock.
+    // A driver that doesn't report update counts rolls the whole batch back, a shelf with
+    // unknown count can't be reported as reserved nor left occupied without an owner.
+    @Transactional
+    public ReserveShelvesResponse reserveAll(List<Long> shelfIds) {
+        if (shelfIds == null || shelfIds.isEmpty()) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "No shelves to reserve");
+        }
+        List<Long> ids = List.copyOf(new TreeSet<>(shelfIds));
+
+        layoutMetrics.phase(LayoutMetrics.DB);
+        int[] counts = jdbcTemplate.batchUpdate(RESERVE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, ids.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.size();
+            }
+        });
+
+        List<Long> reserved = new ArrayList<>();
+        List<Long> rejected = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                throw new IllegalStateException("JDBC driver reported no update count for shelf " + ids.get(i));
+            }
+            if (counts[i] > 0) {
+                reserved.add(ids.get(i));
+                eventPublisher.publishEvent(LayoutChangedEvent.shelf(ids.get(i), Operation.RESERVED, null));
+            } else {
+                rejected.add(ids.get(i));
+            }
+        }
+
+        entityCacheEvictor.evictShelves(reserved);
+
+        return ReserveShelvesResponse
+                .builder()
+                .reserved(reserved)
+                .rejected(rejected)
+                .build();
+    }
+
+    private LayoutRejectedException rejectedReservation(Long id, String state) {
+        if (!shelfRepository.existsById(id)) {
+            return new LayoutRejectedException(Reason.NOT_FOUND, "Shelf with id " + id + " not found");
+        }
+        return new LayoutRejectedException(Reason.CONFLICT, "Shelf with id " + id + " is " + state);
+    }
+
+    @Transactional
     public void deleteShelf(Long id) {
         Optional<ShelfEntity> optionalShelfEntity = shelfRepository.findById(id);
         if (optionalShelfEntity.isEmpty()) {
-            throw new RuntimeException("Shelf with id " + id + " not found");
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Shelf with id " + id + " not found");
         }
         ShelfEntity shelfEntity = optionalShelfEntity.get();
         if (shelfEntity.isOccupied()) {
-            throw new RuntimeException("Shelf with id " + id + " is occupied");
+            throw new LayoutRejectedException(Reason.OCCUPIED, "Shelf with id " + id + " is occupied");
         }
 
-        shelfRepository.delete(shelfEntity);
+        Long columnId = shelfEntity.getZone() == null ? null : shelfEntity.getZone().getId();
+
+        layoutMetrics.phase(LayoutMetrics.DB);
+
+        try {
+            shelfRepository.delete(shelfEntity);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new LayoutRejectedException(Reason.CONFLICT, "Shelf with id " + id + " was changed concurrently");
+        }
+        eventPublisher.publishEvent(LayoutChangedEvent.shelf(id, Operation.DELETED, columnId));
     }
 }
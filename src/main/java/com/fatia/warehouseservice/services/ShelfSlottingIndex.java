@@ -0,0 +1,496 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ShelfSlotModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.BestShelvesRequest;
+import com.fatia.warehouseservice.spatial.Frame;
+import com.fatia.warehouseservice.spatial.Rect;
+import com.fatia.warehouseservice.spatial.SpatialGrid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory index of free (active and not occupied) shelves for slotting queries.
+// Once travel distances are computed (TravelDistanceMatrix) shelves are ranked by the walking
+// distance from the zone entry to the entry of their column. Columns are visited nearest first
+// and the query stops at the first column farther than the worst picked shelf, shelves of
+// columns that can't be reached or have no entry node are skipped.
+// Until then, or when the zone has no entry node, shelves are ranked by floor (Manhattan)
+// distance. They are bucketed in a uniform grid by their absolute position, a query walks
+// rings of cells around the zone entry and stops as soon as no closer shelf can exist.
+// Loaded on first query, kept up to date from LayoutChangedEvent, an import loads it again.
+// Changes of other instances come with LayoutSyncedEvent, which lists moved subtrees with their
+// shelves, changed zones are placed again and changed shelves read again.
+@Service
+@RequiredArgsConstructor
+public class ShelfSlottingIndex {
+
+    private static final Comparator<Slot> FARTHEST_FIRST = Comparator
+            .comparingInt((Slot slot) -> slot.distance)
+            .thenComparingLong(slot -> slot.shelf.id)
+            .reversed();
+
+    private final ShelfRepository shelfRepository;
+
+    private final ZoneRepository zoneRepository;
+
+    private final WarehouseConfig warehouseConfig;
+
+    private final TravelDistanceMatrix travelDistanceMatrix;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // zone id -> absolute footprint, all zones
+    private final Map<Long, Placement> zones = new HashMap<>();
+
+    private final Map<Long, FreeShelf> shelves = new HashMap<>();
+
+    private final Map<Long, List<FreeShelf>> cells = new HashMap<>();
+
+    // column id -> free shelves
+    private final Map<Long, List<FreeShelf>> columns = new HashMap<>();
+
+    private int cellSize;
+
+    private int minCellX;
+    private int minCellY;
+    private int maxCellX;
+    private int maxCellY;
+
+    private boolean loaded;
+
+    public List<ShelfSlotModel> findBest(BestShelvesRequest request) {
+        if (request.getLimit() <= 0) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Limit must be positive");
+        }
+
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Placement from = zones.get(request.getFromZoneId());
+            if (from == null) {
+                throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + request.getFromZoneId() + " not found");
+            }
+
+            TravelDistanceMatrix.Row travel = travelDistanceMatrix.findRow(request.getFromZoneId());
+            PriorityQueue<Slot> best = travel == null ? nearestOnFloor(from, request) : nearestByTravel(travel, request);
+
+            List<ShelfSlotModel> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                Slot slot = best.poll();
+                result.add(slot.shelf.toModel(slot.distance));
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        // node ids are not indexed, entry nodes are asked for at query time
+        if (event.getOperation() == Operation.NODE_UPDATED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            if (event.getEntityType() == EntityType.ZONE) {
+                // moved zone moves all shelves below it, new zone has no shelves yet
+                if (event.getOperation() == Operation.UPDATED) {
+                    loaded = false;
+                } else if (event.getOperation() == Operation.DELETED) {
+                    zones.remove(event.getEntityId());
+                } else if (event.getParentId() != null && !zones.containsKey(event.getParentId())) {
+                    loaded = false;
+                } else {
+                    zoneRepository.findById(event.getEntityId()).ifPresent(zone -> zones.put(
+                            zone.getId(),
+                            Placement.of(zone, event.getParentId() == null ? null : zones.get(event.getParentId()))));
+                }
+                return;
+            }
+
+            remove(event.getEntityId());
+            if (event.getOperation() != Operation.DELETED && event.getOperation() != Operation.RESERVED) {
+                shelfRepository.findById(event.getEntityId())
+                        .filter(shelf -> shelf.isActive() && !shelf.isOccupied() && shelf.getZone() != null)
+                        .ifPresent(this::add);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onLayoutSynced(LayoutSyncedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            if (event.isFullResync() || !event.getZoneIds().isEmpty() && !place(zoneRepository.findAllById(event.getZoneIds()))) {
+                loaded = false;
+                return;
+            }
+            event.getDeletedZoneIds().forEach(zones::remove);
+
+            event.getDeletedShelfIds().forEach(this::remove);
+            event.getShelfIds().forEach(this::remove);
+            if (!event.getShelfIds().isEmpty()) {
+                shelfRepository.findAllById(event.getShelfIds()).stream()
+                        .filter(shelf -> shelf.isActive() && !shelf.isOccupied() && shelf.getZone() != null)
+                        .forEach(this::add);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutImported(LayoutImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private PriorityQueue<Slot> nearestByTravel(TravelDistanceMatrix.Row travel, BestShelvesRequest request) {
+        List<Reach> reachable = new ArrayList<>(columns.size());
+        for (Long columnId : columns.keySet()) {
+            float distance = travel.get(columnId);
+            if (distance != Float.POSITIVE_INFINITY) {
+                reachable.add(new Reach(columnId, Math.round(distance)));
+            }
+        }
+        reachable.sort(Comparator.comparingInt(Reach::distance).thenComparing(Reach::columnId));
+
+        PriorityQueue<Slot> best = new PriorityQueue<>(request.getLimit() + 1, FARTHEST_FIRST);
+        for (Reach reach : reachable) {
+            if (best.size() == request.getLimit() && best.peek().distance < reach.distance) {
+                break;
+            }
+            for (FreeShelf shelf : columns.get(reach.columnId)) {
+                if (shelf.fits(request)) {
+                    offer(best, new Slot(shelf, reach.distance), request.getLimit());
+                }
+            }
+        }
+        return best;
+    }
+
+    private PriorityQueue<Slot> nearestOnFloor(Placement from, BestShelvesRequest request) {
+        int entryX = from.entryX();
+        int entryY = from.entryY();
+        int entryCellX = Math.floorDiv(entryX, cellSize);
+        int entryCellY = Math.floorDiv(entryY, cellSize);
+        int maxRing = Math.max(
+                Math.max(entryCellX - minCellX, maxCellX - entryCellX),
+                Math.max(entryCellY - minCellY, maxCellY - entryCellY));
+
+        PriorityQueue<Slot> best = new PriorityQueue<>(request.getLimit() + 1, FARTHEST_FIRST);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // every shelf from this ring on is at least (ring - 1) * cellSize away
+            if (best.size() == request.getLimit() && best.peek().distance < (ring - 1) * cellSize) {
+                break;
+            }
+            for (int cx = entryCellX - ring; cx <= entryCellX + ring; cx++) {
+                boolean edge = cx == entryCellX - ring || cx == entryCellX + ring;
+                int step = edge ? 1 : 2 * ring;
+                for (int cy = entryCellY - ring; cy <= entryCellY + ring; cy += Math.max(step, 1)) {
+                    collect(cells.get(key(cx, cy)), request, entryX, entryY, best);
+                }
+            }
+        }
+        return best;
+    }
+
+    private void collect(List<FreeShelf> cell, BestShelvesRequest request, int entryX, int entryY, PriorityQueue<Slot> best) {
+        if (cell == null) {
+            return;
+        }
+        for (FreeShelf shelf : cell) {
+            if (shelf.fits(request)) {
+                offer(best, new Slot(shelf, Math.abs(shelf.x - entryX) + Math.abs(shelf.y - entryY)), request.getLimit());
+            }
+        }
+    }
+
+    private static void offer(PriorityQueue<Slot> best, Slot slot, int limit) {
+        if (best.size() < limit) {
+            best.add(slot);
+        } else if (FARTHEST_FIRST.compare(slot, best.peek()) > 0) {
+            best.poll();
+            best.add(slot);
+        }
+    }
+
+    private void ensureLoaded() {
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        zones.clear();
+        shelves.clear();
+        cells.clear();
+        columns.clear();
+        cellSize = SpatialGrid.cellSizeFor(warehouseConfig.getWidth(), warehouseConfig.getHeight());
+        minCellX = 0;
+        minCellY = 0;
+        maxCellX = Math.floorDiv(warehouseConfig.getWidth(), cellSize);
+        maxCellY = Math.floorDiv(warehouseConfig.getHeight(), cellSize);
+
+        Map<Long, ZoneEntity> byId = new HashMap<>();
+        for (ZoneEntity zone : zoneRepository.findAll()) {
+            byId.put(zone.getId(), zone);
+        }
+        for (ZoneEntity zone : byId.values()) {
+            placement(zone, byId);
+        }
+
+        for (ShelfEntity shelf : shelfRepository.findFree()) {
+            add(shelf);
+        }
+        loaded = true;
+    }
+
+    // Places changed zones again, parents before their children. False when a parent is unknown.
+    private boolean place(List<ZoneEntity> changed) {
+        List<ZoneEntity> left = new ArrayList<>(changed);
+        Set<Long> waiting = new HashSet<>();
+        left.forEach(zone -> waiting.add(zone.getId()));
+        while (!left.isEmpty()) {
+            boolean placed = false;
+            for (Iterator<ZoneEntity> it = left.iterator(); it.hasNext(); ) {
+                ZoneEntity zone = it.next();
+                Long parentId = zone.getParentZone() == null ? null : zone.getParentZone().getId();
+                if (parentId != null && (waiting.contains(parentId) || !zones.containsKey(parentId))) {
+                    continue;
+                }
+                zones.put(zone.getId(), Placement.of(zone, parentId == null ? null : zones.get(parentId)));
+                waiting.remove(zone.getId());
+                it.remove();
+                placed = true;
+            }
+            if (!placed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Parents are resolved through the map, lazy parent proxies are only asked for id
+    private Placement placement(ZoneEntity zone, Map<Long, ZoneEntity> byId) {
+        Placement placement = zones.get(zone.getId());
+        if (placement != null) {
+            return placement;
+        }
+        Placement parent = null;
+        if (zone.getParentZone() != null) {
+            ZoneEntity parentZone = byId.get(zone.getParentZone().getId());
+            if (parentZone != null) {
+                parent = placement(parentZone, byId);
+            }
+        }
+        placement = Placement.of(zone, parent);
+        zones.put(zone.getId(), placement);
+        return placement;
+    }
+
+    private void add(ShelfEntity shelf) {
+        Placement column = zones.get(shelf.getZone().getId());
+        if (column == null) {
+            return;
+        }
+        Rect position = column.frame.toAbsolute(new Rect(
+                shelf.getOriginX(),
+                shelf.getOriginY(),
+                shelf.getOriginX() + shelf.getWidth(),
+                shelf.getOriginY() + shelf.getLength()));
+        FreeShelf free = new FreeShelf(
+                shelf.getId(),
+                shelf.getName(),
+                shelf.getZone().getId(),
+                shelf.getLevel(),
+                shelf.getWidth(),
+                shelf.getLength(),
+                shelf.getHeight(),
+                shelf.getConditions() == null ? Map.of() : Map.copyOf(shelf.getConditions()),
+                position.getMinX() + position.getWidth() / 2,
+                position.getMinY() + position.getLength() / 2);
+
+        shelves.put(free.id, free);
+        int cx = Math.floorDiv(free.x, cellSize);
+        int cy = Math.floorDiv(free.y, cellSize);
+        cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(free);
+        columns.computeIfAbsent(free.zoneId, k -> new ArrayList<>()).add(free);
+        minCellX = Math.min(minCellX, cx);
+        minCellY = Math.min(minCellY, cy);
+        maxCellX = Math.max(maxCellX, cx);
+        maxCellY = Math.max(maxCellY, cy);
+    }
+
+    private void remove(Long shelfId) {
+        FreeShelf free = shelves.remove(shelfId);
+        if (free == null) {
+            return;
+        }
+        long key = key(Math.floorDiv(free.x, cellSize), Math.floorDiv(free.y, cellSize));
+        List<FreeShelf> cell = cells.get(key);
+        if (cell != null) {
+            cell.remove(free);
+            if (cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+        List<FreeShelf> column = columns.get(free.zoneId);
+        if (column != null) {
+            column.remove(free);
+            if (column.isEmpty()) {
+                columns.remove(free.zoneId);
+            }
+        }
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    //Absolute frame and footprint of zone
+    private record Placement(Frame frame, Rect footprint, FaceDirection faceDirection) {
+
+        static Placement of(ZoneEntity zone, Placement parent) {
+            Frame frame = (parent == null ? Frame.WAREHOUSE : parent.frame).child(
+                    zone.getOriginX(),
+                    zone.getOriginY(),
+                    zone.getWidth(),
+                    zone.getLength(),
+                    zone.getRotationAngle() == null ? 0 : zone.getRotationAngle());
+            return new Placement(frame, frame.getFootprint(), zone.getFaceDirection());
+        }
+
+        // Entry is the middle of the side zone is facing
+        int entryX() {
+            if (faceDirection == FaceDirection.LEFT) {
+                return footprint.getMinX();
+            }
+            if (faceDirection == FaceDirection.RIGHT) {
+                return footprint.getMaxX();
+            }
+            return footprint.getMinX() + footprint.getWidth() / 2;
+        }
+
+        int entryY() {
+            if (faceDirection == FaceDirection.BOTTOM) {
+                return footprint.getMaxY();
+            }
+            if (faceDirection == FaceDirection.LEFT || faceDirection == FaceDirection.RIGHT) {
+                return footprint.getMinY() + footprint.getLength() / 2;
+            }
+            return footprint.getMinY();
+        }
+    }
+
+    private record FreeShelf(
+            Long id,
+            String name,
+            Long zoneId,
+            int level,
+            int width,
+            int length,
+            int height,
+            Map<String, String> conditions,
+            int x,
+            int y) {
+
+        // Item may be turned on the shelf, height can not
+        boolean fits(BestShelvesRequest request) {
+            if (request.getLevel() != null && request.getLevel() != level) {
+                return false;
+            }
+            if (height < request.getHeight()) {
+                return false;
+            }
+            boolean straight = width >= request.getWidth() && length >= request.getLength();
+            boolean turned = width >= request.getLength() && length >= request.getWidth();
+            if (!straight && !turned) {
+                return false;
+            }
+            if (request.getConditions() != null) {
+                for (Map.Entry<String, String> condition : request.getConditions().entrySet()) {
+                    if (!condition.getValue().equals(conditions.get(condition.getKey()))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        ShelfSlotModel toModel(int distance) {
+            return ShelfSlotModel
+                    .builder()
+                    .id(id)
+                    .name(name)
+                    .zoneId(zoneId)
+                    .level(level)
+                    .width(width)
+                    .length(length)
+                    .height(height)
+                    .distance(distance)
+                    .build();
+        }
+    }
+
+    private record Slot(FreeShelf shelf, int distance) {
+    }
+
+    private record Reach(Long columnId, int distance) {
+    }
+}
@@ -0,0 +1,352 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.graph.FloorGraph;
+import com.fatia.warehouseservice.graph.ShortestPaths;
+import com.fatia.warehouseservice.models.DistanceModel;
+import com.fatia.warehouseservice.requests.DistanceMatrixRequest;
+import com.fatia.warehouseservice.responses.DistanceMatrixResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Travel distances between zone entries over the walkable floor (NavigationGraph).
+// Kept as a dense n x n float matrix of all zones with an entry node, row of a zone comes
+// from one shortest path search from its entry, searches run in parallel on a ForkJoin pool.
+// Distances are symmetric, a pair is read from the row of the two that was searched last.
+// Refreshed every warehouse.graph.sync-interval-ms from the current graph, which follows layout
+// changes of all instances (NavigationGraph), so all instances end up with the same distances.
+// Searched again are zones whose entry node changed and zones whose found paths cross a tile
+// where a cell got blocked, other paths are still there. A new path s -> t through a freed
+// cell f is d(s, f) + d(f, t) >= d(s, F) + d(F, t), d(., F) being the distance to the nearest
+// freed cell. One search from all freed cells at once gives d(., F), rows of zones with a pair
+// where that bound beats the stored distance are searched again. Rows not searched are shared
+// with the previous matrix while the zones stay the same, a refresh allocates only the rows it searched.
+// Unreachable pairs are infinity, null in responses.
+@Service
+@RequiredArgsConstructor
+public class TravelDistanceMatrix {
+
+    // sources searched by one task, search arrays are allocated once per task
+    private static final int SOURCES_PER_TASK = 4;
+
+    private final NavigationGraph navigationGraph;
+
+    @Value("${warehouse.graph.enabled:true}")
+    private boolean enabled;
+
+    // 0 for one thread per processor
+    @Value("${warehouse.graph.distance-parallelism:0}")
+    private int parallelism;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private ForkJoinPool pool;
+
+    private volatile Matrix matrix;
+
+    public float getDistance(Long fromZoneId, Long toZoneId) {
+        Matrix current = current();
+        return current.get(current.indexOf(fromZoneId), current.indexOf(toZoneId));
+    }
+
+    public DistanceModel getDistanceModel(Long fromZoneId, Long toZoneId) {
+        return DistanceModel.of(fromZoneId, toZoneId, getDistance(fromZoneId, toZoneId));
+    }
+
+    //Distances from one zone, to all zones with an entry node when toZoneIds is empty
+    public List<DistanceModel> getDistancesFrom(Long fromZoneId, List<Long> toZoneIds) {
+        Matrix current = current();
+        int from = current.indexOf(fromZoneId);
+        List<Long> targets = toZoneIds == null || toZoneIds.isEmpty() ? Arrays.asList(current.ids) : toZoneIds;
+        List<DistanceModel> distances = new ArrayList<>(targets.size());
+        for (Long toZoneId : targets) {
+            distances.add(DistanceModel.of(fromZoneId, toZoneId, current.get(from, current.indexOf(toZoneId))));
+        }
+        return distances;
+    }
+
+    //Row of the zone, null when distances are not computed yet or the zone has no entry node
+    public Row findRow(Long fromZoneId) {
+        Matrix current = matrix;
+        Integer from = current == null ? null : current.index.get(fromZoneId);
+        return from == null ? null : new Row(current, from);
+    }
+
+    public DistanceMatrixResponse getDistances(DistanceMatrixRequest request) {
+        if (request.getFromZoneIds() == null || request.getFromZoneIds().isEmpty()
+                || request.getToZoneIds() == null || request.getToZoneIds().isEmpty()) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Zones to measure from and to are required");
+        }
+
+        Matrix current = current();
+        int[] to = new int[request.getToZoneIds().size()];
+        for (int j = 0; j < to.length; j++) {
+            to[j] = current.indexOf(request.getToZoneIds().get(j));
+        }
+        List<List<Float>> distances = new ArrayList<>(request.getFromZoneIds().size());
+        for (Long fromZoneId : request.getFromZoneIds()) {
+            int from = current.indexOf(fromZoneId);
+            List<Float> row = new ArrayList<>(to.length);
+            for (int target : to) {
+                row.add(DistanceModel.orNull(current.get(from, target)));
+            }
+            distances.add(row);
+        }
+
+        return DistanceMatrixResponse
+                .builder()
+                .graphVersion(current.graph.getVersion())
+                .fromZoneIds(request.getFromZoneIds())
+                .toZoneIds(request.getToZoneIds())
+                .distances(distances)
+                .build();
+    }
+
+    @Scheduled(
+            fixedDelayString = "${warehouse.graph.sync-interval-ms:500}",
+            initialDelayString = "${warehouse.graph.sync-interval-ms:500}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        refreshLock.lock();
+        try {
+            NavigationGraph.Entries entries = navigationGraph.getEntries();
+            Matrix old = matrix;
+            if (entries == null || old != null && old.graph == entries.graph() && old.nodes.equals(entries.nodes())) {
+                return;
+            }
+            matrix = compute(old, entries);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private Matrix current() {
+        Matrix current = matrix;
+        if (current == null) {
+            throw new LayoutRejectedException(Reason.CONFLICT, "Travel distances are not computed yet");
+        }
+        return current;
+    }
+
+    private Matrix compute(Matrix old, NavigationGraph.Entries entries) {
+        FloorGraph graph = entries.graph();
+        Long[] ids = entries.nodes().keySet().stream().sorted().toArray(Long[]::new);
+        boolean sameIds = old != null && Arrays.equals(old.ids, ids);
+        int n = ids.length;
+        Map<Long, Integer> index = sameIds ? old.index : new HashMap<>();
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = entries.nodes().get(ids[i]);
+            if (!sameIds) {
+                index.put(ids[i], i);
+            }
+        }
+
+        BitSet blocked = new BitSet();
+        BitSet freed = new BitSet();
+        boolean all = old == null || changedCells(old.graph, graph, blocked, freed);
+
+        // row of the old matrix each zone keeps, -1 when it is searched again
+        int[] kept = new int[n];
+        List<Integer> sources = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Integer previous = all ? null : old.index.get(ids[i]);
+            if (previous == null || old.entryNodes[previous] != nodes[i] || old.pathTiles[previous].intersects(blocked)) {
+                kept[i] = -1;
+                sources.add(i);
+            } else {
+                kept[i] = previous;
+            }
+        }
+        if (!all && !freed.isEmpty()) {
+            float[] nearestFreed = new ShortestPaths(graph).searchNearest(freed.stream().toArray(), nodes);
+            for (int i = 0; i < n; i++) {
+                if (kept[i] >= 0 && canShorten(old, kept, nearestFreed, i)) {
+                    kept[i] = -1;
+                    sources.add(i);
+                }
+            }
+        }
+
+        long generation = old == null ? 0 : old.generation + 1;
+        float[][] rows = new float[n][];
+        long[] searchedIn = new long[n];
+        BitSet[] pathTiles = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            if (kept[i] < 0) {
+                continue;
+            }
+            pathTiles[i] = old.pathTiles[kept[i]];
+            if (sameIds) {
+                rows[i] = old.rows[i];
+                searchedIn[i] = old.searchedIn[i];
+                continue;
+            }
+            // zones changed, kept rows are copied over in the new order, each pair as last searched
+            rows[i] = new float[n];
+            for (int j = 0; j < n; j++) {
+                if (kept[j] >= 0) {
+                    rows[i][j] = old.get(kept[i], kept[j]);
+                }
+            }
+            searchedIn[i] = generation - 1;
+        }
+
+        int[] sourceIndexes = sources.stream().mapToInt(Integer::intValue).toArray();
+        ShortestPaths.Result[] results = new ShortestPaths.Result[sourceIndexes.length];
+        if (sourceIndexes.length > 0) {
+            pool().invoke(new SearchTask(graph, nodes, sourceIndexes, results, 0, sourceIndexes.length));
+        }
+        for (int k = 0; k < sourceIndexes.length; k++) {
+            int i = sourceIndexes[k];
+            rows[i] = results[k].distances();
+            searchedIn[i] = generation;
+            pathTiles[i] = results[k].pathTiles();
+        }
+
+        return new Matrix(graph, Map.copyOf(entries.nodes()), sameIds ? old.ids : ids, index, nodes,
+                rows, searchedIn, generation, pathTiles);
+    }
+
+    // True when a path from zone i through a freed cell may beat a distance of the old matrix.
+    // Pairs with a zone that is searched anyway are left to that search.
+    private static boolean canShorten(Matrix old, int[] kept, float[] nearestFreed, int i) {
+        if (nearestFreed[i] == Float.POSITIVE_INFINITY) {
+            return false;
+        }
+        for (int j = 0; j < kept.length; j++) {
+            if (kept[j] >= 0 && nearestFreed[i] + nearestFreed[j] < old.get(kept[i], kept[j])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Collects tiles where a cell got blocked and nodes of cells that got free, true when the grid changed
+    private static boolean changedCells(FloorGraph old, FloorGraph graph, BitSet blocked, BitSet freed) {
+        if (old.getTileCount() != graph.getTileCount() || old.getCellSize() != graph.getCellSize()) {
+            return true;
+        }
+        for (int tile = 0; tile < graph.getTileCount(); tile++) {
+            boolean[] before = old.getTile(tile).free();
+            boolean[] after = graph.getTile(tile).free();
+            if (before == after) {
+                continue;
+            }
+            for (int cell = 0; cell < after.length; cell++) {
+                if (after[cell] && !before[cell]) {
+                    freed.set(tile * FloorGraph.TILE_CELLS + cell);
+                }
+                if (before[cell] && !after[cell]) {
+                    blocked.set(tile);
+                }
+            }
+        }
+        return false;
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    private record Matrix(
+            FloorGraph graph,
+            Map<Long, Integer> nodes,
+            Long[] ids,
+            Map<Long, Integer> index,
+            int[] entryNodes,
+            float[][] rows,
+            long[] searchedIn,// refresh that searched the row
+            long generation,
+            BitSet[] pathTiles) {
+
+        int indexOf(Long zoneId) {
+            Integer i = index.get(zoneId);
+            if (i == null) {
+                throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + zoneId + " has no entry node");
+            }
+            return i;
+        }
+
+        // Row searched last has the current distance of the pair
+        float get(int from, int to) {
+            return searchedIn[from] >= searchedIn[to] ? rows[from][to] : rows[to][from];
+        }
+    }
+
+    // Distances from one zone in the matrix it was taken from, infinity for zones without an entry node
+    public static final class Row {
+        private final Matrix matrix;
+        private final int from;
+
+        private Row(Matrix matrix, int from) {
+            this.matrix = matrix;
+            this.from = from;
+        }
+
+        public float get(Long toZoneId) {
+            Integer to = matrix.index.get(toZoneId);
+            return to == null ? Float.POSITIVE_INFINITY : matrix.get(from, to);
+        }
+    }
+
+    // Halves the sources until a few are left, each leaf searches them with one ShortestPaths
+    private static class SearchTask extends RecursiveAction {
+        private final FloorGraph graph;
+        private final int[] nodes;
+        private final int[] sources;
+        private final ShortestPaths.Result[] results;
+        private final int from;
+        private final int to;
+
+        SearchTask(FloorGraph graph, int[] nodes, int[] sources, ShortestPaths.Result[] results, int from, int to) {
+            this.graph = graph;
+            this.nodes = nodes;
+            this.sources = sources;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SOURCES_PER_TASK) {
+                ShortestPaths paths = new ShortestPaths(graph);
+                for (int k = from; k < to; k++) {
+                    results[k] = paths.search(nodes[sources[k]], nodes);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new SearchTask(graph, nodes, sources, results, from, middle),
+                    new SearchTask(graph, nodes, sources, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ZoneCapacityModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.responses.CapacityReconcileResponse;
+import com.fatia.warehouseservice.responses.CapacityReconcileResponse.Drift;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// Shelf counters of every zone rolled up through the zone tree, counters of a zone cover
+// shelves of all columns below it. A shelf change walks the ancestors of its column once,
+// O(depth). State of every shelf is kept here, so reservations don't touch the database.
+// Loaded on first use and kept up to date from LayoutChangedEvent, an event that doesn't
+// fit (unknown zone or shelf) or an import drops the index until the next use.
+// Changes of other instances come with LayoutSyncedEvent, changed zones and shelves are read
+// again and set, so own changes coming back that way change nothing.
+// Reconciliation recomputes all counters from the tables every
+// warehouse.capacity.reconcile-interval-ms, reports zones that drifted and replaces them.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ZoneCapacityIndex {
+
+    private final ZoneRepository zoneRepository;
+
+    private final ShelfRepository shelfRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object reconcileLock = new Object();
+
+    // null until loaded
+    private State state;
+
+    // events seen while reconciliation loads, applied to the recomputed state again
+    private List<Predicate<State>> replay;
+
+    // import or full resync while reconciliation loads, recomputed state may miss it
+    private boolean droppedDuringReplay;
+
+    public ZoneCapacityModel getCapacity(Long zoneId) {
+        lock.readLock().lock();
+        try {
+            if (state != null) {
+                return state.toModel(zoneId);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (state == null) {
+                state = load();
+            }
+            return state.toModel(zoneId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Recomputed counters replace maintained ones, drift is what differed
+    @Scheduled(
+            fixedDelayString = "${warehouse.capacity.reconcile-interval-ms:3600000}",
+            initialDelayString = "${warehouse.capacity.reconcile-interval-ms:3600000}")
+    public CapacityReconcileResponse reconcile() {
+        synchronized (reconcileLock) {
+            lock.writeLock().lock();
+            try {
+                replay = new ArrayList<>();
+                droppedDuringReplay = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            State recomputed;
+            try {
+                recomputed = load();
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    replay = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                List<Predicate<State>> events = replay;
+                replay = null;
+                if (droppedDuringReplay) {
+                    state = null;
+                    throw new LayoutRejectedException(Reason.CONFLICT, "Layout changed during reconciliation");
+                }
+                for (Predicate<State> event : events) {
+                    if (!event.test(recomputed)) {
+                        state = null;
+                        throw new LayoutRejectedException(Reason.CONFLICT, "Layout changed during reconciliation");
+                    }
+                }
+
+                List<Drift> drifts = state == null ? List.of() : drifts(state, recomputed);
+                if (!drifts.isEmpty()) {
+                    log.warn("Capacity counters of {} zones drifted, replaced with recomputed ones", drifts.size());
+                }
+                state = recomputed;
+                return CapacityReconcileResponse
+                        .builder()
+                        .zonesChecked(recomputed.zones.size())
+                        .shelvesChecked(recomputed.shelves.size())
+                        .drifts(drifts)
+                        .build();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (replay != null) {
+                replay.add(replayed -> apply(replayed, event));
+            }
+            if (state != null && !apply(state, event)) {
+                state = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onLayoutSynced(LayoutSyncedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isFullResync()) {
+                if (replay != null) {
+                    droppedDuringReplay = true;
+                }
+                state = null;
+                return;
+            }
+            if (replay != null) {
+                replay.add(replayed -> apply(replayed, event));
+            }
+            if (state != null && !apply(state, event)) {
+                state = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutImported(LayoutImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (replay != null) {
+                droppedDuringReplay = true;
+            }
+            state = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // False when the event doesn't fit the state
+    private boolean apply(State state, LayoutChangedEvent event) {
+        Long id = event.getEntityId();
+        if (event.getEntityType() == EntityType.ZONE) {
+            return switch (event.getOperation()) {
+                case CREATED -> state.addZone(id, event.getParentId());
+                case UPDATED -> state.moveZone(id, event.getParentId());
+                case DELETED -> state.removeZone(id);
+                default -> true;
+            };
+        }
+
+        Shelf old = state.shelves.get(id);
+        return switch (event.getOperation()) {
+            case CREATED, UPDATED -> state.setShelf(id, shelfRepository.findById(id).map(Shelf::of).orElse(null));
+            case NODE_UPDATED -> true;
+            case DELETED -> state.setShelf(id, null);
+            case RESERVED -> old != null && state.setShelf(id, old.withOccupied(true));
+            case RELEASED -> old != null && state.setShelf(id, old.withOccupied(false));
+        };
+    }
+
+    // Changed rows are read again and set, false when a zone or shelf doesn't fit
+    private boolean apply(State state, LayoutSyncedEvent event) {
+        boolean fits = true;
+        for (Long id : event.getDeletedShelfIds()) {
+            fits &= state.setShelf(id, null);
+        }
+
+        // parents before their children, a zone whose parent is unknown doesn't fit
+        List<ZoneEntity> zones = new ArrayList<>(zoneRepository.findAllById(event.getZoneIds()));
+        Set<Long> waiting = new HashSet<>();
+        zones.forEach(zone -> waiting.add(zone.getId()));
+        while (!zones.isEmpty()) {
+            boolean placed = false;
+            for (Iterator<ZoneEntity> it = zones.iterator(); it.hasNext(); ) {
+                ZoneEntity zone = it.next();
+                Long parentId = zone.getParentZone() == null ? null : zone.getParentZone().getId();
+                if (parentId != null && waiting.contains(parentId)) {
+                    continue;
+                }
+                fits &= state.zones.containsKey(zone.getId())
+                        ? state.moveZone(zone.getId(), parentId)
+                        : state.addZone(zone.getId(), parentId);
+                waiting.remove(zone.getId());
+                it.remove();
+                placed = true;
+            }
+            if (!placed) {
+                return false;
+            }
+        }
+
+        Set<Long> missing = new HashSet<>(event.getShelfIds());
+        for (ShelfEntity shelf : shelfRepository.findAllById(event.getShelfIds())) {
+            missing.remove(shelf.getId());
+            fits &= state.setShelf(shelf.getId(), Shelf.of(shelf));
+        }
+        // deleted after the version was read, its tombstone comes later
+        for (Long id : missing) {
+            fits &= state.setShelf(id, null);
+        }
+        for (Long id : event.getDeletedZoneIds()) {
+            fits &= state.removeZone(id);
+        }
+        return fits;
+    }
+
+    private State load() {
+        State loaded = new State();
+        for (Object[] row : zoneRepository.findParentKeys()) {
+            long parentKey = ((Number) row[1]).longValue();
+            loaded.zones.put((Long) row[0], new Zone(parentKey == 0 ? null : parentKey));
+        }
+        for (Object[] row : shelfRepository.findCapacityRows()) {
+            Shelf shelf = new Shelf(
+                    (Long) row[1],
+                    (long) (Integer) row[2] * (Integer) row[3] * (Integer) row[4],
+                    (Boolean) row[5],
+                    (Boolean) row[6]);
+            // column created after zones were read, counted by the next reconciliation
+            if (!loaded.setShelf((Long) row[0], shelf)) {
+                loaded.shelves.remove((Long) row[0]);
+            }
+        }
+        return loaded;
+    }
+
+    private static List<Drift> drifts(State maintained, State recomputed) {
+        TreeSet<Long> ids = new TreeSet<>(maintained.zones.keySet());
+        ids.addAll(recomputed.zones.keySet());
+        List<Drift> drifts = new ArrayList<>();
+        for (Long id : ids) {
+            ZoneCapacityModel before = maintained.zones.containsKey(id) ? maintained.toModel(id) : null;
+            ZoneCapacityModel after = recomputed.zones.containsKey(id) ? recomputed.toModel(id) : null;
+            if (!Objects.equals(before, after)) {
+                drifts.add(new Drift(id, before, after));
+            }
+        }
+        return drifts;
+    }
+
+    private static class State {
+        private final Map<Long, Zone> zones = new HashMap<>();
+        private final Map<Long, Shelf> shelves = new HashMap<>();
+
+        ZoneCapacityModel toModel(Long zoneId) {
+            Zone zone = zones.get(zoneId);
+            if (zone == null) {
+                throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + zoneId + " not found");
+            }
+            return zone.counters.toModel(zoneId);
+        }
+
+        boolean addZone(Long id, Long parentId) {
+            if (parentId != null && !zones.containsKey(parentId)) {
+                return false;
+            }
+            zones.putIfAbsent(id, new Zone(parentId));
+            return true;
+        }
+
+        boolean moveZone(Long id, Long parentId) {
+            Zone zone = zones.get(id);
+            if (zone == null || parentId != null && !zones.containsKey(parentId)) {
+                return false;
+            }
+            if (Objects.equals(zone.parentId, parentId)) {
+                return true;
+            }
+            roll(zone.parentId, zone.counters, -1);
+            zone.parentId = parentId;
+            return roll(parentId, zone.counters, 1);
+        }
+
+        boolean removeZone(Long id) {
+            Zone zone = zones.remove(id);
+            return zone == null || roll(zone.parentId, zone.counters, -1);
+        }
+
+        boolean setShelf(Long id, Shelf shelf) {
+            Shelf old = shelf == null ? shelves.remove(id) : shelves.put(id, shelf);
+            boolean fits = old == null || roll(old.columnId, Counters.of(old), -1);
+            return (shelf == null || roll(shelf.columnId, Counters.of(shelf), 1)) && fits;
+        }
+
+        // Adds change to the zone and all its ancestors, false when a zone is missing
+        private boolean roll(Long zoneId, Counters change, int sign) {
+            for (Long id = zoneId; id != null; ) {
+                Zone zone = zones.get(id);
+                if (zone == null) {
+                    return false;
+                }
+                zone.counters.add(change, sign);
+                id = zone.parentId;
+            }
+            return true;
+        }
+    }
+
+    private static class Zone {
+        private Long parentId;
+        private final Counters counters = new Counters();
+
+        Zone(Long parentId) {
+            this.parentId = parentId;
+        }
+    }
+
+    private static class Counters {
+        private long total;
+        private long free;
+        private long occupied;
+        private long inactive;
+        private long freeVolume;
+
+        static Counters of(Shelf shelf) {
+            Counters counters = new Counters();
+            counters.total = 1;
+            if (!shelf.active) {
+                counters.inactive = 1;
+            } else if (shelf.occupied) {
+                counters.occupied = 1;
+            } else {
+                counters.free = 1;
+                counters.freeVolume = shelf.volume;
+            }
+            return counters;
+        }
+
+        void add(Counters other, int sign) {
+            total += sign * other.total;
+            free += sign * other.free;
+            occupied += sign * other.occupied;
+            inactive += sign * other.inactive;
+            freeVolume += sign * other.freeVolume;
+        }
+
+        ZoneCapacityModel toModel(Long zoneId) {
+            return ZoneCapacityModel
+                    .builder()
+                    .zoneId(zoneId)
+                    .totalShelves(total)
+                    .freeShelves(free)
+                    .occupiedShelves(occupied)
+                    .inactiveShelves(inactive)
+                    .freeVolume(freeVolume)
+                    .build();
+        }
+    }
+
+    private record Shelf(Long columnId, long volume, boolean active, boolean occupied) {
+        static Shelf of(ShelfEntity shelf) {
+            return new Shelf(
+                    shelf.getZone() == null ? null : shelf.getZone().getId(),
+                    (long) shelf.getWidth() * shelf.getLength() * shelf.getHeight(),
+                    shelf.isActive(),
+                    shelf.isOccupied());
+        }
+
+        Shelf withOccupied(boolean occupied) {
+            return new Shelf(columnId, volume, active, occupied);
+        }
+    }
+}
@@ -1,23 +1,48 @@
 package com.fatia.warehouseservice.services;
 
+import com.fatia.warehouseservice.cache.LayoutSnapshot;
+import com.fatia.warehouseservice.cache.LayoutSnapshotCache;
+import com.fatia.warehouseservice.concurrency.LayoutLocks;
 import com.fatia.warehouseservice.entities.FaceDirection;
 import com.fatia.warehouseservice.entities.ZoneEntity;
 import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.ids.ShortIdGenerator;
+import com.fatia.warehouseservice.metrics.LayoutMetrics;
+import com.fatia.warehouseservice.models.ZoneCapacityModel;
+import com.fatia.warehouseservice.models.ZoneFlatModel;
 import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.models.ZonePositionModel;
 import com.fatia.warehouseservice.repositories.ZoneRepository;
 import com.fatia.warehouseservice.requests.AddChildZoneRequest;
 import com.fatia.warehouseservice.requests.AddParentZoneRequest;
+import com.fatia.warehouseservice.requests.MoveZoneRequest;
 import com.fatia.warehouseservice.requests.UpdateChildZoneRequest;
 import com.fatia.warehouseservice.requests.UpdateParentZoneRequest;
+import com.fatia.warehouseservice.responses.CapacityReconcileResponse;
+import com.fatia.warehouseservice.responses.CursorPageResponse;
 import com.fatia.warehouseservice.responses.UpdateZoneReponse;
+import com.fatia.warehouseservice.spatial.Frame;
+import com.fatia.warehouseservice.spatial.Rect;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -27,17 +52,33 @@ public class ZoneService {
 
     private final WarehouseService warehouseService;
 
-    //For generating unique short UUID
-    private String generateUniqueShortUUID() {
-        String uuid;
-        do {
-            uuid = UUID.randomUUID().toString().substring(0, 8);
-        } while (zoneRepository.findByUuid(uuid).isPresent());
-        return uuid;
-    }
+    private final ZoneSpatialIndex zoneSpatialIndex;
+
+    private final ShortIdGenerator shortIdGenerator;
+
+    private final ZoneTreeLoader zoneTreeLoader;
+
+    private final LayoutSnapshotCache layoutSnapshotCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final EntityManager entityManager;
+
+    private final LayoutMetrics layoutMetrics;
+
+    private final AbsoluteBoundsService absoluteBoundsService;
+
+    private final LayoutLocks layoutLocks;
+
+    private final ZoneCapacityIndex zoneCapacityIndex;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    //Id used for zones which are not saved yet
+    private static final Long NEW_ZONE_ID = 0L;
 
     //For checkin is child object within parent object bounds
-    public boolean isChildWithinParentBounds(ZoneEntity child, ZoneEntity parent) {
+    public static boolean isChildWithinParentBounds(ZoneEntity child, ZoneEntity parent) {
         int rotationAngle = child.getRotationAngle();
 
         int drawnWidth = (rotationAngle % 180 == 0) ? child.getWidth() : child.getLength();
@@ -65,40 +106,14 @@ public class ZoneService {
             ZoneEntity targetZone,
             List<ZoneEntity> siblings) {
 
-        int targetOriginX = targetZone.getOriginX();
-        int targetOriginY = targetZone.getOriginY();
-        int targetDrawnWidth = targetZone.getRotationAngle() % 180 == 0
-                ? targetZone.getWidth()
-                : targetZone.getLength();
-        int targetDrawnLength = targetZone.getRotationAngle() % 180 == 0
-                ? targetZone.getLength()
-                : targetZone.getWidth();
-
-        int targetEndX = targetOriginX + targetDrawnWidth;
-        int targetEndY = targetOriginY + targetDrawnLength;
+        Rect target = ZoneSpatialIndex.footprint(targetZone);
 
         for (ZoneEntity sibling : siblings) {
-            if (sibling.getId().equals(targetZone.getId())
-                    || targetZone.getId().equals(0L)) {
+            if (sibling.getId().equals(targetZone.getId())) {
                 continue;
             }
 
-            int siblingOriginX = sibling.getOriginX();
-            int siblingOriginY = sibling.getOriginY();
-            int siblingDrawnWidth = sibling.getRotationAngle() % 180 == 0
-                    ? sibling.getWidth()
-                    : sibling.getLength();
-            int siblingDrawnLength = sibling.getRotationAngle() % 180 == 0
-                    ? sibling.getLength()
-                    : sibling.getWidth();
-
-            int siblingEndX = siblingOriginX + siblingDrawnWidth;
-            int siblingEndY = siblingOriginY + siblingDrawnLength;
-
-            boolean xOverlap = targetOriginX < siblingEndX && targetEndX > siblingOriginX;
-            boolean yOverlap = targetOriginY < siblingEndY && targetEndY > siblingOriginY;
-
-            if (xOverlap && yOverlap) {
+            if (target.intersects(ZoneSpatialIndex.footprint(sibling))) {
                 return true;
             }
         }
@@ -106,59 +121,132 @@ public class ZoneService {
         return false;
     }
 
-    public List<ZoneModel> getAll() {
-        List<ZoneEntity> entities = zoneRepository.findAll();
-        List<ZoneModel> models = new ArrayList<>();
-        for (ZoneEntity entity : entities) {
-            models.add(ZoneModel.toModel(entity));
+    // Writes under the parents are serialized from here to commit, see LayoutLocks
+    private void lockParents(Long... parentIds) {
+        for (Long parentKey : layoutLocks.lockParents(parentIds)) {
+            zoneSpatialIndex.invalidate(parentKey);
         }
+    }
 
-        return models;
+    // Parent key of the zone and extraKeys, read before the write transaction (LayoutLocks.write).
+    // Only extraKeys when the zone doesn't exist, the write rejects it.
+    private Long[] parentKeys(Long id, Long... extraKeys) {
+        Optional<Long> parentKey = zoneRepository.findParentKeyById(id);
+        return parentKey.isEmpty() ? extraKeys : Stream
+                .concat(Stream.of(parentKey.get()), Stream.of(extraKeys))
+                .toArray(Long[]::new);
+    }
+
+    // Locks parent of the zone (and extraKey when not null), then loads the zone.
+    // Load skips the second-level cache, a writer holding the lock before may have just changed it.
+    private ZoneEntity lockedZone(Long id, Long extraKey) {
+        Optional<Long> parentKey = zoneRepository.findParentKeyById(id);
+        if (parentKey.isEmpty()) {
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + id + " not found");
+        }
+
+        if (extraKey == null) {
+            lockParents(parentKey.get());
+        } else {
+            lockParents(parentKey.get(), extraKey);
+        }
+        ZoneEntity entity = entityManager.find(ZoneEntity.class, id,
+                Map.of(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS));
+        if (entity == null) {
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + id + " not found");
+        }
+        return entity;
+    }
+
+    public LayoutSnapshot getSnapshot() {
+        return layoutSnapshotCache.get();
+    }
+
+    public List<ZoneModel> getAll() {
+        return layoutSnapshotCache.get().getZones();
     }
 
     public ZoneModel getById(Long id) {
-        Optional<ZoneEntity> entity = zoneRepository.findById(id);
-        if (entity.isEmpty()) {
-            throw new RuntimeException("Zone with id " + id + " not found");
+        ZoneModel zone = layoutSnapshotCache.get().getZone(id);
+        if (zone == null) {
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + id + " not found");
         }
 
-        return ZoneModel.toModel(entity.get());
+        return zone;
+    }
+
+    public CursorPageResponse<ZoneFlatModel> getPage(Long afterId, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<ZoneEntity> entities = zoneRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId == null ? 0L : afterId,
+                Limit.of(size));
+
+        List<ZoneFlatModel> models = new ArrayList<>(entities.size());
+        for (ZoneEntity entity : entities) {
+            models.add(ZoneFlatModel.toModel(entity));
+        }
+
+        return CursorPageResponse
+                .<ZoneFlatModel>builder()
+                .items(models)
+                .size(models.size())
+                .nextCursor(models.size() < size ? null : models.get(models.size() - 1).getId())
+                .build();
+    }
+
+    //Streams all zones without holding them in memory
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<ZoneFlatModel> consumer) {
+        try (Stream<ZoneEntity> entities = zoneRepository.streamAll()) {
+            int count = 0;
+            for (ZoneEntity entity : (Iterable<ZoneEntity>) entities::iterator) {
+                consumer.accept(ZoneFlatModel.toModel(entity));
+                if (++count % ZoneRepository.STREAM_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
     }
 
     public ZoneModel addParentZone(AddParentZoneRequest request) {
+        return layoutLocks.write(status -> addParentZoneLocked(request), ZoneSpatialIndex.ROOT);
+    }
+
+    private ZoneModel addParentZoneLocked(AddParentZoneRequest request) {
+        lockParents(ZoneSpatialIndex.ROOT);
+
         if (!warehouseService.isWithinBounds(
                 request.getOriginX(),
                 request.getOriginY(),
                 request.getWidth(),
                 request.getLength())
         ) {
-            throw new RuntimeException("Zone with invalid origin");
+            throw new LayoutRejectedException(Reason.OUT_OF_WAREHOUSE_BOUNDS, "Zone with invalid origin");
         }
 
-        List<ZoneEntity> allParentZones = zoneRepository.findByTypeIn(ZoneType.getWarehouseChildrenZones());
-
-        ZoneEntity overLappingNewZoneTestEntity = ZoneEntity
-                .builder()
-                .id(0L)
-                .originX(request.getOriginX())
-                .originY(request.getOriginY())
-                .width(request.getWidth())
-                .length(request.getLength())
-                .rotationAngle(request.getRotationAngle())
-                .build();
+        Rect footprint = Rect.footprint(
+                request.getOriginX(),
+                request.getOriginY(),
+                request.getWidth(),
+                request.getLength(),
+                request.getRotationAngle());
 
-        if (isOverlappingWithOthers(
-                overLappingNewZoneTestEntity,
-                allParentZones
+        if (zoneSpatialIndex.isOverlapping(
+                ZoneSpatialIndex.ROOT,
+                NEW_ZONE_ID,
+                footprint
         )) {
-            throw new RuntimeException("Zone overlapping with other zones");
+            throw new LayoutRejectedException(Reason.OVERLAP, "Zone overlapping with other zones");
         }
 
         if (!ZoneType.isValidZoneType(request.getType())) {
-            throw new RuntimeException("Invalid type " + request.getType());
+            throw new LayoutRejectedException(Reason.INVALID_TYPE, "Invalid type " + request.getType());
         }
 
-        String uuid = generateUniqueShortUUID();
+        String uuid = shortIdGenerator.next();
 
         String name = request.getType() + "-" + uuid;
 
@@ -176,31 +264,44 @@ public class ZoneService {
                 .faceDirection(FaceDirection.valueOf(request.getFaceDirection()))
                 .build();
 
+        absoluteBoundsService.place(entity);
+
+        layoutMetrics.phase(LayoutMetrics.DB);
+
         zoneRepository.saveAndFlush(entity);
+        eventPublisher.publishEvent(LayoutChangedEvent.zone(entity, Operation.CREATED));
+
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
 
         ZoneModel zoneModel = ZoneModel.toModel(entity);
         return zoneModel;
     }
 
     public ZoneModel addChildZone(AddChildZoneRequest request) {
+        return layoutLocks.write(status -> addChildZoneLocked(request), request.getParentZoneId());
+    }
+
+    private ZoneModel addChildZoneLocked(AddChildZoneRequest request) {
         if (!ZoneType.isValidZoneType(request.getType())) {
-            throw new RuntimeException("Invalid type " + request.getType());
+            throw new LayoutRejectedException(Reason.INVALID_TYPE, "Invalid type " + request.getType());
         }
 
         if (request.getParentZoneId() == null) {
-            throw new RuntimeException("Parent zone id is null");
+            throw new LayoutRejectedException(Reason.MISSING_PARENT, "Parent zone id is null");
         }
 
+        lockParents(request.getParentZoneId());
+
         Optional<ZoneEntity> optionalZoneEntity = zoneRepository.findById(request.getParentZoneId());
         if (optionalZoneEntity.isEmpty()) {
-            throw new RuntimeException("Zone with id " + request.getParentZoneId() + " not found");
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + request.getParentZoneId() + " not found");
         }
 
         ZoneEntity parentZone = optionalZoneEntity.get();
 
         ZoneEntity newChildTestEntity = ZoneEntity
                 .builder()
-                .id(0L)
+                .id(NEW_ZONE_ID)
                 .originX(request.getOriginX())
                 .originY(request.getOriginY())
                 .width(request.getWidth())
@@ -212,23 +313,24 @@ public class ZoneService {
                 newChildTestEntity,
                 parentZone
         )) {
-            throw new RuntimeException("Child zone out of parent zone bounds");
+            throw new LayoutRejectedException(Reason.OUT_OF_PARENT_BOUNDS, "Child zone out of parent zone bounds");
         }
 
-        if (isOverlappingWithOthers(
-                newChildTestEntity,
-                parentZone.getChildZones()
+        if (zoneSpatialIndex.isOverlapping(
+                parentZone.getId(),
+                NEW_ZONE_ID,
+                ZoneSpatialIndex.footprint(newChildTestEntity)
         )) {
-            throw new RuntimeException("Child zone overlapping with sibling zones");
+            throw new LayoutRejectedException(Reason.OVERLAP, "Child zone overlapping with sibling zones");
         }
 
         ZoneType childType = ZoneType.valueOf(request.getType());
         if (!parentZone.getType().getAllowedChildren().contains(childType)) {
-            throw new RuntimeException("Child zone with type " + request.getType()
+            throw new LayoutRejectedException(Reason.CHILD_TYPE_NOT_ALLOWED, "Child zone with type " + request.getType()
                     + " is not allowed to be child of " + parentZone.getType());
         }
 
-        String uuid = generateUniqueShortUUID();
+        String uuid = shortIdGenerator.next();
 
         String name = request.getType()
                 + "-"
@@ -250,7 +352,14 @@ public class ZoneService {
                 .parentZone(parentZone)
                 .build();
 
+        absoluteBoundsService.place(childZone);
+
+        layoutMetrics.phase(LayoutMetrics.DB);
+
         zoneRepository.saveAndFlush(childZone);
+        eventPublisher.publishEvent(LayoutChangedEvent.zone(childZone, Operation.CREATED));
+
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
 
         ZoneModel zoneModel = ZoneModel.toModel(childZone);
 
@@ -258,6 +367,10 @@ public class ZoneService {
     }
 
     public UpdateZoneReponse updateParentZone(Long id, UpdateParentZoneRequest request) {
+        return layoutLocks.write(status -> updateParentZoneLocked(id, request), parentKeys(id));
+    }
+
+    private UpdateZoneReponse updateParentZoneLocked(Long id, UpdateParentZoneRequest request) {
         List<String> warnings = new ArrayList<>();
         String status = HttpStatus.OK.toString();
 
@@ -267,19 +380,15 @@ public class ZoneService {
                 request.getWidth(),
                 request.getLength())
         ) {
-            throw new RuntimeException("Zone with invalid origin");
+            throw new LayoutRejectedException(Reason.OUT_OF_WAREHOUSE_BOUNDS, "Zone with invalid origin");
         }
 
         if (!ZoneType.isValidZoneType(request.getType())) {
-            throw new RuntimeException("Invalid type " + request.getType());
+            throw new LayoutRejectedException(Reason.INVALID_TYPE, "Invalid type " + request.getType());
         }
 
-        Optional<ZoneEntity> optionalZoneEntity = zoneRepository.findById(id);
-        if (optionalZoneEntity.isEmpty()) {
-            throw new RuntimeException("Zone with id " + id + " not found");
-        }
-
-        ZoneEntity entity = optionalZoneEntity.get();
+        ZoneEntity entity = lockedZone(id, null);
+        Frame oldFrame = AbsoluteBoundsService.frameOf(entity);
 
         if (!entity.getType().name().equals(request.getType())) {
             String newName = request.getType() + "-" + entity.getUuid();
@@ -290,47 +399,32 @@ public class ZoneService {
             status = "OK_WITH_WARNINGS";
         }
 
-        int oldX = entity.getOriginX();
-        int oldY = entity.getOriginY();
-
-        List<ZoneEntity> allParentZones = zoneRepository.findByTypeIn(ZoneType.getWarehouseChildrenZones());
-
-        ZoneEntity overLappingNewParentTestEntity = ZoneEntity
-                .builder()
-                .id(id)
-                .originX(request.getOriginX())
-                .originY(request.getOriginY())
-                .width(request.getWidth())
-                .length(request.getLength())
-                .build();
+        Rect footprint = Rect.footprint(
+                request.getOriginX(),
+                request.getOriginY(),
+                request.getWidth(),
+                request.getLength(),
+                request.getRotationAngle());
 
-        if (!isOverlappingWithOthers(
-                overLappingNewParentTestEntity,
-                allParentZones
+        if (!zoneSpatialIndex.isOverlapping(
+                ZoneSpatialIndex.ROOT,
+                id,
+                footprint
         )) {
             entity.setRotationAngle(request.getRotationAngle());
             entity.setOriginX(request.getOriginX());
             entity.setOriginY(request.getOriginY());
             warnings.add("Zone origin was changed");
 
-            if (entity.getChildZones().isEmpty()) {
+            // children are relative to the parent, only their absolute bounds are moved
+            long childCount = zoneRepository.countByParentZoneId(id);
+            if (childCount == 0) {
                 entity.setWidth(request.getWidth());
                 entity.setLength(request.getLength());
                 warnings.add("Bounds was changed");
             } else {
-                warnings.add("Bounds was not changed. Zone has " + entity.getChildZones().size() + " child zones");
+                warnings.add("Bounds was not changed. Zone has " + childCount + " child zones");
                 status = "OK_WITH_WARNINGS";
-
-                int dx = request.getOriginX() - oldX;
-                int dy = request.getOriginY() - oldY;
-
-                if (dx != 0 || dy != 0) {
-                    for (ZoneEntity child : entity.getChildZones()) {
-                        child.setOriginX(child.getOriginX() + dx);
-                        child.setOriginY(child.getOriginY() + dy);
-                    }
-                    warnings.add("Child zones were shifted with new parent origin");
-                }
             }
         } else {
             warnings.add("Zone overlaps with siblings zone bounds");
@@ -339,38 +433,44 @@ public class ZoneService {
 
         entity.setFaceDirection(FaceDirection.valueOf(request.getFaceDirection()));
         entity.setDescription(request.getDescription());
+        layoutMetrics.phase(LayoutMetrics.DB);
+        absoluteBoundsService.update(entity, oldFrame);
         zoneRepository.saveAndFlush(entity);
+        eventPublisher.publishEvent(LayoutChangedEvent.zone(entity, Operation.UPDATED));
 
-        ZoneModel zoneModel = ZoneModel.toModel(entity);
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
+
+        ZoneModel zoneModel = zoneTreeLoader.loadSubtree(entity.getId());
 
         return UpdateZoneReponse
                 .builder()
-                .zone(ZoneModel.toModel(entity))
+                .zone(zoneModel)
                 .status(status)
                 .warnings(warnings)
                 .build();
     }
 
     public UpdateZoneReponse updateChildZone(Long id, UpdateChildZoneRequest request) {
+        return layoutLocks.write(status -> updateChildZoneLocked(id, request), parentKeys(id));
+    }
+
+    private UpdateZoneReponse updateChildZoneLocked(Long id, UpdateChildZoneRequest request) {
         List<String> warnings = new ArrayList<>();
         String status = HttpStatus.OK.toString();
 
-        Optional<ZoneEntity> optionalChildZoneEntity = zoneRepository.findById(id);
-        if (optionalChildZoneEntity.isEmpty()) {
-            throw new RuntimeException("Zone with id " + id + " not found");
-        }
+        ZoneEntity childZone = lockedZone(id, null);
 
         if (request.getParentZoneId() == null) {
-            throw new RuntimeException("Parent zone id is null");
+            throw new LayoutRejectedException(Reason.MISSING_PARENT, "Parent zone id is null");
         }
 
-        Optional<ZoneEntity> optionalParentZoneEntity = zoneRepository.findById(request.getParentZoneId());
-        if (optionalParentZoneEntity.isEmpty()) {
-            throw new RuntimeException("Zone with id " + request.getParentZoneId() + " not found");
+        // lock is taken on the stored parent, the zone can't move to another one here
+        ZoneEntity parentZone = childZone.getParentZone();
+        if (parentZone == null || !parentZone.getId().equals(request.getParentZoneId())) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST,
+                    "Zone with id " + id + " is not a child of zone " + request.getParentZoneId());
         }
 
-        ZoneEntity parentZone = optionalParentZoneEntity.get();
-
         ZoneEntity newChildTestEntity = ZoneEntity
                 .builder()
                 .id(id)
@@ -385,17 +485,18 @@ public class ZoneService {
                 newChildTestEntity,
                 parentZone
         )) {
-            throw new RuntimeException("Child zone out of parent zone bounds");
+            throw new LayoutRejectedException(Reason.OUT_OF_PARENT_BOUNDS, "Child zone out of parent zone bounds");
         }
 
-        ZoneEntity childZone = optionalChildZoneEntity.get();
+        Frame oldFrame = AbsoluteBoundsService.frameOf(childZone);
 
         if (childZone.getShelves().isEmpty()) {
 
 
-            if (!isOverlappingWithOthers(
-                    newChildTestEntity,
-                    parentZone.getChildZones()
+            if (!zoneSpatialIndex.isOverlapping(
+                    parentZone.getId(),
+                    id,
+                    ZoneSpatialIndex.footprint(newChildTestEntity)
             )) {
                 childZone.setRotationAngle(request.getRotationAngle());
                 childZone.setOriginX(request.getOriginX());
@@ -414,31 +515,144 @@ public class ZoneService {
 
         childZone.setFaceDirection(FaceDirection.valueOf(request.getFaceDirection()));
         childZone.setDescription(request.getDescription());
+        layoutMetrics.phase(LayoutMetrics.DB);
+        absoluteBoundsService.update(childZone, oldFrame);
         zoneRepository.saveAndFlush(childZone);
+        eventPublisher.publishEvent(LayoutChangedEvent.zone(childZone, Operation.UPDATED));
 
-        ZoneModel zoneModel = ZoneModel.toModel(childZone);
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
+
+        ZoneModel zoneModel = zoneTreeLoader.loadSubtree(childZone.getId());
 
         return UpdateZoneReponse
                 .builder()
-                .zone(ZoneModel.toModel(childZone))
+                .zone(zoneModel)
                 .status(status)
                 .warnings(warnings)
                 .build();
     }
 
-    public void deleteZoneById(Long id) {
-        Optional<ZoneEntity> optionalZoneEntity = zoneRepository.findById(id);
-        if (optionalZoneEntity.isEmpty()) {
-            throw new RuntimeException("Zone with id " + id + " not found");
+    // Moves and/or rotates zone together with its whole subtree.
+    // Children and shelves are stored relatively to the parent, so besides the zone row
+    // only their absolute bounds are shifted, with set based updates.
+    public ZoneFlatModel moveZone(Long id, MoveZoneRequest request) {
+        return layoutLocks.write(status -> moveZoneLocked(id, request), parentKeys(id));
+    }
+
+    private ZoneFlatModel moveZoneLocked(Long id, MoveZoneRequest request) {
+        if (request.getRotationAngle() % 90 != 0) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Rotation angle must be multiple of 90");
+        }
+
+        ZoneEntity entity = lockedZone(id, null);
+        Frame oldFrame = AbsoluteBoundsService.frameOf(entity);
+        ZoneEntity moved = ZoneEntity
+                .builder()
+                .originX(request.getOriginX())
+                .originY(request.getOriginY())
+                .width(entity.getWidth())
+                .length(entity.getLength())
+                .rotationAngle(Math.floorMod(request.getRotationAngle(), 360))
+                .build();
+        Rect footprint = ZoneSpatialIndex.footprint(moved);
+
+        ZoneEntity parent = entity.getParentZone();
+        if (parent == null) {
+            if (!warehouseService.isWithinBounds(
+                    footprint.getMinX(),
+                    footprint.getMinY(),
+                    footprint.getWidth(),
+                    footprint.getLength())
+            ) {
+                throw new LayoutRejectedException(Reason.OUT_OF_WAREHOUSE_BOUNDS, "Zone with invalid origin");
+            }
+        } else if (!isChildWithinParentBounds(moved, parent)) {
+            throw new LayoutRejectedException(Reason.OUT_OF_PARENT_BOUNDS, "Child zone out of parent zone bounds");
+        }
+
+        if (zoneSpatialIndex.isOverlapping(parent == null ? ZoneSpatialIndex.ROOT : parent.getId(), id, footprint)) {
+            throw new LayoutRejectedException(Reason.OVERLAP, "Zone overlapping with sibling zones");
+        }
+
+        entity.setOriginX(moved.getOriginX());
+        entity.setOriginY(moved.getOriginY());
+        entity.setRotationAngle(moved.getRotationAngle());
+
+        layoutMetrics.phase(LayoutMetrics.DB);
+        absoluteBoundsService.update(entity, oldFrame);
+        zoneRepository.saveAndFlush(entity);
+        eventPublisher.publishEvent(LayoutChangedEvent.zone(entity, Operation.UPDATED));
+
+        layoutMetrics.phase(LayoutMetrics.MAPPING);
+        return ZoneFlatModel.toModel(entity);
+    }
+
+    public ZonePositionModel getPosition(Long id) {
+        Rect footprint = layoutSnapshotCache.get().getAbsoluteFootprint(id);
+        if (footprint == null) {
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + id + " not found");
         }
 
-        ZoneEntity entity = optionalZoneEntity.get();
+        return ZonePositionModel.toModel(id, footprint);
+    }
+
+    //Rolled up counters, shelves are not read
+    public ZoneCapacityModel getCapacity(Long id) {
+        return zoneCapacityIndex.getCapacity(id);
+    }
+
+    public CapacityReconcileResponse reconcileCapacity() {
+        return zoneCapacityIndex.reconcile();
+    }
+
+    //Zones containing the point, innermost first
+    @Transactional(readOnly = true)
+    public List<ZoneFlatModel> getAt(int x, int y) {
+        return toFlatModels(zoneRepository.findContaining(x, y));
+    }
+
+    //Zones intersecting the window, min inclusive and max exclusive
+    @Transactional(readOnly = true)
+    public List<ZoneFlatModel> getInWindow(int minX, int minY, int maxX, int maxY, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (minX >= maxX || minY >= maxY) {
+            throw new LayoutRejectedException(Reason.INVALID_REQUEST, "Window is empty");
+        }
+
+        return toFlatModels(zoneRepository.findIntersecting(minX, minY, maxX, maxY, Limit.of(size)));
+    }
+
+    private static List<ZoneFlatModel> toFlatModels(List<ZoneEntity> entities) {
+        List<ZoneFlatModel> models = new ArrayList<>(entities.size());
+        for (ZoneEntity entity : entities) {
+            models.add(ZoneFlatModel.toModel(entity));
+        }
+        return models;
+    }
+
+    public void deleteZoneById(Long id) {
+        // own key too, children can't be added while checking for dependents
+        layoutLocks.write(status -> {
+            deleteZoneLocked(id);
+            return null;
+        }, parentKeys(id, id));
+    }
+
+    private void deleteZoneLocked(Long id) {
+        ZoneEntity entity = lockedZone(id, id);
 
         if (!entity.getShelves().isEmpty()
                 || !entity.getChildZones().isEmpty()) {
-            throw new RuntimeException("Zone cannot ne deleted because it has dependent elements");
+            throw new LayoutRejectedException(Reason.HAS_DEPENDENTS, "Zone cannot ne deleted because it has dependent elements");
         }
 
+        Long parentId = entity.getParentZone() == null ? null : entity.getParentZone().getId();
+
+        layoutMetrics.phase(LayoutMetrics.DB);
+
         zoneRepository.delete(entity);
+        eventPublisher.publishEvent(LayoutChangedEvent.zone(id, Operation.DELETED, parentId));
     }
 }
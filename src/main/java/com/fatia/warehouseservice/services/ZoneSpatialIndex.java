@@ -0,0 +1,162 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.spatial.Rect;
+import com.fatia.warehouseservice.spatial.SpatialGrid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-parent spatial index of zone footprints.
+// Footprints are stored in parent local coordinates, top-level zones are kept under ROOT.
+// Each parent is loaded from DB once on first access, after that it is kept up to date
+// from LayoutChangedEvent after commit, a rolled back write never reaches the index.
+// Writers hold the lock of the parent (LayoutLocks) until the index is updated.
+@Service
+@RequiredArgsConstructor
+public class ZoneSpatialIndex {
+
+    public static final Long ROOT = 0L;
+
+    private final ZoneRepository zoneRepository;
+
+    private final WarehouseConfig warehouseConfig;
+
+    private final Map<Long, SpatialGrid> grids = new ConcurrentHashMap<>();
+
+    // zone id -> parent key, to find old grid when zone is moved or deleted
+    private final Map<Long, Long> owners = new ConcurrentHashMap<>();
+
+    public static Rect footprint(ZoneEntity zone) {
+        return Rect.footprint(
+                zone.getOriginX(),
+                zone.getOriginY(),
+                zone.getWidth(),
+                zone.getLength(),
+                zone.getRotationAngle() == null ? 0 : zone.getRotationAngle());
+    }
+
+    public boolean isOverlapping(Long parentId, Long zoneId, Rect footprint) {
+        SpatialGrid grid = grid(parentId == null ? ROOT : parentId);
+        synchronized (grid) {
+            return grid.anyIntersecting(footprint, zoneId);
+        }
+    }
+
+    public List<Long> findIntersecting(Long parentId, Rect area) {
+        SpatialGrid grid = grid(parentId == null ? ROOT : parentId);
+        synchronized (grid) {
+            return grid.query(area);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutChanged(LayoutChangedEvent event) {
+        if (event.getEntityType() != EntityType.ZONE) {
+            return;
+        }
+        Long parent = event.getParentId() == null ? ROOT : event.getParentId();
+        if (event.getOperation() == Operation.CREATED || event.getOperation() == Operation.UPDATED) {
+            put(event.getEntityId(), parent, footprint(event.getGeometry()));
+        } else if (event.getOperation() == Operation.DELETED) {
+            remove(event.getEntityId(), parent);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayoutImported(LayoutImportedEvent event) {
+        for (LayoutChangedEvent change : event.getChanges()) {
+            onLayoutChanged(change);
+        }
+    }
+
+    private static Rect footprint(Map<String, Integer> geometry) {
+        return Rect.footprint(
+                geometry.get("originX"),
+                geometry.get("originY"),
+                geometry.get("width"),
+                geometry.get("length"),
+                geometry.get("rotationAngle"));
+    }
+
+    private void put(Long id, Long parent, Rect footprint) {
+        Long previous = owners.put(id, parent);
+        if (previous != null && !previous.equals(parent)) {
+            SpatialGrid old = grids.get(previous);
+            if (old != null) {
+                synchronized (old) {
+                    old.remove(id);
+                }
+            }
+        }
+
+        SpatialGrid grid = grids.get(parent);
+        if (grid == null) {
+            // not loaded yet, whole parent will be read on first query
+            return;
+        }
+        synchronized (grid) {
+            grid.put(id, footprint);
+        }
+    }
+
+    private void remove(Long id, Long parentKey) {
+        Long parent = owners.remove(id);
+        if (parent == null) {
+            parent = parentKey;
+        }
+        SpatialGrid grid = grids.get(parent);
+        if (grid != null) {
+            synchronized (grid) {
+                grid.remove(id);
+            }
+        }
+        // zone itself could have been a parent
+        grids.remove(id);
+    }
+
+    //Parent is read from DB again on next access
+    public void invalidate(Long parentId) {
+        grids.remove(parentId == null ? ROOT : parentId);
+    }
+
+    public void clear() {
+        grids.clear();
+        owners.clear();
+    }
+
+    private SpatialGrid grid(Long parentKey) {
+        return grids.computeIfAbsent(parentKey, this::load);
+    }
+
+    private SpatialGrid load(Long parentKey) {
+        List<ZoneEntity> children;
+        int cellSize;
+        if (ROOT.equals(parentKey)) {
+            children = zoneRepository.findByParentZoneIsNull();
+            cellSize = SpatialGrid.cellSizeFor(warehouseConfig.getWidth(), warehouseConfig.getHeight());
+        } else {
+            children = zoneRepository.findByParentZoneId(parentKey);
+            cellSize = zoneRepository.findById(parentKey)
+                    .map(parent -> SpatialGrid.cellSizeFor(parent.getWidth(), parent.getLength()))
+                    .orElse(SpatialGrid.cellSizeFor(warehouseConfig.getWidth(), warehouseConfig.getHeight()));
+        }
+
+        SpatialGrid grid = new SpatialGrid(cellSize);
+        for (ZoneEntity child : children) {
+            grid.put(child.getId(), footprint(child));
+            owners.put(child.getId(), parentKey);
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,118 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Builds ZoneModel trees from flat query results.
+// Lazy associations of loaded entities are never touched (only ids of parent/zone proxies),
+// so whole warehouse is read in 2 queries and a subtree in 2 queries per tree level.
+@Service
+@RequiredArgsConstructor
+public class ZoneTreeLoader {
+
+    private final ZoneRepository zoneRepository;
+
+    private final ShelfRepository shelfRepository;
+
+    @Transactional(readOnly = true)
+    public List<ZoneModel> loadAll() {
+        List<ZoneEntity> zones = zoneRepository.findAll();
+        List<ShelfEntity> shelves = shelfRepository.findAll();
+
+        Tree tree = new Tree(zones, shelves);
+        List<ZoneModel> models = new ArrayList<>(zones.size());
+        for (ZoneEntity zone : zones) {
+            models.add(tree.toModel(zone));
+        }
+        return models;
+    }
+
+    @Transactional(readOnly = true)
+    public ZoneModel loadSubtree(Long id) {
+        Optional<ZoneEntity> root = zoneRepository.findById(id);
+        if (root.isEmpty()) {
+            throw new LayoutRejectedException(Reason.NOT_FOUND, "Zone with id " + id + " not found");
+        }
+
+        List<ZoneEntity> zones = new ArrayList<>();
+        List<ShelfEntity> shelves = new ArrayList<>();
+
+        List<ZoneEntity> level = List.of(root.get());
+        while (!level.isEmpty()) {
+            zones.addAll(level);
+
+            List<Long> ids = new ArrayList<>(level.size());
+            for (ZoneEntity zone : level) {
+                ids.add(zone.getId());
+            }
+
+            shelves.addAll(shelfRepository.findByZoneIdIn(ids));
+            level = zoneRepository.findByParentZoneIdIn(ids);
+        }
+
+        return new Tree(zones, shelves).toModel(root.get());
+    }
+
+    private static Long parentId(ZoneEntity zone) {
+        return zone.getParentZone() == null ? null : zone.getParentZone().getId();
+    }
+
+    private static class Tree {
+        private final Map<Long, String> zoneNames = new HashMap<>();
+        private final Map<Long, List<ZoneEntity>> children = new HashMap<>();
+        private final Map<Long, List<ShelfEntity>> shelves = new HashMap<>();
+        private final Map<Long, ZoneModel> built = new HashMap<>();
+
+        Tree(List<ZoneEntity> zones, List<ShelfEntity> shelfEntities) {
+            for (ZoneEntity zone : zones) {
+                zoneNames.put(zone.getId(), zone.getName());
+                Long parentId = parentId(zone);
+                if (parentId != null) {
+                    children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(zone);
+                }
+            }
+            for (ShelfEntity shelf : shelfEntities) {
+                if (shelf.getZone() != null) {
+                    shelves.computeIfAbsent(shelf.getZone().getId(), k -> new ArrayList<>()).add(shelf);
+                }
+            }
+        }
+
+        // Each zone is mapped once and shared by all ancestors
+        ZoneModel toModel(ZoneEntity zone) {
+            ZoneModel model = built.get(zone.getId());
+            if (model != null) {
+                return model;
+            }
+
+            List<ShelfModel> shelfModels = new ArrayList<>();
+            for (ShelfEntity shelf : shelves.getOrDefault(zone.getId(), List.of())) {
+                shelfModels.add(ShelfModel.toModel(shelf, zoneNames.get(zone.getId())));
+            }
+
+            List<ZoneModel> childModels = new ArrayList<>();
+            for (ZoneEntity child : children.getOrDefault(zone.getId(), List.of())) {
+                childModels.add(toModel(child));
+            }
+
+            model = ZoneModel.toModel(zone, List.copyOf(shelfModels), List.copyOf(childModels));
+            built.put(zone.getId(), model);
+            return model;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.fatia.warehouseservice.spatial;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Shelves of one column stacked by level. Level is the ordinal of a tier, not a height:
+// shelves of a level stand side by side on the same tier, tier is as high as its tallest
+// shelf and starts where the tiers of lower levels end (elevation). Two shelves collide
+// when they are on the same level and their footprints overlap, shelves of different
+// levels never do. Stack height is the sum of tier heights.
+// A tier keeps footprints sorted by min x and shelf heights counted per height, so finding
+// a collision, putting and removing a shelf and the height after a change are O(log n) in
+// the shelves of the level, plus the shelves starting less than the widest footprint of
+// the level left of the checked one.
+// Not thread safe, callers synchronize.
+public class ColumnStack {
+
+    // Footprint is in column coordinates
+    public record Shelf(long id, Rect footprint, int level, int height) {
+    }
+
+    // Level no shelf stands on, at most one above the top level
+    public record Gap(int level, long elevation) {
+    }
+
+    private final Map<Long, Shelf> shelves = new HashMap<>();
+
+    private final TreeMap<Integer, Tier> tiers = new TreeMap<>();
+
+    private long height;
+
+    public Set<Long> ids() {
+        return shelves.keySet();
+    }
+
+    public long getHeight() {
+        return height;
+    }
+
+    //Adds shelf, replaces the one with the same id
+    public void put(Shelf shelf) {
+        remove(shelf.id());
+        shelves.put(shelf.id(), shelf);
+        Tier tier = tiers.computeIfAbsent(shelf.level(), level -> new Tier());
+        int before = tier.height();
+        tier.add(shelf);
+        height += tier.height() - before;
+    }
+
+    public void remove(long id) {
+        Shelf shelf = shelves.remove(id);
+        if (shelf == null) {
+            return;
+        }
+        Tier tier = tiers.get(shelf.level());
+        int before = tier.height();
+        tier.remove(shelf);
+        height -= before - tier.height();
+        if (tier.isEmpty()) {
+            tiers.remove(shelf.level());
+        }
+    }
+
+    //Shelf of the level overlapping footprint, id is skipped (null for a new shelf)
+    public Shelf findColliding(Long id, Rect footprint, int level) {
+        Tier tier = tiers.get(level);
+        return tier == null ? null : tier.findColliding(id, footprint);
+    }
+
+    //Stack height after putting shelf with this id on level
+    public long heightWith(Long id, int level, int shelfHeight) {
+        Shelf old = id == null ? null : shelves.get(id);
+        long stack = height;
+        if (old != null && old.level() != level) {
+            Tier oldTier = tiers.get(old.level());
+            stack -= oldTier.height() - oldTier.heightWithout(old);
+        }
+        Tier tier = tiers.get(level);
+        if (tier == null) {
+            return stack + shelfHeight;
+        }
+        int levelHeight = tier.heightWithout(old != null && old.level() == level ? old : null);
+        return stack - tier.height() + Math.max(levelHeight, shelfHeight);
+    }
+
+    //Empty levels below the top one and the level above it, with their elevations
+    public List<Gap> gaps() {
+        List<Gap> gaps = new ArrayList<>();
+        long elevation = 0;
+        int next = 0;
+        for (Map.Entry<Integer, Tier> entry : tiers.entrySet()) {
+            for (int level = next; level < entry.getKey(); level++) {
+                gaps.add(new Gap(level, elevation));
+            }
+            elevation += entry.getValue().height();
+            next = entry.getKey() + 1;
+        }
+        gaps.add(new Gap(next, elevation));
+        return gaps;
+    }
+
+    private static class Tier {
+        // footprints by min x, an intersecting one starts at most widest left of the checked one
+        private final TreeMap<Integer, List<Shelf>> byMinX = new TreeMap<>();
+        // shelf height -> number of shelves of the tier with it
+        private final TreeMap<Integer, Integer> heights = new TreeMap<>();
+        private int widest;
+        private int size;
+
+        void add(Shelf shelf) {
+            byMinX.computeIfAbsent(shelf.footprint().getMinX(), x -> new ArrayList<>(1)).add(shelf);
+            heights.merge(shelf.height(), 1, Integer::sum);
+            widest = Math.max(widest, shelf.footprint().getWidth());
+            size++;
+        }
+
+        // widest is only an upper bound after removals, it is reset with the tier
+        void remove(Shelf shelf) {
+            List<Shelf> same = byMinX.get(shelf.footprint().getMinX());
+            same.remove(shelf);
+            if (same.isEmpty()) {
+                byMinX.remove(shelf.footprint().getMinX());
+            }
+            heights.computeIfPresent(shelf.height(), (height, count) -> count == 1 ? null : count - 1);
+            size--;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int height() {
+            return heights.isEmpty() ? 0 : heights.lastKey();
+        }
+
+        // Tier height without shelf of this tier, null changes nothing
+        int heightWithout(Shelf shelf) {
+            int tallest = height();
+            if (shelf == null || shelf.height() != tallest || heights.get(tallest) > 1) {
+                return tallest;
+            }
+            Integer lower = heights.lowerKey(tallest);
+            return lower == null ? 0 : lower;
+        }
+
+        Shelf findColliding(Long id, Rect footprint) {
+            for (List<Shelf> candidates : byMinX
+                    .subMap(footprint.getMinX() - widest, true, footprint.getMaxX(), false)
+                    .values()) {
+                for (Shelf shelf : candidates) {
+                    if ((id == null || shelf.id() != id) && shelf.footprint().intersects(footprint)) {
+                        return shelf;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.fatia.warehouseservice.spatial;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+// Coordinate frame of a zone.
+// Maps rectangles given in zone local coordinates (unrotated, 0..width x 0..length)
+// to absolute warehouse coordinates. Children are stored relatively to their parent,
+// so absolute position of any zone is resolved by chaining frames from the warehouse down.
+@Getter
+@EqualsAndHashCode
+public final class Frame {
+
+    public static final Frame WAREHOUSE = new Frame(0, 0, 0, 0, 0);
+
+    private final int width;
+
+    private final int length;
+
+    private final int rotationAngle;
+
+    @Getter(AccessLevel.NONE)
+    private final int offsetX;
+
+    @Getter(AccessLevel.NONE)
+    private final int offsetY;
+
+    private Frame(int originX, int originY, int width, int length, int rotationAngle) {
+        this.width = width;
+        this.length = length;
+        this.rotationAngle = Math.floorMod(rotationAngle, 360);
+
+        // rotated local bounds must start at origin
+        Rect rotated = rotate(new Rect(0, 0, width, length), this.rotationAngle);
+        this.offsetX = originX - rotated.getMinX();
+        this.offsetY = originY - rotated.getMinY();
+    }
+
+    //Frame with drawn footprint starting at given absolute point (stored absolute bounds)
+    public static Frame of(int minX, int minY, int width, int length, int rotationAngle) {
+        return new Frame(minX, minY, width, length, rotationAngle);
+    }
+
+    //Frame of a child placed at given local origin of this frame
+    public Frame child(int originX, int originY, int width, int length, int rotationAngle) {
+        Rect absolute = toAbsolute(Rect.footprint(originX, originY, width, length, rotationAngle));
+        return new Frame(absolute.getMinX(), absolute.getMinY(), width, length, this.rotationAngle + rotationAngle);
+    }
+
+    //Footprint of this frame on the map
+    public Rect getFootprint() {
+        return toAbsolute(new Rect(0, 0, width, length));
+    }
+
+    public Rect toAbsolute(Rect local) {
+        Rect rotated = rotate(local, rotationAngle);
+        return new Rect(
+                rotated.getMinX() + offsetX,
+                rotated.getMinY() + offsetY,
+                rotated.getMaxX() + offsetX,
+                rotated.getMaxY() + offsetY);
+    }
+
+    // Clockwise on the map (y axis goes down) around (0, 0), only multiples of 90
+    public static Rect rotate(Rect rect, int rotationAngle) {
+        return switch (Math.floorMod(rotationAngle, 360)) {
+            case 90 -> new Rect(-rect.getMaxY(), rect.getMinX(), -rect.getMinY(), rect.getMaxX());
+            case 180 -> new Rect(-rect.getMaxX(), -rect.getMaxY(), -rect.getMinX(), -rect.getMinY());
+            case 270 -> new Rect(rect.getMinY(), -rect.getMaxX(), rect.getMaxY(), -rect.getMinX());
+            default -> rect;
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.fatia.warehouseservice.spatial;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Finds all overlapping pairs of rectangles in O((n + k) log n), k = number of pairs.
+// Sweeps a vertical line along x. Rectangles crossing the line are "active", their
+// y intervals live in a segment tree (leaves ordered by minY, node = max of active maxY),
+// so each rectangle entering the line visits only subtrees holding intersecting intervals.
+// Touching edges are not treated as overlapping, same as Rect.intersects.
+public final class OverlapSweep {
+
+    private static final int INACTIVE = Integer.MIN_VALUE;
+
+    @FunctionalInterface
+    public interface PairConsumer {
+        //Indexes into the input list, first < second
+        void accept(int first, int second);
+    }
+
+    private final List<Rect> rects;
+
+    //Rect indexes ordered by minY, leaf position of each rect
+    private final int[] byMinY;
+    private final int[] leafOf;
+
+    private final int leaves;
+    private final int[] maxY;
+
+    private OverlapSweep(List<Rect> rects) {
+        this.rects = rects;
+        int n = rects.size();
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> rects.get(i).getMinY()));
+
+        byMinY = new int[n];
+        leafOf = new int[n];
+        for (int position = 0; position < n; position++) {
+            byMinY[position] = order[position];
+            leafOf[order[position]] = position;
+        }
+
+        int size = 1;
+        while (size < n) {
+            size <<= 1;
+        }
+        leaves = size;
+        maxY = new int[2 * size];
+        Arrays.fill(maxY, INACTIVE);
+    }
+
+    public static void forEachOverlap(List<Rect> rects, PairConsumer consumer) {
+        if (rects.size() < 2) {
+            return;
+        }
+        new OverlapSweep(rects).sweep(consumer);
+    }
+
+    private void sweep(PairConsumer consumer) {
+        int n = rects.size();
+
+        // events encoded as (x, kind, index), leaving before entering at the same x
+        long[] events = new long[2 * n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            Rect rect = rects.get(i);
+            // empty rects overlap nothing and would enter after leaving
+            if (rect.getWidth() <= 0 || rect.getLength() <= 0) {
+                continue;
+            }
+            events[count++] = event(rect.getMinX(), 1, i);
+            events[count++] = event(rect.getMaxX(), 0, i);
+        }
+        events = Arrays.copyOf(events, count);
+        Arrays.sort(events);
+
+        for (long event : events) {
+            int index = (int) (event & 0x7fffffff);
+            boolean entering = ((event >>> 31) & 1) == 1;
+            Rect rect = rects.get(index);
+
+            if (!entering) {
+                set(leafOf[index], INACTIVE);
+                continue;
+            }
+
+            // only leaves with minY < rect.maxY can intersect
+            int limit = upperBound(rect.getMaxY());
+            report(1, 0, leaves, limit, rect.getMinY(), index, consumer);
+            set(leafOf[index], rect.getMaxY());
+        }
+    }
+
+    private static long event(int x, int kind, int index) {
+        // low 32 bits are never negative, so signed order of x is kept
+        return ((long) x << 32) | ((long) kind << 31) | index;
+    }
+
+    //First position with minY >= y
+    private int upperBound(int y) {
+        int low = 0;
+        int high = byMinY.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rects.get(byMinY[middle]).getMinY() < y) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void report(int node, int from, int to, int limit, int minY, int index, PairConsumer consumer) {
+        if (from >= limit || maxY[node] <= minY) {
+            return;
+        }
+        if (to - from == 1) {
+            int other = byMinY[from];
+            consumer.accept(Math.min(index, other), Math.max(index, other));
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        report(2 * node, from, middle, limit, minY, index, consumer);
+        report(2 * node + 1, middle, to, limit, minY, index, consumer);
+    }
+
+    private void set(int position, int value) {
+        int node = leaves + position;
+        maxY[node] = value;
+        for (node >>= 1; node > 0; node >>= 1) {
+            maxY[node] = Math.max(maxY[2 * node], maxY[2 * node + 1]);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.fatia.warehouseservice.spatial;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+// Axis-aligned rectangle, min inclusive / max exclusive
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class Rect {
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    public Rect(int minX, int minY, int maxX, int maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    //Footprint of zone as drawn on map (rotation is always multiple of 90)
+    public static Rect footprint(int originX, int originY, int width, int length, int rotationAngle) {
+        int drawnWidth = (rotationAngle % 180 == 0) ? width : length;
+        int drawnLength = (rotationAngle % 180 == 0) ? length : width;
+        return new Rect(originX, originY, originX + drawnWidth, originY + drawnLength);
+    }
+
+    public int getWidth() {
+        return maxX - minX;
+    }
+
+    public int getLength() {
+        return maxY - minY;
+    }
+
+    //Touching edges are not treated as overlapping
+    public boolean intersects(Rect other) {
+        return minX < other.maxX && maxX > other.minX
+                && minY < other.maxY && maxY > other.minY;
+    }
+
+    public boolean contains(Rect other) {
+        return other.minX >= minX && other.minY >= minY
+                && other.maxX <= maxX && other.maxY <= maxY;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= minX && y >= minY && x < maxX && y < maxY;
+    }
+}
@@ -0,0 +1,120 @@
+package com.fatia.warehouseservice.spatial;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+// Uniform grid (bucket) index of rectangles keyed by id.
+// Every rectangle is registered in each cell it covers, so a query only
+// looks at the entries living in the cells under the query rectangle.
+// Not thread safe, callers synchronize.
+public class SpatialGrid {
+
+    private final int cellSize;
+
+    private final Map<Long, Rect> entries = new HashMap<>();
+
+    private final Map<Long, List<Long>> cells = new HashMap<>();
+
+    public SpatialGrid(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    //Cell size that keeps area of given size around 64 x 64 cells
+    public static int cellSizeFor(int width, int length) {
+        return Math.max(16, Math.max(width, length) / 64);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Rect get(Long id) {
+        return entries.get(id);
+    }
+
+    public void put(Long id, Rect rect) {
+        remove(id);
+        entries.put(id, rect);
+        forEachCell(rect, key -> cells.computeIfAbsent(key, k -> new ArrayList<>(2)).add(id));
+    }
+
+    public void remove(Long id) {
+        Rect old = entries.remove(id);
+        if (old == null) {
+            return;
+        }
+        forEachCell(old, key -> {
+            List<Long> ids = cells.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        });
+    }
+
+    public boolean anyIntersecting(Rect rect, Long excludeId) {
+        int fromX = Math.floorDiv(rect.getMinX(), cellSize);
+        int fromY = Math.floorDiv(rect.getMinY(), cellSize);
+        int toX = Math.floorDiv(rect.getMaxX() - 1, cellSize);
+        int toY = Math.floorDiv(rect.getMaxY() - 1, cellSize);
+
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                List<Long> ids = cells.get(key(cx, cy));
+                if (ids == null) {
+                    continue;
+                }
+                for (Long id : ids) {
+                    if (!id.equals(excludeId) && entries.get(id).intersects(rect)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public List<Long> query(Rect rect) {
+        Set<Long> result = new HashSet<>();
+        forEachCell(rect, key -> {
+            List<Long> ids = cells.get(key);
+            if (ids != null) {
+                for (Long id : ids) {
+                    if (entries.get(id).intersects(rect)) {
+                        result.add(id);
+                    }
+                }
+            }
+        });
+        return new ArrayList<>(result);
+    }
+
+    private void forEachCell(Rect rect, LongConsumer action) {
+        if (rect.getMaxX() <= rect.getMinX() || rect.getMaxY() <= rect.getMinY()) {
+            return;
+        }
+        int fromX = Math.floorDiv(rect.getMinX(), cellSize);
+        int fromY = Math.floorDiv(rect.getMinY(), cellSize);
+        int toX = Math.floorDiv(rect.getMaxX() - 1, cellSize);
+        int toY = Math.floorDiv(rect.getMaxY() - 1, cellSize);
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                action.accept(key(cx, cy));
+            }
+        }
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
@@ -0,0 +1,44 @@
+package com.fatia.warehouseservice;
+
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+// Entities for tests saving layouts straight through the repositories
+public final class LayoutFixtures {
+
+    private LayoutFixtures() {
+    }
+
+    // 100 x 100 zone at the origin of its parent, named the way ZoneService names zones
+    public static ZoneEntity zone(String uuid, ZoneType type, ZoneEntity parent) {
+        return ZoneEntity
+                .builder()
+                .uuid(uuid)
+                .name(type + "-" + uuid)
+                .type(type)
+                .width(100)
+                .length(100)
+                .rotationAngle(0)
+                .faceDirection(FaceDirection.UP)
+                .parentZone(parent)
+                .build();
+    }
+
+    // Change log rows a commit of another instance leaves behind, runs inside that transaction.
+    // Nothing of this instance hears about it until LayoutChangeLog.catchUp().
+    public static void recordChanges(JdbcTemplate jdbcTemplate, String entityType, List<Long> ids) {
+        long version = jdbcTemplate.queryForObject("select version from layout_version where id = 1 for update", Long.class);
+        for (Long id : ids) {
+            jdbcTemplate.update("delete from layout_changes where entity_type = ? and entity_id = ?", entityType, id);
+            jdbcTemplate.update("insert into layout_changes (version, entity_type, entity_id, operation, created_at, horizon)"
+                    + " values (?, ?, ?, 'UPDATED', ?, false)", ++version, entityType, id, Timestamp.from(Instant.now()));
+        }
+        jdbcTemplate.update("update layout_version set version = ? where id = 1", version);
+    }
+}
@@ -0,0 +1,97 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.repositories.LayoutChangeRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.services.ZoneTreeLoader;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static com.fatia.warehouseservice.LayoutFixtures.zone;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LayoutSnapshotCacheTest {
+
+    private final ZoneTreeLoader zoneTreeLoader = mock(ZoneTreeLoader.class);
+
+    private final LayoutChangeRepository layoutChangeRepository = mock(LayoutChangeRepository.class);
+
+    private final ZoneRepository zoneRepository = mock(ZoneRepository.class);
+
+    private final ShelfRepository shelfRepository = mock(ShelfRepository.class);
+
+    private final LayoutSnapshotCache cache = new LayoutSnapshotCache(
+            zoneTreeLoader, mock(LayoutSnapshotFile.class), layoutChangeRepository, zoneRepository, shelfRepository);
+
+    @Test
+    void readsAreServedFromMemoryAndChangesArePatchedIn() {
+        ZoneModel column = ZoneModel.builder().id(2L).name("column").parentZoneId(1L)
+                .shelves(List.of(ShelfModel.builder().id(10L).zoneName("column").build()))
+                .childZones(List.of())
+                .build();
+        ZoneModel storage = ZoneModel.builder().id(1L).name("storage")
+                .shelves(List.of())
+                .childZones(List.of(column))
+                .build();
+        when(zoneTreeLoader.loadAll()).thenReturn(List.of(storage, column));
+        when(layoutChangeRepository.findLatestVersion()).thenReturn(5L);
+
+        LayoutSnapshot first = cache.get();
+        assertSame(first, cache.get());
+        assertEquals("\"5\"", first.getETag());
+        verify(layoutChangeRepository, times(1)).findLatestVersion();
+
+        // shelf reserved by this or any other instance
+        ZoneEntity storageEntity = zone("s", ZoneType.STORAGE, null);
+        storageEntity.setId(1L);
+        ZoneEntity columnEntity = zone("c", ZoneType.COLUMN, storageEntity);
+        columnEntity.setId(2L);
+        when(shelfRepository.findAllById(Set.of(10L))).thenReturn(List.of(ShelfEntity
+                .builder()
+                .id(10L)
+                .zone(columnEntity)
+                .isOccupied(true)
+                .build()));
+        cache.onLayoutSynced(new LayoutSyncedEvent(5, 6, false, Set.of(), Set.of(), Set.of(10L), Set.of()));
+
+        LayoutSnapshot second = cache.get();
+        assertEquals(6L, second.getVersion());
+        ShelfModel reserved = second.getZone(2L).getShelves().get(0);
+        assertTrue(reserved.isOccupied());
+        assertEquals("column", reserved.getZoneName());
+        assertSame(second.getZone(2L), second.getZone(1L).getChildZones().get(0));
+        assertFalse(first.getZone(2L).getShelves().get(0).isOccupied());
+        verify(zoneTreeLoader, times(1)).loadAll();
+
+        // column renamed, its shelf deleted
+        columnEntity.setName("renamed");
+        when(zoneRepository.findAllById(Set.of(2L))).thenReturn(List.of(columnEntity));
+        cache.onLayoutSynced(new LayoutSyncedEvent(6, 8, false, Set.of(2L), Set.of(), Set.of(), Set.of(10L)));
+
+        LayoutSnapshot third = cache.get();
+        assertEquals(8L, third.getVersion());
+        assertEquals("renamed", third.getZone(2L).getName());
+        assertEquals(List.of(), third.getZone(2L).getShelves());
+        assertSame(third.getZone(2L), third.getZone(1L).getChildZones().get(0));
+        assertEquals(2, third.getZones().size());
+        verify(zoneTreeLoader, times(1)).loadAll();
+
+        // already applied
+        cache.onLayoutSynced(new LayoutSyncedEvent(6, 8, false, Set.of(2L), Set.of(), Set.of(), Set.of(10L)));
+        assertSame(third, cache.get());
+
+        // versions 9 and 10 were never seen
+        cache.onLayoutSynced(new LayoutSyncedEvent(10, 11, false, Set.of(), Set.of(), Set.of(), Set.of()));
+        assertEquals(11L, cache.get().getVersion());
+        verify(zoneTreeLoader, times(2)).loadAll();
+    }
+}
@@ -0,0 +1,130 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.models.ShelfModel;
+import com.fatia.warehouseservice.models.ZoneModel;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutSnapshotCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void roundTripKeepsEveryZoneAndShelf() {
+        List<ZoneModel> zones = new ArrayList<>();
+        ZoneModel storage = tree(zones, 3, 4, 5);
+        ZoneModel empty = zone(999L, null, ZoneType.LOADING, List.of(), List.of());
+        empty.setDescription(null);
+        empty.setConnectedNodeId(null);
+        zones.add(empty);
+        storage.getChildZones().get(0).getChildZones().get(0).getShelves().get(0).setConditions(null);
+
+        LayoutSnapshot snapshot = new LayoutSnapshot(42L, zones);
+        LayoutSnapshot decoded = LayoutSnapshotCodec.decode(ByteBuffer.wrap(snapshot.getBinary()));
+
+        assertEquals(42L, decoded.getVersion());
+        assertEquals(zones.size(), decoded.getZones().size());
+        for (ZoneModel zone : zones) {
+            // lombok equals compares whole subtrees
+            assertEquals(zone, decoded.getZone(zone.getId()));
+        }
+        assertSame(decoded.getZone(storage.getId()).getChildZones().get(0),
+                decoded.getZone(storage.getChildZones().get(0).getId()));
+    }
+
+    @Test
+    void binaryIsMuchSmallerThanJson() throws JsonProcessingException {
+        List<ZoneModel> zones = new ArrayList<>();
+        tree(zones, 3, 10, 10);
+        LayoutSnapshot snapshot = new LayoutSnapshot(1L, zones);
+
+        byte[] binary = LayoutSnapshotCodec.encode(snapshot);
+        byte[] json = objectMapper.writeValueAsBytes(snapshot.getZones());
+        assertTrue(binary.length * 5 < json.length, binary.length + " bytes vs JSON " + json.length);
+
+        // parse time is compared in SnapshotCodecBenchmark
+        LayoutSnapshot decoded = LayoutSnapshotCodec.decode(ByteBuffer.wrap(binary));
+        assertEquals(snapshot.getZones().size(), decoded.getZones().size());
+    }
+
+    @Test
+    void rejectsOtherData() {
+        assertThrows(IllegalArgumentException.class,
+                () -> LayoutSnapshotCodec.decode(ByteBuffer.wrap(new byte[16])));
+    }
+
+    //Storage with fanout columns per level, leaves hold shelves. Every zone is added to all.
+    private static ZoneModel tree(List<ZoneModel> all, int depth, int fanout, int shelvesPerLeaf) {
+        long[] ids = {1};
+        return subtree(all, ids, null, depth, fanout, shelvesPerLeaf);
+    }
+
+    private static ZoneModel subtree(List<ZoneModel> all, long[] ids, Long parentId,
+                                     int depth, int fanout, int shelvesPerLeaf) {
+        long id = ids[0]++;
+        List<ShelfModel> shelves = new ArrayList<>();
+        List<ZoneModel> children = new ArrayList<>();
+        ZoneModel zone = zone(id, parentId, depth == 1 ? ZoneType.COLUMN : ZoneType.STORAGE, shelves, children);
+        all.add(zone);
+        if (depth == 1) {
+            for (int i = 0; i < shelvesPerLeaf; i++) {
+                Map<String, String> conditions = new HashMap<>();
+                conditions.put("temperature", i % 2 == 0 ? "cold" : "dry");
+                shelves.add(ShelfModel
+                        .builder()
+                        .id(ids[0]++)
+                        .name("SHELF-" + id + "-" + i)
+                        .zoneName(zone.getName())
+                        .originX(i)
+                        .originY(-i)
+                        .width(10)
+                        .length(10)
+                        .height(10)
+                        .level(i)
+                        .description(i == 0 ? null : "shelf")
+                        .isOccupied(i % 3 == 0)
+                        .isActive(i % 2 == 0)
+                        .conditions(conditions)
+                        .connectedNodeId("node-" + i)
+                        .build());
+            }
+            return zone;
+        }
+        for (int i = 0; i < fanout; i++) {
+            children.add(subtree(all, ids, id, depth - 1, fanout, shelvesPerLeaf));
+        }
+        return zone;
+    }
+
+    private static ZoneModel zone(long id, Long parentId, ZoneType type,
+                                  List<ShelfModel> shelves, List<ZoneModel> children) {
+        return ZoneModel
+                .builder()
+                .id(id)
+                .uuid("Z" + id)
+                .name("ZONE-" + id)
+                .type(type.name())
+                .originX((int) id * 3)
+                .originY(-(int) id)
+                .width(100)
+                .length(200)
+                .rotationAngle(90)
+                .faceDirection(2)
+                .description("zone " + id)
+                .shelves(shelves)
+                .connectedNodeId("node-" + id)
+                .parentZoneId(parentId)
+                .childZones(children)
+                .build();
+    }
+}
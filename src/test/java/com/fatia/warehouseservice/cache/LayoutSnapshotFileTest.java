@@ -0,0 +1,46 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.repositories.LayoutChangeRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LayoutSnapshotFileTest {
+
+    private final LayoutChangeRepository layoutChangeRepository = mock(LayoutChangeRepository.class);
+
+    @Test
+    void fileIsUsedOnlyAtTheVersionItWasWrittenAt(@TempDir Path dir) {
+        LayoutSnapshotFile file = new LayoutSnapshotFile(dir.resolve("layout.bin").toString(), layoutChangeRepository);
+        assertNull(file.read());
+
+        file.write(new LayoutSnapshot(7L, List.of(ZoneModel
+                .builder()
+                .id(1L)
+                .type("STORAGE")
+                .originX(0)
+                .originY(0)
+                .width(100)
+                .length(100)
+                .rotationAngle(0)
+                .faceDirection(0)
+                .shelves(List.of())
+                .childZones(List.of())
+                .build())));
+
+        when(layoutChangeRepository.findLatestVersion()).thenReturn(7L);
+        LayoutSnapshot stored = file.read();
+        assertEquals(7L, stored.getVersion());
+        assertEquals(1L, stored.getZone(1L).getId());
+
+        // same zone count, but the layout changed since
+        when(layoutChangeRepository.findLatestVersion()).thenReturn(8L);
+        assertNull(file.read());
+    }
+}
@@ -0,0 +1,150 @@
+package com.fatia.warehouseservice.cache;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.UpdateShelfRequest;
+import com.fatia.warehouseservice.services.LayoutChangeLog;
+import com.fatia.warehouseservice.services.ShelfService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static com.fatia.warehouseservice.LayoutFixtures.recordChanges;
+import static com.fatia.warehouseservice.LayoutFixtures.zone;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private LayoutChangeLog layoutChangeLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    private ZoneEntity column;
+
+    private ShelfEntity shelf;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        ZoneEntity storage = zoneRepository.save(zone("storage", ZoneType.STORAGE, null));
+        column = zoneRepository.save(zone("column", ZoneType.COLUMN, storage));
+        shelf = shelfRepository.save(ShelfEntity
+                .builder()
+                .name("shelf")
+                .zone(column)
+                .width(10)
+                .length(10)
+                .height(10)
+                .isActive(true)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+    }
+
+    @Test
+    void repeatedLookupsOfHotZoneDoNotHitDatabase() {
+        zoneRepository.findById(column.getId()).orElseThrow();
+
+        long statements = statistics.getPrepareStatementCount();
+        long hits = statistics.getSecondLevelCacheHitCount();
+        for (int i = 0; i < 10; i++) {
+            // every call is its own transaction and persistence context
+            assertEquals("column", zoneRepository.findById(column.getId()).orElseThrow().getUuid());
+        }
+
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertEquals(hits + 10, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void typeQueryIsCachedUntilZonesChange() {
+        assertEquals(1, zoneRepository.findByTypeIn(List.of(ZoneType.COLUMN)).size());
+
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(1, zoneRepository.findByTypeIn(List.of(ZoneType.COLUMN)).size());
+        assertEquals(statements, statistics.getPrepareStatementCount());
+
+        zoneRepository.save(zone("column-2", ZoneType.COLUMN, column.getParentZone()));
+        assertEquals(2, zoneRepository.findByTypeIn(List.of(ZoneType.COLUMN)).size());
+    }
+
+    @Test
+    void jdbcReservationsAreNotHiddenByCache() {
+        assertFalse(shelfRepository.findById(shelf.getId()).orElseThrow().isOccupied());
+
+        shelfService.reserve(shelf.getId());
+        ShelfEntity reserved = shelfRepository.findById(shelf.getId()).orElseThrow();
+        assertTrue(reserved.isOccupied());
+        assertEquals(1, reserved.getVersion());
+
+        shelfService.release(shelf.getId());
+        assertFalse(shelfRepository.findById(shelf.getId()).orElseThrow().isOccupied());
+
+        // cached stale version would fail the optimistic lock
+        shelfService.updateShelf(shelf.getId(), UpdateShelfRequest
+                .builder()
+                .width(10)
+                .length(10)
+                .height(10)
+                .description("checked")
+                .build());
+        assertEquals("checked", shelfRepository.findById(shelf.getId()).orElseThrow().getDescription());
+    }
+
+    @Test
+    void rowsChangedByAnotherInstanceAreEvictedWhenTheyReachTheChangeLog() {
+        Long storageId = column.getParentZone().getId();
+        assertEquals("column", zoneRepository.findById(column.getId()).orElseThrow().getUuid());
+        assertEquals(1, zoneRepository.findByTypeIn(List.of(ZoneType.COLUMN)).size());
+
+        // what a commit of another instance leaves behind, nothing is evicted here
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("update zones set uuid = 'renamed' where id = ?", column.getId());
+            jdbcTemplate.update("update zones set type = 'COLUMN' where id = ?", storageId);
+            recordChanges(jdbcTemplate, "ZONE", List.of(column.getId(), storageId));
+        });
+
+        layoutChangeLog.catchUp();
+        assertEquals("renamed", zoneRepository.findById(column.getId()).orElseThrow().getUuid());
+        assertEquals(2, zoneRepository.findByTypeIn(List.of(ZoneType.COLUMN)).size());
+    }
+}
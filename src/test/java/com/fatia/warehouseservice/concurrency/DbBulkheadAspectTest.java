@@ -0,0 +1,64 @@
+package com.fatia.warehouseservice.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DbBulkheadAspectTest {
+
+    @Test
+    void nestedCallsReuseThePermit() throws Throwable {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DbBulkheadAspect aspect = new DbBulkheadAspect(1, 10, registry);
+
+        ProceedingJoinPoint inner = mock(ProceedingJoinPoint.class);
+        when(inner.proceed()).thenReturn("inner");
+        ProceedingJoinPoint outer = mock(ProceedingJoinPoint.class);
+        when(outer.proceed()).thenAnswer(invocation -> aspect.limit(inner));
+
+        assertEquals("inner", aspect.limit(outer));
+        assertEquals(1.0, registry.get("warehouse.db.bulkhead.available").gauge().value());
+    }
+
+    @Test
+    void rejectsWhenNoPermitFreesUpInTime() throws Throwable {
+        DbBulkheadAspect aspect = new DbBulkheadAspect(1, 50, new SimpleMeterRegistry());
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProceedingJoinPoint blocking = mock(ProceedingJoinPoint.class);
+        when(blocking.proceed()).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return null;
+        });
+        Thread holder = new Thread(() -> {
+            try {
+                aspect.limit(blocking);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        holder.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        ResponseStatusException busy = assertThrows(ResponseStatusException.class,
+                () -> aspect.limit(mock(ProceedingJoinPoint.class)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, busy.getStatusCode());
+
+        release.countDown();
+        holder.join();
+        ProceedingJoinPoint next = mock(ProceedingJoinPoint.class);
+        when(next.proceed()).thenReturn("done");
+        assertEquals("done", aspect.limit(next));
+    }
+}
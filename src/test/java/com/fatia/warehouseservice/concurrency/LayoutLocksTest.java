@@ -0,0 +1,317 @@
+package com.fatia.warehouseservice.concurrency;
+
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddChildZoneRequest;
+import com.fatia.warehouseservice.requests.AddParentZoneRequest;
+import com.fatia.warehouseservice.requests.UpdateChildZoneRequest;
+import com.fatia.warehouseservice.services.LayoutValidationService;
+import com.fatia.warehouseservice.services.ZoneService;
+import com.fatia.warehouseservice.services.ZoneSpatialIndex;
+import com.fatia.warehouseservice.spatial.Rect;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LayoutLocksTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ATTEMPTS = 40;
+
+    private static final int HOLDS = 10;
+
+    private static final long HOLD_MS = 5;
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private LayoutValidationService layoutValidationService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @Autowired
+    private LayoutLocks layoutLocks;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+        layoutOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentWritersUnderOneParentNeverStoreOverlaps() throws Exception {
+        Long storage = storage(0);
+
+        // 10 x 10 columns on a 5 unit raster, most candidates overlap someone else's
+        AtomicInteger rejected = new AtomicInteger();
+        run(THREADS, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return column(storage, random.nextInt(19) * 5, random.nextInt(19) * 5);
+        }, rejected);
+
+        assertTrue(layoutValidationService.validateStored().isValid());
+        assertTrue(rejected.get() > 0);
+        assertEquals(THREADS * ATTEMPTS - rejected.get(), zoneRepository.findByParentZoneId(storage).size());
+    }
+
+    @Test
+    void writersUnderDifferentParentsDoNotWaitForEachOther() throws Exception {
+        // parents on different stripes
+        List<Long> parents = new ArrayList<>();
+        Set<Integer> stripes = new HashSet<>();
+        for (long key = 1; parents.size() < THREADS; key++) {
+            if (stripes.add(layoutLocks.stripe(key))) {
+                parents.add(key);
+            }
+        }
+
+        long oneParent = holdParents(thread -> parents.get(0));
+        long manyParents = holdParents(parents::get);
+
+        // one parent serializes all writes, THREADS * HOLDS * HOLD_MS at least
+        assertTrue(oneParent >= THREADS * HOLDS * HOLD_MS);
+        assertTrue(manyParents * 2 < oneParent, "one parent " + oneParent + " ms, many parents " + manyParents + " ms");
+    }
+
+    @Test
+    void writersWaitingForAParentHoldNoConnection() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> layoutLocks.write(status -> {
+            layoutLocks.lockParents(1L);
+            locked.countDown();
+            await(release);
+            return null;
+        }, 1L));
+        holder.start();
+        locked.await();
+
+        Thread waiting = new Thread(() -> layoutLocks.write(status -> layoutLocks.lockParents(1L), 1L));
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, ((HikariDataSource) dataSource).getHikariPoolMXBean().getActiveConnections());
+
+        release.countDown();
+        holder.join();
+        waiting.join();
+    }
+
+    @Test
+    void childUpdateNamingAnotherParentIsRejected() {
+        Long storage = storage(0);
+        Long other = storage(200);
+        zoneService.addChildZone(column(storage, 0, 0));
+        Long second = zoneService.addChildZone(column(storage, 50, 0)).getId();
+
+        // siblings of the named parent don't overlap, the stored parent is the one locked and checked
+        LayoutRejectedException rejected = assertThrows(LayoutRejectedException.class,
+                () -> zoneService.updateChildZone(second, UpdateChildZoneRequest
+                        .builder()
+                        .parentZoneId(other)
+                        .originX(0)
+                        .originY(0)
+                        .width(10)
+                        .length(10)
+                        .rotationAngle(0)
+                        .faceDirection("UP")
+                        .build()));
+        assertEquals(Reason.INVALID_REQUEST, rejected.getReason());
+
+        ZoneEntity stored = zoneRepository.findById(second).orElseThrow();
+        assertEquals(50, stored.getOriginX());
+        assertEquals(storage, stored.getParentZone().getId());
+        assertTrue(layoutValidationService.validateStored().isValid());
+    }
+
+    @Test
+    void rolledBackWriteLeavesNoFootprintInTheIndex() {
+        Long storage = storage(0);
+        // index of the storage is loaded before the write
+        assertFalse(zoneSpatialIndex.isOverlapping(storage, null, Rect.footprint(0, 0, 10, 10, 0)));
+
+        assertThrows(IllegalStateException.class, () -> layoutLocks.write(status -> {
+            zoneService.addChildZone(column(storage, 0, 0));
+            throw new IllegalStateException("forced rollback");
+        }, storage));
+        assertEquals(0, zoneRepository.findByParentZoneId(storage).size());
+
+        zoneService.addChildZone(column(storage, 0, 0));
+        assertEquals(1, zoneRepository.findByParentZoneId(storage).size());
+    }
+
+    @Test
+    void parentIsChangedOnlyAfterAnotherInstanceWroteUnderIt() {
+        ParentVersions first = new ParentVersions(jdbcTemplate);
+        ParentVersions second = new ParentVersions(jdbcTemplate);
+
+        assertEquals(Set.of(1L, 2L), check(first, 1, 2));
+        assertEquals(Set.of(), check(first, 1, 2));
+        assertEquals(Set.of(1L), check(second, 1));
+        assertEquals(Set.of(1L), check(first, 1, 2));
+
+        // rolled back write doesn't bump the version
+        transactionTemplate.execute(status -> {
+            second.check(new long[]{2});
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(Set.of(), check(first, 1, 2));
+    }
+
+    private Set<Long> check(ParentVersions versions, long... keys) {
+        return transactionTemplate.execute(status -> versions.check(keys));
+    }
+
+    private static void hold() {
+        try {
+            Thread.sleep(HOLD_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Wall time in ms of THREADS threads, each writing HOLDS times under its parent for HOLD_MS
+    private long holdParents(IntFunction<Long> parent) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Long key = parent.apply(i);
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < HOLDS; j++) {
+                        layoutLocks.write(status -> {
+                            layoutLocks.lockParents(key);
+                            hold();
+                            return null;
+                        }, key);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void run(int threads, Attempt attempt, AtomicInteger rejected) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < ATTEMPTS; j++) {
+                        try {
+                            zoneService.addChildZone(attempt.request(thread));
+                        } catch (LayoutRejectedException e) {
+                            assertEquals(Reason.OVERLAP, e.getReason());
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static AddChildZoneRequest column(Long storage, int x, int y) {
+        return AddChildZoneRequest
+                .builder()
+                .type("COLUMN")
+                .originX(x)
+                .originY(y)
+                .width(10)
+                .length(10)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .parentZoneId(storage)
+                .build();
+    }
+
+    private Long storage(int x) {
+        return zoneService.addParentZone(AddParentZoneRequest
+                .builder()
+                .type("STORAGE")
+                .originX(x)
+                .originY(0)
+                .width(160)
+                .length(160)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .build()).getId();
+    }
+
+    private interface Attempt {
+        AddChildZoneRequest request(int thread);
+    }
+}
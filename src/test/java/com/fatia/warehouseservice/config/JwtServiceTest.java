@@ -0,0 +1,78 @@
+package com.fatia.warehouseservice.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "dGVzdC1zZWNyZXQtZm9yLXdhcmVob3VzZS1zZXJ2aWNlLXRlc3RzLW9ubHk=";
+
+    @Test
+    void verifiedClaimsAreReusedForSameToken() {
+        JwtService jwtService = new JwtService(config(100));
+        String token = jwtService.generateToken(new User(
+                "user@mail.com", "", List.of(new SimpleGrantedAuthority("ADMIN"))));
+
+        Claims first = jwtService.extractValidClaims(token);
+        assertEquals("user@mail.com", first.getSubject());
+        assertEquals("ADMIN", first.get("role", String.class));
+        assertSame(first, jwtService.extractValidClaims(token));
+
+        assertEquals("user@mail.com", jwtService.extractUsername(token));
+        assertEquals("ADMIN", jwtService.extractRole(token));
+        assertFalse(jwtService.isTokenExpired(token));
+    }
+
+    @Test
+    void expiredAndForgedTokensAreNotAccepted() {
+        JwtService jwtService = new JwtService(config(100));
+
+        String expired = token(SECRET, new Date(System.currentTimeMillis() - 1000));
+        assertNull(jwtService.extractValidClaims(expired));
+        assertTrue(jwtService.isTokenExpired(expired));
+
+        String forged = token("b3RoZXItc2VjcmV0LWZvci13YXJlaG91c2Utc2VydmljZS10ZXN0cy1vbmx5",
+                new Date(System.currentTimeMillis() + 60_000));
+        assertThrows(JwtException.class, () -> jwtService.extractValidClaims(forged));
+    }
+
+    @Test
+    void worksWithCacheDisabled() {
+        JwtService jwtService = new JwtService(config(0));
+        String token = token(SECRET, new Date(System.currentTimeMillis() + 60_000));
+
+        assertEquals("user@mail.com", jwtService.extractValidClaims(token).getSubject());
+        assertNotSame(jwtService.extractValidClaims(token), jwtService.extractValidClaims(token));
+    }
+
+    private static JwtConfig config(int cacheSize) {
+        JwtConfig config = new JwtConfig();
+        config.setSecret(SECRET);
+        config.setClaimsCacheSize(cacheSize);
+        return config;
+    }
+
+    private static String token(String secret, Date expiration) {
+        return Jwts
+                .builder()
+                .setClaims(Map.of("role", "ADMIN"))
+                .setSubject("user@mail.com")
+                .setIssuedAt(new Date(expiration.getTime() - 120_000))
+                .setExpiration(expiration)
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)), SignatureAlgorithm.HS256)
+                .compact();
+    }
+}
@@ -0,0 +1,91 @@
+package com.fatia.warehouseservice.ids;
+
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ShortIdGeneratorTest {
+
+    private static final int IDS = 20_000;
+
+    private static final int RANDOM_IDS = 2_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void encodedIdsAreUniqueAndNeverLookLikeLegacyHexIds() {
+        Set<String> ids = new HashSet<>();
+        for (long n = 1; n <= 100_000; n++) {
+            String id = SequenceShortIdGenerator.encode(n);
+            assertEquals(8, id.length());
+            assertFalse(id.matches("[0-9a-f]{8}"));
+            ids.add(id);
+        }
+        assertEquals(100_000, ids.size());
+    }
+
+    // Previous random + findByUuid approach queries once per id.
+    // Timing of both is in benchmarks/ (ShortIdBenchmark).
+    @Test
+    void sequenceGeneratorHitsDatabaseOncePerBlock() {
+        AtomicInteger sequenceQueries = new AtomicInteger();
+        JdbcTemplate countingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public <T> T queryForObject(String sql, Class<T> requiredType) {
+                sequenceQueries.incrementAndGet();
+                return super.queryForObject(sql, requiredType);
+            }
+        };
+        SequenceShortIdGenerator sequence = new SequenceShortIdGenerator(countingTemplate);
+        sequence.createSequence();
+
+        Set<String> sequenceIds = new HashSet<>(sequence.next(IDS));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        RandomShortIdGenerator random = new RandomShortIdGenerator(zoneRepository);
+
+        for (int i = 0; i < RANDOM_IDS; i++) {
+            random.next();
+        }
+        long randomQueries = statistics.getPrepareStatementCount();
+
+        assertEquals(IDS, sequenceIds.size());
+        assertEquals(IDS / SequenceShortIdGenerator.BLOCK_SIZE, sequenceQueries.get());
+        assertTrue(randomQueries >= RANDOM_IDS);
+    }
+
+    @Test
+    void separateGeneratorsNeverShareIds() {
+        SequenceShortIdGenerator first = new SequenceShortIdGenerator(jdbcTemplate);
+        SequenceShortIdGenerator second = new SequenceShortIdGenerator(jdbcTemplate);
+        first.createSequence();
+
+        List<String> a = first.next(2500);
+        List<String> b = second.next(2500);
+
+        Set<String> all = new HashSet<>(a);
+        all.addAll(b);
+        assertEquals(5000, all.size());
+    }
+}
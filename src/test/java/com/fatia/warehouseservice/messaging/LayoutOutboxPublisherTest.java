@@ -0,0 +1,166 @@
+package com.fatia.warehouseservice.messaging;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.EntityType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.messaging.LayoutChangeMessage.Change;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.services.LayoutImportService;
+import com.fatia.warehouseservice.services.ShelfService;
+import com.fatia.warehouseservice.services.ZoneService;
+import com.fatia.warehouseservice.services.ZoneSpatialIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// RabbitTemplate is mocked as broker stand-in, flush is called directly
+@SpringBootTest(properties = {
+        "warehouse.outbox.publisher.enabled=true",
+        "warehouse.outbox.flush-interval-ms=3600000"
+})
+class LayoutOutboxPublisherTest {
+
+    private static final int COLUMNS = 5;
+    private static final int SHELVES_PER_COLUMN = 400;
+
+    @MockitoBean
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private LayoutOutboxPublisher layoutOutboxPublisher;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private LayoutImportService layoutImportService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @BeforeEach
+    void setUp() {
+        layoutOutboxRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+        layoutOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void bulkChangesAreCoalescedIntoFewMessages() {
+        List<ImportZoneRequest> columns = new ArrayList<>();
+        for (int c = 0; c < COLUMNS; c++) {
+            List<AddShelfRequest> shelves = new ArrayList<>();
+            for (int s = 0; s < SHELVES_PER_COLUMN; s++) {
+                // 10 x 10 shelves per level
+                shelves.add(AddShelfRequest
+                        .builder()
+                        .originX(s % 10 * 10)
+                        .originY(s / 10 % 10 * 10)
+                        .width(10)
+                        .length(10)
+                        .height(10)
+                        .level(s / 100)
+                        .build());
+            }
+            columns.add(zone("COLUMN", c * 100, 0, 100, 100, List.of(), shelves));
+        }
+        columns.add(zone("COLUMN", 0, 500, 100, 100, List.of(), List.of()));
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", 0, 0, 1000, 1000, columns, List.of())))
+                .build());
+
+        List<Long> shelfIds = shelfRepository.findAll().stream().map(ShelfEntity::getId).toList();
+        assertEquals(COLUMNS * SHELVES_PER_COLUMN, shelfService.reserveAll(shelfIds).getReserved().size());
+        shelfService.release(shelfIds.get(0));
+
+        // created and deleted within the same window
+        ZoneEntity empty = zoneRepository.findAll().stream()
+                .filter(zone -> zone.getOriginY() == 500)
+                .findFirst()
+                .orElseThrow();
+        zoneService.deleteZoneById(empty.getId());
+
+        int rows = 1 + COLUMNS + 1 + 2 * COLUMNS * SHELVES_PER_COLUMN + 1 + 1;
+        assertEquals(rows, layoutOutboxRepository.count());
+
+        int messages = layoutOutboxPublisher.flush();
+
+        ArgumentCaptor<LayoutChangeMessage> captor = ArgumentCaptor.forClass(LayoutChangeMessage.class);
+        verify(rabbitTemplate, times(messages))
+                .convertAndSend(eq(LayoutOutboxPublisher.EXCHANGE), eq(LayoutOutboxPublisher.ROUTING_KEY), captor.capture());
+
+        List<Change> changes = captor.getAllValues().stream()
+                .flatMap(message -> message.getChanges().stream())
+                .toList();
+        // storage, columns, and per shelf its creation plus last occupancy change
+        assertEquals(1 + COLUMNS + 2 * COLUMNS * SHELVES_PER_COLUMN, changes.size());
+        assertEquals(5, messages);
+        assertTrue(changes.stream().noneMatch(change -> change.getEntityId().equals(empty.getId())
+                && change.getEntityType() == EntityType.ZONE));
+        assertEquals(List.of(Operation.CREATED, Operation.RELEASED), changes.stream()
+                .filter(change -> change.getEntityId().equals(shelfIds.get(0))
+                        && change.getEntityType() == EntityType.SHELF)
+                .map(Change::getOperation)
+                .toList());
+        assertEquals(1, captor.getAllValues().stream().map(LayoutChangeMessage::getLayoutVersion).distinct().count());
+
+        assertEquals(0, layoutOutboxRepository.count());
+        assertEquals(0, layoutOutboxPublisher.flush());
+    }
+
+    private static ImportZoneRequest zone(String type, int x, int y, int width, int length,
+                                          List<ImportZoneRequest> children, List<AddShelfRequest> shelves) {
+        return ImportZoneRequest
+                .builder()
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .childZones(children)
+                .shelves(shelves)
+                .build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.fatia.warehouseservice.metrics;
+
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.responses.UpdateZoneReponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    private LayoutMetrics layoutMetrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        layoutMetrics = new LayoutMetrics(registry);
+    }
+
+    @Test
+    void recordsPhasesAndOutcome() {
+        layoutMetrics.record("updateChildZone", () -> {
+            layoutMetrics.phase(LayoutMetrics.DB);
+            layoutMetrics.phase(LayoutMetrics.MAPPING);
+            return UpdateZoneReponse.builder().status("OK_WITH_WARNINGS").build();
+        });
+
+        assertEquals(1, registry.get("warehouse.layout.operation")
+                .tags("operation", "updateChildZone", "outcome", "OK_WITH_WARNINGS").timer().count());
+        for (String phase : new String[]{LayoutMetrics.VALIDATION, LayoutMetrics.DB, LayoutMetrics.MAPPING}) {
+            assertEquals(1, registry.get("warehouse.layout.operation.phase")
+                    .tags("operation", "updateChildZone", "phase", phase).timer().count());
+        }
+        assertEquals(1, registry.get("warehouse.layout.warnings").counter().count());
+    }
+
+    @Test
+    void countsRejectionsByReason() {
+        assertThrows(LayoutRejectedException.class, () -> layoutMetrics.record("addChildZone", () -> {
+            throw new LayoutRejectedException(Reason.OVERLAP, "Zone overlapping with sibling zones");
+        }));
+
+        assertEquals(1, registry.get("warehouse.layout.rejections")
+                .tags("operation", "addChildZone", "reason", "OVERLAP").counter().count());
+        assertEquals(1, registry.get("warehouse.layout.operation")
+                .tags("outcome", "REJECTED").timer().count());
+        // phase outside of record is ignored
+        layoutMetrics.phase(LayoutMetrics.DB);
+    }
+}
@@ -0,0 +1,116 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ColumnSlotModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.spatial.Rect;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ColumnStackIndexTest {
+
+    private static final Long COLUMN = 7L;
+
+    private final ShelfRepository shelfRepository = mock(ShelfRepository.class);
+
+    private ColumnStackIndex index;
+
+    private final ZoneEntity column = ZoneEntity.builder().id(COLUMN).build();
+
+    @BeforeEach
+    void setUp() {
+        WarehouseConfig warehouseConfig = new WarehouseConfig();
+        warehouseConfig.setColumnHeight(200);
+        index = new ColumnStackIndex(shelfRepository, warehouseConfig);
+
+        // level 0: full footprint 40 high, level 1: two half-width shelves 20 high, level 3: full 30 high
+        when(shelfRepository.findByZoneIdIn(List.of(COLUMN))).thenReturn(List.of(
+                shelf(1L, 0, 0, 40, 40, 0, 40),
+                shelf(2L, 0, 0, 20, 40, 1, 20),
+                shelf(3L, 20, 0, 20, 40, 1, 20),
+                shelf(4L, 0, 0, 40, 40, 3, 30)));
+    }
+
+    @Test
+    void rejectsShelvesOverlappingOnTheirLevelOrOverTheColumnHeight() {
+        Rect full = new Rect(0, 0, 40, 40);
+
+        assertEquals(Reason.OVERLAP, reason(() -> index.check(COLUMN, null, full, 1, 20)));
+        assertEquals(Reason.OVERLAP, reason(() -> index.check(COLUMN, null, new Rect(10, 10, 30, 30), 0, 10)));
+        // stack of 90, new top level or a taller tier have to stay within 200
+        assertEquals(Reason.OUT_OF_PARENT_BOUNDS, reason(() -> index.check(COLUMN, null, full, 4, 111)));
+        assertEquals(Reason.OUT_OF_PARENT_BOUNDS, reason(() -> index.check(COLUMN, null, new Rect(40, 0, 60, 40), 0, 151)));
+        assertEquals(Reason.OUT_OF_PARENT_BOUNDS, reason(() -> index.check(COLUMN, 1L, full, 0, 151)));
+        assertEquals(Reason.OUT_OF_PARENT_BOUNDS, reason(() -> index.check(COLUMN, null, full, -1, 10)));
+
+        // levels above, a different spot on the level and the shelf itself are fine
+        index.check(COLUMN, null, full, 2, 110);
+        index.check(COLUMN, null, new Rect(40, 0, 60, 40), 0, 150);
+        index.check(COLUMN, 1L, full, 0, 150);
+        // moved shelf leaves its tier, level 0 becomes empty
+        index.check(COLUMN, 1L, full, 2, 150);
+        verify(shelfRepository, times(1)).findByZoneIdIn(List.of(COLUMN));
+    }
+
+    @Test
+    void returnsEmptyLevelsWithTheirElevation() {
+        assertEquals(List.of(slot(2, 60, 170), slot(4, 90, 200)), index.getFreeSlots(COLUMN, 110));
+        assertEquals(List.of(), index.getFreeSlots(COLUMN, 111));
+        assertEquals(Reason.INVALID_REQUEST, reason(() -> index.getFreeSlots(COLUMN, 0)));
+    }
+
+    @Test
+    void followsLayoutEvents() {
+        index.getFreeSlots(COLUMN, 1);
+
+        ShelfEntity moved = shelf(4L, 0, 0, 40, 40, 2, 40);
+        index.onLayoutChanged(LayoutChangedEvent.shelf(moved, Operation.UPDATED));
+        assertEquals(List.of(slot(3, 100, 200)), index.getFreeSlots(COLUMN, 1));
+
+        index.onLayoutChanged(LayoutChangedEvent.shelf(1L, Operation.DELETED, COLUMN));
+        index.onLayoutChanged(LayoutChangedEvent.shelf(2L, Operation.RESERVED, COLUMN));
+        assertEquals(List.of(slot(0, 0, 140), slot(3, 60, 200)), index.getFreeSlots(COLUMN, 1));
+        index.check(COLUMN, null, new Rect(0, 0, 40, 40), 0, 40);
+
+        // shelf moved to a column that is not loaded yet leaves this one
+        ShelfEntity elsewhere = shelf(2L, 0, 0, 20, 40, 1, 20);
+        elsewhere.setZone(ZoneEntity.builder().id(8L).build());
+        index.onLayoutChanged(LayoutChangedEvent.shelf(elsewhere, Operation.UPDATED));
+        index.check(COLUMN, null, new Rect(0, 0, 20, 40), 1, 20);
+        verify(shelfRepository, times(1)).findByZoneIdIn(List.of(COLUMN));
+    }
+
+    private static Reason reason(Runnable call) {
+        return assertThrows(LayoutRejectedException.class, call::run).getReason();
+    }
+
+    private static ColumnSlotModel slot(int level, int bottom, int top) {
+        return new ColumnSlotModel(COLUMN, level, bottom, top, top - bottom);
+    }
+
+    private ShelfEntity shelf(Long id, int x, int y, int width, int length, int level, int height) {
+        return ShelfEntity
+                .builder()
+                .id(id)
+                .zone(column)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .level(level)
+                .height(height)
+                .isActive(true)
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.fatia.warehouseservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatia.warehouseservice.controllers.ShelfController;
+import com.fatia.warehouseservice.controllers.ZoneController;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ShelfFlatModel;
+import com.fatia.warehouseservice.models.ZoneFlatModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.responses.CursorPageResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static com.fatia.warehouseservice.LayoutFixtures.zone;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CursorPagingTest {
+
+    // more than one stream fetch of each, the persistence context is cleared in between
+    private static final int COLUMNS = ZoneRepository.STREAM_FETCH_SIZE + 99;
+    private static final int SHELVES = ShelfRepository.STREAM_FETCH_SIZE + 99;
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private ZoneController zoneController;
+
+    @Autowired
+    private ShelfController shelfController;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> zoneIds = new ArrayList<>();
+
+    private final List<Long> shelfIds = new ArrayList<>();
+
+    private ZoneEntity storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = zoneRepository.save(zone("s", ZoneType.STORAGE, null));
+        zoneIds.add(storage.getId());
+        List<ZoneEntity> columns = new ArrayList<>();
+        for (int i = 0; i < COLUMNS; i++) {
+            columns.add(zone("c" + i, ZoneType.COLUMN, storage));
+        }
+        zoneRepository.saveAll(columns).forEach(column -> zoneIds.add(column.getId()));
+
+        List<ShelfEntity> shelves = new ArrayList<>();
+        for (int i = 0; i < SHELVES; i++) {
+            shelves.add(ShelfEntity
+                    .builder()
+                    .name("shelf-" + i)
+                    .zone(columns.get(i % COLUMNS))
+                    .width(10)
+                    .length(10)
+                    .height(10)
+                    .level(i / COLUMNS)
+                    .isActive(true)
+                    .build());
+        }
+        shelfRepository.saveAll(shelves).forEach(shelf -> shelfIds.add(shelf.getId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+    }
+
+    @Test
+    void zonePagesContinueFromTheCursorToTheLastPage() {
+        List<Long> ids = new ArrayList<>();
+        CursorPageResponse<ZoneFlatModel> first = zoneService.getPage(null, 250);
+        first.getItems().forEach(zone -> ids.add(zone.getId()));
+        assertEquals(ids.get(ids.size() - 1), first.getNextCursor());
+
+        // created after the first page, ids only grow so it comes last
+        Long late = zoneRepository.save(zone("late", ZoneType.COLUMN, storage)).getId();
+        zoneIds.add(late);
+
+        List<CursorPageResponse<ZoneFlatModel>> pages = walk(first.getNextCursor(), 250, zoneService::getPage);
+        pages.forEach(page -> page.getItems().forEach(zone -> ids.add(zone.getId())));
+
+        assertEquals(zoneIds, ids);
+        CursorPageResponse<ZoneFlatModel> last = pages.get(pages.size() - 1);
+        assertEquals((COLUMNS + 2) % 250, last.getSize());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void shelfPagesContinueFromTheCursorToTheLastPage() {
+        List<Long> ids = new ArrayList<>();
+        List<CursorPageResponse<ShelfFlatModel>> pages = walk(null, 100, shelfService::getPage);
+        pages.forEach(page -> page.getItems().forEach(shelf -> ids.add(shelf.getId())));
+
+        assertEquals(shelfIds, ids);
+        assertEquals(SHELVES % 100, pages.get(pages.size() - 1).getSize());
+        assertNull(pages.get(pages.size() - 1).getNextCursor());
+    }
+
+    @Test
+    void fullLastPageIsFollowedByAnEmptyOne() {
+        CursorPageResponse<ShelfFlatModel> full = shelfService.getPage(shelfIds.get(SHELVES - 11), 10);
+        assertEquals(10, full.getSize());
+        assertEquals(shelfIds.get(SHELVES - 1), full.getNextCursor());
+
+        CursorPageResponse<ShelfFlatModel> empty = shelfService.getPage(full.getNextCursor(), 10);
+        assertEquals(List.of(), empty.getItems());
+        assertEquals(0, empty.getSize());
+        assertNull(empty.getNextCursor());
+    }
+
+    @Test
+    void pageSizeIsValidated() {
+        for (int size : new int[]{0, -1, 1001}) {
+            assertEquals(Reason.INVALID_REQUEST,
+                    assertThrows(LayoutRejectedException.class, () -> zoneService.getPage(null, size)).getReason());
+            assertEquals(Reason.INVALID_REQUEST,
+                    assertThrows(LayoutRejectedException.class, () -> shelfService.getPage(null, size)).getReason());
+        }
+        assertEquals(COLUMNS + 1, zoneService.getPage(null, 1000).getSize());
+        assertEquals(1000, shelfService.getPage(null, 1000).getSize());
+    }
+
+    @Test
+    void exportsWriteOneLinePerZoneAndShelf() throws IOException {
+        List<String> zones = lines(zoneController.export().getBody());
+        assertEquals(COLUMNS + 1, zones.size());
+        List<Long> exportedZones = new ArrayList<>();
+        for (String line : zones) {
+            exportedZones.add(objectMapper.readValue(line, ZoneFlatModel.class).getId());
+        }
+        assertEquals(zoneIds, exportedZones);
+
+        List<String> shelves = lines(shelfController.export().getBody());
+        assertEquals(SHELVES, shelves.size());
+        List<Long> exportedShelves = new ArrayList<>();
+        for (String line : shelves) {
+            exportedShelves.add(objectMapper.readValue(line, ShelfFlatModel.class).getId());
+        }
+        assertEquals(shelfIds, exportedShelves);
+    }
+
+    // Pages from afterId until one without a cursor
+    private static <T> List<CursorPageResponse<T>> walk(
+            Long afterId, int size, BiFunction<Long, Integer, CursorPageResponse<T>> getPage) {
+        List<CursorPageResponse<T>> pages = new ArrayList<>();
+        Long cursor = afterId;
+        do {
+            CursorPageResponse<T> page = getPage.apply(cursor, size);
+            assertEquals(page.getItems().size(), page.getSize());
+            pages.add(page);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return pages;
+    }
+
+    private static List<String> lines(StreamingResponseBody body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.endsWith("\n"));
+        return List.of(ndjson.split("\n"));
+    }
+}
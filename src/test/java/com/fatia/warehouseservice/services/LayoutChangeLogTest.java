@@ -0,0 +1,282 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.cache.LayoutSnapshot;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.models.ShelfFlatModel;
+import com.fatia.warehouseservice.repositories.LayoutChangeRepository;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.requests.MoveZoneRequest;
+import com.fatia.warehouseservice.responses.LayoutChangesResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LayoutChangeLogTest {
+
+    @Autowired
+    private LayoutChangeLog layoutChangeLog;
+
+    @Autowired
+    private LayoutImportService layoutImportService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private LayoutChangeRepository layoutChangeRepository;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // other tests leave rows of entities they removed directly through repositories
+    @BeforeEach
+    void setUp() {
+        layoutChangeRepository.deleteAllInBatch();
+    }
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+        layoutOutboxRepository.deleteAll();
+        layoutChangeRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void returnsLatestStatePerEntityAndTombstones() {
+        long start = latestVersion();
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", List.of(zone("COLUMN", List.of(), List.of(shelf(0), shelf(1), shelf(2)))),
+                        List.of())))
+                .build());
+
+        LayoutChangesResponse full = layoutChangeLog.getChanges(start, 1000);
+        assertFalse(full.isFullResync());
+        assertFalse(full.isHasMore());
+        assertEquals(2, full.getZones().size());
+        assertEquals(3, full.getShelves().size());
+        long afterImport = full.getVersion();
+
+        List<Long> shelfIds = shelfRepository.findAll().stream().map(ShelfEntity::getId).sorted().toList();
+        shelfService.reserve(shelfIds.get(0));
+        shelfService.release(shelfIds.get(0));
+        shelfService.reserve(shelfIds.get(0));
+        shelfService.deleteShelf(shelfIds.get(1));
+        layoutChangeLog.sequence();
+
+        // three changes of the first shelf are compacted to its current state
+        LayoutChangesResponse delta = layoutChangeLog.getChanges(afterImport, 1000);
+        assertEquals(List.of(), delta.getZones());
+        assertEquals(1, delta.getShelves().size());
+        ShelfFlatModel reserved = delta.getShelves().get(0);
+        assertEquals(shelfIds.get(0), reserved.getId());
+        assertTrue(reserved.isOccupied());
+        assertEquals(List.of(shelfIds.get(1)), delta.getDeletedShelfIds());
+        assertTrue(delta.getVersion() > afterImport);
+
+        LayoutChangesResponse empty = layoutChangeLog.getChanges(delta.getVersion(), 1000);
+        assertEquals(delta.getVersion(), empty.getVersion());
+        assertTrue(empty.getShelves().isEmpty() && empty.getDeletedShelfIds().isEmpty());
+    }
+
+    @Test
+    void reservationsDoNotWaitForTheVersionRow() throws Exception {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", List.of(zone("COLUMN", List.of(), List.of(shelf(0), shelf(1)))),
+                        List.of())))
+                .build());
+        long afterImport = latestVersion();
+        List<Long> shelfIds = shelfRepository.findAll().stream().map(ShelfEntity::getId).sorted().toList();
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("select version from layout_version where id = 1 for update", Long.class);
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        locked.await();
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                shelfService.reserveAll(shelfIds);
+                shelfService.release(shelfIds.get(1));
+            });
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        // both shelves get one version in the next batch
+        layoutChangeLog.sequence();
+        LayoutChangesResponse delta = layoutChangeLog.getChanges(afterImport, 1000);
+        assertEquals(afterImport + 2, delta.getVersion());
+        assertEquals(List.of(true, false), delta.getShelves().stream().map(ShelfFlatModel::isOccupied).toList());
+        assertEquals(0, layoutChangeLog.sequence());
+    }
+
+    @Test
+    void movedSubtreeIsInTheDelta() {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", List.of(zone("COLUMN", List.of(), List.of(shelf(0), shelf(1)))),
+                        List.of())))
+                .build());
+        long afterImport = latestVersion();
+        Long storageId = zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() == null)
+                .findFirst()
+                .orElseThrow()
+                .getId();
+        LayoutSnapshot before = zoneService.getSnapshot();
+
+        zoneService.moveZone(storageId, new MoveZoneRequest(100, 0, 0));
+
+        // patched right after the commit
+        LayoutSnapshot after = zoneService.getSnapshot();
+        assertEquals(latestVersion(), after.getVersion());
+        assertEquals(100, after.getZone(storageId).getOriginX());
+        assertEquals(0, before.getZone(storageId).getOriginX());
+
+        // column and shelves got new absolute bounds without events of their own
+        LayoutChangesResponse delta = layoutChangeLog.getChanges(afterImport, 1000);
+        assertEquals(2, delta.getZones().size());
+        assertEquals(2, delta.getShelves().size());
+        assertTrue(delta.getShelves().stream().allMatch(shelf -> shelf.getAbsMinX() >= 100));
+        assertEquals(latestVersion(), delta.getVersion());
+    }
+
+    @Test
+    void pagesThroughChanges() {
+        long start = latestVersion();
+        List<AddShelfRequest> shelves = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            shelves.add(shelf(i));
+        }
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", List.of(zone("COLUMN", List.of(), shelves)), List.of())))
+                .build());
+
+        int zones = 0;
+        int seenShelves = 0;
+        int pages = 0;
+        LayoutChangesResponse page;
+        long since = start;
+        do {
+            page = layoutChangeLog.getChanges(since, 10);
+            zones += page.getZones().size();
+            seenShelves += page.getShelves().size();
+            since = page.getVersion();
+            pages++;
+        } while (page.isHasMore());
+
+        assertEquals(2, zones);
+        assertEquals(25, seenShelves);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void clientsBehindPurgedTombstonesMustResync() {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", List.of(zone("COLUMN", List.of(), List.of(shelf(0), shelf(1), shelf(2)))),
+                        List.of())))
+                .build());
+        long afterImport = latestVersion();
+        List<Long> shelfIds = shelfRepository.findAll().stream().map(ShelfEntity::getId).sorted().toList();
+        shelfService.deleteShelf(shelfIds.get(0));
+        long afterFirstDelete = latestVersion();
+        shelfService.deleteShelf(shelfIds.get(1));
+
+        assertFalse(layoutChangeLog.getChanges(afterImport, 1000).isFullResync());
+
+        // first tombstone is dropped, second one stays as the sync horizon
+        assertEquals(1, layoutChangeLog.purgeBefore(Instant.now().plusSeconds(1)));
+
+        assertTrue(layoutChangeLog.getChanges(afterImport, 1000).isFullResync());
+        LayoutChangesResponse delta = layoutChangeLog.getChanges(afterFirstDelete, 1000);
+        assertFalse(delta.isFullResync());
+        assertEquals(List.of(shelfIds.get(1)), delta.getDeletedShelfIds());
+
+        LayoutChangesResponse fromScratch = layoutChangeLog.getChanges(0, 1000);
+        assertFalse(fromScratch.isFullResync());
+        assertEquals(1, fromScratch.getShelves().size());
+    }
+
+    private long latestVersion() {
+        Long version = layoutChangeRepository.findLatestVersion();
+        return version == null ? 0 : version;
+    }
+
+    private static ImportZoneRequest zone(String type, List<ImportZoneRequest> children, List<AddShelfRequest> shelves) {
+        return ImportZoneRequest
+                .builder()
+                .type(type)
+                .originX(0)
+                .originY(0)
+                .width(type.equals("COLUMN") ? 100 : 400)
+                .length(type.equals("COLUMN") ? 100 : 400)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .childZones(children)
+                .shelves(shelves)
+                .build();
+    }
+
+    private static AddShelfRequest shelf(int level) {
+        return AddShelfRequest
+                .builder()
+                .width(20)
+                .length(20)
+                .height(30)
+                .level(level)
+                .build();
+    }
+}
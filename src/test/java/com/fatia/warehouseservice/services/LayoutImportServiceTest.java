@@ -0,0 +1,180 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutImportedEvent;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.responses.ImportLayoutResponse;
+import com.fatia.warehouseservice.responses.ImportLayoutResponse.ImportError;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@RecordApplicationEvents
+class LayoutImportServiceTest {
+
+    @Autowired
+    private LayoutImportService layoutImportService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @Autowired
+    private ZoneCapacityIndex zoneCapacityIndex;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @AfterEach
+    void tearDown() {
+        layoutOutboxRepository.deleteAll();
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+    }
+
+    @Test
+    void importsValidItemsAndReportsInvalidOnes() {
+        ImportLayoutRequest request = ImportLayoutRequest
+                .builder()
+                .zones(List.of(
+                        zone("STORAGE", 0, 0, 1000, 1000, List.of(
+                                column(0, 0, List.of(shelf(0, 0), shelf(90, 0))),
+                                column(50, 50, List.of(shelf(0, 0))),
+                                column(200, 0, List.of(shelf(0, 0))),
+                                zone("PARKING_SPOT", 500, 500, 10, 10, List.of(), List.of()),
+                                // second shelf overlaps the first on its level, third stands above them
+                                column(400, 0, List.of(shelf(0, 0), shelf(10, 10), shelf(0, 0, 2)))
+                        ), List.of()),
+                        zone("STORAGE", 900, 900, 500, 500, List.of(), List.of()),
+                        zone("COLUMN", 2000, 0, 100, 100, List.of(), List.of())
+                ))
+                .build();
+
+        ImportLayoutResponse response = layoutImportService.importLayout(request);
+
+        assertEquals(4, response.getZonesCreated());
+        assertEquals(4, response.getShelvesCreated());
+        assertEquals(List.of(
+                "zones[0].childZones[0].shelves[1]",
+                "zones[0].childZones[1]",
+                "zones[0].childZones[3]",
+                "zones[0].childZones[4].shelves[1]",
+                "zones[1]",
+                "zones[2]"
+        ), response.getErrors().stream().map(ImportError::getPath).toList());
+        assertEquals("Shelf overlapping with shelf 0 on level 1 in zones[0].childZones[4].shelves",
+                response.getErrors().get(3).getMessage());
+
+        assertEquals(4, zoneRepository.count());
+        assertEquals(4, shelfRepository.count());
+
+        ZoneEntity storage = zoneRepository.findByParentZoneIsNull().get(0);
+        List<ZoneEntity> columns = zoneRepository.findByParentZoneId(storage.getId());
+        assertEquals(3, columns.size());
+        assertEquals("COLUMN-" + storage.getUuid() + "-" + columns.get(0).getUuid(), columns.get(0).getName());
+    }
+
+    @Test
+    void importedZonesTakePartInLaterOverlapChecks() {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", 0, 0, 1000, 1000, List.of(), List.of())))
+                .build());
+
+        ImportLayoutResponse second = layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("LOADING", 500, 500, 100, 100, List.of(), List.of())))
+                .build());
+
+        assertEquals(0, second.getZonesCreated());
+        assertEquals("Zone overlapping with sibling zones", second.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    void importPublishesOneEventAndIndexesLoadAgain() {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", 0, 0, 1000, 1000, List.of(column(0, 0, List.of(shelf(0, 0)))), List.of())))
+                .build());
+        Long storageId = zoneRepository.findByParentZoneIsNull().get(0).getId();
+        assertEquals(1, zoneCapacityIndex.getCapacity(storageId).getTotalShelves());
+
+        events.clear();
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .parentZoneId(storageId)
+                .zones(List.of(column(200, 0, List.of(shelf(0, 0), shelf(50, 0))), column(400, 0, List.of())))
+                .build());
+
+        assertEquals(0, events.stream(LayoutChangedEvent.class).count());
+        List<LayoutImportedEvent> imported = events.stream(LayoutImportedEvent.class).toList();
+        assertEquals(1, imported.size());
+        assertEquals(storageId, imported.get(0).getParentZoneId());
+        assertEquals(4, imported.get(0).getChanges().size());
+
+        assertEquals(3, zoneCapacityIndex.getCapacity(storageId).getTotalShelves());
+        assertEquals(7, layoutOutboxRepository.count());
+    }
+
+    private static ImportZoneRequest column(int x, int y, List<AddShelfRequest> shelves) {
+        return zone("COLUMN", x, y, 100, 100, List.of(), shelves);
+    }
+
+    private static ImportZoneRequest zone(String type, int x, int y, int width, int length,
+                                          List<ImportZoneRequest> children, List<AddShelfRequest> shelves) {
+        return ImportZoneRequest
+                .builder()
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .childZones(children)
+                .shelves(shelves)
+                .build();
+    }
+
+    private static AddShelfRequest shelf(int x, int y) {
+        return shelf(x, y, 1);
+    }
+
+    private static AddShelfRequest shelf(int x, int y, int level) {
+        return AddShelfRequest
+                .builder()
+                .originX(x)
+                .originY(y)
+                .width(20)
+                .length(20)
+                .height(30)
+                .level(level)
+                .build();
+    }
+}
@@ -0,0 +1,146 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.responses.ValidateLayoutResponse;
+import com.fatia.warehouseservice.responses.ValidateLayoutResponse.Violation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LayoutValidationServiceTest {
+
+    @Autowired
+    private LayoutValidationService layoutValidationService;
+
+    @Autowired
+    private LayoutImportService layoutImportService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+        layoutOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void reportsAllViolationsOfDraft() {
+        ImportLayoutRequest request = ImportLayoutRequest
+                .builder()
+                .zones(List.of(
+                        zone("STORAGE", 0, 0, 1000, 1000, List.of(
+                                column(0, 0, List.of(shelf(0, 0), shelf(90, 0))),
+                                column(50, 50, List.of(shelf(0, 0))),
+                                column(950, 0, List.of()),
+                                zone("PARKING_SPOT", 500, 500, 10, 10, List.of(), List.of())
+                        ), List.of()),
+                        zone("STORAGE", 900, 900, 500, 500, List.of(), List.of()),
+                        zone("UNKNOWN", 2000, 0, 100, 100, List.of(), List.of()),
+                        zone("LOADING", 4950, 0, 100, 100, List.of(), List.of(shelf(0, 0)))
+                ))
+                .build();
+
+        ValidateLayoutResponse response = layoutValidationService.validateDraft(request);
+
+        assertFalse(response.isValid());
+        assertEquals(8, response.getZonesChecked());
+        assertEquals(4, response.getShelvesChecked());
+        assertEquals(Set.of(
+                Reason.OUT_OF_PARENT_BOUNDS + " zones[0].childZones[0].shelves[1]",
+                Reason.OVERLAP + " zones[0].childZones[0] zones[0].childZones[1]",
+                Reason.OUT_OF_PARENT_BOUNDS + " zones[0].childZones[2]",
+                Reason.CHILD_TYPE_NOT_ALLOWED + " zones[0].childZones[3]",
+                Reason.OVERLAP + " zones[0] zones[1]",
+                Reason.INVALID_TYPE + " zones[2]",
+                Reason.OUT_OF_WAREHOUSE_BOUNDS + " zones[3]",
+                Reason.NOT_A_COLUMN + " zones[3].shelves[0]"
+        ), describe(response.getViolations()));
+    }
+
+    @Test
+    void storedLayoutCreatedByImportIsValid() {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(
+                        zone("STORAGE", 0, 0, 1000, 1000, List.of(
+                                column(0, 0, List.of(shelf(0, 0), shelf(50, 50))),
+                                column(100, 0, List.of(shelf(0, 0)))
+                        ), List.of()),
+                        zone("LOADING", 1000, 0, 100, 100, List.of(), List.of())))
+                .build());
+
+        ValidateLayoutResponse response = layoutValidationService.validateStored();
+
+        assertTrue(response.isValid(), () -> response.getViolations().toString());
+        assertEquals(4, response.getZonesChecked());
+        assertEquals(3, response.getShelvesChecked());
+    }
+
+    private static Set<String> describe(List<Violation> violations) {
+        return violations.stream()
+                .map(violation -> violation.getReason() + " " + violation.getPath()
+                        + (violation.getOtherPath() == null ? "" : " " + violation.getOtherPath()))
+                .collect(Collectors.toSet());
+    }
+
+    private static ImportZoneRequest column(int x, int y, List<AddShelfRequest> shelves) {
+        return zone("COLUMN", x, y, 100, 100, List.of(), shelves);
+    }
+
+    private static ImportZoneRequest zone(String type, int x, int y, int width, int length,
+                                          List<ImportZoneRequest> children, List<AddShelfRequest> shelves) {
+        return ImportZoneRequest
+                .builder()
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .childZones(children)
+                .shelves(shelves)
+                .build();
+    }
+
+    private static AddShelfRequest shelf(int x, int y) {
+        return AddShelfRequest
+                .builder()
+                .originX(x)
+                .originY(y)
+                .width(20)
+                .length(20)
+                .height(30)
+                .level(1)
+                .build();
+    }
+}
@@ -0,0 +1,252 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.concurrency.LeaderElection;
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.graph.FloorGraph;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.requests.MoveZoneRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+
+@SpringBootTest(properties = {
+        "warehouse.graph.enabled=true",
+        "warehouse.graph.sync-interval-ms=3600000"
+})
+@RecordApplicationEvents
+class NavigationGraphTest {
+
+    @Autowired
+    private NavigationGraph navigationGraph;
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private LayoutImportService layoutImportService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @MockitoSpyBean
+    private LeaderElection leaderElection;
+
+    @BeforeEach
+    void setUp() {
+        navigationGraph.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+        layoutOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void entriesAreSnappedToFreeCellsAndFollowChanges() {
+        // 50 x 50 cells, columns are the obstacles, storage floor is walkable
+        ImportZoneRequest first = zone("COLUMN", 100, 100, 100, 50, "BOTTOM", List.of());
+        first.setShelves(List.of(shelf()));
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", 0, 0, 1000, 1000, "UP", List.of(
+                        first,
+                        zone("COLUMN", 400, 100, 100, 50, "UP", List.of())))))
+                .build());
+        navigationGraph.sync();
+
+        ZoneEntity storage = zoneRepository.findByParentZoneIsNull().get(0);
+        ZoneEntity column = zoneRepository.findByParentZoneId(storage.getId()).stream()
+                .filter(zone -> zone.getOriginX() == 100)
+                .findFirst()
+                .orElseThrow();
+        ZoneEntity other = zoneRepository.findByParentZoneId(storage.getId()).stream()
+                .filter(zone -> zone.getOriginX() == 400)
+                .findFirst()
+                .orElseThrow();
+
+        // bottom side of the column, (150, 174) is in cell (3, 3)
+        assertEquals("N3_3", column.getNodeId());
+        // storage faces the warehouse wall, nearest cell inside is taken
+        assertEquals("N10_0", storage.getNodeId());
+        // rotated by 180 with its parent it would face down, here up: (450, 75)
+        assertEquals("N9_1", other.getNodeId());
+        assertEquals(List.of("N3_3"), shelfNodeIds(column));
+
+        FloorGraph before = navigationGraph.getGraph();
+        assertFalse(before.isFree(before.node(2, 2)));
+        assertTrue(before.isFree(before.node(3, 3)));
+        assertSymmetric(before);
+
+        // second column covers the entry cell, entry moves to the nearest free one
+        zoneService.moveZone(other.getId(), new MoveZoneRequest(100, 160, 0));
+        events.clear();
+        navigationGraph.sync();
+
+        FloorGraph after = navigationGraph.getGraph();
+        assertFalse(after.isFree(after.node(3, 3)));
+        assertEquals("N4_3", zoneRepository.findById(column.getId()).orElseThrow().getNodeId());
+        assertEquals(List.of("N4_3"), shelfNodeIds(column));
+        assertSame(before.getTile(before.getTileCount() - 1), after.getTile(after.getTileCount() - 1));
+        assertNotSame(before.getTile(0), after.getTile(0));
+        assertSymmetric(after);
+
+        // node ids are saved with their own operation, indexes don't take them for moves
+        List<LayoutChangedEvent> saved = events.stream(LayoutChangedEvent.class).toList();
+        assertFalse(saved.isEmpty());
+        assertTrue(saved.stream().allMatch(event -> event.getOperation() == Operation.NODE_UPDATED));
+
+        // and don't come back to the graph, nothing left to change then
+        navigationGraph.sync();
+        assertSame(after, navigationGraph.getGraph());
+    }
+
+    @Test
+    void onlyTheLeaderSavesNodeIds() {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", 0, 0, 1000, 1000, "UP", List.of(
+                        zone("COLUMN", 100, 100, 100, 50, "BOTTOM", List.of()),
+                        zone("COLUMN", 400, 100, 100, 50, "UP", List.of())))))
+                .build());
+        navigationGraph.sync();
+        ZoneEntity storage = zoneRepository.findByParentZoneIsNull().get(0);
+        ZoneEntity column = zoneRepository.findByParentZoneId(storage.getId()).stream()
+                .filter(zone -> zone.getOriginX() == 100)
+                .findFirst()
+                .orElseThrow();
+        ZoneEntity other = zoneRepository.findByParentZoneId(storage.getId()).stream()
+                .filter(zone -> zone.getOriginX() == 400)
+                .findFirst()
+                .orElseThrow();
+        assertEquals("N3_3", column.getNodeId());
+
+        // another instance leads, the graph still follows the layout
+        doReturn(false).when(leaderElection).isLeader();
+        zoneService.moveZone(other.getId(), new MoveZoneRequest(100, 160, 0));
+        navigationGraph.sync();
+        FloorGraph graph = navigationGraph.getGraph();
+        assertEquals(graph.node(4, 3), navigationGraph.entryNode(column.getId()));
+        assertEquals("N3_3", zoneRepository.findById(column.getId()).orElseThrow().getNodeId());
+
+        // taking over saves what the previous leader missed
+        doReturn(true).when(leaderElection).isLeader();
+        navigationGraph.sync();
+        assertEquals("N4_3", zoneRepository.findById(column.getId()).orElseThrow().getNodeId());
+    }
+
+    @Test
+    void startupReloadSeesBackfilledBounds() {
+        // stored before absolute bounds existed
+        ZoneEntity storage = zoneRepository.save(ZoneEntity
+                .builder()
+                .uuid("OLD")
+                .name("STORAGE-OLD")
+                .type(ZoneType.STORAGE)
+                .originX(0)
+                .originY(0)
+                .width(1000)
+                .length(1000)
+                .rotationAngle(0)
+                .faceDirection(FaceDirection.UP)
+                .build());
+
+        applicationContext.publishEvent(new ApplicationReadyEvent(
+                new SpringApplication(), new String[0], applicationContext, Duration.ZERO));
+
+        assertEquals("N10_0", zoneRepository.findById(storage.getId()).orElseThrow().getNodeId());
+    }
+
+    private List<String> shelfNodeIds(ZoneEntity column) {
+        return shelfRepository.findByZoneIdIn(List.of(column.getId())).stream()
+                .map(ShelfEntity::getConnectedNodeId)
+                .toList();
+    }
+
+    private static void assertSymmetric(FloorGraph graph) {
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            int from = node;
+            List<Integer> targets = new ArrayList<>();
+            graph.forEachEdge(node, (target, weight) -> targets.add(target));
+            for (int target : targets) {
+                assertTrue(graph.isFree(target));
+                List<Integer> back = new ArrayList<>();
+                graph.forEachEdge(target, (next, weight) -> back.add(next));
+                assertTrue(back.contains(from));
+            }
+        }
+    }
+
+    private static AddShelfRequest shelf() {
+        return AddShelfRequest
+                .builder()
+                .level(0)
+                .originX(0)
+                .originY(0)
+                .width(50)
+                .length(50)
+                .height(40)
+                .build();
+    }
+
+    private static ImportZoneRequest zone(String type, int x, int y, int width, int length, String face,
+                                          List<ImportZoneRequest> children) {
+        return ImportZoneRequest
+                .builder()
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection(face)
+                .childZones(children)
+                .shelves(List.of())
+                .build();
+    }
+}
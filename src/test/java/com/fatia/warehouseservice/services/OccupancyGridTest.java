@@ -0,0 +1,229 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.fatia.warehouseservice.LayoutFixtures.recordChanges;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class OccupancyGridTest {
+
+    @Autowired
+    private OccupancyGrid occupancyGrid;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private LayoutImportService layoutImportService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @Autowired
+    private LayoutChangeLog layoutChangeLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+        layoutOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void countsShelvesPerCellAndFollowsReservations() {
+        // storage at (200, 100), columns at 0 and 150 inside it, shelves 20 x 20
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", 200, 100, 400, 300, List.of(
+                        column(0, 0, List.of(shelf(0, 0, 1), shelf(30, 30, 1), shelf(0, 0, 2))),
+                        column(150, 0, List.of(shelf(10, 10, 1)))
+                ), List.of())))
+                .build());
+
+        OccupancyGrid.Payload first = occupancyGrid.get(100);
+        Decoded grid = Decoded.of(first.bytes());
+        assertEquals(100, grid.cellSize);
+        assertEquals(50, grid.columns);
+        assertEquals(30, grid.rows);
+
+        // centres (210, 110), (240, 140), (210, 110) and (370, 120)
+        assertEquals(3, grid.shelves[grid.cell(2, 1)]);
+        assertEquals(1, grid.shelves[grid.cell(3, 1)]);
+        assertEquals(4, sum(grid.shelves));
+        assertEquals(0, sum(grid.occupied));
+
+        // column covers centre of (2, 1), rest of storage is STORAGE, floor is empty
+        assertEquals(ZoneType.COLUMN.ordinal() + 1, grid.zoneTypes[grid.cell(2, 1)]);
+        assertEquals(ZoneType.STORAGE.ordinal() + 1, grid.zoneTypes[grid.cell(4, 2)]);
+        assertEquals(0, grid.zoneTypes[grid.cell(0, 0)]);
+
+        assertEquals(first.tag(), occupancyGrid.get(100).tag());
+
+        ShelfEntity shelf = shelfRepository.findAll().stream()
+                .filter(s -> s.getAbsMinX() == 360)
+                .findFirst()
+                .orElseThrow();
+        shelfService.reserve(shelf.getId());
+
+        OccupancyGrid.Payload second = occupancyGrid.get(100);
+        assertNotEquals(first.tag(), second.tag());
+        grid = Decoded.of(second.bytes());
+        assertEquals(1, grid.occupied[grid.cell(3, 1)]);
+        assertEquals(1, sum(grid.occupied));
+        assertEquals(4, sum(grid.shelves));
+    }
+
+    @Test
+    void followsReservationsOfOtherInstances() {
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(zone("STORAGE", 200, 100, 400, 300, List.of(
+                        column(0, 0, List.of(shelf(0, 0, 1)))), List.of())))
+                .build());
+        Long shelfId = shelfRepository.findAll().get(0).getId();
+        OccupancyGrid.Payload first = occupancyGrid.get(100);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("update shelves set is_occupied = true where id = ?", shelfId);
+            recordChanges(jdbcTemplate, "SHELF", List.of(shelfId));
+        });
+        layoutChangeLog.catchUp();
+        OccupancyGrid.Payload second = occupancyGrid.get(100);
+        assertNotEquals(first.tag(), second.tag());
+        assertEquals(1, sum(Decoded.of(second.bytes()).occupied));
+
+        // change log row of a change already counted, nothing moves
+        transactionTemplate.executeWithoutResult(status -> recordChanges(jdbcTemplate, "SHELF", List.of(shelfId)));
+        layoutChangeLog.catchUp();
+        assertEquals(second.tag(), occupancyGrid.get(100).tag());
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static ImportZoneRequest column(int x, int y, List<AddShelfRequest> shelves) {
+        return zone("COLUMN", x, y, 100, 100, List.of(), shelves);
+    }
+
+    private static ImportZoneRequest zone(String type, int x, int y, int width, int length,
+                                          List<ImportZoneRequest> children, List<AddShelfRequest> shelves) {
+        return ImportZoneRequest
+                .builder()
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .childZones(children)
+                .shelves(shelves)
+                .build();
+    }
+
+    private static AddShelfRequest shelf(int x, int y, int level) {
+        return AddShelfRequest
+                .builder()
+                .originX(x)
+                .originY(y)
+                .width(20)
+                .length(20)
+                .height(30)
+                .level(level)
+                .build();
+    }
+
+    private static class Decoded {
+        private int cellSize;
+        private int columns;
+        private int rows;
+        private int[] shelves;
+        private int[] occupied;
+        private int[] zoneTypes;
+
+        static Decoded of(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            buffer.getLong();
+            Decoded decoded = new Decoded();
+            decoded.cellSize = varint(buffer);
+            decoded.columns = varint(buffer);
+            decoded.rows = varint(buffer);
+            decoded.shelves = layer(buffer, decoded.columns * decoded.rows);
+            decoded.occupied = layer(buffer, decoded.columns * decoded.rows);
+            decoded.zoneTypes = layer(buffer, decoded.columns * decoded.rows);
+            assertFalse(buffer.hasRemaining());
+            return decoded;
+        }
+
+        int cell(int column, int row) {
+            return row * columns + column;
+        }
+
+        private static int[] layer(ByteBuffer buffer, int size) {
+            int[] values = new int[size];
+            int runs = varint(buffer);
+            int position = 0;
+            for (int i = 0; i < runs; i++) {
+                int length = varint(buffer);
+                int value = varint(buffer);
+                for (int j = 0; j < length; j++) {
+                    values[position++] = value;
+                }
+            }
+            assertEquals(size, position);
+            return values;
+        }
+
+        private static int varint(ByteBuffer buffer) {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.responses.ReserveShelvesResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.fatia.warehouseservice.LayoutFixtures.zone;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ShelfReservationTest {
+
+    private static final int SHELVES = 50;
+    private static final int WORKERS = 16;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private ZoneCapacityIndex zoneCapacityIndex;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    private final List<Long> shelfIds = new ArrayList<>();
+
+    private Long storageId;
+
+    @BeforeEach
+    void setUp() {
+        ZoneEntity storage = zoneRepository.save(zone("s", ZoneType.STORAGE, null));
+        ZoneEntity column = zoneRepository.save(zone("c", ZoneType.COLUMN, storage));
+        storageId = storage.getId();
+        for (int i = 0; i < SHELVES; i++) {
+            shelfIds.add(shelfRepository.save(ShelfEntity
+                    .builder()
+                    .name("shelf-" + i)
+                    .zone(column)
+                    .width(10)
+                    .length(10)
+                    .height(10)
+                    .level(i)
+                    .isActive(true)
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+    }
+
+    @Test
+    void everyShelfIsReservedByExactlyOneWorker() throws Exception {
+        // shelves were saved without events
+        zoneCapacityIndex.reconcile();
+        assertEquals(SHELVES, zoneCapacityIndex.getCapacity(storageId).getFreeShelves());
+
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        List<Future<ReserveShelvesResponse>> futures = new ArrayList<>();
+        for (int w = 0; w < WORKERS; w++) {
+            List<Long> ids = new ArrayList<>(shelfIds);
+            Collections.shuffle(ids);
+            futures.add(executor.submit(() -> shelfService.reserveAll(ids)));
+        }
+
+        List<Long> reserved = new ArrayList<>();
+        for (Future<ReserveShelvesResponse> future : futures) {
+            ReserveShelvesResponse response = future.get();
+            assertEquals(SHELVES, response.getReserved().size() + response.getRejected().size());
+            reserved.addAll(response.getReserved());
+        }
+        executor.shutdown();
+
+        assertEquals(SHELVES, reserved.size());
+        assertEquals(SHELVES, reserved.stream().distinct().count());
+        assertTrue(shelfRepository.findAll().stream().allMatch(ShelfEntity::isOccupied));
+        assertEquals(SHELVES, zoneCapacityIndex.getCapacity(storageId).getOccupiedShelves());
+        assertEquals(0, zoneCapacityIndex.getCapacity(storageId).getFreeVolume());
+        assertEquals(List.of(), zoneCapacityIndex.reconcile().getDrifts());
+    }
+
+    @Test
+    void reserveAndReleaseSingleShelf() {
+        Long id = shelfIds.get(0);
+
+        shelfService.reserve(id);
+        LayoutRejectedException twice = assertThrows(LayoutRejectedException.class, () -> shelfService.reserve(id));
+        assertEquals(Reason.CONFLICT, twice.getReason());
+        assertEquals(1, shelfRepository.findById(id).orElseThrow().getVersion());
+
+        shelfService.release(id);
+        assertFalse(shelfRepository.findById(id).orElseThrow().isOccupied());
+        assertEquals(Reason.CONFLICT,
+                assertThrows(LayoutRejectedException.class, () -> shelfService.release(id)).getReason());
+        assertEquals(Reason.NOT_FOUND,
+                assertThrows(LayoutRejectedException.class, () -> shelfService.reserve(-1L)).getReason());
+    }
+}
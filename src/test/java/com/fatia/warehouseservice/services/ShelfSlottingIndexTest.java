@@ -0,0 +1,211 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.config.WarehouseConfig;
+import com.fatia.warehouseservice.entities.FaceDirection;
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.graph.FloorGraph;
+import com.fatia.warehouseservice.models.ShelfSlotModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.BestShelvesRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ShelfSlottingIndexTest {
+
+    private final ShelfRepository shelfRepository = mock(ShelfRepository.class);
+
+    private final ZoneRepository zoneRepository = mock(ZoneRepository.class);
+
+    private final NavigationGraph navigationGraph = mock(NavigationGraph.class);
+
+    private final TravelDistanceMatrix travelDistanceMatrix = new TravelDistanceMatrix(navigationGraph);
+
+    private ShelfSlottingIndex index;
+
+    private ZoneEntity storage;
+
+    private final List<ShelfEntity> shelves = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        WarehouseConfig warehouseConfig = new WarehouseConfig();
+        warehouseConfig.setWidth(10_000);
+        warehouseConfig.setHeight(10_000);
+        index = new ShelfSlottingIndex(shelfRepository, zoneRepository, warehouseConfig, travelDistanceMatrix);
+        ReflectionTestUtils.setField(travelDistanceMatrix, "enabled", true);
+        ReflectionTestUtils.setField(travelDistanceMatrix, "parallelism", 1);
+
+        // entry of storage is in the middle of its top side, (5000, 0)
+        storage = zone(1L, ZoneType.STORAGE, 0, 0, 10_000, 10_000, null);
+        List<ZoneEntity> zones = new ArrayList<>(List.of(storage));
+        long shelfId = 1000;
+        for (int i = 0; i < 50; i++) {
+            ZoneEntity column = zone(10L + i, ZoneType.COLUMN, 5000 + (i % 2 == 0 ? i : -i) * 100, i * 150, 80, 80, storage);
+            zones.add(column);
+            for (int level = 0; level < 3; level++) {
+                shelves.add(shelf(shelfId++, column, level, level == 2 ? Map.of("temperature", "cold") : Map.of()));
+            }
+        }
+
+        when(zoneRepository.findAll()).thenReturn(zones);
+        when(shelfRepository.findFree()).thenReturn(shelves);
+    }
+
+    @AfterEach
+    void tearDown() {
+        travelDistanceMatrix.shutdown();
+    }
+
+    @Test
+    void returnsNearestFittingShelves() {
+        List<ShelfSlotModel> best = index.findBest(request(5, null, null));
+
+        assertEquals(5, best.size());
+        assertEquals(List.of(10L, 10L, 10L, 11L, 11L), best.stream().map(ShelfSlotModel::getZoneId).toList());
+        for (int i = 1; i < best.size(); i++) {
+            assertTrue(best.get(i - 1).getDistance() <= best.get(i).getDistance());
+        }
+        assertEquals(best, withoutEarlyStop(request(5, null, null)));
+    }
+
+    @Test
+    void filtersByLevelConditionsAndSize() {
+        List<ShelfSlotModel> cold = index.findBest(request(100, null, Map.of("temperature", "cold")));
+        assertEquals(50, cold.size());
+        assertTrue(cold.stream().allMatch(shelf -> shelf.getLevel() == 2));
+
+        assertEquals(50, index.findBest(request(100, 1, null)).size());
+
+        BestShelvesRequest tooHigh = request(10, null, null);
+        tooHigh.setHeight(31);
+        assertTrue(index.findBest(tooHigh).isEmpty());
+
+        // item can be turned to fit
+        BestShelvesRequest turned = request(1, null, null);
+        turned.setWidth(20);
+        turned.setLength(10);
+        assertEquals(1, index.findBest(turned).size());
+    }
+
+    @Test
+    void occupiedShelfLeavesIndexAndComesBackWhenFreed() {
+        ShelfSlotModel nearest = index.findBest(request(1, null, null)).get(0);
+        ShelfEntity shelf = shelves.stream().filter(s -> s.getId().equals(nearest.getId())).findFirst().orElseThrow();
+        when(shelfRepository.findById(shelf.getId())).thenReturn(Optional.of(shelf));
+
+        shelf.setOccupied(true);
+        index.onLayoutChanged(LayoutChangedEvent.shelf(shelf.getId(), Operation.UPDATED, shelf.getZone().getId()));
+        assertNotEquals(nearest.getId(), index.findBest(request(1, null, null)).get(0).getId());
+
+        shelf.setOccupied(false);
+        index.onLayoutChanged(LayoutChangedEvent.shelf(shelf.getId(), Operation.UPDATED, shelf.getZone().getId()));
+        assertEquals(nearest.getId(), index.findBest(request(1, null, null)).get(0).getId());
+
+        verify(shelfRepository, times(1)).findFree();
+    }
+
+    @Test
+    void followsColumnsMovedByOtherInstances() {
+        assertEquals(10L, index.findBest(request(1, null, null)).get(0).getZoneId());
+
+        // nearest column moved to the far end with its shelves, all of them are in the change log
+        ZoneEntity column = shelves.get(0).getZone();
+        column.setOriginY(9_000);
+        List<ShelfEntity> moved = shelves.subList(0, 3);
+        when(zoneRepository.findAllById(Set.of(10L))).thenReturn(List.of(column));
+        when(shelfRepository.findAllById(Set.of(1000L, 1001L, 1002L))).thenReturn(moved);
+        index.onLayoutSynced(new LayoutSyncedEvent(
+                3, 7, false, Set.of(10L), Set.of(), Set.of(1000L, 1001L, 1002L), Set.of()));
+
+        List<ShelfSlotModel> best = index.findBest(request(150, null, null));
+        assertEquals(List.of(11L, 11L, 11L), best.subList(0, 3).stream().map(ShelfSlotModel::getZoneId).toList());
+        assertTrue(best.stream().filter(shelf -> shelf.getZoneId() == 10L).allMatch(shelf -> shelf.getDistance() > 9_000));
+        verify(shelfRepository, times(1)).findFree();
+    }
+
+    @Test
+    void ranksByTravelDistanceOnceComputed() {
+        // 40 x 20 cells of 10, wall at x = 30 cuts off column 10, other columns have no entry node
+        FloorGraph graph = FloorGraph.build(10, 0, 0, 400, 200, (x, y) -> x == 30);
+        when(navigationGraph.getEntries()).thenReturn(new NavigationGraph.Entries(graph, Map.of(
+                1L, graph.node(0, 0),
+                10L, graph.node(39, 0),
+                11L, graph.node(20, 0),
+                12L, graph.node(5, 0))));
+        travelDistanceMatrix.refresh();
+
+        List<ShelfSlotModel> best = index.findBest(request(4, null, null));
+        assertEquals(List.of(12L, 12L, 12L, 11L), best.stream().map(ShelfSlotModel::getZoneId).toList());
+        assertEquals(List.of(50, 50, 50, 200), best.stream().map(ShelfSlotModel::getDistance).toList());
+        assertEquals(6, index.findBest(request(100, null, null)).size());
+    }
+
+    private List<ShelfSlotModel> withoutEarlyStop(BestShelvesRequest request) {
+        return index.findBest(request(shelves.size(), request.getLevel(), request.getConditions()))
+                .subList(0, request.getLimit());
+    }
+
+    private static BestShelvesRequest request(int limit, Integer level, Map<String, String> conditions) {
+        return BestShelvesRequest
+                .builder()
+                .fromZoneId(1L)
+                .width(10)
+                .length(20)
+                .height(10)
+                .level(level)
+                .conditions(conditions)
+                .limit(limit)
+                .build();
+    }
+
+    private static ZoneEntity zone(Long id, ZoneType type, int x, int y, int width, int length, ZoneEntity parent) {
+        return ZoneEntity
+                .builder()
+                .id(id)
+                .uuid("z" + id)
+                .name(type + "-z" + id)
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection(FaceDirection.UP)
+                .parentZone(parent)
+                .build();
+    }
+
+    private static ShelfEntity shelf(Long id, ZoneEntity column, int level, Map<String, String> conditions) {
+        return ShelfEntity
+                .builder()
+                .id(id)
+                .name("shelf-" + id)
+                .zone(column)
+                .originX(0)
+                .originY(0)
+                .width(40)
+                .length(40)
+                .height(30)
+                .level(level)
+                .conditions(conditions)
+                .isActive(true)
+                .build();
+    }
+}
@@ -0,0 +1,143 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.graph.FloorGraph;
+import com.fatia.warehouseservice.models.DistanceModel;
+import com.fatia.warehouseservice.requests.DistanceMatrixRequest;
+import com.fatia.warehouseservice.responses.DistanceMatrixResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TravelDistanceMatrixTest {
+
+    private static final int CELL = 10;
+
+    private final NavigationGraph navigationGraph = mock(NavigationGraph.class);
+
+    private TravelDistanceMatrix matrix;
+
+    // 40 x 20 cells, 3 x 2 tiles
+    private final FloorGraph open = FloorGraph.build(CELL, 0, 0, 400, 200, (x, y) -> false);
+
+    @BeforeEach
+    void setUp() {
+        matrix = create(navigationGraph);
+    }
+
+    @AfterEach
+    void tearDown() {
+        matrix.shutdown();
+    }
+
+    @Test
+    void answersFromTheLatestGraph() {
+        assertEquals(Reason.CONFLICT, reason(() -> matrix.getDistance(1L, 2L)));
+
+        Map<Long, Integer> entries = Map.of(
+                1L, open.node(0, 0),
+                2L, open.node(39, 0),
+                3L, open.node(0, 19),
+                4L, open.node(39, 19));
+        refresh(open, entries);
+        assertEquals(390f, matrix.getDistance(1L, 2L));
+        assertEquals(580f, matrix.getDistance(4L, 1L));
+        assertEquals(0f, matrix.getDistance(3L, 3L));
+        assertEquals(Reason.NOT_FOUND, reason(() -> matrix.getDistance(1L, 5L)));
+
+        // wall across the middle with a gap at the bottom row
+        FloorGraph wall = open.rebuild(List.of(0, 1, 2, 3, 4, 5), (x, y) -> x == 20 && y < 19);
+        refresh(wall, entries);
+        assertEquals(19 * 2 * CELL + 390f, matrix.getDistance(1L, 2L));
+        assertEquals(390f, matrix.getDistance(3L, 4L));
+        assertSameAsFull(wall, entries);
+
+        // gap closed, left and right halves can't reach each other
+        FloorGraph closed = wall.rebuild(List.of(1, 4), (x, y) -> x == 20);
+        refresh(closed, entries);
+        assertNull(matrix.getDistanceModel(2L, 3L).getDistance());
+        assertEquals(190f, matrix.getDistance(1L, 3L));
+        assertSameAsFull(closed, entries);
+
+        // entry moved, opened wall again
+        Map<Long, Integer> moved = Map.of(
+                1L, open.node(0, 0),
+                2L, open.node(10, 5),
+                3L, open.node(0, 19),
+                4L, open.node(39, 19));
+        FloorGraph reopened = wall.rebuild(List.of(1, 4), (x, y) -> x == 20 && y < 19);
+        refresh(reopened, moved);
+        assertEquals(150f, matrix.getDistance(2L, 1L));
+        assertSameAsFull(reopened, moved);
+        assertEquals(List.of(0f, 150f, 190f, 580f), matrix.getDistancesFrom(1L, List.of()).stream()
+                .map(DistanceModel::getDistance)
+                .toList());
+
+        DistanceMatrixResponse response = matrix.getDistances(new DistanceMatrixRequest(List.of(1L, 2L), List.of(3L, 4L)));
+        assertEquals(List.of(List.of(190f, 580f), List.of(240f, 430f)), response.getDistances());
+    }
+
+    @Test
+    void freedCellsSearchOnlyRowsTheyCanShorten() {
+        Map<Long, Integer> entries = Map.of(
+                1L, open.node(0, 0),
+                2L, open.node(39, 0),
+                3L, open.node(0, 19),
+                4L, open.node(39, 19));
+        // small block at the right edge, tile 2
+        FloorGraph block = open.rebuild(List.of(2), (x, y) -> x >= 36 && x <= 38 && y >= 8 && y <= 10);
+        refresh(block, entries);
+        float[][] before = rows();
+
+        // nearest freed cells are 440, 90, 450 and 100 away, only 1 -> 4 and 2 -> 3 may get shorter
+        FloorGraph freed = block.rebuild(List.of(2), (x, y) -> false);
+        refresh(freed, entries);
+        float[][] after = rows();
+        assertSame(before[2], after[2]);
+        assertSame(before[3], after[3]);
+        assertSameAsFull(freed, entries);
+    }
+
+    private float[][] rows() {
+        return (float[][]) ReflectionTestUtils.getField(ReflectionTestUtils.getField(matrix, "matrix"), "rows");
+    }
+
+    // Matrix built from scratch for the same graph gives the same distances
+    private void assertSameAsFull(FloorGraph graph, Map<Long, Integer> entries) {
+        NavigationGraph fresh = mock(NavigationGraph.class);
+        when(fresh.getEntries()).thenReturn(new NavigationGraph.Entries(graph, entries));
+        TravelDistanceMatrix full = create(fresh);
+        try {
+            full.refresh();
+            List<Long> ids = entries.keySet().stream().sorted().toList();
+            DistanceMatrixRequest request = new DistanceMatrixRequest(ids, ids);
+            assertEquals(full.getDistances(request).getDistances(), matrix.getDistances(request).getDistances());
+        } finally {
+            full.shutdown();
+        }
+    }
+
+    private void refresh(FloorGraph graph, Map<Long, Integer> entries) {
+        when(navigationGraph.getEntries()).thenReturn(new NavigationGraph.Entries(graph, entries));
+        matrix.refresh();
+    }
+
+    private static TravelDistanceMatrix create(NavigationGraph navigationGraph) {
+        TravelDistanceMatrix matrix = new TravelDistanceMatrix(navigationGraph);
+        ReflectionTestUtils.setField(matrix, "enabled", true);
+        ReflectionTestUtils.setField(matrix, "parallelism", 2);
+        return matrix;
+    }
+
+    private static Reason reason(Runnable call) {
+        return assertThrows(LayoutRejectedException.class, call::run).getReason();
+    }
+}
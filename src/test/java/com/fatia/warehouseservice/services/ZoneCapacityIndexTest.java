@@ -0,0 +1,150 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.events.LayoutChangedEvent;
+import com.fatia.warehouseservice.events.LayoutChangedEvent.Operation;
+import com.fatia.warehouseservice.events.LayoutSyncedEvent;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ZoneCapacityModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.responses.CapacityReconcileResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ZoneCapacityIndexTest {
+
+    private final ZoneRepository zoneRepository = mock(ZoneRepository.class);
+
+    private final ShelfRepository shelfRepository = mock(ShelfRepository.class);
+
+    private final ZoneCapacityIndex index = new ZoneCapacityIndex(zoneRepository, shelfRepository);
+
+    @BeforeEach
+    void setUp() {
+        // 1 -> 2 -> column 3, 1 -> column 4
+        when(zoneRepository.findParentKeys()).thenReturn(List.of(
+                new Object[]{1L, 0L},
+                new Object[]{2L, 1L},
+                new Object[]{3L, 2L},
+                new Object[]{4L, 1L}));
+        when(shelfRepository.findCapacityRows()).thenReturn(List.of(
+                new Object[]{10L, 3L, 10, 10, 10, true, false},
+                new Object[]{11L, 3L, 10, 10, 10, true, true},
+                new Object[]{12L, 4L, 10, 10, 10, false, false},
+                new Object[]{13L, 4L, 2, 5, 10, true, false}));
+    }
+
+    @Test
+    void rollsCountersUpTheZoneTree() {
+        assertEquals(capacity(1L, 4, 2, 1, 1, 1100), index.getCapacity(1L));
+        assertEquals(capacity(2L, 2, 1, 1, 0, 1000), index.getCapacity(2L));
+        assertEquals(capacity(4L, 2, 1, 0, 1, 100), index.getCapacity(4L));
+        assertEquals(Reason.NOT_FOUND, assertThrows(LayoutRejectedException.class, () -> index.getCapacity(5L)).getReason());
+
+        index.onLayoutChanged(LayoutChangedEvent.shelf(10L, Operation.RESERVED, null));
+        index.onLayoutChanged(LayoutChangedEvent.shelf(11L, Operation.RELEASED, null));
+        assertEquals(capacity(3L, 2, 1, 1, 0, 1000), index.getCapacity(3L));
+
+        // activated and moved to the other column
+        when(shelfRepository.findById(12L)).thenReturn(Optional.of(shelf(12L, 3L, true, false)));
+        index.onLayoutChanged(LayoutChangedEvent.shelf(12L, Operation.UPDATED, 3L));
+        index.onLayoutChanged(LayoutChangedEvent.shelf(13L, Operation.DELETED, 4L));
+        assertEquals(capacity(2L, 3, 2, 1, 0, 1001), index.getCapacity(2L));
+        assertEquals(capacity(4L, 0, 0, 0, 0, 0), index.getCapacity(4L));
+
+        // subtree moves to the top level with its counters
+        index.onLayoutChanged(LayoutChangedEvent.zone(2L, Operation.UPDATED, null));
+        assertEquals(capacity(1L, 0, 0, 0, 0, 0), index.getCapacity(1L));
+        assertEquals(capacity(2L, 3, 2, 1, 0, 1001), index.getCapacity(2L));
+        verify(shelfRepository, times(1)).findCapacityRows();
+    }
+
+    @Test
+    void reconciliationReportsDrift() {
+        index.getCapacity(1L);
+        // reservation made by another instance
+        when(shelfRepository.findCapacityRows()).thenReturn(List.of(
+                new Object[]{10L, 3L, 10, 10, 10, true, true},
+                new Object[]{11L, 3L, 10, 10, 10, true, true},
+                new Object[]{12L, 4L, 10, 10, 10, false, false},
+                new Object[]{13L, 4L, 2, 5, 10, true, false}));
+
+        CapacityReconcileResponse response = index.reconcile();
+        assertEquals(4, response.getZonesChecked());
+        assertEquals(4, response.getShelvesChecked());
+        assertEquals(List.of(1L, 2L, 3L), response.getDrifts().stream()
+                .map(CapacityReconcileResponse.Drift::getZoneId)
+                .toList());
+        assertEquals(capacity(3L, 2, 1, 1, 0, 1000), response.getDrifts().get(2).getMaintained());
+        assertEquals(capacity(3L, 2, 0, 2, 0, 0), response.getDrifts().get(2).getRecomputed());
+        assertEquals(capacity(3L, 2, 0, 2, 0, 0), index.getCapacity(3L));
+
+        assertEquals(List.of(), index.reconcile().getDrifts());
+    }
+
+    @Test
+    void dropsCountersOnUnknownColumn() {
+        index.getCapacity(1L);
+
+        when(shelfRepository.findById(14L)).thenReturn(Optional.of(shelf(14L, 5L, true, false)));
+        index.onLayoutChanged(LayoutChangedEvent.shelf(14L, Operation.CREATED, 5L));
+        index.getCapacity(1L);
+        verify(shelfRepository, times(2)).findCapacityRows();
+    }
+
+    @Test
+    void followsChangesOfOtherInstances() {
+        index.getCapacity(1L);
+
+        // column 5 added under 1 with shelf 14, shelf 10 reserved, shelf 13 deleted
+        when(zoneRepository.findAllById(Set.of(5L))).thenReturn(List.of(ZoneEntity
+                .builder()
+                .id(5L)
+                .parentZone(ZoneEntity.builder().id(1L).build())
+                .build()));
+        when(shelfRepository.findAllById(Set.of(10L, 14L))).thenReturn(List.of(
+                shelf(10L, 3L, true, true),
+                shelf(14L, 5L, true, false)));
+        LayoutSyncedEvent event = new LayoutSyncedEvent(
+                7, 10, false, Set.of(5L), Set.of(), Set.of(10L, 14L), Set.of(13L));
+        index.onLayoutSynced(event);
+        assertEquals(capacity(1L, 4, 1, 2, 1, 1), index.getCapacity(1L));
+        assertEquals(capacity(5L, 1, 1, 0, 0, 1), index.getCapacity(5L));
+
+        // own changes come back the same way
+        index.onLayoutSynced(event);
+        assertEquals(capacity(1L, 4, 1, 2, 1, 1), index.getCapacity(1L));
+        verify(shelfRepository, times(1)).findCapacityRows();
+
+        index.onLayoutSynced(new LayoutSyncedEvent(10, 20_000, true, Set.of(), Set.of(), Set.of(), Set.of()));
+        index.getCapacity(1L);
+        verify(shelfRepository, times(2)).findCapacityRows();
+    }
+
+    private static ZoneCapacityModel capacity(Long zoneId, long total, long free, long occupied, long inactive, long freeVolume) {
+        return new ZoneCapacityModel(zoneId, total, free, occupied, inactive, freeVolume);
+    }
+
+    private static ShelfEntity shelf(Long id, Long columnId, boolean active, boolean occupied) {
+        return ShelfEntity
+                .builder()
+                .id(id)
+                .zone(ZoneEntity.builder().id(columnId).build())
+                .width(1)
+                .length(1)
+                .height(1)
+                .isActive(active)
+                .isOccupied(occupied)
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException;
+import com.fatia.warehouseservice.exceptions.LayoutRejectedException.Reason;
+import com.fatia.warehouseservice.models.ZoneFlatModel;
+import com.fatia.warehouseservice.models.ZonePositionModel;
+import com.fatia.warehouseservice.repositories.LayoutOutboxRepository;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import com.fatia.warehouseservice.requests.AddShelfRequest;
+import com.fatia.warehouseservice.requests.ImportLayoutRequest;
+import com.fatia.warehouseservice.requests.ImportZoneRequest;
+import com.fatia.warehouseservice.requests.MoveZoneRequest;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ZoneMoveTest {
+
+    private static final int COLUMNS = 2000;
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private LayoutImportService layoutImportService;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private LayoutOutboxRepository layoutOutboxRepository;
+
+    @Autowired
+    private ZoneSpatialIndex zoneSpatialIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        shelfRepository.deleteAll();
+        zoneRepository.findAll().stream()
+                .filter(zone -> zone.getParentZone() != null)
+                .forEach(zoneRepository::delete);
+        zoneRepository.deleteAll();
+        zoneSpatialIndex.clear();
+        layoutOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void movingStorageShiftsOnlyAbsoluteBoundsOfItsSubtree() {
+        List<ImportZoneRequest> columns = new ArrayList<>();
+        for (int i = 0; i < COLUMNS; i++) {
+            columns.add(zone("COLUMN", (i % 50) * 20, (i / 50) * 20, 10, 10, List.of()));
+            columns.get(i).setShelves(List.of(shelf()));
+        }
+        layoutImportService.importLayout(ImportLayoutRequest
+                .builder()
+                .zones(List.of(
+                        zone("STORAGE", 0, 0, 1000, 800, columns),
+                        zone("STORAGE", 2000, 0, 500, 500, List.of())))
+                .build());
+        ZoneEntity storage = zoneRepository.findByParentZoneIsNull().stream()
+                .filter(zone -> zone.getOriginX() == 0)
+                .findFirst()
+                .orElseThrow();
+        ZoneEntity column = zoneRepository.findByParentZoneId(storage.getId()).get(0);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        zoneService.moveZone(storage.getId(), new MoveZoneRequest(100, 50, 0));
+
+        // parent key for the lock, zone select, siblings for overlap check, descendant ids, zone update, outbox insert (+ its sequence),
+        // absolute bounds of the subtree are shifted with plain JDBC
+        assertTrue(statistics.getPrepareStatementCount() < 15, "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityUpdateCount());
+
+        ZoneEntity reloaded = zoneRepository.findById(column.getId()).orElseThrow();
+        assertEquals(column.getOriginX(), reloaded.getOriginX());
+        assertEquals(column.getOriginY(), reloaded.getOriginY());
+
+        ZonePositionModel position = zoneService.getPosition(column.getId());
+        assertEquals(100 + column.getOriginX(), position.getMinX());
+        assertEquals(50 + column.getOriginY(), position.getMinY());
+        assertEquals(100 + column.getOriginX(), reloaded.getAbsMinX());
+        assertEquals(50 + column.getOriginY(), reloaded.getAbsMinY());
+
+        ShelfEntity shelf = shelfRepository.findByZoneIdIn(List.of(column.getId())).get(0);
+        assertEquals(100 + column.getOriginX() + 2, shelf.getAbsMinX());
+        assertEquals(50 + column.getOriginY() + 3, shelf.getAbsMinY());
+
+        // rotated storage (800 x 1000 drawn) would overlap its neighbour
+        LayoutRejectedException overlap = assertThrows(LayoutRejectedException.class,
+                () -> zoneService.moveZone(storage.getId(), new MoveZoneRequest(1500, 0, 90)));
+        assertEquals(Reason.OVERLAP, overlap.getReason());
+
+        zoneService.moveZone(storage.getId(), new MoveZoneRequest(0, 0, 90));
+        position = zoneService.getPosition(column.getId());
+        assertEquals(800 - column.getOriginY() - 10, position.getMinX());
+        assertEquals(column.getOriginX(), position.getMinY());
+
+        reloaded = zoneRepository.findById(column.getId()).orElseThrow();
+        assertEquals(position.getMinX(), reloaded.getAbsMinX());
+        assertEquals(position.getMinY(), reloaded.getAbsMinY());
+        assertEquals(position.getMaxX(), reloaded.getAbsMaxX());
+        assertEquals(position.getMaxY(), reloaded.getAbsMaxY());
+        assertEquals(90, reloaded.getAbsRotationAngle());
+
+        // shelf 2..6 x 3..8 in the column, rotated clockwise with it
+        shelf = shelfRepository.findById(shelf.getId()).orElseThrow();
+        assertEquals(position.getMaxX() - 8, shelf.getAbsMinX());
+        assertEquals(position.getMinY() + 2, shelf.getAbsMinY());
+        assertEquals(position.getMaxX() - 3, shelf.getAbsMaxX());
+        assertEquals(position.getMinY() + 6, shelf.getAbsMaxY());
+
+        List<ZoneFlatModel> at = zoneService.getAt(position.getMinX(), position.getMinY());
+        assertEquals(2, at.size());
+        assertEquals(column.getId(), at.get(0).getId());
+        assertEquals(storage.getId(), at.get(1).getId());
+
+        assertEquals(List.of(shelf.getId()), shelfService.getAt(shelf.getAbsMinX(), shelf.getAbsMinY())
+                .stream().map(model -> model.getId()).toList());
+        assertEquals(2, zoneService.getInWindow(position.getMinX(), position.getMinY(),
+                position.getMinX() + 1, position.getMinY() + 1, 100).size());
+        assertEquals(1, zoneService.getInWindow(position.getMinX(), position.getMinY(),
+                position.getMinX() + 1, position.getMinY() + 1, 1).size());
+    }
+
+    private static AddShelfRequest shelf() {
+        return AddShelfRequest
+                .builder()
+                .level(1)
+                .originX(2)
+                .originY(3)
+                .width(4)
+                .length(5)
+                .height(6)
+                .build();
+    }
+
+    private static ImportZoneRequest zone(String type, int x, int y, int width, int length,
+                                          List<ImportZoneRequest> children) {
+        return ImportZoneRequest
+                .builder()
+                .type(type)
+                .originX(x)
+                .originY(y)
+                .width(width)
+                .length(length)
+                .rotationAngle(0)
+                .faceDirection("UP")
+                .childZones(children)
+                .shelves(List.of())
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package com.fatia.warehouseservice.services;
+
+import com.fatia.warehouseservice.entities.ShelfEntity;
+import com.fatia.warehouseservice.entities.ZoneEntity;
+import com.fatia.warehouseservice.entities.ZoneType;
+import com.fatia.warehouseservice.models.ZoneModel;
+import com.fatia.warehouseservice.repositories.ShelfRepository;
+import com.fatia.warehouseservice.repositories.ZoneRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.fatia.warehouseservice.LayoutFixtures.zone;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ZoneTreeLoader.class)
+class ZoneTreeLoaderTest {
+
+    private static final int STORAGES = 10;
+    private static final int COLUMNS_PER_STORAGE = 99;
+    private static final int SHELVES = 10_000;
+
+    @Autowired
+    private ZoneTreeLoader zoneTreeLoader;
+
+    @Autowired
+    private ZoneRepository zoneRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    private Long storageId;
+
+    @BeforeEach
+    void setUp() {
+        List<ZoneEntity> columns = new ArrayList<>();
+        for (int s = 0; s < STORAGES; s++) {
+            ZoneEntity storage = zoneRepository.save(zone("s" + s, ZoneType.STORAGE, null));
+            if (storageId == null) {
+                storageId = storage.getId();
+            }
+            for (int c = 0; c < COLUMNS_PER_STORAGE; c++) {
+                columns.add(zone("s" + s + "c" + c, ZoneType.COLUMN, storage));
+            }
+        }
+        zoneRepository.saveAll(columns);
+
+        List<ShelfEntity> shelves = new ArrayList<>(SHELVES);
+        for (int i = 0; i < SHELVES; i++) {
+            shelves.add(ShelfEntity
+                    .builder()
+                    .name("shelf-" + i)
+                    .zone(columns.get(i % columns.size()))
+                    .width(10)
+                    .length(10)
+                    .height(10)
+                    .level(i / columns.size())
+                    .isActive(true)
+                    .build());
+        }
+        shelfRepository.saveAll(shelves);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void loadAllUsesTwoStatements() {
+        List<ZoneModel> zones = zoneTreeLoader.loadAll();
+
+        assertEquals(STORAGES * (COLUMNS_PER_STORAGE + 1), zones.size());
+        assertEquals(SHELVES, zones.stream().mapToInt(z -> z.getShelves().size()).sum());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void loadSubtreeUsesTwoStatementsPerLevel() {
+        ZoneModel storage = zoneTreeLoader.loadSubtree(storageId);
+
+        assertEquals(COLUMNS_PER_STORAGE, storage.getChildZones().size());
+        // shelves are spread round-robin, first storage holds the first columns
+        int columns = STORAGES * COLUMNS_PER_STORAGE;
+        int expectedShelves = COLUMNS_PER_STORAGE * (SHELVES / columns)
+                + Math.min(COLUMNS_PER_STORAGE, SHELVES % columns);
+        assertEquals(expectedShelves,
+                storage.getChildZones().stream().mapToInt(z -> z.getShelves().size()).sum());
+        assertEquals(storage.getChildZones().get(0).getName(),
+                storage.getChildZones().get(0).getShelves().get(0).getZoneName());
+        // root + (shelves, children) for storage level + (shelves, children) for column level
+        assertEquals(5, statistics.getPrepareStatementCount());
+    }
+}
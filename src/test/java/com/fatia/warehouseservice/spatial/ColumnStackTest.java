@@ -0,0 +1,51 @@
+package com.fatia.warehouseservice.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnStackTest {
+
+    @Test
+    void findsCollisionWithWideShelfStartingFarLeft() {
+        ColumnStack column = new ColumnStack();
+        column.put(new ColumnStack.Shelf(1L, new Rect(0, 0, 100, 10), 0, 10));
+        column.put(new ColumnStack.Shelf(2L, new Rect(0, 20, 10, 30), 0, 10));
+        column.put(new ColumnStack.Shelf(3L, new Rect(80, 20, 90, 30), 0, 10));
+
+        assertEquals(1L, column.findColliding(null, new Rect(90, 5, 95, 15), 0).id());
+        assertEquals(3L, column.findColliding(null, new Rect(85, 15, 95, 25), 0).id());
+        // touching edges, another level and the shelf itself don't collide
+        assertNull(column.findColliding(null, new Rect(100, 0, 110, 10), 0));
+        assertNull(column.findColliding(null, new Rect(90, 5, 95, 15), 1));
+        assertNull(column.findColliding(1L, new Rect(50, 0, 60, 10), 0));
+
+        column.remove(1L);
+        assertNull(column.findColliding(null, new Rect(90, 5, 95, 15), 0));
+    }
+
+    @Test
+    void tierHeightFollowsItsTallestShelf() {
+        ColumnStack column = new ColumnStack();
+        column.put(new ColumnStack.Shelf(1L, new Rect(0, 0, 10, 10), 0, 40));
+        column.put(new ColumnStack.Shelf(2L, new Rect(10, 0, 20, 10), 0, 40));
+        column.put(new ColumnStack.Shelf(3L, new Rect(20, 0, 30, 10), 0, 25));
+        column.put(new ColumnStack.Shelf(4L, new Rect(0, 0, 10, 10), 1, 30));
+        assertEquals(70, column.getHeight());
+
+        // one of two tallest shelves lowered keeps the tier, the last one lowers it
+        assertEquals(70, column.heightWith(1L, 0, 10));
+        column.remove(2L);
+        assertEquals(55, column.heightWith(1L, 0, 10));
+        // moved to the level above, the tier below shrinks to the next tallest
+        assertEquals(75, column.heightWith(1L, 1, 50));
+        assertEquals(95, column.heightWith(null, 2, 25));
+
+        column.remove(1L);
+        column.remove(3L);
+        assertEquals(30, column.getHeight());
+        assertEquals(List.of(new ColumnStack.Gap(0, 0), new ColumnStack.Gap(2, 30)), column.gaps());
+    }
+}
@@ -0,0 +1,38 @@
+package com.fatia.warehouseservice.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameTest {
+
+    @Test
+    void childIsPlacedRelativelyToParent() {
+        Frame storage = Frame.WAREHOUSE.child(100, 200, 400, 300, 0);
+        Frame column = storage.child(10, 20, 50, 30, 0);
+
+        assertEquals(new Rect(100, 200, 500, 500), storage.getFootprint());
+        assertEquals(new Rect(110, 220, 160, 250), column.getFootprint());
+    }
+
+    @Test
+    void rotatedParentRotatesWholeSubtree() {
+        // 400 x 300 storage turned by 90 is drawn as 300 x 400
+        Frame storage = Frame.WAREHOUSE.child(100, 200, 400, 300, 90);
+        assertEquals(new Rect(100, 200, 400, 600), storage.getFootprint());
+
+        // local top-left corner goes to top-right corner of the drawn footprint
+        Frame column = storage.child(0, 0, 50, 30, 0);
+        assertEquals(new Rect(370, 200, 400, 250), column.getFootprint());
+
+        // turning child back by 270 gives unrotated drawing
+        Frame turnedBack = storage.child(0, 0, 50, 30, 270);
+        assertEquals(50, turnedBack.getFootprint().getWidth());
+        assertEquals(30, turnedBack.getFootprint().getLength());
+
+        for (int angle = 0; angle < 360; angle += 90) {
+            Frame rotated = Frame.WAREHOUSE.child(100, 200, 400, 300, angle);
+            assertTrue(rotated.getFootprint().contains(rotated.child(390, 290, 10, 10, 0).getFootprint()));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.fatia.warehouseservice.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverlapSweepTest {
+
+    @Test
+    void touchingEdgesAreNotReported() {
+        List<Rect> rects = List.of(
+                new Rect(0, 0, 10, 10),
+                new Rect(10, 0, 20, 10),
+                new Rect(0, 10, 10, 20),
+                new Rect(5, 5, 15, 15));
+
+        assertEquals(Set.of(List.of(0, 3), List.of(1, 3), List.of(2, 3)), pairs(rects));
+    }
+
+    @Test
+    void findsSamePairsAsPairwiseCheck() {
+        Random random = new Random(42);
+        List<Rect> rects = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(2000) - 1000;
+            int y = random.nextInt(2000) - 1000;
+            rects.add(new Rect(x, y, x + 1 + random.nextInt(60), y + 1 + random.nextInt(60)));
+        }
+
+        Set<List<Integer>> expected = new HashSet<>();
+        for (int i = 0; i < rects.size(); i++) {
+            for (int j = i + 1; j < rects.size(); j++) {
+                if (rects.get(i).intersects(rects.get(j))) {
+                    expected.add(List.of(i, j));
+                }
+            }
+        }
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, pairs(rects));
+    }
+
+    private static Set<List<Integer>> pairs(List<Rect> rects) {
+        Set<List<Integer>> pairs = new HashSet<>();
+        OverlapSweep.forEachOverlap(rects, (first, second) -> assertTrue(pairs.add(List.of(first, second))));
+        return pairs;
+    }
+}
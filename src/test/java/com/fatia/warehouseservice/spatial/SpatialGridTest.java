@@ -0,0 +1,41 @@
+package com.fatia.warehouseservice.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialGridTest {
+
+    @Test
+    void detectsOverlapOnlyWithOtherEntries() {
+        SpatialGrid grid = new SpatialGrid(16);
+        grid.put(1L, new Rect(0, 0, 100, 50));
+        grid.put(2L, new Rect(200, 0, 300, 50));
+
+        assertTrue(grid.anyIntersecting(new Rect(90, 40, 120, 60), 0L));
+        assertFalse(grid.anyIntersecting(new Rect(90, 40, 120, 60), 1L));
+        // touching edges are allowed
+        assertFalse(grid.anyIntersecting(new Rect(100, 0, 200, 50), 0L));
+    }
+
+    @Test
+    void movedAndRemovedEntriesAreForgotten() {
+        SpatialGrid grid = new SpatialGrid(16);
+        grid.put(1L, new Rect(0, 0, 100, 50));
+        grid.put(1L, new Rect(500, 500, 600, 550));
+
+        assertFalse(grid.anyIntersecting(new Rect(0, 0, 100, 50), 0L));
+        assertEquals(1, grid.query(new Rect(550, 520, 560, 530)).size());
+
+        grid.remove(1L);
+        assertEquals(0, grid.size());
+        assertTrue(grid.query(new Rect(0, 0, 1000, 1000)).isEmpty());
+    }
+
+    @Test
+    void rotatedFootprintSwapsSides() {
+        Rect rotated = Rect.footprint(10, 20, 30, 80, 90);
+
+        assertEquals(new Rect(10, 20, 90, 50), rotated);
+    }
+}